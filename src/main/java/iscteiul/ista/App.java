@@ -1,6 +1,10 @@
 package iscteiul.ista;
 
+import java.util.Arrays;
+
+import iscteiul.ista.battleship.BatchRuns;
 import iscteiul.ista.battleship.Fleet;
+import iscteiul.ista.battleship.ScriptRunner;
 import iscteiul.ista.battleship.Tasks;
 
 /**
@@ -12,6 +16,13 @@ public class App
 {
     public static void main( String[] args )
     {
+        // Headless mode: App --batch [--threads n] [--transcripts dir] script...
+        // Short-lived batch runs skip the flight recorder unless -Dbattleship.jfr=true is given.
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRuns.skipFlightRecorder();
+            ScriptRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
         System.out.printf("\n***  Battleship Game ***\n");
 
@@ -5,7 +5,7 @@
  */
 package iscteiul.ista.battleship;
 
-public class Barge extends Ship {
+public final class Barge extends Ship {
     private static final Integer SIZE = 1;
     private static final String NAME = "Barca";
 
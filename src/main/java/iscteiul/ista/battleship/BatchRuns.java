@@ -0,0 +1,64 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Helpers shared by the command-line tools that play many games or time a loop:
+ * the batch runner, the tournament, the placement optimiser and the benchmarks.
+ */
+public final class BatchRuns {
+
+    /** Length of the warm-up, and half the length of the measurement, of {@link #rate(Runnable)}. */
+    private static final long NANOS = 1_000_000_000L;
+
+    private BatchRuns() {
+    }
+
+    /**
+     * Turns off the per-shot flight recorder events for a short-lived batch run,
+     * unless {@code -Dbattleship.jfr} was given. Must be called before the first
+     * game is played, since {@link FlightEvents} reads the property only once.
+     */
+    public static void skipFlightRecorder() {
+        if (System.getProperty("battleship.jfr") == null)
+            System.setProperty("battleship.jfr", "false");
+    }
+
+    /**
+     * Returns a factory of daemon threads, so that a pool left behind never keeps
+     * the JVM alive.
+     *
+     * @param name the name of the threads
+     * @return the thread factory
+     */
+    static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Returns how many times per second a task runs, after warming it up for a second.
+     *
+     * @param task the task to time
+     * @return the number of runs per second, over at least two seconds
+     */
+    static double rate(Runnable task) {
+        for (long end = System.nanoTime() + NANOS; System.nanoTime() < end; )
+            task.run();
+        int runs = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            task.run();
+            runs++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < 2 * NANOS);
+        return (double) runs * NANOS / elapsed;
+    }
+}
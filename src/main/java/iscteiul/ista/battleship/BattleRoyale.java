@@ -0,0 +1,439 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A match between many players, each with a fleet, all firing into one shared
+ * stream of shots: every shot a player fires hits every opponent's fleet at
+ * that cell.
+ *
+ * The fleets are merged into a single index from each cell to the ship cells
+ * of every player at that cell, so a shot is resolved against all opponents
+ * with one lookup instead of one {@link Fleet#shipAt(IPosition)} per player.
+ * Ship cells are numbered player by player, which keeps the entries of a cell
+ * sorted by player.
+ *
+ * Play proceeds in rounds. In each round every player still afloat fires a
+ * volley; the volleys are resolved in parallel by splitting the players, as
+ * targets, into ranges. A task owns the damage state of the targets in its
+ * range, so no locking is needed, and it applies the shots of the round in
+ * player order, so results do not depend on scheduling: when several players
+ * hit the same cell of a fleet in one round, the first of them in player order
+ * scores the hit. A player whose last ship sinks is eliminated at the end of the
+ * round and fires no more. Hits also mark the positions of the ships, so the
+ * fleets reflect the match.
+ *
+ * Instances are not thread-safe: rounds must be fired one at a time.
+ */
+public class BattleRoyale {
+
+    /**
+     * The outcome of one round.
+     */
+    public static final class Round {
+        private final int[] hits;
+        private final int[] sinks;
+        private final List<Integer> eliminated;
+
+        private Round(int[] hits, int[] sinks, List<Integer> eliminated) {
+            this.hits = hits;
+            this.sinks = sinks;
+            this.eliminated = Collections.unmodifiableList(eliminated);
+        }
+
+        /**
+         * Returns the number of ship cells a player hit in this round, over all opponents.
+         *
+         * @param player the shooter
+         * @return the number of hits
+         */
+        public int getHits(int player) {
+            return hits[player];
+        }
+
+        /**
+         * Returns the number of ships a player sank in this round, over all opponents.
+         *
+         * @param player the shooter
+         * @return the number of ships sunk
+         */
+        public int getSinks(int player) {
+            return sinks[player];
+        }
+
+        /**
+         * Returns the players eliminated in this round.
+         *
+         * @return the eliminated players, in increasing order
+         */
+        public List<Integer> getEliminated() {
+            return eliminated;
+        }
+    }
+
+    private final List<IFleet> fleets;
+    private final int players;
+    private final int boardSize;
+    private final Executor executor;
+    private final int partitions;
+
+    /** Ship cells of all players at each cell, as sorted ship cell ids. */
+    private final CellIndex<int[]> cells;
+    /** Per ship cell id: owner, global ship index, position and whether it was hit. */
+    private final int[] cellPlayer;
+    private final int[] cellShip;
+    private final IPosition[] cellPosition;
+    private final boolean[] cellHit;
+    /** Per global ship index: the number of intact cells. */
+    private final int[] shipIntact;
+    /** Per player: ships afloat, total hits and sinks scored, whether still in the match. */
+    private final int[] floating;
+    private final int[] totalHits;
+    private final int[] totalSinks;
+    private final boolean[] alive;
+    private int aliveCount;
+    private int rounds;
+
+    /**
+     * Creates a match resolved on the common fork/join pool.
+     *
+     * @param fleets the fleets of the players, in player order
+     */
+    public BattleRoyale(List<? extends IFleet> fleets) {
+        this(fleets, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Creates a match.
+     *
+     * @param fleets the fleets of the players, in player order; they must share the board size
+     *               and must not be changed during the match
+     * @param executor the executor that resolves the rounds
+     * @param parallelism the number of tasks each round is split into
+     * @throws IllegalArgumentException if there are fewer than two fleets, or their boards differ
+     */
+    public BattleRoyale(List<? extends IFleet> fleets, Executor executor, int parallelism) {
+        if (fleets.size() < 2)
+            throw new IllegalArgumentException("ERROR! a battle royale needs at least two players");
+        this.fleets = new ArrayList<>(fleets);
+        this.players = fleets.size();
+        this.boardSize = fleets.get(0).getBoardSize();
+        this.executor = executor;
+        this.partitions = Math.max(1, Math.min(parallelism, players));
+
+        int shipCount = 0;
+        int cellCount = 0;
+        for (IFleet fleet : fleets) {
+            if (fleet.getBoardSize() != boardSize)
+                throw new IllegalArgumentException("ERROR! all fleets must be on boards of the same size");
+            shipCount += fleet.getShips().size();
+            for (IShip s : fleet.getShips())
+                cellCount += s.getPositions().size();
+        }
+
+        cells = new CellIndex<>();
+        cellPlayer = new int[cellCount];
+        cellShip = new int[cellCount];
+        cellPosition = new IPosition[cellCount];
+        cellHit = new boolean[cellCount];
+        shipIntact = new int[shipCount];
+        floating = new int[players];
+        totalHits = new int[players];
+        totalSinks = new int[players];
+        alive = new boolean[players];
+
+        int id = 0;
+        int ship = 0;
+        for (int p = 0; p < players; p++) {
+            for (IShip s : fleets.get(p).getShips()) {
+                for (IPosition pos : s.getPositions()) {
+                    cellPlayer[id] = p;
+                    cellShip[id] = ship;
+                    cellPosition[id] = pos;
+                    cellHit[id] = pos.isHit();
+                    if (!pos.isHit())
+                        shipIntact[ship]++;
+                    int[] entries = cells.get(pos.getRow(), pos.getColumn());
+                    entries = entries == null ? new int[1] : Arrays.copyOf(entries, entries.length + 1);
+                    entries[entries.length - 1] = id++;
+                    cells.put(pos.getRow(), pos.getColumn(), entries);
+                }
+                if (shipIntact[ship] > 0)
+                    floating[p]++;
+                ship++;
+            }
+            alive[p] = floating[p] > 0;
+            if (alive[p])
+                aliveCount++;
+        }
+    }
+
+    /**
+     * Fires one round.
+     *
+     * @param volleys the volley of each player, in player order; the volleys of
+     *                eliminated players, and null volleys, are ignored. Shots outside
+     *                the board are ignored.
+     * @return the outcome of the round
+     * @throws IllegalArgumentException if there is not one volley per player
+     */
+    public Round fireRound(List<? extends List<? extends IPosition>> volleys) {
+        if (volleys.size() != players)
+            throw new IllegalArgumentException("ERROR! expected one volley per player");
+
+        // the shots of the round, flattened in player order, with their shooters
+        int total = 0;
+        for (int p = 0; p < players; p++)
+            if (alive[p] && volleys.get(p) != null)
+                total += volleys.get(p).size();
+        int[] shooters = new int[total];
+        int[][] shotCells = new int[total][];
+        int n = 0;
+        for (int p = 0; p < players; p++) {
+            if (!alive[p] || volleys.get(p) == null)
+                continue;
+            for (IPosition pos : volleys.get(p)) {
+                if (pos == null || pos.getRow() < 0 || pos.getRow() >= boardSize
+                        || pos.getColumn() < 0 || pos.getColumn() >= boardSize)
+                    continue;
+                int[] entries = cells.get(pos.getRow(), pos.getColumn());
+                if (entries != null) {
+                    shooters[n] = p;
+                    shotCells[n++] = entries;
+                }
+            }
+        }
+
+        int[][] hits = new int[partitions][];
+        int[][] sinks = new int[partitions][];
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[partitions];
+        for (int t = 0; t < partitions; t++) {
+            int task = t;
+            int from = (int) ((long) players * t / partitions);
+            int to = (int) ((long) players * (t + 1) / partitions);
+            int shots = n;
+            tasks[t] = CompletableFuture.runAsync(() -> {
+                hits[task] = new int[players];
+                sinks[task] = new int[players];
+                resolve(from, to, shooters, shotCells, shots, hits[task], sinks[task]);
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).join();
+
+        int[] roundHits = new int[players];
+        int[] roundSinks = new int[players];
+        for (int t = 0; t < partitions; t++) {
+            for (int p = 0; p < players; p++) {
+                roundHits[p] += hits[t][p];
+                roundSinks[p] += sinks[t][p];
+            }
+        }
+        List<Integer> eliminated = new ArrayList<>();
+        for (int p = 0; p < players; p++) {
+            totalHits[p] += roundHits[p];
+            totalSinks[p] += roundSinks[p];
+            if (alive[p] && floating[p] == 0) {
+                alive[p] = false;
+                aliveCount--;
+                eliminated.add(p);
+            }
+        }
+        rounds++;
+        return new Round(roundHits, roundSinks, eliminated);
+    }
+
+    /**
+     * Applies the shots of a round to the targets {@code from..to-1}.
+     */
+    private void resolve(int from, int to, int[] shooters, int[][] shotCells, int shots, int[] hits, int[] sinks) {
+        for (int i = 0; i < shots; i++) {
+            int shooter = shooters[i];
+            int[] entries = shotCells[i];
+            for (int e = firstEntry(entries, from); e < entries.length; e++) {
+                int id = entries[e];
+                int target = cellPlayer[id];
+                if (target >= to)
+                    break;
+                if (target == shooter || cellHit[id])
+                    continue;
+                cellHit[id] = true;
+                cellPosition[id].shoot();
+                hits[shooter]++;
+                if (--shipIntact[cellShip[id]] == 0) {
+                    sinks[shooter]++;
+                    floating[target]--;
+                }
+            }
+        }
+    }
+
+    /** Returns the index of the first entry of a player at least {@code player}. */
+    private int firstEntry(int[] entries, int player) {
+        int lo = 0;
+        int hi = entries.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cellPlayer[entries[mid]] < player)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the number of players of the match.
+     *
+     * @return the number of players
+     */
+    public int getPlayers() {
+        return players;
+    }
+
+    /**
+     * Returns the fleet of a player.
+     *
+     * @param player the player
+     * @return the fleet of the player
+     */
+    public IFleet getFleet(int player) {
+        return fleets.get(player);
+    }
+
+    /**
+     * Returns whether a player still has ships afloat.
+     *
+     * @param player the player
+     * @return true if the player is still in the match
+     */
+    public boolean isAlive(int player) {
+        return alive[player];
+    }
+
+    /**
+     * Returns the number of players still in the match.
+     *
+     * @return the number of players with ships afloat
+     */
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    /**
+     * Returns the number of ships a player still has afloat.
+     *
+     * @param player the player
+     * @return the number of floating ships
+     */
+    public int getFloatingShips(int player) {
+        return floating[player];
+    }
+
+    /**
+     * Returns the number of hits a player scored during the match.
+     *
+     * @param player the player
+     * @return the number of hits
+     */
+    public int getHits(int player) {
+        return totalHits[player];
+    }
+
+    /**
+     * Returns the number of ships a player sank during the match.
+     *
+     * @param player the player
+     * @return the number of ships sunk
+     */
+    public int getSinks(int player) {
+        return totalSinks[player];
+    }
+
+    /**
+     * Returns the number of rounds fired so far.
+     *
+     * @return the number of rounds
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Returns whether the match is over, with at most one player left.
+     *
+     * @return true if the match is over
+     */
+    public boolean isOver() {
+        return aliveCount <= 1;
+    }
+
+    /**
+     * Returns the winner of the match.
+     *
+     * @return the last player afloat, or -1 if the match is not over or ended with no one left
+     */
+    public int getWinner() {
+        if (aliveCount != 1)
+            return -1;
+        for (int p = 0; p < players; p++)
+            if (alive[p])
+                return p;
+        return -1;
+    }
+
+    /**
+     * Plays a match between generated fleets of the standard composition, each
+     * player firing random volleys, and prints the result. Since every shot hits
+     * every opponent, the board grows with the number of players so that the match
+     * lasts more than a few rounds.
+     *
+     * Usage: {@code java iscteiul.ista.battleship.BattleRoyale [players] [seed]}
+     *
+     * @param args the number of players (default 200) and the seed (default 1)
+     */
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int boardSize = Math.max(Fleet.BOARD_SIZE, (int) Math.ceil(Math.sqrt(30.0 * players)));
+        int ships = FleetGenerator.COMPOSITION.length;
+
+        Random random = new Random(seed);
+        List<Fleet> fleets = new ArrayList<>(players);
+        for (int p = 0; p < players; p++)
+            fleets.add(FleetGenerator.generate(random.nextLong(), boardSize, ships));
+
+        long start = System.nanoTime();
+        BattleRoyale match = new BattleRoyale(fleets);
+        long built = System.nanoTime();
+        while (!match.isOver()) {
+            List<List<IPosition>> volleys = new ArrayList<>(players);
+            for (int p = 0; p < players; p++) {
+                List<IPosition> volley = new ArrayList<>(ScriptRunner.NUMBER_SHOTS);
+                for (int i = 0; i < ScriptRunner.NUMBER_SHOTS; i++)
+                    volley.add(new Position(random.nextInt(boardSize), random.nextInt(boardSize)));
+                volleys.add(volley);
+            }
+            Round round = match.fireRound(volleys);
+            if (!round.getEliminated().isEmpty())
+                System.out.printf("round %d: %d eliminated, %d left%n", match.getRounds(),
+                        round.getEliminated().size(), match.getAliveCount());
+        }
+        long end = System.nanoTime();
+        int winner = match.getWinner();
+        System.out.printf("%d players on %dx%d, index built in %d us, %d rounds in %d us (%.1f us/round), %s%n",
+                players, boardSize, boardSize, (built - start) / 1000, match.getRounds(), (end - built) / 1000,
+                (end - built) / 1000.0 / match.getRounds(),
+                winner >= 0 ? "winner " + winner + " with " + match.getFloatingShips(winner) + " ships afloat"
+                        : "no one left");
+    }
+}
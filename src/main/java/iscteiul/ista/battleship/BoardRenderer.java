@@ -0,0 +1,255 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws boards as text into a reusable byte buffer and writes each frame with a
+ * single call to the output stream, or in chunks of {@link #MAX_BUFFER} bytes
+ * when the frame is larger.
+ *
+ * A frame is composed by clearing the board and marking cells, either with
+ * {@link #mark(List, char)} or with the combined {@link #overlay(IFleet, List)}.
+ * It is then written in full by {@link #render(OutputStream)}, or incrementally
+ * by {@link #renderChanges(OutputStream)}, which only emits the cells that differ
+ * from the previous frame, each preceded by an ANSI cursor move. Incremental
+ * frames assume the board is drawn at the top-left corner of an ANSI terminal;
+ * the first incremental frame clears the screen and draws the whole board.
+ *
+ * Only the frame being composed takes one byte per cell from the start; the copy
+ * of what is on screen is allocated by the first incremental frame, and the
+ * output buffer grows with what is written, up to {@link #MAX_BUFFER} bytes.
+ *
+ * Instances are not thread-safe.
+ */
+public class BoardRenderer {
+
+    /** Marker of a cell with nothing to show. */
+    public static final char EMPTY = '.';
+    /** Marker of a ship cell in fleet views. */
+    public static final char SHIP = '#';
+    /** Marker of a shot. */
+    public static final char SHOT = 'X';
+    /** Marker of a shot that hit a ship, in overlays. */
+    public static final char HIT = '*';
+
+    /** Largest board size that can be drawn. */
+    public static final int MAX_BOARD_SIZE = 4096;
+    /** Largest size of the output buffer, in bytes. */
+    public static final int MAX_BUFFER = 64 * 1024;
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte ESC = 27;
+
+    private final int boardSize;
+    private final byte[] cells;
+    /** What the terminal shows, for incremental frames; null until the first one. */
+    private byte[] shown;
+    private boolean screenDrawn;
+    private byte[] buffer;
+    private int length;
+    /** The stream of the frame being written, for the chunks of large frames. */
+    private OutputStream target;
+
+    /**
+     * Creates a renderer for square boards of the given size.
+     *
+     * @param boardSize the number of rows and columns of the board
+     * @throws IllegalArgumentException if the board is larger than {@link #MAX_BOARD_SIZE}
+     */
+    public BoardRenderer(int boardSize) {
+        if (boardSize > MAX_BOARD_SIZE)
+            throw new IllegalArgumentException("ERROR! board size " + boardSize + " is too large to draw");
+        this.boardSize = boardSize;
+        this.cells = new byte[boardSize * boardSize];
+        this.buffer = new byte[Math.min(MAX_BUFFER, 64 + boardSize + NEWLINE.length)];
+        clear();
+    }
+
+    /**
+     * Resets every cell of the frame being composed to {@link #EMPTY}.
+     */
+    public void clear() {
+        Arrays.fill(cells, (byte) EMPTY);
+    }
+
+    /**
+     * Marks the given positions; positions outside the board are ignored.
+     *
+     * @param positions the positions to mark
+     * @param marker the character to draw in those cells
+     */
+    public void mark(List<IPosition> positions, char marker) {
+        for (IPosition pos : positions)
+            set(pos.getRow(), pos.getColumn(), marker);
+    }
+
+    /**
+     * Draws a fleet and the shots fired at it on top of the current frame:
+     * ship cells as {@link #SHIP}, shots on water as {@link #SHOT} and shots
+     * on ships as {@link #HIT}.
+     *
+     * @param fleet the fleet to draw
+     * @param shots the shots to draw
+     */
+    public void overlay(IFleet fleet, List<IPosition> shots) {
+        for (IShip ship : fleet.getShips())
+            mark(ship.getPositions(), SHIP);
+        for (IPosition pos : shots) {
+            int r = pos.getRow();
+            int c = pos.getColumn();
+            if (r >= 0 && r < boardSize && c >= 0 && c < boardSize)
+                cells[r * boardSize + c] = cells[r * boardSize + c] == SHIP ? (byte) HIT : (byte) SHOT;
+        }
+    }
+
+    /**
+     * Sets one cell of the frame being composed; coordinates outside the board are ignored.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @param marker the character to draw
+     */
+    public void set(int row, int column, char marker) {
+        if (row >= 0 && row < boardSize && column >= 0 && column < boardSize)
+            cells[row * boardSize + column] = (byte) marker;
+    }
+
+    /**
+     * Writes the whole frame, one line per row, and flushes the stream.
+     *
+     * @param out the stream to write to
+     * @throws UncheckedIOException if the stream cannot be written
+     */
+    public void render(OutputStream out) {
+        target = out;
+        length = 0;
+        for (int r = 0; r < boardSize; r++) {
+            append(cells, r * boardSize, boardSize);
+            append(NEWLINE, 0, NEWLINE.length);
+        }
+        flush(out);
+    }
+
+    /**
+     * Writes only the cells that changed since the previous incremental frame,
+     * using ANSI cursor positioning, and flushes the stream. Nothing is written
+     * when no cell changed.
+     *
+     * @param out the ANSI terminal stream to write to
+     * @throws UncheckedIOException if the stream cannot be written
+     */
+    public void renderChanges(OutputStream out) {
+        target = out;
+        length = 0;
+        if (shown == null)
+            shown = new byte[cells.length];
+        if (!screenDrawn) {
+            appendEscape('2', 'J');
+            for (int r = 0; r < boardSize; r++)
+                for (int c = 0; c < boardSize; c++)
+                    appendCell(r, c);
+            screenDrawn = true;
+        } else {
+            boolean changed = false;
+            for (int i = 0; i < cells.length; i++)
+                if (cells[i] != shown[i]) {
+                    appendCell(i / boardSize, i % boardSize);
+                    changed = true;
+                }
+            if (!changed)
+                return;
+        }
+        appendCursor(boardSize, 0);
+        System.arraycopy(cells, 0, shown, 0, cells.length);
+        flush(out);
+    }
+
+    /**
+     * Forgets what is on screen, so the next incremental frame redraws everything.
+     */
+    public void invalidate() {
+        screenDrawn = false;
+    }
+
+    private void appendCell(int row, int column) {
+        appendCursor(row, column);
+        ensure(1);
+        buffer[length++] = cells[row * boardSize + column];
+    }
+
+    /** Appends ESC [ row ; column H with 1-based coordinates. */
+    private void appendCursor(int row, int column) {
+        ensure(24);
+        buffer[length++] = ESC;
+        buffer[length++] = '[';
+        appendInt(row + 1);
+        buffer[length++] = ';';
+        appendInt(column + 1);
+        buffer[length++] = 'H';
+    }
+
+    private void appendEscape(char argument, char command) {
+        ensure(4);
+        buffer[length++] = ESC;
+        buffer[length++] = '[';
+        buffer[length++] = (byte) argument;
+        buffer[length++] = (byte) command;
+    }
+
+    private void appendInt(int value) {
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte t = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = t;
+        }
+    }
+
+    private void append(byte[] bytes, int offset, int count) {
+        ensure(count);
+        System.arraycopy(bytes, offset, buffer, length, count);
+        length += count;
+    }
+
+    /**
+     * Makes room for {@code extra} more bytes, growing the buffer up to
+     * {@link #MAX_BUFFER} and then writing out what it holds.
+     */
+    private void ensure(int extra) {
+        if (length + extra <= buffer.length)
+            return;
+        if (buffer.length < MAX_BUFFER) {
+            buffer = Arrays.copyOf(buffer, Math.min(MAX_BUFFER, Math.max(buffer.length * 2, length + extra)));
+            if (length + extra <= buffer.length)
+                return;
+        }
+        try {
+            target.write(buffer, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        length = 0;
+    }
+
+    private void flush(OutputStream out) {
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        target = null;
+    }
+}
@@ -5,7 +5,7 @@
  */
 package iscteiul.ista.battleship;
 
-public class Caravel extends Ship {
+public final class Caravel extends Ship {
     private static final Integer SIZE = 2;
     private static final String NAME = "Caravela";
 
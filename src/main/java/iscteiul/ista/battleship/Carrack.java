@@ -6,7 +6,7 @@
  */
 package iscteiul.ista.battleship;
 
-public class Carrack extends Ship {
+public final class Carrack extends Ship {
     private static final Integer SIZE = 3;
     private static final String NAME = "Nau";
 
@@ -0,0 +1,169 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+
+/**
+ * Sparse map from board cells to values.
+ *
+ * An open-addressing hash table keyed by the row and column packed in a
+ * {@code long}, with linear probing and no boxing, so memory grows with the
+ * number of cells stored rather than with the area of the board.
+ *
+ * @param <T> the type of the values
+ */
+final class CellIndex<T> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Creates an empty index.
+     */
+    CellIndex() {
+        keys = new long[MIN_CAPACITY];
+        values = new Object[MIN_CAPACITY];
+    }
+
+    /**
+     * Packs a cell into a key.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return the key of the cell
+     */
+    static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return the value, or null if the cell has none
+     */
+    @SuppressWarnings("unchecked")
+    T get(int row, int column) {
+        long key = key(row, column);
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask)
+            if (keys[i] == key)
+                return (T) values[i];
+        return null;
+    }
+
+    /**
+     * Sets the value of a cell.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @param value the value, not null
+     * @return the previous value, or null if the cell had none
+     */
+    @SuppressWarnings("unchecked")
+    T put(int row, int column, T value) {
+        if (value == null)
+            throw new NullPointerException("ERROR! null cell value");
+        if ((size + 1) * 2 > keys.length)
+            resize(keys.length * 2);
+        long key = key(row, column);
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                T previous = (T) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the value of a cell.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return the removed value, or null if the cell had none
+     */
+    @SuppressWarnings("unchecked")
+    T remove(int row, int column) {
+        long key = key(row, column);
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != null && keys[i] != key)
+            i = (i + 1) & mask;
+        if (values[i] == null)
+            return null;
+        T removed = (T) values[i];
+
+        // shift back the entries of the probe sequence that follows the freed slot
+        int gap = i;
+        for (int j = (gap + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Returns the number of cells with a value.
+     *
+     * @return the number of cells
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every value.
+     */
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != null)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Returns the home slot of a key in a table of {@code mask + 1} slots.
+     *
+     * @param key the key of a cell
+     * @param mask the number of slots minus one
+     * @return the slot where probing for the key starts
+     */
+    static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
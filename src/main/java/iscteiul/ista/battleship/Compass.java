@@ -51,6 +51,21 @@ public enum Compass {
 
     private final char c;
 
+    /**
+     * Representação textual, calculada uma única vez na construção.
+     */
+    private final String text;
+
+    /**
+     * Tabela de conversão de carácter ASCII para direção, preenchida na inicialização da classe.
+     */
+    private static final Compass[] BY_CHAR = new Compass[128];
+
+    static {
+        java.util.Arrays.fill(BY_CHAR, UNKNOWN);
+        for (Compass d : values())
+            BY_CHAR[d.c] = d;
+    }
 
     /**
      * Cria uma direção de {@code Compass} associada a um carácter.
@@ -60,6 +75,7 @@ public enum Compass {
 
     Compass(char c) {
         this.c = c;
+        this.text = String.valueOf(c);
     }
 
 
@@ -80,7 +96,7 @@ public enum Compass {
     /**     * Devolve a representação textual desta direção.     *     * <p>Por simplicidade, retorna uma string de tamanho 1 contendo o carácter associado     * (por exemplo, {@code "n"} para {@link #NORTH}).</p>     *     * @return a direção como {@link String}     */
     @Override
     public String toString() {
-        return "" + c;
+        return text;
     }
 
 
@@ -115,24 +131,6 @@ public enum Compass {
      * @see #UNKNOWN
      */
     static Compass charToCompass(char ch) {
-        Compass bearing;
-        switch (ch) {
-            case 'n':
-                bearing = NORTH;
-                break;
-            case 's':
-                bearing = SOUTH;
-                break;
-            case 'e':
-                bearing = EAST;
-                break;
-            case 'o':
-                bearing = WEST;
-                break;
-            default:
-                bearing = UNKNOWN;
-        }
-
-        return bearing;
+        return ch < BY_CHAR.length ? BY_CHAR[ch] : UNKNOWN;
     }
-}
\ No newline at end of file
+}
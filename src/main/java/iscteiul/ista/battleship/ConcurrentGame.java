@@ -0,0 +1,252 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe Battleship game session, for modes where several players
+ * fire at the same fleet at the same time.
+ *
+ * Each cell of the board is a bit in a shot bitboard. A shot claims its cell
+ * with a compare-and-set on that bitboard, so exactly one shooter wins each
+ * cell and every later shot at it counts as repeated. Ship damage is tracked
+ * by an atomic count of intact cells per ship, and the shooter whose hit brings
+ * that count to zero is the only one to see the ship returned as sunk.
+ * Statistics are kept in {@link LongAdder}s, so concurrent shooters do not
+ * contend on the counters.
+ *
+ * The ship layout is taken from the fleet when the game is created; the fleet
+ * must not be changed afterwards. Unlike {@link Game}, {@code null} positions
+ * are counted as invalid shots.
+ *
+ * The board is held in dense arrays, so their memory grows with the area of the
+ * board; boards larger than {@link #MAX_BOARD_SIZE} are refused, and sparse
+ * large boards are played with {@link Game}.
+ */
+public class ConcurrentGame implements IGame {
+
+    /** Largest board size supported by the dense per-cell arrays. */
+    public static final int MAX_BOARD_SIZE = 1024;
+
+    private final IFleet fleet;
+    private final int boardSize;
+    private final IShip[] ships;
+    /** Index of the ship occupying each cell, plus one; zero for water. */
+    private final int[] cellShip;
+    /** Number of intact cells of each ship. */
+    private final AtomicIntegerArray intactCells;
+    private final AtomicLongArray shotBoard;
+    private final ConcurrentLinkedQueue<IPosition> shots;
+
+    private final LongAdder countInvalidShots;
+    private final LongAdder countRepeatedShots;
+    private final LongAdder countHits;
+    private final LongAdder countSinks;
+
+    /**
+     * Creates a new concurrent game with the given fleet.
+     *
+     * @param fleet the fleet used in this game
+     * @throws IllegalArgumentException if the board of the fleet is larger than {@link #MAX_BOARD_SIZE}
+     */
+    public ConcurrentGame(IFleet fleet) {
+        this.fleet = fleet;
+        this.boardSize = fleet.getBoardSize();
+        if (boardSize > MAX_BOARD_SIZE)
+            throw new IllegalArgumentException("ERROR! board size " + boardSize + " is too large for a concurrent game");
+
+        List<IShip> fleetShips = fleet.getShips();
+        ships = fleetShips.toArray(new IShip[0]);
+        cellShip = new int[boardSize * boardSize];
+        intactCells = new AtomicIntegerArray(ships.length);
+        for (int i = 0; i < ships.length; i++) {
+            int intact = 0;
+            for (IPosition p : ships[i].getPositions()) {
+                cellShip[p.getRow() * boardSize + p.getColumn()] = i + 1;
+                if (!p.isHit())
+                    intact++;
+            }
+            intactCells.set(i, intact);
+        }
+
+        shotBoard = new AtomicLongArray((boardSize * boardSize + 63) / 64);
+        shots = new ConcurrentLinkedQueue<>();
+        countInvalidShots = new LongAdder();
+        countRepeatedShots = new LongAdder();
+        countHits = new LongAdder();
+        countSinks = new LongAdder();
+    }
+
+    /**
+     * Fires a shot at the given position. Safe to call from several threads.
+     *
+     * If two shooters fire at the same cell at the same time, one of them is
+     * recorded as the valid shot and the other as a repeated shot.
+     *
+     * @param pos the position to fire at
+     * @return the ship that was sunk by this shot, or null otherwise
+     */
+    @Override
+    public IShip fire(IPosition pos) {
+        if (resolve(pos) == VolleyResult.SUNK)
+            return ships[cellShip[pos.getRow() * boardSize + pos.getColumn()] - 1];
+        return null;
+    }
+
+    /**
+     * Fires a volley. Safe to call from several threads; shots of concurrent
+     * volleys may interleave, and each shot is resolved exactly as by
+     * {@link #fire(IPosition)}.
+     *
+     * @param volley the positions to fire at, in order
+     * @return the outcome of each shot and the ships sunk by this volley
+     */
+    @Override
+    public VolleyResult fireVolley(List<IPosition> volley) {
+        byte[] outcomes = new byte[volley.size()];
+        List<IShip> sunk = new ArrayList<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            IPosition pos = volley.get(i);
+            outcomes[i] = resolve(pos);
+            if (outcomes[i] == VolleyResult.SUNK)
+                sunk.add(ships[cellShip[pos.getRow() * boardSize + pos.getColumn()] - 1]);
+        }
+        return new VolleyResult(outcomes, sunk);
+    }
+
+    private byte resolve(IPosition pos) {
+        if (pos == null || pos.getRow() < 0 || pos.getRow() >= boardSize
+                || pos.getColumn() < 0 || pos.getColumn() >= boardSize) {
+            countInvalidShots.increment();
+            return VolleyResult.INVALID;
+        }
+
+        int cell = pos.getRow() * boardSize + pos.getColumn();
+        if (!claim(cell)) {
+            countRepeatedShots.increment();
+            return VolleyResult.REPEATED;
+        }
+        shots.add(pos);
+
+        int slot = cellShip[cell] - 1;
+        if (slot < 0)
+            return VolleyResult.MISS;
+
+        ships[slot].shoot(pos);
+        countHits.increment();
+        if (intactCells.decrementAndGet(slot) == 0) {
+            countSinks.increment();
+            return VolleyResult.SUNK;
+        }
+        return VolleyResult.HIT;
+    }
+
+    /**
+     * Sets the bit of the given cell on the shot board.
+     *
+     * @return true if this call set the bit, false if it was already set
+     */
+    private boolean claim(int cell) {
+        int word = cell >>> 6;
+        long bit = 1L << cell;
+        long old;
+        do {
+            old = shotBoard.get(word);
+            if ((old & bit) != 0)
+                return false;
+        } while (!shotBoard.compareAndSet(word, old, old | bit));
+        return true;
+    }
+
+    /**
+     * Returns a copy of the valid shots fired so far, in the order their cells were claimed.
+     *
+     * @return the list of shot positions
+     */
+    @Override
+    public List<IPosition> getShots() {
+        return new ArrayList<>(shots);
+    }
+
+    /**
+     * Returns the number of repeated shots.
+     *
+     * @return the number of repeated shots
+     */
+    @Override
+    public int getRepeatedShots() {
+        return countRepeatedShots.intValue();
+    }
+
+    /**
+     * Returns the number of invalid shots.
+     *
+     * @return the number of invalid shots
+     */
+    @Override
+    public int getInvalidShots() {
+        return countInvalidShots.intValue();
+    }
+
+    /**
+     * Returns the number of successful hits.
+     *
+     * @return the number of hits
+     */
+    @Override
+    public int getHits() {
+        return countHits.intValue();
+    }
+
+    /**
+     * Returns the number of ships sunk in this game.
+     *
+     * @return the number of sunk ships
+     */
+    @Override
+    public int getSunkShips() {
+        return countSinks.intValue();
+    }
+
+    /**
+     * Returns the number of ships still floating.
+     *
+     * @return the number of remaining ships
+     */
+    @Override
+    public int getRemainingShips() {
+        int remaining = 0;
+        for (int i = 0; i < ships.length; i++)
+            if (intactCells.get(i) > 0)
+                remaining++;
+        return remaining;
+    }
+
+    /**
+     * Prints the board showing valid shots that have been fired.
+     */
+    @Override
+    public void printValidShots() {
+        BoardRenderer board = new BoardRenderer(boardSize);
+        board.mark(getShots(), BoardRenderer.SHOT);
+        board.render(System.out);
+    }
+
+    /**
+     * Prints the board showing the fleet positions.
+     */
+    @Override
+    public void printFleet() {
+        BoardRenderer board = new BoardRenderer(boardSize);
+        for (IShip s : fleet.getShips())
+            board.mark(s.getPositions(), BoardRenderer.SHIP);
+        board.render(System.out);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the ways of computing the placement heatmap of a standard fleet on
+ * partly explored boards: placement by placement, checking each cell of each
+ * placement, and with the scalar and vector {@link CoverageKernel}s.
+ *
+ * Usage: {@code java --add-modules jdk.incubator.vector iscteiul.ista.battleship.CoverageBenchmark [boardSize...]}
+ * (default sizes 10 and 64). Without the module only the first two run.
+ */
+public final class CoverageBenchmark {
+
+    private static final int BOARDS = 64;
+
+    private CoverageBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark and prints heatmaps per second for each method.
+     *
+     * @param args the board sizes
+     */
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[] {10, 64} : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        int[] remaining = new int[GameCodec.KIND_COUNT];
+        for (String kind : FleetGenerator.COMPOSITION)
+            remaining[GameCodec.kindCode(kind)]++;
+
+        CoverageKernel scalar = new ScalarCoverageKernel();
+        CoverageKernel best = CoverageKernel.create();
+        for (int size : sizes) {
+            long[][] boards = new long[BOARDS][];
+            Random random = new Random(size);
+            for (int b = 0; b < BOARDS; b++) {
+                boards[b] = new long[size];
+                for (int r = 0; r < size; r++)
+                    for (int c = 0; c < size; c++)
+                        if (random.nextInt(100) < 70)
+                            boards[b][r] |= 1L << c;
+            }
+            int[] expected = new int[size * size];
+            int[] counts = new int[size * size];
+            cellByCell(boards[0], size, remaining, expected);
+
+            double naive = BOARDS * BatchRuns.rate(() -> {
+                for (long[] board : boards)
+                    cellByCell(board, size, remaining, counts);
+            });
+            System.out.printf("%dx%d  %-14s %,12.0f heatmaps/s%n", size, size, "cell-by-cell", naive);
+            for (CoverageKernel k : best instanceof ScalarCoverageKernel
+                    ? new CoverageKernel[] {scalar} : new CoverageKernel[] {scalar, best}) {
+                Arrays.fill(counts, 0);
+                k.heatmap(boards[0], size, remaining, counts);
+                if (!Arrays.equals(expected, counts))
+                    throw new IllegalStateException("ERROR! " + k.getName() + " disagrees with the reference");
+                double r = BOARDS * BatchRuns.rate(() -> {
+                    for (long[] board : boards)
+                        k.heatmap(board, size, remaining, counts);
+                });
+                System.out.printf("%dx%d  %-14s %,12.0f heatmaps/s  %5.1fx%n", size, size, k.getName(), r, r / naive);
+            }
+        }
+    }
+
+    /** Counts placements by checking every cell of every distinct placement. */
+    static void cellByCell(long[] board, int size, int[] remaining, int[] counts) {
+        for (int kind = 0; kind < remaining.length; kind++) {
+            if (remaining[kind] == 0)
+                continue;
+            for (Compass bearing : ShipShape.BEARINGS) {
+                if (ShipShape.repeatsEarlierBearing(kind, bearing))
+                    continue;
+                ShipShape shape = ShipShape.of(kind, bearing);
+                for (int row = -shape.minRow; row + shape.maxRow < size; row++) {
+                    for (int column = -shape.minColumn; column + shape.maxColumn < size; column++) {
+                        boolean fits = true;
+                        for (int i = 0; i < shape.size && fits; i++)
+                            fits = (board[row + shape.rowOffsets[i]] >>> (column + shape.columnOffsets[i]) & 1) != 0;
+                        if (fits)
+                            for (int i = 0; i < shape.size; i++)
+                                counts[(row + shape.rowOffsets[i]) * size + column + shape.columnOffsets[i]]
+                                        += remaining[kind];
+                    }
+                }
+            }
+        }
+    }
+}
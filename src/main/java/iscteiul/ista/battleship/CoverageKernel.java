@@ -0,0 +1,156 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+
+/**
+ * Counts, for every cell of a board, how many placements of a ship cover it:
+ * the inner loop of any targeting strategy that fires where ships are most
+ * likely to be.
+ *
+ * The board is given as one bit mask per row of the cells where a ship may
+ * still be (bit {@code c} for column {@code c}). A placement of a shape is
+ * possible where every cell of its body is free, so the possible placements of
+ * all the left columns of one top row are found at once, by intersecting the
+ * free rows shifted by the column of each body cell. The cells they cover are
+ * then added up in bit-sliced counters, one bit plane per bit of the count, with
+ * no branch per cell; the counts are only expanded to integers at the end.
+ *
+ * Two implementations share this scheme: a scalar one that works a row at a
+ * time, and one that works on as many rows as the CPU has vector lanes, with the
+ * incubating Vector API. {@link #create()} picks the latter when the JVM was
+ * started with {@code --add-modules jdk.incubator.vector}, unless
+ * {@code -Dbattleship.vector=false} is given.
+ *
+ * Instances keep scratch buffers and are not thread-safe; create one per thread.
+ */
+abstract class CoverageKernel {
+
+    /** Largest board the row masks can hold. */
+    static final int MAX_BOARD_SIZE = 64;
+
+    /** Rows of slack after the board, so vector loads and shapes never run past the buffers. */
+    static final int PAD = 64;
+
+    private static final boolean VECTOR = !"false".equals(System.getProperty("battleship.vector"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /** The free rows, masked to the board, then zeros. */
+    long[] free = new long[0];
+    /** Bit planes of the counts of each row. */
+    long[][] planes = new long[0][];
+
+    /**
+     * Creates the fastest kernel available.
+     *
+     * @return a vector kernel if the Vector API is available and the CPU has vector
+     *         registers of at least two longs, a scalar kernel otherwise
+     */
+    static CoverageKernel create() {
+        if (VECTOR) {
+            try {
+                CoverageKernel k = (CoverageKernel) Class.forName("iscteiul.ista.battleship.VectorCoverageKernel")
+                        .getDeclaredConstructor().newInstance();
+                if (k.isUsable())
+                    return k;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // the module is there but the kernel cannot run: fall back
+            }
+        }
+        return new ScalarCoverageKernel();
+    }
+
+    /**
+     * Returns the name of the kernel, for reports.
+     *
+     * @return the name
+     */
+    abstract String getName();
+
+    /**
+     * Returns whether this kernel can run well on this JVM.
+     *
+     * @return true if the kernel is usable
+     */
+    boolean isUsable() {
+        return true;
+    }
+
+    /**
+     * Adds to each cell the number of placements of a shape that cover it, times a weight.
+     *
+     * @param rows the cells where a ship may be, one mask per row; bits beyond the board are ignored
+     * @param boardSize the number of rows and columns of the board
+     * @param shape the shape
+     * @param weight the weight of each placement, such as the number of ships of the shape left
+     * @param counts the counts, in row-major order, at least {@code boardSize * boardSize} long
+     * @throws IllegalArgumentException if the board is larger than {@link #MAX_BOARD_SIZE}
+     */
+    final void coverage(long[] rows, int boardSize, ShipShape shape, int weight, int[] counts) {
+        int planeCount = 32 - Integer.numberOfLeadingZeros(shape.size);
+        prepare(rows, boardSize, planeCount);
+        accumulate(boardSize, shape, planeCount);
+        expand(boardSize, planeCount, weight, counts);
+    }
+
+    /**
+     * Adds to each cell the number of placements of every remaining ship, in every
+     * bearing, that cover it. Bearings that cover the same cells, such as all those
+     * of a barge, are one placement.
+     *
+     * @param rows the cells where a ship may be, one mask per row
+     * @param boardSize the number of rows and columns of the board
+     * @param remaining the number of ships left of each kind, by kind code
+     * @param counts the counts, in row-major order
+     */
+    final void heatmap(long[] rows, int boardSize, int[] remaining, int[] counts) {
+        for (int kind = 0; kind < remaining.length; kind++)
+            if (remaining[kind] > 0)
+                for (Compass bearing : ShipShape.BEARINGS)
+                    if (!ShipShape.repeatsEarlierBearing(kind, bearing))
+                        coverage(rows, boardSize, ShipShape.of(kind, bearing), remaining[kind], counts);
+    }
+
+    /**
+     * Finds the placements of a shape and adds the cells they cover to the bit planes.
+     *
+     * @param boardSize the number of rows and columns of the board
+     * @param shape the shape
+     * @param planeCount the number of bit planes
+     */
+    abstract void accumulate(int boardSize, ShipShape shape, int planeCount);
+
+    /**
+     * Adds the counts held in the bit planes, times a weight, to the counts of the cells.
+     *
+     * @param boardSize the number of rows and columns of the board
+     * @param planeCount the number of bit planes
+     * @param weight the weight
+     * @param counts the counts, in row-major order
+     */
+    abstract void expand(int boardSize, int planeCount, int weight, int[] counts);
+
+    private void prepare(long[] rows, int boardSize, int planeCount) {
+        if (boardSize < 1 || boardSize > MAX_BOARD_SIZE)
+            throw new IllegalArgumentException("ERROR! coverage needs a board of 1 to " + MAX_BOARD_SIZE + " rows");
+        int length = boardSize + PAD;
+        if (free.length < length) {
+            free = new long[length];
+            planes = new long[0][];
+        }
+        if (planes.length < planeCount) {
+            planes = Arrays.copyOf(planes, planeCount);
+            for (int p = 0; p < planeCount; p++)
+                if (planes[p] == null)
+                    planes[p] = new long[free.length];
+        }
+        long mask = boardSize == 64 ? -1L : (1L << boardSize) - 1;
+        for (int r = 0; r < boardSize; r++)
+            free[r] = rows[r] & mask;
+        Arrays.fill(free, boardSize, free.length, 0L);
+        for (int p = 0; p < planeCount; p++)
+            Arrays.fill(planes[p], 0L);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the ship queries of the placement and shooting hot paths through the
+ * {@link IShip} interface with the final methods of the sealed {@link Ship}
+ * hierarchy, over fleets that mix every kind of ship, so the interface call
+ * sites see all five receiver classes.
+ *
+ * Usage: {@code java iscteiul.ista.battleship.DispatchBenchmark}. To see the
+ * call sites, add {@code -XX:+UnlockDiagnosticVMOptions -XX:+PrintInlining}:
+ * in {@code viaInterface} the inherited queries loop over {@code getSize()},
+ * which every ship class redefines, and those calls stay virtual calls with no
+ * static binding; in {@code viaShip} every query is inlined.
+ */
+public final class DispatchBenchmark {
+
+    private static final int FLEETS = 32;
+
+    private DispatchBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark and prints fleet scans per second for each way.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        List<Ship> ships = new ArrayList<>();
+        for (int seed = 0; seed < FLEETS; seed++)
+            for (IShip s : FleetGenerator.generate(seed).getShips())
+                ships.add((Ship) s);
+        Ship[] fleet = ships.toArray(new Ship[0]);
+        IPosition[] probes = new IPosition[Fleet.BOARD_SIZE * Fleet.BOARD_SIZE];
+        for (int i = 0; i < probes.length; i++)
+            probes[i] = new Position(i / Fleet.BOARD_SIZE, i % Fleet.BOARD_SIZE);
+
+        long expected = viaInterface(fleet, probes);
+        if (viaShip(fleet, probes) != expected)
+            throw new IllegalStateException("ERROR! the final methods disagree with the interface");
+        double slow = BatchRuns.rate(() -> viaInterface(fleet, probes));
+        System.out.printf("%-10s %,12.0f scans/s%n", "interface", slow);
+        double fast = BatchRuns.rate(() -> viaShip(fleet, probes));
+        System.out.printf("%-10s %,12.0f scans/s  %5.1fx%n", "final", fast, fast / slow);
+    }
+
+    /** Scans every probe against every ship through {@link IShip}; returns a checksum. */
+    static long viaInterface(IShip[] fleet, IPosition[] probes) {
+        long sum = 0;
+        for (IShip s : fleet) {
+            sum += s.getTopMostPos() + s.getBottomMostPos() + s.getLeftMostPos() + s.getRightMostPos();
+            for (IPosition p : probes) {
+                if (s.occupies(p))
+                    sum += 7;
+                if (s.tooCloseTo(p))
+                    sum++;
+            }
+        }
+        return sum;
+    }
+
+    /** Scans every probe against every ship through the final methods of {@link Ship}; returns a checksum. */
+    static long viaShip(Ship[] fleet, IPosition[] probes) {
+        long sum = 0;
+        for (Ship s : fleet) {
+            sum += s.topRow() + s.bottomRow() + s.leftColumn() + s.rightColumn();
+            for (IPosition p : probes) {
+                if (s.occupies(p.getRow(), p.getColumn()))
+                    sum += 7;
+                if (s.tooCloseTo(p.getRow(), p.getColumn()))
+                    sum++;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hunts and targets like {@link HuntTargetShooter} until few cells are unknown,
+ * then switches to the exact play of an {@link EndgameSolver}.
+ *
+ * The fleet is assumed to have the standard composition, as a human player knows
+ * it; the kinds of the ships still afloat follow from the ships reported sunk. The
+ * solver takes over once at most {@code -Dbattleship.endgame.cells} cells (by
+ * default {@value #DEFAULT_UNKNOWN_CELLS}) are unknown, and hands the game back
+ * whenever it gives up; it is not tried again until the next hit.
+ */
+public final class EndgameShooter implements ShooterStrategy {
+
+    /** Number of unknown cells below which the solver takes over, unless configured otherwise. */
+    public static final int DEFAULT_UNKNOWN_CELLS = 12;
+
+    private final int unknownCells;
+    private final HuntTargetShooter hunt = new HuntTargetShooter();
+    private final EndgameSolver solver;
+
+    private int boardSize;
+    /** What is known of each cell, in row-major order, as an {@link EndgameSolver} state. */
+    private byte[] cells = new byte[0];
+    private int unknown;
+    /** Whether the solver may be tried again: not after giving up, until a ship is hit. */
+    private boolean retry;
+    private final List<String> remaining = new ArrayList<>();
+
+    /**
+     * Creates the strategy; used by {@link java.util.ServiceLoader}.
+     */
+    public EndgameShooter() {
+        this(Integer.getInteger("battleship.endgame.cells", DEFAULT_UNKNOWN_CELLS));
+    }
+
+    /**
+     * Creates the strategy with a threshold of its own.
+     *
+     * @param unknownCells the number of unknown cells below which the solver takes over
+     */
+    EndgameShooter(int unknownCells) {
+        this.unknownCells = unknownCells;
+        this.solver = new EndgameSolver(unknownCells);
+    }
+
+    @Override
+    public String getName() {
+        return "endgame";
+    }
+
+    @Override
+    public void start(int boardSize, long seed) {
+        hunt.start(boardSize, seed);
+        this.boardSize = boardSize;
+        if (cells.length != boardSize * boardSize)
+            cells = new byte[boardSize * boardSize];
+        Arrays.fill(cells, EndgameSolver.UNKNOWN);
+        unknown = cells.length;
+        remaining.clear();
+        remaining.addAll(Arrays.asList(FleetGenerator.COMPOSITION));
+        solver.stop();
+        retry = true;
+    }
+
+    @Override
+    public IPosition nextShot(IGame game) {
+        boolean tried = solver.isActive();
+        if (!tried && retry && unknown <= unknownCells && !remaining.isEmpty()) {
+            solver.start(boardSize, cells, remaining);
+            tried = true;
+        }
+        IPosition shot = solver.nextShot();
+        if (shot != null)
+            return shot;
+        if (tried)
+            retry = false;
+        return hunt.nextShot(game);
+    }
+
+    @Override
+    public void shotResult(IPosition shot, byte outcome, IShip sunk) {
+        hunt.shotResult(shot, outcome, sunk);
+        solver.shotResult(shot, outcome, sunk);
+        if (outcome == VolleyResult.INVALID || outcome == VolleyResult.REPEATED)
+            return;
+        if (outcome == VolleyResult.MISS) {
+            mark(shot.getRow(), shot.getColumn(), EndgameSolver.WATER);
+            return;
+        }
+        retry = true;
+        if (outcome == VolleyResult.HIT) {
+            mark(shot.getRow(), shot.getColumn(), EndgameSolver.HIT);
+        } else {
+            remaining.remove(GameCodec.kind(GameCodec.kindCode(sunk.getCategory())));
+            for (IPosition p : sunk.getPositions())
+                mark(p.getRow(), p.getColumn(), EndgameSolver.SUNK);
+            // ships never touch, not even diagonally
+            for (IPosition p : sunk.getPositions())
+                for (int r = p.getRow() - 1; r <= p.getRow() + 1; r++)
+                    for (int c = p.getColumn() - 1; c <= p.getColumn() + 1; c++)
+                        if (r >= 0 && r < boardSize && c >= 0 && c < boardSize
+                                && cells[r * boardSize + c] == EndgameSolver.UNKNOWN)
+                            mark(r, c, EndgameSolver.WATER);
+        }
+    }
+
+    private void mark(int row, int column, byte state) {
+        int cell = row * boardSize + column;
+        if (cells[cell] == EndgameSolver.UNKNOWN)
+            unknown--;
+        cells[cell] = state;
+    }
+}
@@ -0,0 +1,492 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plays the end of a game exactly: the shot that minimises the expected number of
+ * shots still needed to sink the fleet.
+ *
+ * Once few cells are unknown, the layouts of the remaining ships that agree with
+ * everything seen so far can all be listed, and are taken as equally likely. The
+ * cells that may hold a ship are numbered, so that a layout, the cells fired at and
+ * the hits are each a bit board of one long. The expected number of shots of a state
+ * (the cells fired at, and the layouts still possible) is one for the next shot plus
+ * the expected number of shots of the states each outcome leads to, weighted by the
+ * layouts that give that outcome; the best shot is the one with the smallest value.
+ * States are memoised, so the values found for one shot serve for the following
+ * ones, as each outcome narrows the layouts down to a state already solved.
+ *
+ * The solver gives up, and {@link #start} or {@link #nextShot()} says so, when there
+ * are more unknown cells than it was configured for, too many layouts, or too many
+ * states; the caller then goes on with its own strategy. Instances are not
+ * thread-safe.
+ */
+public final class EndgameSolver {
+
+    /** State of a cell that was never fired at and is not known to be water. */
+    public static final byte UNKNOWN = 0;
+    /** State of a cell known to be water, fired at or not. */
+    public static final byte WATER = 1;
+    /** State of a cell hit, of a ship not sunk yet. */
+    public static final byte HIT = 2;
+    /** State of a cell of a sunk ship. */
+    public static final byte SUNK = 3;
+
+    /** Largest number of layouts the solver lists. */
+    static final int MAX_LAYOUTS = 4096;
+    /** Largest number of states the solver memoises. */
+    static final int MAX_STATES = 1 << 15;
+
+    /** Thrown, without a stack trace, when the memo grows past {@link #MAX_STATES}. */
+    private static final class TooManyStates extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TooManyStates() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final TooManyStates TOO_MANY_STATES = new TooManyStates();
+
+    /** A state: the cells fired at, and the set of layouts still possible. */
+    private static final class Key {
+        final long fired;
+        final long[] layouts;
+        final int hash;
+
+        Key(long fired, long[] layouts) {
+            this.fired = fired;
+            this.layouts = layouts;
+            // sets of layouts differ in few bits, which Arrays.hashCode hardly spreads
+            long h = fired * 0x9E3779B97F4A7C15L;
+            for (long word : layouts)
+                h = (h ^ word) * 0x9E3779B97F4A7C15L;
+            this.hash = (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.fired == fired && Arrays.equals(k.layouts, layouts);
+        }
+    }
+
+    /** The value of a state: its expected number of shots and the shot that achieves it. */
+    private static final class Node {
+        final double expected;
+        final int shot;
+
+        Node(double expected, int shot) {
+            this.expected = expected;
+            this.shot = shot;
+        }
+    }
+
+    private final int maxUnknown;
+
+    private int boardSize;
+    /** Board cell of each numbered cell, and the number of each board cell, or -1. */
+    private int[] cellOf = new int[0];
+    private int[] numberOf = new int[0];
+    /** Cells of the ships of each layout, and of each of its ships. */
+    private long[] occupied = new long[0];
+    private long[][] ships = new long[0][];
+    private int layoutCount;
+
+    private boolean active;
+    private long fired;
+    private long[] layouts;
+    private double expected;
+    private final Map<Key, Node> memo = new HashMap<>();
+
+    /**
+     * Creates a solver.
+     *
+     * @param maxUnknown the largest number of unknown cells it takes on
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public EndgameSolver(int maxUnknown) {
+        if (maxUnknown < 0)
+            throw new IllegalArgumentException("ERROR! the number of unknown cells must not be negative");
+        this.maxUnknown = maxUnknown;
+    }
+
+    /**
+     * Starts solving the end of a game from what is known of the board.
+     *
+     * @param boardSize the number of rows and columns of the board
+     * @param cells the state of each cell, in row-major order, as {@link #UNKNOWN},
+     *              {@link #WATER}, {@link #HIT} or {@link #SUNK}
+     * @param remaining the kinds of the ships not sunk yet, such as {@code "nau"}
+     * @return true if the solver took the game on, false if it is too large, or no
+     *         layout of the remaining ships agrees with the cells
+     * @throws IllegalArgumentException if the cells do not fit the board, or a kind is unknown
+     */
+    public boolean start(int boardSize, byte[] cells, List<String> remaining) {
+        if (cells.length != boardSize * boardSize)
+            throw new IllegalArgumentException("ERROR! " + cells.length + " cells for a board of " + boardSize);
+        int[] kinds = new int[remaining.size()];
+        for (int i = 0; i < kinds.length; i++)
+            kinds[i] = GameCodec.kindCode(remaining.get(i));
+        Arrays.sort(kinds);
+
+        active = false;
+        memo.clear();
+        this.boardSize = boardSize;
+        int unknown = 0;
+        int count = 0;
+        numberOf = new int[cells.length];
+        for (int c = 0; c < cells.length; c++) {
+            if (cells[c] == UNKNOWN)
+                unknown++;
+            numberOf[c] = cells[c] == UNKNOWN || cells[c] == HIT ? count++ : -1;
+        }
+        if (unknown > maxUnknown || count > Long.SIZE || kinds.length == 0)
+            return false;
+        cellOf = new int[count];
+        long hits = 0;
+        for (int c = 0; c < cells.length; c++) {
+            if (numberOf[c] >= 0) {
+                cellOf[numberOf[c]] = c;
+                if (cells[c] == HIT)
+                    hits |= 1L << numberOf[c];
+            }
+        }
+
+        // every placement of each kind on cells that may hold a ship, and not only on hits
+        long[][] bodies = new long[GameCodec.KIND_COUNT][];
+        long[][] halos = new long[GameCodec.KIND_COUNT][];
+        for (int kind : kinds)
+            if (bodies[kind] == null)
+                placements(kind, hits, bodies, halos);
+
+        occupied = new long[MAX_LAYOUTS];
+        ships = new long[MAX_LAYOUTS][];
+        layoutCount = 0;
+        if (!list(kinds, 0, -1, 0, 0, new long[kinds.length], hits, bodies, halos))
+            return false;
+        if (layoutCount == 0)
+            return false;
+
+        fired = hits;
+        layouts = new long[(layoutCount + Long.SIZE - 1) / Long.SIZE];
+        for (int h = 0; h < layoutCount; h++)
+            layouts[h >>> 6] |= 1L << h;
+        active = true;
+        return true;
+    }
+
+    private void placements(int kind, long hits, long[][] bodies, long[][] halos) {
+        long[] body = new long[Long.SIZE * 4];
+        long[] halo = new long[body.length];
+        int n = 0;
+        for (Compass bearing : ShipShape.BEARINGS) {
+            ShipShape shape = ShipShape.of(kind, bearing);
+            for (int row = -shape.minRow; row + shape.maxRow < boardSize; row++) {
+                for (int column = -shape.minColumn; column + shape.maxColumn < boardSize; column++) {
+                    long b = 0;
+                    long h = 0;
+                    for (int i = 0; i < shape.size; i++) {
+                        int r = row + shape.rowOffsets[i];
+                        int c = column + shape.columnOffsets[i];
+                        int number = numberOf[r * boardSize + c];
+                        if (number < 0) {
+                            b = -1;
+                            break;
+                        }
+                        b |= 1L << number;
+                        for (int dr = -1; dr <= 1; dr++)
+                            for (int dc = -1; dc <= 1; dc++)
+                                if (r + dr >= 0 && r + dr < boardSize && c + dc >= 0 && c + dc < boardSize
+                                        && numberOf[(r + dr) * boardSize + c + dc] >= 0)
+                                    h |= 1L << numberOf[(r + dr) * boardSize + c + dc];
+                    }
+                    // a placement on hits only would have been sunk already
+                    if (b == -1 || (b & ~hits) == 0 || contains(body, n, b))
+                        continue;
+                    if (n == body.length) {
+                        body = Arrays.copyOf(body, 2 * n);
+                        halo = Arrays.copyOf(halo, 2 * n);
+                    }
+                    body[n] = b;
+                    halo[n++] = h;
+                }
+            }
+        }
+        bodies[kind] = Arrays.copyOf(body, n);
+        halos[kind] = Arrays.copyOf(halo, n);
+    }
+
+    private static boolean contains(long[] masks, int n, long mask) {
+        for (int i = 0; i < n; i++)
+            if (masks[i] == mask)
+                return true;
+        return false;
+    }
+
+    /**
+     * Lists the layouts of the ships from {@code i} on, ships of one kind in
+     * increasing order of placement so that each layout is listed once.
+     *
+     * @return false if there are too many layouts
+     */
+    private boolean list(int[] kinds, int i, int from, long taken, long near, long[] placed, long hits,
+            long[][] bodies, long[][] halos) {
+        if (i == kinds.length) {
+            if ((hits & ~taken) != 0)
+                return true;
+            if (layoutCount == MAX_LAYOUTS)
+                return false;
+            occupied[layoutCount] = taken;
+            ships[layoutCount++] = placed.clone();
+            return true;
+        }
+        long[] body = bodies[kinds[i]];
+        long[] halo = halos[kinds[i]];
+        int first = i > 0 && kinds[i] == kinds[i - 1] ? from + 1 : 0;
+        for (int p = first; p < body.length; p++) {
+            if ((body[p] & near) != 0)
+                continue;
+            placed[i] = body[p];
+            if (!list(kinds, i + 1, p, taken | body[p], near | halo[p], placed, hits, bodies, halos))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the solver is playing the end of the game.
+     *
+     * @return true between a successful {@link #start} and the end of the game, or
+     *         until the solver gives up
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Stops solving, forgetting the layouts and the memo.
+     */
+    public void stop() {
+        active = false;
+        memo.clear();
+    }
+
+    /**
+     * Returns the best shot.
+     *
+     * @return the position to fire at, or null if the solver is not active or gives
+     *         up because the game has too many states
+     */
+    public IPosition nextShot() {
+        if (!active)
+            return null;
+        Node node;
+        try {
+            node = solve(fired, layouts);
+        } catch (TooManyStates e) {
+            stop();
+            return null;
+        }
+        if (node.shot < 0) {
+            active = false;
+            return null;
+        }
+        expected = node.expected;
+        int cell = cellOf[node.shot];
+        return new Position(cell / boardSize, cell % boardSize);
+    }
+
+    /**
+     * Returns the expected number of shots still needed, including the one returned by
+     * the last call to {@link #nextShot()}.
+     *
+     * @return the expected number of shots
+     */
+    public double getExpectedShots() {
+        return expected;
+    }
+
+    /**
+     * Narrows the layouts down with the outcome of a shot.
+     *
+     * @param shot the position fired at
+     * @param outcome one of the outcomes of {@link VolleyResult}
+     * @param sunk the ship sunk, when the outcome is {@link VolleyResult#SUNK}
+     */
+    public void shotResult(IPosition shot, byte outcome, IShip sunk) {
+        if (!active || outcome == VolleyResult.INVALID || outcome == VolleyResult.REPEATED)
+            return;
+        int number = shot.getRow() >= 0 && shot.getRow() < boardSize && shot.getColumn() >= 0
+                && shot.getColumn() < boardSize ? numberOf[shot.getRow() * boardSize + shot.getColumn()] : -1;
+        if (number < 0) {
+            // a cell known not to hold a ship: nothing to learn, unless it did
+            if (outcome != VolleyResult.MISS)
+                active = false;
+            return;
+        }
+        long bit = 1L << number;
+        long after = fired | bit;
+        long sunkCells = 0;
+        if (outcome == VolleyResult.SUNK) {
+            for (IPosition p : sunk.getPositions()) {
+                int n = numberOf[p.getRow() * boardSize + p.getColumn()];
+                if (n >= 0)
+                    sunkCells |= 1L << n;
+            }
+        }
+        long[] next = new long[layouts.length];
+        boolean any = false;
+        for (int h = nextLayout(layouts, 0); h >= 0; h = nextLayout(layouts, h + 1)) {
+            long ship = shipAt(h, bit);
+            byte o = ship == 0 ? VolleyResult.MISS : (ship & ~after) == 0 ? VolleyResult.SUNK : VolleyResult.HIT;
+            if (o == outcome && (o != VolleyResult.SUNK || ship == sunkCells)) {
+                next[h >>> 6] |= 1L << h;
+                any = true;
+            }
+        }
+        fired = after;
+        layouts = next;
+        if (!any)
+            active = false;
+    }
+
+    /**
+     * Returns the value of a state, solving it if it is not in the memo.
+     */
+    private Node solve(long fired, long[] set) {
+        int total = 0;
+        int cells = 0;
+        long union = 0;
+        int[] counts = new int[Long.SIZE];
+        for (int h = nextLayout(set, 0); h >= 0; h = nextLayout(set, h + 1)) {
+            total++;
+            union |= occupied[h];
+            for (long m = occupied[h] & ~fired; m != 0; m &= m - 1) {
+                counts[Long.numberOfTrailingZeros(m)]++;
+                cells++;
+            }
+        }
+        // shots at cells no layout of the set covers no longer matter
+        Key key = new Key(fired & union, set);
+        Node node = memo.get(key);
+        if (node != null)
+            return node;
+        if (memo.size() >= MAX_STATES)
+            throw TOO_MANY_STATES;
+
+        // the cells that hold a ship in some layout, the likeliest first
+        int candidates = 0;
+        int[] order = new int[Long.SIZE];
+        for (int c = 0; c < Long.SIZE; c++) {
+            if (counts[c] == 0)
+                continue;
+            int i = candidates++;
+            while (i > 0 && counts[order[i - 1]] < counts[c]) {
+                order[i] = order[i - 1];
+                i--;
+            }
+            order[i] = c;
+        }
+        // a cell that every layout covers has to be fired at anyway, and the sooner
+        // the better, since its outcome can only narrow the layouts down
+        if (candidates > 0 && counts[order[0]] == total)
+            candidates = 1;
+
+        // every layout needs a shot at each of its cells not fired at yet, so a shot at
+        // c needs at least 1 + (cells - counts[c]) / total: once that is no better than
+        // the best shot so far, neither is any shot at a less likely cell
+        double best = Double.MAX_VALUE;
+        int bestShot = -1;
+        for (int i = 0; i < candidates; i++) {
+            int c = order[i];
+            if (1 + (double) (cells - counts[c]) / total >= best)
+                break;
+            long bit = 1L << c;
+            long after = fired | bit;
+            long[] miss = new long[set.length];
+            long[] hit = new long[set.length];
+            // sunk layouts, grouped by the ship sunk, which the outcome tells apart
+            long[] sunkShips = new long[4];
+            long[][] sunk = new long[4][];
+            int[] sunkCounts = new int[4];
+            int groups = 0;
+            int missCount = 0;
+            int hitCount = 0;
+            for (int h = nextLayout(set, 0); h >= 0; h = nextLayout(set, h + 1)) {
+                long ship = shipAt(h, bit);
+                if (ship == 0) {
+                    miss[h >>> 6] |= 1L << h;
+                    missCount++;
+                } else if ((ship & ~after) != 0) {
+                    hit[h >>> 6] |= 1L << h;
+                    hitCount++;
+                } else if ((occupied[h] & ~after) != 0) {
+                    int g = 0;
+                    while (g < groups && sunkShips[g] != ship)
+                        g++;
+                    if (g == groups) {
+                        if (groups == sunk.length) {
+                            sunkShips = Arrays.copyOf(sunkShips, 2 * groups);
+                            sunk = Arrays.copyOf(sunk, 2 * groups);
+                            sunkCounts = Arrays.copyOf(sunkCounts, 2 * groups);
+                        }
+                        sunkShips[groups] = ship;
+                        sunk[groups++] = new long[set.length];
+                    }
+                    sunk[g][h >>> 6] |= 1L << h;
+                    sunkCounts[g]++;
+                }
+                // otherwise the shot ends the game
+            }
+            double value = 1;
+            if (missCount > 0)
+                value += solve(after, miss).expected * missCount / total;
+            if (value < best && hitCount > 0)
+                value += solve(after, hit).expected * hitCount / total;
+            for (int g = 0; g < groups && value < best; g++)
+                value += solve(after, sunk[g]).expected * sunkCounts[g] / total;
+            if (value < best) {
+                best = value;
+                bestShot = c;
+            }
+        }
+        node = new Node(bestShot < 0 ? 0 : best, bestShot);
+        memo.put(key, node);
+        return node;
+    }
+
+    /** Returns the cells of the ship of a layout on a cell, or 0 if it has none there. */
+    private long shipAt(int layout, long bit) {
+        if ((occupied[layout] & bit) == 0)
+            return 0;
+        for (long ship : ships[layout])
+            if ((ship & bit) != 0)
+                return ship;
+        return 0;
+    }
+
+    /** Returns the first layout of a set from {@code from} on, or -1. */
+    private static int nextLayout(long[] set, int from) {
+        int w = from >>> 6;
+        if (w >= set.length)
+            return -1;
+        long word = set[w] & (-1L << from);
+        while (word == 0) {
+            if (++w == set.length)
+                return -1;
+            word = set[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+}
@@ -3,6 +3,7 @@
  */
 package iscteiul.ista.battleship;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,20 +26,117 @@ public class Fleet implements IFleet {
             System.out.println(ship);
     }
 
+    /**
+     * The ships of a fleet, counting every change so that changes made through
+     * {@link Fleet#getShips()} are noticed, even those that keep the size.
+     */
+    private static final class ShipList extends AbstractList<IShip> {
+        private final List<IShip> ships = new ArrayList<>();
+        /** Number of changes made to the list. */
+        private int version;
+
+        @Override
+        public IShip get(int index) {
+            return ships.get(index);
+        }
+
+        @Override
+        public int size() {
+            return ships.size();
+        }
+
+        @Override
+        public IShip set(int index, IShip ship) {
+            IShip previous = ships.set(index, ship);
+            version++;
+            return previous;
+        }
+
+        @Override
+        public void add(int index, IShip ship) {
+            ships.add(index, ship);
+            version++;
+            modCount++;
+        }
+
+        @Override
+        public IShip remove(int index) {
+            IShip removed = ships.remove(index);
+            version++;
+            modCount++;
+            return removed;
+        }
+    }
+
     // -----------------------------------------------------
 
-    private List<IShip> ships;
+    private final ShipList ships;
+
+    private final int boardSize;
+    private final int maxShips;
+
+    /** Ships by cell, for placement checks and {@link #shipAt(IPosition)}. */
+    private final CellIndex<IShip> cells;
+    /** Version of the list of ships that {@link #cells} and {@link #placements} reflect. */
+    private int indexedVersion;
+    /** Legal placements, built on first use by {@link #placements()}. */
+    private PlacementMask placements;
 
     /**
-     * Creates an empty fleet.
+     * Creates an empty fleet for the standard board.
+     *
+     * As in the original rules of {@link #addShip(IShip)}, ships are accepted
+     * while the fleet has at most {@link #FLEET_SIZE} of them, so the fleet
+     * holds up to {@code FLEET_SIZE + 1} ships: the standard composition.
      */
     public Fleet() {
-        ships = new ArrayList<>();
+        this(BOARD_SIZE, FLEET_SIZE + 1);
+    }
+
+    /**
+     * Creates an empty fleet for a square board of any size.
+     *
+     * Ships are indexed by cell in a sparse hash, so the memory of the fleet
+     * grows with its ships, not with the area of the board.
+     *
+     * @param boardSize the number of rows and columns of the board
+     * @param maxShips the largest number of ships the fleet accepts
+     * @throws IllegalArgumentException if a size is not positive
+     */
+    public Fleet(int boardSize, int maxShips) {
+        if (boardSize < 1 || maxShips < 1)
+            throw new IllegalArgumentException("ERROR! board size and fleet size must be positive");
+        this.boardSize = boardSize;
+        this.maxShips = maxShips;
+        this.ships = new ShipList();
+        this.cells = new CellIndex<>();
+    }
+
+    /**
+     * Returns the number of rows and columns of the board of this fleet.
+     *
+     * @return the board size
+     */
+    @Override
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * Returns the largest number of ships this fleet accepts.
+     *
+     * @return the fleet size limit
+     */
+    public int getMaxShips() {
+        return maxShips;
     }
 
     /**
      * Returns all ships in the fleet.
      *
+     * The list is the fleet's own: changes made to it, which bypass the checks of
+     * {@link #addShip(IShip)}, are seen by the next query of the fleet.
+     *
      * @return the list of ships
      */
     @Override
@@ -58,14 +156,118 @@ public class Fleet implements IFleet {
      */
     @Override
     public boolean addShip(IShip s) {
+        long start = GameMetrics.start();
+        FlightEvents.AddShip event = FlightEvents.ENABLED ? new FlightEvents.AddShip() : null;
+        if (event != null)
+            event.begin();
         boolean result = false;
-        if ((ships.size() <= FLEET_SIZE) && (isInsideBoard(s)) && (!colisionRisk(s))) {
+        if ((ships.size() < maxShips) && (isInsideBoard(s)) && (!colisionRisk(s))) {
             ships.add(s);
+            indexCells(s);
+            indexedVersion = ships.version;
+            if (placements != null)
+                placements.add(s);
             result = true;
         }
+        GameMetrics.record(GameMetrics.Operation.ADD_SHIP, start);
+        if (event != null && event.shouldCommit()) {
+            event.category = s.getCategory();
+            event.row = s.getPosition().getRow();
+            event.column = s.getPosition().getColumn();
+            event.bearing = s.getBearing().toString();
+            event.accepted = result;
+            event.commit();
+        }
         return result;
     }
 
+    /**
+     * Removes a ship from the fleet, freeing its cells and its surroundings for
+     * other ships.
+     *
+     * @param s the ship to remove
+     * @return true if the ship was in the fleet, false otherwise
+     */
+    @Override
+    public boolean removeShip(IShip s) {
+        index();
+        for (int i = 0; i < ships.size(); i++) {
+            if (ships.get(i) == s) {
+                ships.remove(i);
+                for (IPosition p : s.getPositions())
+                    if (cells.get(p.getRow(), p.getColumn()) == s)
+                        cells.remove(p.getRow(), p.getColumn());
+                indexedVersion = ships.version;
+                if (placements != null)
+                    placements.remove(s);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether {@link #addShip(IShip)} would accept a ship, without building it.
+     *
+     * @param category the kind of the ship, such as {@code "nau"}
+     * @param bearing the bearing of the ship
+     * @param pos the reference position of the ship
+     * @return true if the fleet has room for the ship, and the ship fits the board
+     *         and touches no ship of the fleet
+     * @throws IllegalArgumentException if the kind is unknown
+     */
+    public boolean isLegalPlacement(String category, Compass bearing, IPosition pos) {
+        int shape = ShipShape.index(GameCodec.kindCode(category), bearing);
+        return shape >= 0 && ships.size() < maxShips
+                && placements().isLegal(shape, pos.getRow(), pos.getColumn());
+    }
+
+    /**
+     * Returns the reference positions where {@link #addShip(IShip)} would accept a
+     * ship of a kind and bearing.
+     *
+     * @param category the kind of the ship, such as {@code "nau"}
+     * @param bearing the bearing of the ship
+     * @return the legal reference positions, in row-major order; none if the fleet is full
+     * @throws IllegalArgumentException if the kind is unknown
+     */
+    public List<IPosition> legalOrigins(String category, Compass bearing) {
+        int shape = ShipShape.index(GameCodec.kindCode(category), bearing);
+        if (shape < 0 || ships.size() >= maxShips)
+            return new ArrayList<>();
+        return placements().origins(shape);
+    }
+
+    /**
+     * Returns the number of reference positions where {@link #addShip(IShip)} would
+     * accept a ship of a kind and bearing.
+     *
+     * @param category the kind of the ship, such as {@code "nau"}
+     * @param bearing the bearing of the ship
+     * @return the number of legal reference positions
+     * @throws IllegalArgumentException if the kind is unknown
+     */
+    public int countLegalOrigins(String category, Compass bearing) {
+        int shape = ShipShape.index(GameCodec.kindCode(category), bearing);
+        if (shape < 0 || ships.size() >= maxShips)
+            return 0;
+        return placements().count(shape);
+    }
+
+    /**
+     * Returns the legal placements, building them from the ships on first use; from
+     * then on they follow every ship added or removed.
+     */
+    private PlacementMask placements() {
+        index();
+        if (placements == null) {
+            placements = new PlacementMask(boardSize);
+            for (IShip s : ships)
+                placements.add(s);
+        }
+        return placements;
+    }
+
     /**
      * Returns all ships belonging to a given category.
      *
@@ -105,25 +307,53 @@ public class Fleet implements IFleet {
      */
     @Override
     public IShip shipAt(IPosition pos) {
-        for (int i = 0; i < ships.size(); i++)
-            if (ships.get(i).occupies(pos))
-                return ships.get(i);
-        return null;
+        index();
+        return cells.get(pos.getRow(), pos.getColumn());
     }
 
     private boolean isInsideBoard(IShip s) {
-        return (s.getLeftMostPos() >= 0 && s.getRightMostPos() <= BOARD_SIZE - 1 &&
-                s.getTopMostPos() >= 0 && s.getBottomMostPos() <= BOARD_SIZE - 1);
+        if (s instanceof Ship ship)
+            return ship.leftColumn() >= 0 && ship.rightColumn() <= boardSize - 1
+                    && ship.topRow() >= 0 && ship.bottomRow() <= boardSize - 1;
+        return (s.getLeftMostPos() >= 0 && s.getRightMostPos() <= boardSize - 1 &&
+                s.getTopMostPos() >= 0 && s.getBottomMostPos() <= boardSize - 1);
     }
 
+    /**
+     * Checks whether a ship would touch a ship of the fleet, diagonals included,
+     * by looking up the neighbourhood of each of its cells in the index.
+     */
     private boolean colisionRisk(IShip s) {
-        for (int i = 0; i < ships.size(); i++) {
-            if (ships.get(i).tooCloseTo(s))
-                return true;
-        }
+        index();
+        for (IPosition p : s.getPositions())
+            for (int r = p.getRow() - 1; r <= p.getRow() + 1; r++)
+                for (int c = p.getColumn() - 1; c <= p.getColumn() + 1; c++)
+                    if (cells.get(r, c) != null)
+                        return true;
         return false;
     }
 
+    /**
+     * Re-indexes every ship if the list was changed through {@link #getShips()}
+     * since the last change made by this class.
+     */
+    private void index() {
+        if (indexedVersion != ships.version) {
+            cells.clear();
+            for (IShip s : ships)
+                indexCells(s);
+            indexedVersion = ships.version;
+            placements = null;
+        }
+    }
+
+    /** Adds the cells of a ship to the index; a cell already taken keeps its first ship. */
+    private void indexCells(IShip s) {
+        for (IPosition p : s.getPositions())
+            if (cells.get(p.getRow(), p.getColumn()) == null)
+                cells.put(p.getRow(), p.getColumn(), s);
+    }
+
     /**
      * Prints the overall state of the fleet.
      * Includes all ships, floating ships, and ships grouped by category.
@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Random;
+
+/**
+ * Generates random, valid fleets with the standard composition:
+ * one galleon, one frigate, two carracks, three caravels and four barges.
+ *
+ * Generation is deterministic for a given seed, so simulations and tests can
+ * replay exactly the same fleets.
+ */
+public final class FleetGenerator {
+
+    /** Ship kinds of a standard fleet, largest first, as accepted by {@link Ship#buildShip}. */
+    static final String[] COMPOSITION = {
+            "galeao", "fragata", "nau", "nau", "caravela", "caravela", "caravela",
+            "barca", "barca", "barca", "barca"};
+
+    private FleetGenerator() {
+    }
+
+    /**
+     * Generates the fleet of the given seed.
+     *
+     * @param seed the seed
+     * @return a fleet with every ship of the standard composition
+     */
+    public static Fleet generate(long seed) {
+        FlightEvents.FleetGeneration event = FlightEvents.ENABLED ? new FlightEvents.FleetGeneration() : null;
+        if (event != null)
+            event.begin();
+
+        Random random = new Random(seed);
+        Fleet fleet;
+        int attempts = 0;
+        do {
+            fleet = new Fleet();
+            attempts += place(fleet, random);
+        } while (fleet.getShips().size() < COMPOSITION.length);
+
+        if (event != null && event.shouldCommit()) {
+            event.seed = seed;
+            event.ships = fleet.getShips().size();
+            event.attempts = attempts;
+            event.commit();
+        }
+        return fleet;
+    }
+
+    /**
+     * Generates a fleet for a board of any size, cycling through the kinds of the
+     * standard composition, for experiments with large boards and many ships.
+     * Each ship gets a bounded number of random placement attempts, so on a
+     * crowded board the fleet may end up with fewer ships than requested.
+     *
+     * @param seed the seed
+     * @param boardSize the number of rows and columns of the board
+     * @param ships the number of ships to place
+     * @return a fleet with at most {@code ships} ships
+     */
+    public static Fleet generate(long seed, int boardSize, int ships) {
+        Random random = new Random(seed);
+        Fleet fleet = new Fleet(boardSize, ships);
+        for (int i = 0; i < ships; i++) {
+            String kind = COMPOSITION[i % COMPOSITION.length];
+            boolean placed = false;
+            for (int tries = 0; tries < 200 && !placed; tries++) {
+                Compass bearing = ShipShape.BEARINGS[random.nextInt(ShipShape.BEARINGS.length)];
+                Position pos = new Position(random.nextInt(boardSize), random.nextInt(boardSize));
+                placed = fleet.addShip(FlightEvents.buildShip(kind, bearing, pos));
+            }
+        }
+        return fleet;
+    }
+
+    /**
+     * Places the ships of the standard composition one by one at random, giving
+     * up on the fleet if some ship cannot be placed after a bounded number of tries.
+     *
+     * @return the number of placement attempts made
+     */
+    private static int place(Fleet fleet, Random random) {
+        int attempts = 0;
+        for (String kind : COMPOSITION) {
+            boolean placed = false;
+            for (int tries = 0; tries < 200 && !placed; tries++) {
+                attempts++;
+                Compass bearing = ShipShape.BEARINGS[random.nextInt(ShipShape.BEARINGS.length)];
+                Position pos = new Position(random.nextInt(Fleet.BOARD_SIZE), random.nextInt(Fleet.BOARD_SIZE));
+                placed = fleet.addShip(FlightEvents.buildShip(kind, bearing, pos));
+            }
+            if (!placed)
+                break;
+        }
+        return attempts;
+    }
+}
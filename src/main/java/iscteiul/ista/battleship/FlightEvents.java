@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom JDK Flight Recorder events emitted by the game.
+ *
+ * The events are disabled unless a recording enables them, for example with the
+ * bundled {@code battleship.jfc} settings:
+ * <pre>
+ * java -XX:StartFlightRecording=settings=target/classes/battleship.jfc,filename=game.jfr ...
+ * </pre>
+ * A recording can be summarised with {@link FlightRecordingSummary}.
+ *
+ * Loading the first event class initialises the flight recorder, which costs a
+ * few dozen milliseconds even when no recording is running. Short-lived runs can
+ * skip it with {@code -Dbattleship.jfr=false}; callers then never touch the event classes.
+ */
+final class FlightEvents {
+
+    /** Names of the {@link VolleyResult} outcomes, indexed by outcome. */
+    static final String[] OUTCOMES = {"invalid", "repeated", "miss", "hit", "sunk"};
+
+    /** Whether events are emitted; when false, callers must not create events. */
+    static final boolean ENABLED = !"false".equals(System.getProperty("battleship.jfr"));
+
+    private FlightEvents() {
+    }
+
+    /**
+     * A call to {@link Game#fire(IPosition)}.
+     */
+    @Name("iscteiul.ista.battleship.Fire")
+    @Label("Fire")
+    @Category("Battleship")
+    @Description("A shot fired in a game")
+    @StackTrace(false)
+    static final class Fire extends Event {
+        @Label("Game Id")
+        long gameId;
+        @Label("Row")
+        int row;
+        @Label("Column")
+        int column;
+        @Label("Outcome")
+        String outcome;
+    }
+
+    /**
+     * A call to {@link Fleet#addShip(IShip)}.
+     */
+    @Name("iscteiul.ista.battleship.AddShip")
+    @Label("Add Ship")
+    @Category("Battleship")
+    @Description("A ship added, or rejected, by a fleet")
+    @StackTrace(false)
+    static final class AddShip extends Event {
+        @Label("Category")
+        String category;
+        @Label("Row")
+        int row;
+        @Label("Column")
+        int column;
+        @Label("Bearing")
+        String bearing;
+        @Label("Accepted")
+        boolean accepted;
+    }
+
+    /**
+     * A call to {@link Ship#buildShip(String, Compass, Position)}.
+     */
+    @Name("iscteiul.ista.battleship.BuildShip")
+    @Label("Build Ship")
+    @Category("Battleship")
+    @Description("A ship created by the ship factory")
+    @StackTrace(false)
+    static final class BuildShip extends Event {
+        @Label("Kind")
+        String kind;
+        @Label("Row")
+        int row;
+        @Label("Column")
+        int column;
+        @Label("Bearing")
+        String bearing;
+    }
+
+    /**
+     * A fleet generated by {@link FleetGenerator}.
+     */
+    @Name("iscteiul.ista.battleship.FleetGeneration")
+    @Label("Fleet Generation")
+    @Category("Battleship")
+    @Description("A random fleet generated from a seed")
+    @StackTrace(false)
+    static final class FleetGeneration extends Event {
+        @Label("Seed")
+        long seed;
+        @Label("Ships")
+        int ships;
+        @Label("Placement Attempts")
+        int attempts;
+    }
+
+    /**
+     * Builds a ship through {@link Ship#buildShip(String, Compass, Position)},
+     * recording a {@link BuildShip} event.
+     *
+     * @param kind the kind of ship (e.g. "galeao")
+     * @param bearing the bearing of the ship
+     * @param pos the reference position of the ship
+     * @return the ship, or null if the kind is unknown
+     */
+    static Ship buildShip(String kind, Compass bearing, Position pos) {
+        if (!ENABLED)
+            return Ship.buildShip(kind, bearing, pos);
+        BuildShip event = new BuildShip();
+        event.begin();
+        Ship ship = Ship.buildShip(kind, bearing, pos);
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.row = pos.getRow();
+            event.column = pos.getColumn();
+            event.bearing = bearing.toString();
+            event.commit();
+        }
+        return ship;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Summarises the game events of a flight recording into per-operation latency tables.
+ *
+ * Usage: {@code java iscteiul.ista.battleship.FlightRecordingSummary game.jfr}
+ *
+ * Prints one row per operation (fire calls are further split by outcome) with
+ * the number of events and their mean, median, 90th, 99th percentile and
+ * maximum durations, followed by the total GC pause time of the recording.
+ */
+public final class FlightRecordingSummary {
+
+    private static final String PREFIX = "iscteiul.ista.battleship.";
+
+    /** Growable list of durations of one operation, in nanoseconds. */
+    private static final class Durations {
+        private long[] values = new long[256];
+        private int size;
+
+        private void add(long nanos) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+    }
+
+    private FlightRecordingSummary() {
+    }
+
+    /**
+     * Reads a recording and prints its summary to standard output.
+     *
+     * @param args the path of the recording
+     * @throws IOException if the recording cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: FlightRecordingSummary <recording.jfr>");
+            System.exit(2);
+        }
+        summarise(Paths.get(args[0]), System.out);
+    }
+
+    /**
+     * Reads a recording and prints its summary.
+     *
+     * @param recording the path of the recording
+     * @param out where to print the summary
+     * @throws IOException if the recording cannot be read
+     */
+    public static void summarise(Path recording, PrintStream out) throws IOException {
+        Map<String, Durations> operations = new TreeMap<>();
+        long gcPauseNanos = 0;
+        int gcCount = 0;
+
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String name = event.getEventType().getName();
+                if (name.startsWith(PREFIX)) {
+                    String operation = name.substring(PREFIX.length());
+                    if (event.hasField("outcome") && event.getString("outcome") != null)
+                        operation += "/" + event.getString("outcome");
+                    operations.computeIfAbsent(operation, k -> new Durations()).add(event.getDuration().toNanos());
+                } else if (name.equals("jdk.GarbageCollection")) {
+                    gcPauseNanos += event.getDuration("sumOfPauses").toNanos();
+                    gcCount++;
+                }
+            }
+        }
+
+        out.printf("%-28s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "max(us)");
+        for (Map.Entry<String, Durations> e : operations.entrySet()) {
+            Durations d = e.getValue();
+            long[] sorted = Arrays.copyOf(d.values, d.size);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long v : sorted)
+                total += v;
+            out.printf("%-28s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n", e.getKey(), sorted.length,
+                    total / 1e3 / sorted.length, percentile(sorted, 50), percentile(sorted, 90),
+                    percentile(sorted, 99), sorted[sorted.length - 1] / 1e3);
+        }
+        out.printf("%ngc: %d collections, %.2f ms total pause%n", gcCount, gcPauseNanos / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(sorted.length * p / 100.0) - 1;
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+}
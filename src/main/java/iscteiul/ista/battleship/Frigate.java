@@ -6,7 +6,7 @@
  */
 package iscteiul.ista.battleship;
 
-public class Frigate extends Ship {
+public final class Frigate extends Ship {
     private static final Integer SIZE = 4;
     private static final String NAME = "Fragata";
 
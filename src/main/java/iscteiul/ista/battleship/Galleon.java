@@ -10,7 +10,7 @@ package iscteiul.ista.battleship;
  * facing one of the four compass directions: NORTH, SOUTH,
  * EAST or WEST.
  */
-public class Galleon extends Ship {
+public final class Galleon extends Ship {
 
     private static final Integer SIZE = 5;
     private static final String NAME = "Galeao";
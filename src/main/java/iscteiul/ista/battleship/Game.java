@@ -4,7 +4,9 @@
 package iscteiul.ista.battleship;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a Battleship game session.
@@ -13,8 +15,14 @@ import java.util.List;
  * validates them, and keeps statistics about hits,
  * invalid shots, repeated shots and sunk ships.
  */
-public class Game implements IGame {
+public class Game implements IGame, AutoCloseable {
 
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    /** Event type of each {@link VolleyResult} outcome. */
+    private static final GameEvent.Type[] OUTCOMES = {GameEvent.Type.INVALID, GameEvent.Type.REPEATED,
+            GameEvent.Type.MISS, GameEvent.Type.HIT, GameEvent.Type.SUNK};
+
+    private final long id;
     private IFleet fleet;
     private List<IPosition> shots;
 
@@ -23,15 +31,39 @@ public class Game implements IGame {
     private Integer countHits;
     private Integer countSinks;
 
+    /** Cells already fired at; sparse, so memory grows with the shots and not with the board. */
+    private CellIndex<IPosition> shotCells;
+    private BoardRenderer renderer;
+    /** Calls of {@link #fire(IPosition)} so far, to pick the ones whose latency is sampled. */
+    private int fireCalls;
+
+    /**
+     * Journal of the shots, for {@link #undo()} and {@link #redo()}: one delta per
+     * shot, holding its outcome and, for hits, the index of the cell hit within the
+     * ship, with the position and the ship hit alongside. Entries before the cursor
+     * are applied; those after it were undone and can be redone.
+     */
+    private long[] journal = new long[16];
+    private IPosition[] journalShots = new IPosition[16];
+    private IShip[] journalShips = new IShip[16];
+    private int journalSize;
+    private int journalCursor;
+
+    private volatile GameEventPublisher events;
+
     /**
      * Creates a new Game with the given fleet.
      *
      * @param fleet the fleet used in this game
      */
     public Game(IFleet fleet) {
+        id = NEXT_ID.incrementAndGet();
         shots = new ArrayList<>();
+        shotCells = new CellIndex<>();
         countInvalidShots = 0;
         countRepeatedShots = 0;
+        countHits = 0;
+        countSinks = 0;
         this.fleet = fleet;
     }
 
@@ -48,25 +80,274 @@ public class Game implements IGame {
      */
     @Override
     public IShip fire(IPosition pos) {
-        if (!validShot(pos))
+        long start = GameMetrics.startSampled(fireCalls++);
+        FlightEvents.Fire event = FlightEvents.ENABLED ? new FlightEvents.Fire() : null;
+        if (event != null)
+            event.begin();
+        byte outcome = resolve(pos);
+        GameMetrics.recordSampled(GameMetrics.Operation.FIRE, start);
+        if (event != null && event.shouldCommit()) {
+            event.gameId = id;
+            event.row = pos.getRow();
+            event.column = pos.getColumn();
+            event.outcome = FlightEvents.OUTCOMES[outcome];
+            event.commit();
+        }
+        return outcome == VolleyResult.SUNK ? lastShip() : null;
+    }
+
+    /**
+     * Fires a whole volley in one pass.
+     *
+     * The volley is validated before any shot is applied. Each shot is then
+     * resolved against the cell index of the fleet and the set of cells already
+     * fired at, so no scan of the fleet or of the shot history is needed. Shots
+     * repeated within the volley count as repeated shots, exactly as if they had
+     * been fired one by one.
+     *
+     * @param volley the positions to fire at, in order
+     * @return the outcome of each shot and the ships sunk by the volley
+     * @throws IllegalArgumentException if the volley contains a null position
+     */
+    @Override
+    public VolleyResult fireVolley(List<IPosition> volley) {
+        for (IPosition pos : volley)
+            if (pos == null)
+                throw new IllegalArgumentException("ERROR! the volley contains a null position");
+        long start = GameMetrics.start();
+
+        byte[] outcomes = new byte[volley.size()];
+        List<IShip> sunk = new ArrayList<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = resolve(volley.get(i));
+            if (outcomes[i] == VolleyResult.SUNK)
+                sunk.add(lastShip());
+        }
+        GameMetrics.record(GameMetrics.Operation.FIRE_VOLLEY, start);
+        return new VolleyResult(outcomes, sunk);
+    }
+
+    /**
+     * Applies one shot to the game state.
+     *
+     * @param pos the position to fire at
+     * @return the outcome of the shot, as one of the {@link VolleyResult} constants
+     */
+    private byte resolve(IPosition pos) {
+        if (!validShot(pos)) {
+            countInvalidShots++;
+            record(VolleyResult.INVALID, pos, null, 0);
+            publish(GameEvent.Type.INVALID, pos, null);
+            GameMetrics.recordShot(VolleyResult.INVALID);
+            return VolleyResult.INVALID;
+        }
+        if (shotCells.get(pos.getRow(), pos.getColumn()) != null) {
+            countRepeatedShots++;
+            record(VolleyResult.REPEATED, pos, null, 0);
+            publish(GameEvent.Type.REPEATED, pos, null);
+            GameMetrics.recordShot(VolleyResult.REPEATED);
+            return VolleyResult.REPEATED;
+        }
+
+        shots.add(pos);
+        shotCells.put(pos.getRow(), pos.getColumn(), pos);
+        IShip s = fleet.shipAt(pos);
+        if (s == null) {
+            record(VolleyResult.MISS, pos, null, 0);
+            publish(GameEvent.Type.MISS, pos, null);
+            GameMetrics.recordShot(VolleyResult.MISS);
+            return VolleyResult.MISS;
+        }
+        int cell;
+        boolean floating;
+        if (s instanceof Ship ship) {
+            // final methods of the sealed hierarchy: no dispatch on the kind of ship
+            cell = ship.cellOf(pos.getRow(), pos.getColumn());
+            ship.getPositions().get(cell).shoot();
+            floating = ship.isAfloat();
+        } else {
+            s.shoot(pos);
+            cell = s.getPositions().indexOf(pos);
+            floating = s.stillFloating();
+        }
+        countHits++;
+        if (floating) {
+            record(VolleyResult.HIT, pos, s, cell);
+            publish(GameEvent.Type.HIT, pos, s);
+            GameMetrics.recordShot(VolleyResult.HIT);
+            return VolleyResult.HIT;
+        }
+        countSinks++;
+        record(VolleyResult.SUNK, pos, s, cell);
+        publish(GameEvent.Type.SUNK, pos, s);
+        GameMetrics.recordShot(VolleyResult.SUNK);
+        if (events != null && getRemainingShips() == 0)
+            events.publish(GameEvent.Type.GAME_OVER, -1, -1, null);
+        return VolleyResult.SUNK;
+    }
+
+    /**
+     * Appends the delta of a shot to the journal, dropping the shots undone since
+     * the last one, which can no longer be redone.
+     */
+    private void record(byte outcome, IPosition pos, IShip ship, int cell) {
+        for (int i = journalCursor; i < journalSize; i++) {
+            journalShots[i] = null;
+            journalShips[i] = null;
+        }
+        if (journalCursor == journal.length) {
+            int n = journal.length * 2;
+            journal = Arrays.copyOf(journal, n);
+            journalShots = Arrays.copyOf(journalShots, n);
+            journalShips = Arrays.copyOf(journalShips, n);
+        }
+        journal[journalCursor] = ((long) cell << 3) | outcome;
+        journalShots[journalCursor] = pos;
+        journalShips[journalCursor] = ship;
+        journalSize = ++journalCursor;
+    }
+
+    /**
+     * Returns the ship hit by the shot just resolved, from its journal entry.
+     */
+    private IShip lastShip() {
+        return journalShips[journalCursor - 1];
+    }
+
+    /**
+     * Takes back the last shot that was fired or redone.
+     *
+     * The counters, the list of shots and the hit flag of the ship cell are reverted,
+     * and so is the floating state of the ship in the fleet, in constant time. A volley
+     * is taken back one shot at a time. Shots applied by {@code restore} cannot be
+     * taken back.
+     *
+     * A {@link GameEvent.Type#UNDO} event with the outcome of the shot is published,
+     * which also tells subscribers that received {@link GameEvent.Type#GAME_OVER}
+     * that the game goes on. The event stream stays open until {@link #close()}, so
+     * the shots fired next are published as usual, with a new {@code GAME_OVER}
+     * when the last ship is sunk again. Undo and redo also work after {@code close()}.
+     *
+     * @return true if a shot was taken back, false if there was none
+     */
+    public boolean undo() {
+        if (journalCursor == 0)
+            return false;
+        int i = --journalCursor;
+        byte outcome = (byte) (journal[i] & 7);
+        if (outcome == VolleyResult.INVALID) {
+            countInvalidShots--;
+        } else if (outcome == VolleyResult.REPEATED) {
+            countRepeatedShots--;
+        } else {
+            IPosition pos = journalShots[i];
+            shots.remove(shots.size() - 1);
+            shotCells.remove(pos.getRow(), pos.getColumn());
+            if (outcome != VolleyResult.MISS) {
+                journalShips[i].getPositions().get((int) (journal[i] >>> 3)).unshoot();
+                countHits--;
+                if (outcome == VolleyResult.SUNK)
+                    countSinks--;
+            }
+        }
+        publishJournal(GameEvent.Type.UNDO, i, outcome);
+        return true;
+    }
+
+    /**
+     * Fires again the last shot taken back with {@link #undo()}.
+     *
+     * The shot is applied from its journal entry, in constant time and with the
+     * same outcome as before. A {@link GameEvent.Type#REDO} event with the outcome
+     * is published, followed by {@link GameEvent.Type#GAME_OVER} when the shot sinks
+     * the last ship.
+     *
+     * @return true if a shot was redone, false if there was none, or a new shot was
+     *         fired since the last undo
+     */
+    public boolean redo() {
+        if (journalCursor == journalSize)
+            return false;
+        int i = journalCursor++;
+        byte outcome = (byte) (journal[i] & 7);
+        if (outcome == VolleyResult.INVALID) {
             countInvalidShots++;
-        else { // valid shot!
-            if (repeatedShot(pos))
-                countRepeatedShots++;
-            else {
-                shots.add(pos);
-                IShip s = fleet.shipAt(pos);
-                if (s != null) {
-                    s.shoot(pos);
-                    countHits++;
-                    if (!s.stillFloating()) {
-                        countSinks++;
-                        return s;
-                    }
-                }
+        } else if (outcome == VolleyResult.REPEATED) {
+            countRepeatedShots++;
+        } else {
+            IPosition pos = journalShots[i];
+            shots.add(pos);
+            shotCells.put(pos.getRow(), pos.getColumn(), pos);
+            if (outcome != VolleyResult.MISS) {
+                journalShips[i].getPositions().get((int) (journal[i] >>> 3)).shoot();
+                countHits++;
+                if (outcome == VolleyResult.SUNK)
+                    countSinks++;
             }
         }
-        return null;
+        publishJournal(GameEvent.Type.REDO, i, outcome);
+        if (events != null && outcome == VolleyResult.SUNK && getRemainingShips() == 0)
+            events.publish(GameEvent.Type.GAME_OVER, -1, -1, null);
+        return true;
+    }
+
+    /**
+     * Returns how many shots can be taken back with {@link #undo()}.
+     *
+     * @return the number of shots that can be undone
+     */
+    public int getUndoDepth() {
+        return journalCursor;
+    }
+
+    /**
+     * Returns how many shots can be fired again with {@link #redo()}.
+     *
+     * @return the number of shots that can be redone
+     */
+    public int getRedoDepth() {
+        return journalSize - journalCursor;
+    }
+
+    /**
+     * Returns the publisher of the events of this game, creating it on first use.
+     *
+     * Every call to {@link #fire(IPosition)} publishes one event with its outcome,
+     * and the shot that sinks the last ship is followed by a
+     * {@link GameEvent.Type#GAME_OVER} event. {@link #undo()} and {@link #redo()}
+     * publish one event each. The publisher stays open until
+     * {@link #close()}, so a game that goes on after an {@link #undo()} keeps
+     * publishing. Slow subscribers lose events instead of slowing down {@code fire}.
+     *
+     * @return the event publisher of this game
+     */
+    public synchronized GameEventPublisher getEvents() {
+        if (events == null)
+            events = new GameEventPublisher();
+        return events;
+    }
+
+    /**
+     * Ends the event stream of this game: subscribers are completed once their
+     * buffered events have been delivered, and later subscribers are completed
+     * at once. Shots can still be fired, undone and redone afterwards, but no
+     * more events are published.
+     */
+    @Override
+    public synchronized void close() {
+        getEvents().close();
+    }
+
+    private void publish(GameEvent.Type type, IPosition pos, IShip ship) {
+        if (events != null)
+            events.publish(type, pos.getRow(), pos.getColumn(), ship);
+    }
+
+    /** Publishes the undo or redo of a journal entry. */
+    private void publishJournal(GameEvent.Type type, int i, byte outcome) {
+        if (events != null)
+            events.publish(type, journalShots[i].getRow(), journalShots[i].getColumn(), journalShips[i],
+                    OUTCOMES[outcome]);
     }
 
     /**
@@ -130,40 +411,84 @@ public class Game implements IGame {
         return floatingShips.size();
     }
 
-    private boolean validShot(IPosition pos) {
-        return (pos.getRow() >= 0 && pos.getRow() <= Fleet.BOARD_SIZE &&
-                pos.getColumn() >= 0 && pos.getColumn() <= Fleet.BOARD_SIZE);
+    /**
+     * Returns the identifier of this game, unique within the process.
+     *
+     * @return the game id
+     */
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the fleet this game is played against.
+     *
+     * @return the fleet of this game
+     */
+    IFleet getFleet() {
+        return fleet;
+    }
+
+    /**
+     * Restores a previously saved game state by re-applying its valid shots
+     * and overwriting the invalid and repeated shot counters.
+     *
+     * Used to rehydrate games that were spilled to disk; it does not go through
+     * {@link #fire(IPosition)}, so it has no side effects beyond the game state.
+     *
+     * @param validShots the valid shots, in the order they were fired
+     * @param invalid the number of invalid shots
+     * @param repeated the number of repeated shots
+     */
+    void restore(List<IPosition> validShots, int invalid, int repeated) {
+        for (IPosition pos : validShots) {
+            shots.add(pos);
+            shotCells.put(pos.getRow(), pos.getColumn(), pos);
+            IShip s = fleet.shipAt(pos);
+            if (s != null) {
+                s.shoot(pos);
+                countHits++;
+                if (!s.stillFloating())
+                    countSinks++;
+            }
+        }
+        countInvalidShots = invalid;
+        countRepeatedShots = repeated;
     }
 
-    private boolean repeatedShot(IPosition pos) {
-        for (int i = 0; i < shots.size(); i++)
-            if (shots.get(i).equals(pos))
-                return true;
-        return false;
+    private boolean validShot(IPosition pos) {
+        int boardSize = fleet.getBoardSize();
+        return (pos.getRow() >= 0 && pos.getRow() < boardSize &&
+                pos.getColumn() >= 0 && pos.getColumn() < boardSize);
     }
 
     /**
      * Prints a board representation marking the given positions
      * with the specified character.
      *
+     * The board is composed in the reusable buffer of a {@link BoardRenderer}
+     * and written to the standard output at once.
+     *
      * @param positions the positions to mark
      * @param marker the character used to mark those positions
      */
     public void printBoard(List<IPosition> positions, Character marker) {
-        char[][] map = new char[Fleet.BOARD_SIZE][Fleet.BOARD_SIZE];
-
-        for (int r = 0; r < Fleet.BOARD_SIZE; r++)
-            for (int c = 0; c < Fleet.BOARD_SIZE; c++)
-                map[r][c] = '.';
-
-        for (IPosition pos : positions)
-            map[pos.getRow()][pos.getColumn()] = marker;
+        BoardRenderer board = renderer();
+        board.clear();
+        board.mark(positions, marker);
+        board.render(System.out);
+    }
 
-        for (int row = 0; row < Fleet.BOARD_SIZE; row++) {
-            for (int col = 0; col < Fleet.BOARD_SIZE; col++)
-                System.out.print(map[row][col]);
-            System.out.println();
-        }
+    /**
+     * Returns the renderer used to print the boards of this game, creating it on first use.
+     *
+     * @return the board renderer of this game
+     * @throws IllegalArgumentException if the board is larger than {@link BoardRenderer#MAX_BOARD_SIZE}
+     */
+    BoardRenderer renderer() {
+        if (renderer == null)
+            renderer = new BoardRenderer(fleet.getBoardSize());
+        return renderer;
     }
 
     /**
@@ -177,11 +502,10 @@ public class Game implements IGame {
      * Prints the board showing the fleet positions.
      */
     public void printFleet() {
-        List<IPosition> shipPositions = new ArrayList<IPosition>();
-
+        BoardRenderer board = renderer();
+        board.clear();
         for (IShip s : fleet.getShips())
-            shipPositions.addAll(s.getPositions());
-
-        printBoard(shipPositions, '#');
+            board.mark(s.getPositions(), BoardRenderer.SHIP);
+        board.render(System.out);
     }
 }
\ No newline at end of file
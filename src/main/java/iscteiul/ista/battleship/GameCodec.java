@@ -0,0 +1,189 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of a {@link Game}, used to spill idle games to disk.
+ *
+ * Only the information needed to rebuild the game is stored: the board size and
+ * ship limit of the fleet, the fleet layout
+ * (kind, bearing and reference position of each ship), the valid shots in the
+ * order they were fired, and the invalid and repeated shot counters. Hits, sinks
+ * and the hit flags of the ships are recomputed when the game is read back.
+ * All numbers are written as unsigned variable-length integers, so a typical
+ * game takes a few dozen bytes.
+ */
+final class GameCodec {
+
+    private static final int VERSION = 2;
+
+    /** Version without the board size and ship limit, which are then the standard ones. */
+    private static final int VERSION_STANDARD_BOARD = 1;
+
+    /** Ship kinds, in the order of their codes, as accepted by {@link Ship#buildShip}. */
+    private static final String[] KINDS = {"galeao", "fragata", "nau", "caravela", "barca"};
+
+    /** Number of ship kinds, and so the number of valid kind codes. */
+    static final int KIND_COUNT = KINDS.length;
+
+    private GameCodec() {
+    }
+
+    /**
+     * Writes the state of the given game.
+     *
+     * @param game the game to encode
+     * @param out the destination
+     * @throws IOException if the destination cannot be written
+     */
+    static void write(Game game, DataOutput out) throws IOException {
+        IFleet fleet = game.getFleet();
+        List<IShip> ships = fleet.getShips();
+        List<IPosition> shots = game.getShots();
+
+        out.writeByte(VERSION);
+        writeVarInt(out, fleet.getBoardSize());
+        writeVarInt(out, fleet instanceof Fleet ? ((Fleet) fleet).getMaxShips() : Fleet.FLEET_SIZE + 1);
+        writeVarInt(out, ships.size());
+        for (IShip s : ships) {
+            out.writeByte(kindCode(s.getCategory()));
+            out.writeByte(s.getBearing().getDirection());
+            writeVarInt(out, s.getPosition().getRow());
+            writeVarInt(out, s.getPosition().getColumn());
+        }
+        writeVarInt(out, shots.size());
+        for (IPosition pos : shots) {
+            writeVarInt(out, pos.getRow());
+            writeVarInt(out, pos.getColumn());
+        }
+        writeVarInt(out, game.getInvalidShots());
+        writeVarInt(out, game.getRepeatedShots());
+    }
+
+    /**
+     * Reads a game previously written by {@link #write(Game, DataOutput)}.
+     *
+     * @param in the source
+     * @return the rebuilt game
+     * @throws IOException if the source cannot be read or is not a valid encoding
+     */
+    static Game read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        Fleet fleet;
+        if (version == VERSION)
+            fleet = new Fleet(readVarInt(in), readVarInt(in));
+        else if (version == VERSION_STANDARD_BOARD)
+            fleet = new Fleet();
+        else
+            throw new IOException("ERROR! unsupported game encoding version " + version);
+
+        int shipCount = readVarInt(in);
+        for (int i = 0; i < shipCount; i++) {
+            int kind = in.readUnsignedByte();
+            Compass bearing = Compass.charToCompass((char) in.readUnsignedByte());
+            Position pos = new Position(readVarInt(in), readVarInt(in));
+            if (kind >= KINDS.length)
+                throw new IOException("ERROR! invalid ship kind " + kind);
+            // through addShip, so that the cell index of the fleet covers every ship
+            Ship ship = FlightEvents.buildShip(KINDS[kind], bearing, pos);
+            if (ship == null || !fleet.addShip(ship))
+                throw new IOException("ERROR! invalid ship record " + KINDS[kind] + " " + pos.getRow() + " "
+                        + pos.getColumn() + " " + bearing.getDirection());
+        }
+
+        int shotCount = readVarInt(in);
+        List<IPosition> shots = new ArrayList<>(shotCount);
+        for (int i = 0; i < shotCount; i++)
+            shots.add(new Position(readVarInt(in), readVarInt(in)));
+
+        Game game = new Game(fleet);
+        game.restore(shots, readVarInt(in), readVarInt(in));
+        return game;
+    }
+
+    /**
+     * Encodes the given game into a new byte array.
+     *
+     * @param game the game to encode
+     * @return the encoded game
+     */
+    static byte[] toBytes(Game game) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            write(game, new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a game from a byte array produced by {@link #toBytes(Game)}.
+     *
+     * @param bytes the encoded game
+     * @return the rebuilt game
+     * @throws UncheckedIOException if the bytes are not a valid encoding
+     */
+    static Game fromBytes(byte[] bytes) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the code of a ship category, matching it case-insensitively against the known kinds.
+     *
+     * @param category the category of the ship (e.g. "Galeao")
+     * @return the code of the category
+     * @throws IllegalArgumentException if the category is unknown
+     */
+    static int kindCode(String category) {
+        for (int i = 0; i < KINDS.length; i++)
+            if (KINDS[i].equalsIgnoreCase(category))
+                return i;
+        throw new IllegalArgumentException("ERROR! unknown ship category " + category);
+    }
+
+    /**
+     * Returns the ship kind with the given code.
+     *
+     * @param code the code of the kind
+     * @return the kind, as accepted by {@link Ship#buildShip}
+     */
+    static String kind(int code) {
+        return KINDS[code];
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("ERROR! malformed variable-length integer");
+    }
+}
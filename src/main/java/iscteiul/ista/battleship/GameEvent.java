@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+/**
+ * Something that happened in a game, as published by {@link Game#getEvents()}.
+ *
+ * Every call to {@link Game#fire(IPosition)} publishes exactly one event whose
+ * type is the outcome of the shot. The shot that sinks the last ship is
+ * followed by a {@link Type#GAME_OVER} event. {@link Game#undo()} and
+ * {@link Game#redo()} publish {@link Type#UNDO} and {@link Type#REDO} events
+ * that carry the outcome of the shot taken back or fired again, so subscribers
+ * can keep their view of the game in step.
+ */
+public final class GameEvent {
+
+    /**
+     * The kinds of game events.
+     */
+    public enum Type {
+        /** A shot outside the board. */
+        INVALID,
+        /** A shot at a position that had already been fired at. */
+        REPEATED,
+        /** A new shot that hit water. */
+        MISS,
+        /** A new shot that hit a ship without sinking it. */
+        HIT,
+        /** A new shot that hit the last intact position of a ship. */
+        SUNK,
+        /** No ships are left floating. */
+        GAME_OVER,
+        /** A shot was taken back; {@link GameEvent#getShot()} is its outcome. */
+        UNDO,
+        /** A shot taken back was fired again; {@link GameEvent#getShot()} is its outcome. */
+        REDO
+    }
+
+    private final Type type;
+    private final long sequence;
+    private final int row;
+    private final int column;
+    private final IShip ship;
+    private final Type shot;
+
+    /**
+     * Creates a new event.
+     *
+     * @param type the kind of event
+     * @param sequence the number of this event within its game, starting at 0
+     * @param row the row of the shot, or -1 if there is none
+     * @param column the column of the shot, or -1 if there is none
+     * @param ship the ship that was hit or sunk, or null
+     */
+    public GameEvent(Type type, long sequence, int row, int column, IShip ship) {
+        this(type, sequence, row, column, ship, null);
+    }
+
+    /**
+     * Creates a new event about a shot taken back or fired again.
+     *
+     * @param type the kind of event
+     * @param sequence the number of this event within its game, starting at 0
+     * @param row the row of the shot, or -1 if there is none
+     * @param column the column of the shot, or -1 if there is none
+     * @param ship the ship that was hit or sunk, or null
+     * @param shot the outcome of the shot, for {@link Type#UNDO} and {@link Type#REDO}, or null
+     */
+    public GameEvent(Type type, long sequence, int row, int column, IShip ship, Type shot) {
+        this.type = type;
+        this.sequence = sequence;
+        this.row = row;
+        this.column = column;
+        this.ship = ship;
+        this.shot = shot;
+    }
+
+    /**
+     * Returns the kind of this event.
+     *
+     * @return the type of the event
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of this event within its game. Gaps in the sequence
+     * seen by a subscriber mean that events were dropped for it.
+     *
+     * @return the sequence number of the event
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the row of the shot.
+     *
+     * @return the row, or -1 for {@link Type#GAME_OVER}
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the column of the shot.
+     *
+     * @return the column, or -1 for {@link Type#GAME_OVER}
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns the ship that was hit or sunk.
+     *
+     * @return the ship, or null for events other than {@link Type#HIT} and {@link Type#SUNK},
+     *         and undone or redone hits
+     */
+    public IShip getShip() {
+        return ship;
+    }
+
+    /**
+     * Returns the outcome of the shot that was taken back or fired again.
+     *
+     * @return one of the outcome types from {@link Type#INVALID} to {@link Type#SUNK}
+     *         for {@link Type#UNDO} and {@link Type#REDO}, null for other events
+     */
+    public Type getShot() {
+        return shot;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + (shot != null ? " " + shot : "")
+                + (type != Type.GAME_OVER ? " (" + row + ", " + column + ")" : "")
+                + (ship != null ? " " + ship.getCategory() : "");
+    }
+}
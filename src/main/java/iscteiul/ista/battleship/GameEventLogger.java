@@ -0,0 +1,84 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.concurrent.Flow;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+/**
+ * Writes the events of a game to the {@code iscteiul.ista.battleship.events} logger,
+ * one structured line per event:
+ * <pre>
+ * event=SUNK game=7 seq=41 row=3 col=5 ship=Nau
+ * event=UNDO game=7 seq=42 row=3 col=5 ship=Nau shot=SUNK
+ * </pre>
+ *
+ * Lines use parameterised messages with unboxed numbers, so with the shipped
+ * asynchronous, garbage-free Log4j configuration the cost of logging does not
+ * grow with the shot rate. The logger requests events in small batches, and
+ * as a subscriber of {@link Game#getEvents()} it never slows down the game itself.
+ * The shipped configuration writes the lines only when the JVM is started with
+ * {@code -Dbattleship.eventLog=<file>}; otherwise the logger is off.
+ */
+public final class GameEventLogger implements Flow.Subscriber<GameEvent> {
+
+    private static final Logger LOGGER = LogManager.getLogger("iscteiul.ista.battleship.events");
+
+    private static final int BATCH = 64;
+
+    private final long gameId;
+    private Flow.Subscription subscription;
+    private int received;
+
+    private GameEventLogger(long gameId) {
+        this.gameId = gameId;
+    }
+
+    /**
+     * Starts logging the events of the given game.
+     *
+     * @param game the game to log
+     */
+    public static void attach(Game game) {
+        game.getEvents().subscribe(new GameEventLogger(game.getId()));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(BATCH);
+    }
+
+    @Override
+    public void onNext(GameEvent event) {
+        if (LOGGER.isInfoEnabled()) {
+            IShip ship = event.getShip();
+            if (event.getShot() == null)
+                LOGGER.info("event={} game={} seq={} row={} col={} ship={}", event.getType(), Unbox.box(gameId),
+                        Unbox.box(event.getSequence()), Unbox.box(event.getRow()), Unbox.box(event.getColumn()),
+                        ship == null ? "-" : ship.getCategory());
+            else
+                LOGGER.info("event={} game={} seq={} row={} col={} ship={} shot={}", event.getType(),
+                        Unbox.box(gameId), Unbox.box(event.getSequence()), Unbox.box(event.getRow()),
+                        Unbox.box(event.getColumn()), ship == null ? "-" : ship.getCategory(), event.getShot());
+        }
+        if (++received == BATCH) {
+            received = 0;
+            subscription.request(BATCH);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        LOGGER.error("event=ERROR game={} cause={}", Unbox.box(gameId), throwable.toString());
+    }
+
+    @Override
+    public void onComplete() {
+        LOGGER.info("event=END game={}", Unbox.box(gameId));
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the events of a game to any number of subscribers.
+ *
+ * Each subscriber gets its own bounded buffer and receives events only as it
+ * requests them through its {@link Flow.Subscription}. Publishing never waits:
+ * when the buffer of a slow subscriber is full, the event is dropped for that
+ * subscriber only and counted in {@link #getDroppedEvents()}. Subscribers can
+ * detect the gap from {@link GameEvent#getSequence()}.
+ */
+public class GameEventPublisher implements Flow.Publisher<GameEvent>, AutoCloseable {
+
+    private final SubmissionPublisher<GameEvent> publisher;
+    private final LongAdder dropped;
+    private long sequence;
+
+    /**
+     * Creates a publisher that delivers events on the common pool with the
+     * default buffer size of {@link Flow#defaultBufferSize()}.
+     */
+    public GameEventPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * Creates a publisher.
+     *
+     * @param executor the executor used to deliver events to subscribers
+     * @param bufferSize the maximum number of undelivered events per subscriber
+     */
+    public GameEventPublisher(Executor executor, int bufferSize) {
+        this.publisher = new SubmissionPublisher<>(executor, bufferSize);
+        this.dropped = new LongAdder();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super GameEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Publishes an event to all current subscribers, without blocking.
+     *
+     * Only called by the game that owns this publisher. No event is created
+     * when there are no subscribers.
+     *
+     * @param type the kind of event
+     * @param row the row of the shot, or -1
+     * @param column the column of the shot, or -1
+     * @param ship the ship that was hit or sunk, or null
+     */
+    void publish(GameEvent.Type type, int row, int column, IShip ship) {
+        publish(type, row, column, ship, null);
+    }
+
+    /**
+     * Publishes an event about a shot taken back or fired again, as
+     * {@link #publish(GameEvent.Type, int, int, IShip)} does.
+     *
+     * @param type {@link GameEvent.Type#UNDO} or {@link GameEvent.Type#REDO}
+     * @param row the row of the shot
+     * @param column the column of the shot
+     * @param ship the ship that was hit or sunk, or null
+     * @param shot the outcome of the shot
+     */
+    void publish(GameEvent.Type type, int row, int column, IShip ship, GameEvent.Type shot) {
+        long seq = sequence++;
+        if (!publisher.hasSubscribers())
+            return;
+        publisher.offer(new GameEvent(type, seq, row, column, ship, shot), (subscriber, event) -> {
+            dropped.increment();
+            return false;
+        });
+    }
+
+    /**
+     * Returns whether any subscriber is currently attached.
+     *
+     * @return true if there is at least one subscriber
+     */
+    public boolean hasSubscribers() {
+        return publisher.hasSubscribers();
+    }
+
+    /**
+     * Returns how many events were dropped because a subscriber's buffer was full,
+     * summed over all subscribers.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Completes all subscriptions once their buffered events have been delivered.
+     */
+    @Override
+    public void close() {
+        publisher.close();
+    }
+}
@@ -0,0 +1,316 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Process-wide counters and latency histograms for the hot paths of the game:
+ * {@link Game#fire(IPosition)}, {@link Game#fireVolley(java.util.List)} and
+ * {@link Fleet#addShip(IShip)}. {@link Fleet#shipAt(IPosition)} is not timed:
+ * it is a single hash lookup, cheaper than the two clock reads that would time
+ * it, and it runs inside every shot, which is already timed.
+ *
+ * Counters are {@link LongAdder}s and latencies go to {@link LatencyHistogram}s,
+ * so recording is cheap and does not contend between threads. Single shots are
+ * too cheap to time every one of them: each game times one {@code fire} in
+ * {@link #SAMPLE_PERIOD} and records it with that weight, so the counts and sums
+ * of {@code fire} are estimates; the shot counters are exact. Metrics are on
+ * by default; start the JVM with {@code -Dbattleship.metrics=false} to compile
+ * the instrumentation away entirely.
+ *
+ * The metrics can be read through JMX after {@link #registerMBean()} and in the
+ * Prometheus text format, either from {@link #toPrometheus()} or over HTTP on
+ * the loopback interface after {@link #startHttpServer(int)}.
+ */
+public final class GameMetrics implements GameMetricsMXBean {
+
+    /**
+     * The instrumented operations.
+     */
+    public enum Operation {
+        FIRE("fire"),
+        FIRE_VOLLEY("fire_volley"),
+        ADD_SHIP("add_ship");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return the name of the operation in exported metrics
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** Whether instrumentation is enabled; constant, so disabled probes are removed by the JIT. */
+    static final boolean ENABLED = !"false".equals(System.getProperty("battleship.metrics"));
+
+    /** One in this many calls of a sampled operation is timed. */
+    static final int SAMPLE_PERIOD = 16;
+
+    /** Object name under which the metrics are registered in JMX. */
+    public static final String OBJECT_NAME = "iscteiul.ista.battleship:type=GameMetrics";
+
+    /** Exported histogram buckets: from 16 ns up to about 17 s, so the series stay fixed between scrapes. */
+    private static final int FIRST_EXPORTED_BUCKET = 4;
+    private static final int LAST_EXPORTED_BUCKET = 34;
+
+    private static final GameMetrics INSTANCE = new GameMetrics();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder repeated = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder sunk = new LongAdder();
+    private final LatencyHistogram[] latencies;
+
+    private GameMetrics() {
+        latencies = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < latencies.length; i++)
+            latencies[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Returns the metrics of this process.
+     *
+     * @return the metrics registry
+     */
+    public static GameMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return the start time to pass to {@link #record(Operation, long)}
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the latency of an operation started at {@code start}.
+     *
+     * @param op the operation
+     * @param start the value returned by {@link #start()}
+     */
+    static void record(Operation op, long start) {
+        if (ENABLED)
+            INSTANCE.latencies[op.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Starts timing a sampled operation, if this call is one of the samples.
+     *
+     * @param calls how many times the caller ran the operation before
+     * @return the start time to pass to {@link #recordSampled(Operation, long)}, or 0 if this call is not timed
+     */
+    static long startSampled(int calls) {
+        return ENABLED && calls % SAMPLE_PERIOD == 0 ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the latency of a sampled operation, weighted by {@link #SAMPLE_PERIOD}.
+     *
+     * @param op the operation
+     * @param start the value returned by {@link #startSampled(int)}
+     */
+    static void recordSampled(Operation op, long start) {
+        if (ENABLED && start != 0L)
+            INSTANCE.latencies[op.ordinal()].record(System.nanoTime() - start, SAMPLE_PERIOD);
+    }
+
+    /**
+     * Counts the outcome of one shot.
+     *
+     * @param outcome one of the {@link VolleyResult} outcome constants
+     */
+    static void recordShot(byte outcome) {
+        if (!ENABLED)
+            return;
+        switch (outcome) {
+            case VolleyResult.INVALID:
+                INSTANCE.invalid.increment();
+                break;
+            case VolleyResult.REPEATED:
+                INSTANCE.repeated.increment();
+                break;
+            case VolleyResult.MISS:
+                INSTANCE.misses.increment();
+                break;
+            case VolleyResult.SUNK:
+                INSTANCE.sunk.increment();
+                INSTANCE.hits.increment();
+                break;
+            default:
+                INSTANCE.hits.increment();
+        }
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param op the operation
+     * @return its histogram
+     */
+    public LatencyHistogram getLatency(Operation op) {
+        return latencies[op.ordinal()];
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getRepeatedShots() {
+        return repeated.sum();
+    }
+
+    @Override
+    public long getInvalidShots() {
+        return invalid.sum();
+    }
+
+    @Override
+    public long getSunkShips() {
+        return sunk.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Operation op : Operation.values())
+            counts.put(op.getLabel(), getLatency(op).getCount());
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getMeanNanos() {
+        Map<String, Long> means = new LinkedHashMap<>();
+        for (Operation op : Operation.values()) {
+            LatencyHistogram h = getLatency(op);
+            long count = h.getCount();
+            means.put(op.getLabel(), count == 0 ? 0 : h.getTotalNanos() / count);
+        }
+        return means;
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos() {
+        Map<String, Long> p99 = new LinkedHashMap<>();
+        for (Operation op : Operation.values())
+            p99.put(op.getLabel(), getLatency(op).getPercentile(99));
+        return p99;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, if not registered yet.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name))
+                server.registerMBean(this, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("ERROR! could not register the game metrics MBean", e);
+        }
+    }
+
+    /**
+     * Serves the metrics in the Prometheus text format at {@code /metrics} on the loopback interface.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @return the running server; stop it with {@link HttpServer#stop(int)}
+     * @throws UncheckedIOException if the server cannot be started
+     */
+    public HttpServer startHttpServer(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Renders the metrics in the Prometheus text exposition format.
+     *
+     * @return the metrics as text
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# HELP battleship_shots_total Shots fired, by outcome.\n");
+        sb.append("# TYPE battleship_shots_total counter\n");
+        counter(sb, "hit", getHits());
+        counter(sb, "miss", getMisses());
+        counter(sb, "repeated", getRepeatedShots());
+        counter(sb, "invalid", getInvalidShots());
+        sb.append("# HELP battleship_ships_sunk_total Ships sunk.\n");
+        sb.append("# TYPE battleship_ships_sunk_total counter\n");
+        sb.append("battleship_ships_sunk_total ").append(getSunkShips()).append('\n');
+
+        sb.append("# HELP battleship_operation_seconds Latency of game operations.\n");
+        sb.append("# TYPE battleship_operation_seconds histogram\n");
+        for (Operation op : Operation.values()) {
+            LatencyHistogram h = getLatency(op);
+            long cumulative = 0;
+            for (int i = 0; i <= LAST_EXPORTED_BUCKET; i++) {
+                cumulative += h.getBucketCount(i);
+                if (i < FIRST_EXPORTED_BUCKET)
+                    continue;
+                sb.append("battleship_operation_seconds_bucket{operation=\"").append(op.getLabel())
+                        .append("\",le=\"").append(LatencyHistogram.getBucketBound(i) / 1e9).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            long count = Math.max(h.getCount(), cumulative);
+            sb.append("battleship_operation_seconds_bucket{operation=\"").append(op.getLabel())
+                    .append("\",le=\"+Inf\"} ").append(count).append('\n');
+            sb.append("battleship_operation_seconds_sum{operation=\"").append(op.getLabel()).append("\"} ")
+                    .append(h.getTotalNanos() / 1e9).append('\n');
+            sb.append("battleship_operation_seconds_count{operation=\"").append(op.getLabel()).append("\"} ")
+                    .append(count).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void counter(StringBuilder sb, String outcome, long value) {
+        sb.append("battleship_shots_total{outcome=\"").append(outcome).append("\"} ").append(value).append('\n');
+    }
+}
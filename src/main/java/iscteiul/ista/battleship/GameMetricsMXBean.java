@@ -0,0 +1,52 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link GameMetrics}.
+ */
+public interface GameMetricsMXBean {
+
+    /**
+     * @return the number of shots that hit a ship
+     */
+    long getHits();
+
+    /**
+     * @return the number of new shots that hit water
+     */
+    long getMisses();
+
+    /**
+     * @return the number of shots at positions already fired at
+     */
+    long getRepeatedShots();
+
+    /**
+     * @return the number of shots outside the board
+     */
+    long getInvalidShots();
+
+    /**
+     * @return the number of ships sunk
+     */
+    long getSunkShips();
+
+    /**
+     * @return the number of calls of each instrumented operation
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * @return the mean latency of each instrumented operation, in nanoseconds
+     */
+    Map<String, Long> getMeanNanos();
+
+    /**
+     * @return an upper bound of the 99th percentile latency of each instrumented operation, in nanoseconds
+     */
+    Map<String, Long> getP99Nanos();
+}
@@ -0,0 +1,292 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of many concurrent game sessions while holding only a bounded
+ * number of them in memory.
+ *
+ * Sessions are looked up in a {@link ConcurrentHashMap}, so different sessions
+ * never contend with each other. The games currently in memory form a working
+ * set ordered by last access: when it grows beyond the configured capacity, or
+ * when a game has been idle for longer than the configured time-to-live, the
+ * game is written to the spill directory in the compact form of
+ * {@link GameCodec} and dropped from memory. The next {@link #fire(String, IPosition)}
+ * or {@link #get(String)} on that session reads it back transparently; the
+ * games handed out by {@code get} are snapshots, so a spill never leaves a
+ * caller with a stale game.
+ *
+ * Operations on the same session are serialised; operations on different
+ * sessions run in parallel.
+ */
+public class GameRegistry {
+
+    /**
+     * A registered session. The game is {@code null} while the session is spilled.
+     */
+    private static final class Session {
+        private final String id;
+        private Game game;
+        private volatile long lastAccess;
+
+        private Session(String id, Game game) {
+            this.id = id;
+            this.game = game;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    private final ConcurrentHashMap<String, Session> sessions;
+    /** Sessions currently in memory, least recently used first. Guarded by itself. */
+    private final LinkedHashMap<String, Session> resident;
+    private final Path spillDir;
+    private final int maxResident;
+    private final long ttlNanos;
+
+    /**
+     * Creates a registry.
+     *
+     * @param spillDir the directory where evicted games are written
+     * @param maxResident the maximum number of games kept in memory
+     * @param ttl how long a game may stay idle in memory before {@link #evictIdle()} spills it
+     * @throws IllegalArgumentException if {@code maxResident} is not positive
+     */
+    public GameRegistry(Path spillDir, int maxResident, Duration ttl) {
+        if (maxResident <= 0)
+            throw new IllegalArgumentException("ERROR! the registry must keep at least one game in memory");
+        this.sessions = new ConcurrentHashMap<>();
+        this.resident = new LinkedHashMap<>(16, 0.75f, true);
+        this.spillDir = spillDir;
+        this.maxResident = maxResident;
+        this.ttlNanos = ttl.toNanos();
+        try {
+            Files.createDirectories(spillDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Registers a new session.
+     *
+     * @param id the identifier of the session
+     * @param game the game of the session
+     * @throws IllegalArgumentException if a session with the same identifier already exists
+     */
+    public void register(String id, Game game) {
+        Session session = new Session(id, game);
+        if (sessions.putIfAbsent(id, session) != null)
+            throw new IllegalArgumentException("ERROR! session already registered: " + id);
+        touch(session);
+    }
+
+    /**
+     * Fires a shot in the given session, reading its game back from disk if it was spilled.
+     *
+     * @param id the identifier of the session
+     * @param pos the position to fire at
+     * @return the result of {@link Game#fire(IPosition)}
+     * @throws IllegalArgumentException if the session does not exist
+     */
+    public IShip fire(String id, IPosition pos) {
+        Session session = require(id);
+        IShip result;
+        synchronized (session) {
+            result = load(session).fire(pos);
+            session.lastAccess = System.nanoTime();
+        }
+        touch(session);
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the game of the given session, reading it back from
+     * disk if it was spilled.
+     *
+     * The snapshot is a copy taken under the session lock: it stays valid after
+     * the session is spilled, later shots in the session do not show in it, and
+     * shots fired at it do not reach the session. Shots are fired through
+     * {@link #fire(String, IPosition)}.
+     *
+     * @param id the identifier of the session
+     * @return a copy of the game of the session
+     * @throws IllegalArgumentException if the session does not exist
+     */
+    public Game get(String id) {
+        Session session = require(id);
+        Game snapshot;
+        synchronized (session) {
+            snapshot = GameCodec.fromBytes(GameCodec.toBytes(load(session)));
+            session.lastAccess = System.nanoTime();
+        }
+        touch(session);
+        return snapshot;
+    }
+
+    /**
+     * Removes a session, together with its spilled form if there is one.
+     *
+     * @param id the identifier of the session
+     * @return {@code true} if the session existed
+     */
+    public boolean remove(String id) {
+        Session session = sessions.remove(id);
+        if (session == null)
+            return false;
+        synchronized (resident) {
+            resident.remove(id);
+        }
+        synchronized (session) {
+            session.game = null;
+            try {
+                Files.deleteIfExists(spillFile(id));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spills every game that has been idle for longer than the time-to-live.
+     *
+     * @return the number of games spilled
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        List<Session> victims = new ArrayList<>();
+        synchronized (resident) {
+            Iterator<Session> it = resident.values().iterator();
+            while (it.hasNext()) {
+                Session s = it.next();
+                if (now - s.lastAccess < ttlNanos)
+                    break;
+                it.remove();
+                victims.add(s);
+            }
+        }
+        int spilled = 0;
+        for (Session s : victims)
+            if (spill(s))
+                spilled++;
+        return spilled;
+    }
+
+    /**
+     * Returns the number of registered sessions, in memory or spilled.
+     *
+     * @return the number of sessions
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of games currently held in memory.
+     *
+     * @return the number of resident games
+     */
+    public int getResidentCount() {
+        synchronized (resident) {
+            return resident.size();
+        }
+    }
+
+    private Session require(String id) {
+        Session session = sessions.get(id);
+        if (session == null)
+            throw new IllegalArgumentException("ERROR! unknown session: " + id);
+        return session;
+    }
+
+    /**
+     * Marks the session as most recently used and spills the least recently used
+     * games that no longer fit in the working set.
+     */
+    private void touch(Session session) {
+        List<Session> victims = null;
+        synchronized (resident) {
+            if (sessions.get(session.id) != session)
+                return;
+            resident.put(session.id, session);
+            Iterator<Session> it = resident.values().iterator();
+            while (resident.size() > maxResident) {
+                if (victims == null)
+                    victims = new ArrayList<>();
+                victims.add(it.next());
+                it.remove();
+            }
+        }
+        if (victims != null)
+            for (Session s : victims)
+                spill(s);
+    }
+
+    /** Must be called while holding the session lock. */
+    private Game load(Session session) {
+        if (session.game == null) {
+            Path file = spillFile(session.id);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                session.game = GameCodec.read(new DataInputStream(in));
+                Files.delete(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return session.game;
+    }
+
+    private boolean spill(Session session) {
+        synchronized (session) {
+            synchronized (resident) {
+                // touched again (or removed) since it was chosen as a victim
+                if (resident.containsKey(session.id) || sessions.get(session.id) != session)
+                    return false;
+            }
+            if (session.game == null)
+                return false;
+            Path file = spillFile(session.id);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                GameCodec.write(session.game, new DataOutputStream(out));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            session.game = null;
+            return true;
+        }
+    }
+
+    private Path spillFile(String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        StringBuilder name = new StringBuilder(bytes.length * 2 + 5);
+        for (byte b : bytes)
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return spillDir.resolve(name.append(".game").toString());
+    }
+}
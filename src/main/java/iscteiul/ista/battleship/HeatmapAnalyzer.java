@@ -0,0 +1,513 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds heatmaps of where players place their ships and where they shoot,
+ * over a corpus of recorded games.
+ *
+ * A corpus is a directory tree of files holding games in the form of
+ * {@link GameCodec}, one after another; the spill directory of a
+ * {@link GameRegistry} is one. For every game on the board size of the
+ * analyzer, the heatmaps count per cell:
+ * <ul>
+ *     <li>the cells of the ships, per kind and bearing ({@code occupancy});</li>
+ *     <li>the cells of the ships that were hit, per kind and bearing ({@code hits});</li>
+ *     <li>every valid shot ({@code shots}), the first one ({@code first-shot}) and
+ *     the first ten ({@code opening}).</li>
+ * </ul>
+ *
+ * Files are handed out one at a time to a fixed number of workers. Each worker
+ * accumulates into its own stripe of plain {@code long} counters, padded so that
+ * no two stripes share a cache line, and the stripes are added up at the end:
+ * workers never contend, so a corpus of many files scales with the cores.
+ * Games on other board sizes are counted and skipped.
+ *
+ * Heatmaps are written as text reports with the raw counts, which can be read
+ * back, and two of them can be diffed as the change in count per thousand games.
+ *
+ * Usage:
+ * <pre>
+ * java iscteiul.ista.battleship.HeatmapAnalyzer analyze corpus report.txt [--threads n] [--board n]
+ * java iscteiul.ista.battleship.HeatmapAnalyzer diff before.txt after.txt diff.txt
+ * </pre>
+ */
+public final class HeatmapAnalyzer {
+
+    /** Number of valid shots of the {@code opening} heatmap. */
+    static final int OPENING = 10;
+
+    private static final String HEADER = "# battleship heatmaps 1";
+    private static final String DIFF_HEADER = "# battleship heatmap diff 1, change in count per 1000 games";
+    private static final int SHAPES = GameCodec.KIND_COUNT * ShipShape.BEARINGS.length;
+
+    /** Layer of the occupancy heatmap of the first shape; one layer per shape follows. */
+    private static final int OCCUPANCY = 0;
+    /** Layer of the hits heatmap of the first shape; one layer per shape follows. */
+    private static final int HITS = SHAPES;
+    private static final int SHOTS = 2 * SHAPES;
+    private static final int FIRST_SHOT = SHOTS + 1;
+    private static final int OPENING_SHOTS = SHOTS + 2;
+    private static final int LAYERS = SHOTS + 3;
+
+    /** Longs between stripes, more than a cache line, so workers never write to the same line. */
+    private static final int PADDING = 16;
+
+    /**
+     * The heatmaps of a corpus.
+     */
+    public static final class Heatmaps {
+        private final int boardSize;
+        private long games;
+        private long skipped;
+        /** Counts of all layers, layer after layer, each in row-major order. */
+        private final long[] counts;
+
+        private Heatmaps(int boardSize) {
+            this.boardSize = boardSize;
+            this.counts = new long[LAYERS * boardSize * boardSize];
+        }
+
+        /**
+         * Returns the number of rows and columns of the board of the heatmaps.
+         *
+         * @return the board size
+         */
+        public int getBoardSize() {
+            return boardSize;
+        }
+
+        /**
+         * Returns the number of games counted.
+         *
+         * @return the number of games
+         */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * Returns the number of games skipped because they were on another board size.
+         *
+         * @return the number of games skipped
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Returns how many ships of a kind and bearing covered a cell.
+         *
+         * @param kind the kind of ship, such as {@code "nau"}
+         * @param bearing the bearing of the ship
+         * @param row the row of the cell
+         * @param column the column of the cell
+         * @return the count
+         * @throws IllegalArgumentException if the kind is unknown or the bearing has no shape
+         */
+        public long getOccupancy(String kind, Compass bearing, int row, int column) {
+            return counts[cell(OCCUPANCY + shape(kind, bearing), row, column)];
+        }
+
+        /**
+         * Returns how many times a cell of a ship of a kind and bearing was hit.
+         *
+         * @param kind the kind of ship, such as {@code "nau"}
+         * @param bearing the bearing of the ship
+         * @param row the row of the cell
+         * @param column the column of the cell
+         * @return the count
+         * @throws IllegalArgumentException if the kind is unknown or the bearing has no shape
+         */
+        public long getHits(String kind, Compass bearing, int row, int column) {
+            return counts[cell(HITS + shape(kind, bearing), row, column)];
+        }
+
+        /**
+         * Returns how many valid shots were fired at a cell.
+         *
+         * @param row the row of the cell
+         * @param column the column of the cell
+         * @return the count
+         */
+        public long getShots(int row, int column) {
+            return counts[cell(SHOTS, row, column)];
+        }
+
+        /**
+         * Returns how many games started with a valid shot at a cell.
+         *
+         * @param row the row of the cell
+         * @param column the column of the cell
+         * @return the count
+         */
+        public long getFirstShots(int row, int column) {
+            return counts[cell(FIRST_SHOT, row, column)];
+        }
+
+        /**
+         * Returns how many of the first ten valid shots of the games hit a cell.
+         *
+         * @param row the row of the cell
+         * @param column the column of the cell
+         * @return the count
+         */
+        public long getOpeningShots(int row, int column) {
+            return counts[cell(OPENING_SHOTS, row, column)];
+        }
+
+        /**
+         * Writes the heatmaps as a text report: a header line, a line with the
+         * board size and game counts, then, for every heatmap with counts, its name
+         * and one line of counts per row.
+         *
+         * @param file the report file, replaced if it exists
+         * @throws IOException if the file cannot be written
+         */
+        public void write(Path file) throws IOException {
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+                out.write(HEADER + "\n");
+                out.write("board " + boardSize + " games " + games + " skipped " + skipped + "\n");
+                int cells = boardSize * boardSize;
+                for (int layer = 0; layer < LAYERS; layer++) {
+                    boolean empty = true;
+                    for (int i = layer * cells; i < (layer + 1) * cells && empty; i++)
+                        empty = counts[i] == 0;
+                    if (empty)
+                        continue;
+                    out.write(layerName(layer) + "\n");
+                    for (int row = 0; row < boardSize; row++) {
+                        StringBuilder sb = new StringBuilder();
+                        for (int column = 0; column < boardSize; column++)
+                            sb.append(column == 0 ? "" : " ").append(counts[cell(layer, row, column)]);
+                        out.write(sb.append('\n').toString());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads a report written by {@link #write(Path)}.
+         *
+         * @param file the report file
+         * @return the heatmaps
+         * @throws IOException if the file cannot be read or is not a heatmap report
+         */
+        public static Heatmaps read(Path file) throws IOException {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+                String header = in.readLine();
+                String[] summary = HEADER.equals(header) ? String.valueOf(in.readLine()).split(" ") : new String[0];
+                if (summary.length != 6 || !summary[0].equals("board"))
+                    throw new IOException("ERROR! " + file + " is not a heatmap report");
+                Heatmaps heatmaps = new Heatmaps(Integer.parseInt(summary[1]));
+                heatmaps.games = Long.parseLong(summary[3]);
+                heatmaps.skipped = Long.parseLong(summary[5]);
+                for (String name = in.readLine(); name != null; name = in.readLine()) {
+                    int layer = layerIndex(name);
+                    if (layer < 0)
+                        throw new IOException("ERROR! unknown heatmap " + name + " in " + file);
+                    for (int row = 0; row < heatmaps.boardSize; row++) {
+                        String line = in.readLine();
+                        String[] fields = line == null ? new String[0] : line.trim().split(" +");
+                        if (fields.length != heatmaps.boardSize)
+                            throw new IOException("ERROR! heatmap " + name + " of " + file + " is truncated");
+                        for (int column = 0; column < heatmaps.boardSize; column++)
+                            heatmaps.counts[heatmaps.cell(layer, row, column)] = Long.parseLong(fields[column]);
+                    }
+                }
+                return heatmaps;
+            } catch (NumberFormatException e) {
+                throw new IOException("ERROR! malformed number in " + file, e);
+            }
+        }
+
+        /**
+         * Writes how the heatmaps changed from a baseline: for each heatmap with
+         * counts in either, the change of each cell in count per thousand games,
+         * followed by a line with the cells that changed the most.
+         *
+         * @param baseline the heatmaps to compare with, of the same board size
+         * @param file the diff file, replaced if it exists
+         * @throws IOException if the file cannot be written
+         * @throws IllegalArgumentException if the board sizes differ
+         */
+        public void writeDiff(Heatmaps baseline, Path file) throws IOException {
+            if (baseline.boardSize != boardSize)
+                throw new IllegalArgumentException("ERROR! cannot compare heatmaps of different board sizes");
+            int cells = boardSize * boardSize;
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+                out.write(DIFF_HEADER + "\n");
+                out.write("board " + boardSize + " games " + baseline.games + " -> " + games + "\n");
+                for (int layer = 0; layer < LAYERS; layer++) {
+                    long[] change = new long[cells];
+                    boolean empty = true;
+                    int top = 0;
+                    for (int i = 0; i < cells; i++) {
+                        int k = layer * cells + i;
+                        empty &= counts[k] == 0 && baseline.counts[k] == 0;
+                        change[i] = Math.round(perMille(counts[k], games) - perMille(baseline.counts[k], baseline.games));
+                        if (Math.abs(change[i]) > Math.abs(change[top]))
+                            top = i;
+                    }
+                    if (empty)
+                        continue;
+                    out.write(layerName(layer) + "\n");
+                    for (int row = 0; row < boardSize; row++) {
+                        StringBuilder sb = new StringBuilder();
+                        for (int column = 0; column < boardSize; column++)
+                            sb.append(column == 0 ? "" : " ").append(String.format("%+d", change[row * boardSize + column]));
+                        out.write(sb.append('\n').toString());
+                    }
+                    out.write("largest " + top / boardSize + " " + top % boardSize + " "
+                            + String.format("%+d", change[top]) + "\n");
+                }
+            }
+        }
+
+        private static double perMille(long count, long games) {
+            return games == 0 ? 0 : 1000.0 * count / games;
+        }
+
+        private int cell(int layer, int row, int column) {
+            if (row < 0 || row >= boardSize || column < 0 || column >= boardSize)
+                throw new IllegalArgumentException("ERROR! cell outside the board");
+            return (layer * boardSize + row) * boardSize + column;
+        }
+
+        private static int shape(String kind, Compass bearing) {
+            int b = ShipShape.bearingIndex(bearing);
+            if (b < 0)
+                throw new IllegalArgumentException("ERROR! invalid bearing " + bearing);
+            return GameCodec.kindCode(kind) * ShipShape.BEARINGS.length + b;
+        }
+    }
+
+    /**
+     * A worker: takes files until there are none left, into its own stripe of the counters.
+     */
+    private final class Worker implements Callable<Void> {
+        private final List<Path> files;
+        private final AtomicInteger next;
+        private final long[] stripes;
+        private final int base;
+        private long games;
+        private long skipped;
+
+        private Worker(List<Path> files, AtomicInteger next, long[] stripes, int base) {
+            this.files = files;
+            this.next = next;
+            this.stripes = stripes;
+            this.base = base;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            for (int f = next.getAndIncrement(); f < files.size(); f = next.getAndIncrement()) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(files.get(f)), 1 << 16)) {
+                    DataInputStream data = new DataInputStream(in);
+                    while (true) {
+                        in.mark(1);
+                        if (in.read() < 0)
+                            break;
+                        in.reset();
+                        count(GameCodec.read(data));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    throw new IOException("ERROR! cannot read the games of " + files.get(f), e);
+                }
+            }
+            return null;
+        }
+
+        private void count(Game game) {
+            IFleet fleet = game.getFleet();
+            if (fleet.getBoardSize() != boardSize) {
+                skipped++;
+                return;
+            }
+            games++;
+            for (IShip s : fleet.getShips()) {
+                int b = ShipShape.bearingIndex(s.getBearing());
+                if (b < 0)
+                    continue;
+                int shape = GameCodec.kindCode(s.getCategory()) * ShipShape.BEARINGS.length + b;
+                for (IPosition p : s.getPositions()) {
+                    if (!inside(p))
+                        continue;
+                    stripes[index(OCCUPANCY + shape, p)]++;
+                    if (p.isHit())
+                        stripes[index(HITS + shape, p)]++;
+                }
+            }
+            List<IPosition> shots = game.getShots();
+            for (int i = 0; i < shots.size(); i++) {
+                IPosition p = shots.get(i);
+                if (!inside(p))
+                    continue;
+                stripes[index(SHOTS, p)]++;
+                if (i == 0)
+                    stripes[index(FIRST_SHOT, p)]++;
+                if (i < OPENING)
+                    stripes[index(OPENING_SHOTS, p)]++;
+            }
+        }
+
+        private boolean inside(IPosition p) {
+            return p.getRow() >= 0 && p.getRow() < boardSize && p.getColumn() >= 0 && p.getColumn() < boardSize;
+        }
+
+        private int index(int layer, IPosition p) {
+            return base + (layer * boardSize + p.getRow()) * boardSize + p.getColumn();
+        }
+    }
+
+    private final int threads;
+    private final int boardSize;
+
+    /**
+     * Creates an analyzer for the standard board.
+     *
+     * @param threads the number of workers
+     */
+    public HeatmapAnalyzer(int threads) {
+        this(threads, Fleet.BOARD_SIZE);
+    }
+
+    /**
+     * Creates an analyzer.
+     *
+     * @param threads the number of workers
+     * @param boardSize the board size of the games counted
+     * @throws IllegalArgumentException if a number is not positive
+     */
+    public HeatmapAnalyzer(int threads, int boardSize) {
+        if (threads < 1)
+            throw new IllegalArgumentException("ERROR! at least one thread is needed");
+        if (boardSize < 1)
+            throw new IllegalArgumentException("ERROR! board size must be positive");
+        this.threads = threads;
+        this.boardSize = boardSize;
+    }
+
+    /**
+     * Builds the heatmaps of a corpus.
+     *
+     * @param corpus a directory tree of game files, or a single game file
+     * @return the heatmaps
+     * @throws IOException if a file cannot be read or does not hold valid games
+     */
+    public Heatmaps analyze(Path corpus) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(corpus)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        int workers = Math.max(1, Math.min(threads, files.size()));
+        int stripe = LAYERS * boardSize * boardSize + PADDING;
+        long[] stripes = new long[workers * stripe];
+        AtomicInteger next = new AtomicInteger();
+        List<Worker> tasks = new ArrayList<>();
+        for (int w = 0; w < workers; w++)
+            tasks.add(new Worker(files, next, stripes, w * stripe));
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (Future<Void> f : executor.invokeAll(tasks))
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("ERROR! interrupted while analyzing " + corpus, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException("ERROR! heatmap analysis failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Heatmaps heatmaps = new Heatmaps(boardSize);
+        for (Worker w : tasks) {
+            heatmaps.games += w.games;
+            heatmaps.skipped += w.skipped;
+            for (int i = 0; i < heatmaps.counts.length; i++)
+                heatmaps.counts[i] += stripes[w.base + i];
+        }
+        return heatmaps;
+    }
+
+    /**
+     * Analyzes a corpus into a report, or diffs two reports.
+     *
+     * @param args {@code analyze corpus report [--threads n] [--board n]} or {@code diff before after diff}
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int boardSize = Fleet.BOARD_SIZE;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--board") && i + 1 < args.length)
+                boardSize = Integer.parseInt(args[++i]);
+            else
+                files.add(args[i]);
+        }
+        if (files.size() == 3 && files.get(0).equals("analyze")) {
+            long start = System.nanoTime();
+            Heatmaps heatmaps = new HeatmapAnalyzer(threads, boardSize).analyze(Paths.get(files.get(1)));
+            heatmaps.write(Paths.get(files.get(2)));
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            System.out.println("games=" + heatmaps.getGames() + " skipped=" + heatmaps.getSkipped()
+                    + " millis=" + millis + " games/s=" + heatmaps.getGames() * 1000 / millis);
+        } else if (files.size() == 4 && files.get(0).equals("diff")) {
+            Heatmaps before = Heatmaps.read(Paths.get(files.get(1)));
+            Heatmaps.read(Paths.get(files.get(2))).writeDiff(before, Paths.get(files.get(3)));
+        } else {
+            System.err.println("usage: HeatmapAnalyzer analyze <corpus> <report> [--threads n] [--board n]");
+            System.err.println("       HeatmapAnalyzer diff <before> <after> <diff>");
+            System.exit(2);
+        }
+    }
+
+    private static String layerName(int layer) {
+        if (layer < HITS)
+            return "occupancy " + shapeName(layer - OCCUPANCY);
+        if (layer < SHOTS)
+            return "hits " + shapeName(layer - HITS);
+        return layer == SHOTS ? "shots" : layer == FIRST_SHOT ? "first-shot" : "opening";
+    }
+
+    private static String shapeName(int shape) {
+        return GameCodec.kind(shape / ShipShape.BEARINGS.length) + " "
+                + ShipShape.BEARINGS[shape % ShipShape.BEARINGS.length].getDirection();
+    }
+
+    private static int layerIndex(String name) {
+        for (int layer = 0; layer < LAYERS; layer++)
+            if (layerName(layer).equals(name))
+                return layer;
+        return -1;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The classic hunt/target strategy.
+ *
+ * While hunting, it fires at random cells, those of one colour of a
+ * checkerboard first, since every ship longer than one cell covers at least one
+ * of them. After a hit it targets the unexplored neighbours of the hit until the
+ * ship sinks. As ships may not touch, not even diagonally, the cells around a
+ * sunk ship are then known to be water and are never fired at.
+ */
+public final class HuntTargetShooter implements ShooterStrategy {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte FIRED = 1;
+    private static final byte WATER = 2;
+
+    private int boardSize;
+    /** State of each cell, in row-major order. */
+    private byte[] cells = new byte[0];
+    /** Cells in hunting order. */
+    private int[] huntOrder = new int[0];
+    private int huntNext;
+    /** Stack of cells to try next. */
+    private int[] targets = new int[0];
+    private int targetCount;
+
+    /**
+     * Creates the strategy; used by {@link java.util.ServiceLoader}.
+     */
+    public HuntTargetShooter() {
+    }
+
+    @Override
+    public String getName() {
+        return "hunt-target";
+    }
+
+    @Override
+    public void start(int boardSize, long seed) {
+        this.boardSize = boardSize;
+        int n = boardSize * boardSize;
+        if (cells.length != n) {
+            cells = new byte[n];
+            huntOrder = new int[n];
+            targets = new int[4 * n];
+        }
+        Arrays.fill(cells, UNKNOWN);
+        targetCount = 0;
+        huntNext = 0;
+
+        // the even cells of the checkerboard, then the odd ones, each shuffled
+        int even = 0;
+        for (int c = 0; c < n; c++)
+            if ((c / boardSize + c % boardSize) % 2 == 0)
+                huntOrder[even++] = c;
+        int k = even;
+        for (int c = 0; c < n; c++)
+            if ((c / boardSize + c % boardSize) % 2 != 0)
+                huntOrder[k++] = c;
+        Random random = new Random(seed);
+        shuffle(random, 0, even);
+        shuffle(random, even, n);
+    }
+
+    @Override
+    public IPosition nextShot(IGame game) {
+        while (targetCount > 0) {
+            int cell = targets[--targetCount];
+            if (cells[cell] == UNKNOWN)
+                return position(cell);
+        }
+        while (huntNext < huntOrder.length) {
+            int cell = huntOrder[huntNext++];
+            if (cells[cell] == UNKNOWN)
+                return position(cell);
+        }
+        return position(0);
+    }
+
+    @Override
+    public void shotResult(IPosition shot, byte outcome, IShip sunk) {
+        if (outcome == VolleyResult.INVALID)
+            return;
+        int row = shot.getRow();
+        int column = shot.getColumn();
+        cells[row * boardSize + column] = FIRED;
+        if (outcome == VolleyResult.HIT) {
+            push(row - 1, column);
+            push(row + 1, column);
+            push(row, column - 1);
+            push(row, column + 1);
+        } else if (outcome == VolleyResult.SUNK) {
+            for (IPosition p : sunk.getPositions())
+                for (int r = p.getRow() - 1; r <= p.getRow() + 1; r++)
+                    for (int c = p.getColumn() - 1; c <= p.getColumn() + 1; c++)
+                        if (inside(r, c) && cells[r * boardSize + c] == UNKNOWN)
+                            cells[r * boardSize + c] = WATER;
+        }
+    }
+
+    private void push(int row, int column) {
+        if (inside(row, column) && cells[row * boardSize + column] == UNKNOWN && targetCount < targets.length)
+            targets[targetCount++] = row * boardSize + column;
+    }
+
+    private boolean inside(int row, int column) {
+        return row >= 0 && row < boardSize && column >= 0 && column < boardSize;
+    }
+
+    private IPosition position(int cell) {
+        return new Position(cell / boardSize, cell % boardSize);
+    }
+
+    private void shuffle(Random random, int from, int to) {
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            int t = huntOrder[i];
+            huntOrder[i] = huntOrder[j];
+            huntOrder[j] = t;
+        }
+    }
+}
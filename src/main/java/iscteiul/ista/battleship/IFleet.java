@@ -70,6 +70,19 @@ public interface IFleet {
     List<IShip> getShips();
 
 
+    /**
+     * Obtém o tamanho lateral do tabuleiro desta frota.
+     *
+     * <p>Por omissão é {@link #BOARD_SIZE}; implementações para tabuleiros de outras
+     * dimensões devem redefinir este método, que é usado na validação de navios e tiros.</p>
+     *
+     * @return o número de linhas (e de colunas) do tabuleiro
+     */
+    default int getBoardSize() {
+        return BOARD_SIZE;
+    }
+
+
     /**
      * Tenta adicionar um novo navio à frota.
      *
@@ -89,6 +102,20 @@ public interface IFleet {
     boolean addShip(IShip s);
 
 
+    /**
+     * Remove um navio da frota.
+     *
+     * <p>As posições do navio e as que o rodeiam deixam de estar ocupadas, pelo que
+     * podem voltar a receber outros navios. Útil para editores de frotas e para
+     * algoritmos que experimentam colocações.</p>
+     *
+     * @param s o navio a remover
+     * @return {@code true} se o navio pertencia à frota e foi removido;
+     *         {@code false} caso contrário
+     */
+    boolean removeShip(IShip s);
+
+
     /**
      * Obtém todos os navios cuja categoria corresponde ao parâmetro fornecido.
      *
@@ -3,6 +3,7 @@
  */
 package iscteiul.ista.battleship;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -39,7 +40,8 @@ import java.util.List;
  * <h2>Thread-safety</h2>
  * <p>A interface não impõe requisitos de sincronização. Implementações <em>podem</em> ou não ser thread-safe.
  * Caso pretendas uso concorrente, documenta e sincroniza as operações críticas
- * (especialmente {@link #fire(IPosition)}).</p>
+ * (especialmente {@link #fire(IPosition)}). {@link Game} não é thread-safe; {@link ConcurrentGame}
+ * suporta vários atiradores em simultâneo sobre a mesma partida.</p>
  *
  * <h2>Exemplo de utilização</h2>
  * <pre><code>
@@ -103,6 +105,44 @@ public interface IGame {
     IShip fire(IPosition pos);
 
 
+    /**
+     * Efetua uma rajada de tiros e devolve o resultado de cada um.
+     *
+     * <p>O efeito sobre o estado da partida é o mesmo que invocar {@link #fire(IPosition)} para cada
+     * posição, pela ordem dada: uma posição repetida dentro da própria rajada conta como tiro repetido.
+     * O tamanho da rajada é livre, o que permite a bots disparar rajadas maiores ou menores do que
+     * as três jogadas de um turno.</p>
+     *
+     * <p>A implementação por omissão dispara tiro a tiro e deduz o resultado de cada um a partir dos
+     * contadores. Implementações concretas devem validar e resolver a rajada numa só passagem.</p>
+     *
+     * @param volley posições-alvo da rajada, por ordem
+     * @return o resultado de cada tiro e os navios afundados pela rajada
+     */
+    default VolleyResult fireVolley(List<IPosition> volley) {
+        byte[] outcomes = new byte[volley.size()];
+        List<IShip> sunk = new ArrayList<>();
+        for (int i = 0; i < outcomes.length; i++) {
+            int invalid = getInvalidShots();
+            int repeated = getRepeatedShots();
+            int hits = getHits();
+            IShip s = fire(volley.get(i));
+            if (s != null) {
+                outcomes[i] = VolleyResult.SUNK;
+                sunk.add(s);
+            } else if (getInvalidShots() > invalid)
+                outcomes[i] = VolleyResult.INVALID;
+            else if (getRepeatedShots() > repeated)
+                outcomes[i] = VolleyResult.REPEATED;
+            else if (getHits() > hits)
+                outcomes[i] = VolleyResult.HIT;
+            else
+                outcomes[i] = VolleyResult.MISS;
+        }
+        return new VolleyResult(outcomes, sunk);
+    }
+
+
     /**
      * Devolve a lista (histórico) de posições alvo de <b>tiros válidos e inéditos</b>
      * efetuados nesta partida.
@@ -47,6 +47,12 @@ public interface IPosition {
      */
     void shoot();
 
+    /**
+     * Anula um disparo registado por {@link #shoot()}, voltando ao estado "não atingida".
+     * Usado para desfazer jogadas (ver {@link Game#undo()}).
+     */
+    void unshoot();
+
     /**
      * Verifica se existe um navio nesta posição.
      * @return {@code true} se a posição já estiver ocupada;
@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with power-of-two buckets, safe to update from many threads.
+ *
+ * Bucket {@code i} counts durations {@code d} with {@code 2^(i-1) <= d < 2^i}
+ * nanoseconds (bucket 0 counts zero). Recording a value is a leading-zero count
+ * and two {@link LongAdder} increments, with no allocation on the calling thread
+ * once the adders have settled.
+ */
+public final class LatencyHistogram {
+
+    /** Number of buckets; the last one covers durations of 2^62 ns and more. */
+    public static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets;
+    private final LongAdder totalNanos;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            buckets[i] = new LongAdder();
+        totalNanos = new LongAdder();
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * Records one sampled duration that stands for {@code weight} durations.
+     *
+     * @param nanos the duration in nanoseconds; negative values are recorded as zero
+     * @param weight the number of durations the sample represents
+     */
+    public void record(long nanos, int weight) {
+        if (nanos < 0)
+            nanos = 0;
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos))].add(weight);
+        totalNanos.add(nanos * weight);
+    }
+
+    /**
+     * Returns the number of durations recorded in one bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the count of the bucket
+     */
+    public long getBucketCount(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    /**
+     * Returns the exclusive upper bound of one bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the upper bound in nanoseconds, or {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getBucketBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the total count
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder b : buckets)
+            count += b.sum();
+        return count;
+    }
+
+    /**
+     * Returns the sum of all recorded durations.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, at the resolution of the buckets.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds, or 0 if empty
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            total += counts[i] = buckets[i].sum();
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0)
+                return getBucketBound(i);
+        }
+        return getBucketBound(BUCKETS - 1);
+    }
+}
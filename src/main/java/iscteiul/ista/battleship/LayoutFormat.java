@@ -0,0 +1,197 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Text format of fleet layouts, one layout per line.
+ *
+ * A line lists the ships of a fleet as groups of four whitespace-separated
+ * fields, {@code kind row column bearing}, the same ship syntax as the scripts of
+ * {@link ScriptRunner}:
+ * <pre>
+ * galeao 6 6 e fragata 1 1 o nau 1 7 n ...
+ * </pre>
+ * A kind is either its name ({@code galeao}, {@code fragata}, {@code nau},
+ * {@code caravela}, {@code barca}) or its single-digit code in that order, which
+ * makes a standard fleet fit in about 90 bytes. Blank lines and lines starting
+ * with {@code #} carry no layout.
+ *
+ * Lines are parsed straight from a byte buffer into the primitive arrays of a
+ * {@link Record}, with no objects created per line.
+ */
+final class LayoutFormat {
+
+    /** The line was parsed. */
+    static final int OK = 0;
+    /** A field is missing or a coordinate is not a number. */
+    static final int MALFORMED = 1;
+    /** A kind is neither a known name nor a known code. */
+    static final int UNKNOWN_KIND = 2;
+    /** A bearing is not one of {@code n}, {@code s}, {@code e}, {@code o}. */
+    static final int INVALID_BEARING = 3;
+
+    private static final byte[][] KIND_NAMES = new byte[GameCodec.KIND_COUNT][];
+
+    static {
+        for (int i = 0; i < KIND_NAMES.length; i++)
+            KIND_NAMES[i] = GameCodec.kind(i).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The ships of one parsed line; reused from line to line.
+     */
+    static final class Record {
+        /** Number of ships parsed. */
+        int count;
+        /** Kind code, reference row, reference column and bearing of each ship. */
+        int[] kinds = new int[16], rows = new int[16], columns = new int[16];
+        Compass[] bearings = new Compass[16];
+        /** Index of the ship where parsing failed. */
+        int failedShip;
+
+        private void grow() {
+            int n = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, n);
+            rows = Arrays.copyOf(rows, n);
+            columns = Arrays.copyOf(columns, n);
+            bearings = Arrays.copyOf(bearings, n);
+        }
+    }
+
+    private LayoutFormat() {
+    }
+
+    /**
+     * Returns whether a line carries no layout: blank, or a comment.
+     *
+     * @param buf the buffer holding the line
+     * @param start the index of the first byte of the line
+     * @param end the index after the last byte of the line, excluding the line terminator
+     * @return true if the line is to be skipped
+     */
+    static boolean isBlank(ByteBuffer buf, int start, int end) {
+        int i = skipSpace(buf, start, end);
+        return i == end || buf.get(i) == '#';
+    }
+
+    /**
+     * Parses one line.
+     *
+     * @param buf the buffer holding the line
+     * @param start the index of the first byte of the line
+     * @param end the index after the last byte of the line, excluding the line terminator
+     * @param record where to store the ships
+     * @return {@link #OK}, or the reason the line could not be parsed, in which case
+     *         {@link Record#failedShip} tells the offending ship
+     */
+    static int parse(ByteBuffer buf, int start, int end, Record record) {
+        record.count = 0;
+        int i = skipSpace(buf, start, end);
+        while (i < end) {
+            int ship = record.count;
+            record.failedShip = ship;
+            if (ship == record.kinds.length)
+                record.grow();
+
+            int tokenEnd = tokenEnd(buf, i, end);
+            int kind = kindCode(buf, i, tokenEnd);
+            if (kind < 0)
+                return UNKNOWN_KIND;
+
+            i = skipSpace(buf, tokenEnd, end);
+            tokenEnd = tokenEnd(buf, i, end);
+            int row = parseInt(buf, i, tokenEnd);
+            i = skipSpace(buf, tokenEnd, end);
+            tokenEnd = tokenEnd(buf, i, end);
+            int column = parseInt(buf, i, tokenEnd);
+            if (row == Integer.MIN_VALUE || column == Integer.MIN_VALUE)
+                return MALFORMED;
+
+            i = skipSpace(buf, tokenEnd, end);
+            tokenEnd = tokenEnd(buf, i, end);
+            if (tokenEnd == i)
+                return MALFORMED;
+            Compass bearing = tokenEnd - i == 1 ? Compass.charToCompass((char) buf.get(i)) : Compass.UNKNOWN;
+            if (ShipShape.bearingIndex(bearing) < 0)
+                return INVALID_BEARING;
+
+            record.kinds[ship] = kind;
+            record.rows[ship] = row;
+            record.columns[ship] = column;
+            record.bearings[ship] = bearing;
+            record.count++;
+            i = skipSpace(buf, tokenEnd, end);
+        }
+        return OK;
+    }
+
+    /**
+     * Appends a fleet to a builder as one line of this format, with kind codes.
+     *
+     * @param fleet the fleet
+     * @param sb where to append the line, including its terminating newline
+     */
+    static void append(IFleet fleet, StringBuilder sb) {
+        boolean first = true;
+        for (IShip s : fleet.getShips()) {
+            if (!first)
+                sb.append(' ');
+            first = false;
+            sb.append(GameCodec.kindCode(s.getCategory())).append(' ').append(s.getPosition().getRow()).append(' ')
+                    .append(s.getPosition().getColumn()).append(' ').append(s.getBearing().getDirection());
+        }
+        sb.append('\n');
+    }
+
+    private static int kindCode(ByteBuffer buf, int start, int end) {
+        int length = end - start;
+        if (length == 1) {
+            int code = buf.get(start) - '0';
+            return code >= 0 && code < GameCodec.KIND_COUNT ? code : -1;
+        }
+        for (int k = 0; k < KIND_NAMES.length; k++) {
+            byte[] name = KIND_NAMES[k];
+            if (name.length != length)
+                continue;
+            int j = 0;
+            while (j < length && buf.get(start + j) == name[j])
+                j++;
+            if (j == length)
+                return k;
+        }
+        return -1;
+    }
+
+    /** Returns the value of a token, or Integer.MIN_VALUE if it is empty or not a number. */
+    private static int parseInt(ByteBuffer buf, int start, int end) {
+        boolean negative = end - start > 1 && buf.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 9)
+            return Integer.MIN_VALUE;
+        int value = 0;
+        for (; i < end; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9)
+                return Integer.MIN_VALUE;
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    private static int skipSpace(ByteBuffer buf, int i, int end) {
+        while (i < end && buf.get(i) <= ' ' && buf.get(i) >= 0)
+            i++;
+        return i;
+    }
+
+    private static int tokenEnd(ByteBuffer buf, int i, int end) {
+        while (i < end && (buf.get(i) > ' ' || buf.get(i) < 0))
+            i++;
+        return i;
+    }
+}
@@ -0,0 +1,352 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks large files of fleet layouts, in the format of {@link LayoutFormat},
+ * against the placement rules of {@link Fleet#addShip}: every ship inside the
+ * board, no ship touching another (diagonals included), and no more ships than
+ * the fleet accepts.
+ *
+ * The file is memory-mapped and split into chunks at line boundaries, which are
+ * validated in parallel. No ship or position objects are created: each ship is
+ * checked with the row masks of its {@link ShipShape} against a per-line halo
+ * mask of the ships placed before it. A layout is rejected at its first ship that
+ * {@link Fleet#addShip} would refuse.
+ *
+ * Rejected layouts are written, in file order, as tab-separated lines
+ * {@code line reason ship layout}, where {@code line} is the 1-based line number,
+ * {@code ship} the 0-based index of the offending ship and {@code reason} one of
+ * {@code malformed}, {@code unknown-kind}, {@code invalid-bearing},
+ * {@code outside-board}, {@code too-close} or {@code fleet-full}.
+ *
+ * Usage: {@code java iscteiul.ista.battleship.LayoutValidator layouts.txt rejects.tsv [--threads n]}
+ */
+public final class LayoutValidator {
+
+    /** A ship is not entirely inside the board. */
+    static final int OUTSIDE_BOARD = 4;
+    /** A ship touches a ship placed before it. */
+    static final int TOO_CLOSE = 5;
+    /** The fleet already has as many ships as it accepts. */
+    static final int FLEET_FULL = 6;
+
+    /** Names of the reasons, indexed by code; codes 1 to 3 are those of {@link LayoutFormat}. */
+    static final String[] REASONS = {
+            "ok", "malformed", "unknown-kind", "invalid-bearing", "outside-board", "too-close", "fleet-full"};
+
+    /** Smallest chunk worth a task of its own. */
+    private static final long MIN_CHUNK = 1 << 20;
+    /** Largest chunk, well below the 2 GiB limit of a mapping. */
+    private static final long MAX_CHUNK = 1 << 28;
+
+    /** Number of ints recorded per rejected layout. */
+    private static final int REJECT_INTS = 5;
+
+    /**
+     * Counts of a validation run.
+     */
+    public static final class Summary {
+        private long lines;
+        private long layouts;
+        private final long[] reasons = new long[REASONS.length];
+
+        /**
+         * Returns the number of lines read, layouts or not.
+         *
+         * @return the number of lines
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * Returns the number of layouts checked.
+         *
+         * @return the number of non-blank, non-comment lines
+         */
+        public long getLayouts() {
+            return layouts;
+        }
+
+        /**
+         * Returns the number of layouts that passed every check.
+         *
+         * @return the number of accepted layouts
+         */
+        public long getAccepted() {
+            return reasons[LayoutFormat.OK];
+        }
+
+        /**
+         * Returns the number of rejected layouts.
+         *
+         * @return the number of rejected layouts
+         */
+        public long getRejected() {
+            return layouts - reasons[LayoutFormat.OK];
+        }
+
+        /**
+         * Returns the number of layouts rejected for the given reason.
+         *
+         * @param reason the name of the reason, as in the rejects file
+         * @return the number of layouts rejected for that reason
+         * @throws IllegalArgumentException if the reason is unknown
+         */
+        public long getRejected(String reason) {
+            for (int i = 1; i < REASONS.length; i++)
+                if (REASONS[i].equals(reason))
+                    return reasons[i];
+            throw new IllegalArgumentException("ERROR! unknown reason " + reason);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("lines=").append(lines).append(" layouts=").append(layouts)
+                    .append(" accepted=").append(getAccepted()).append(" rejected=").append(getRejected());
+            for (int i = 1; i < REASONS.length; i++)
+                sb.append(' ').append(REASONS[i]).append('=').append(reasons[i]);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * One part of the file, validated by one task. Rejects are kept as offsets
+     * into the mapped chunk until they are written.
+     */
+    private final class Chunk implements Callable<Chunk> {
+        private final FileChannel channel;
+        private final long start;
+        private final int length;
+        private MappedByteBuffer buf;
+        private int lines;
+        private long layouts;
+        private final long[] reasons = new long[REASONS.length];
+        /** Per reject: local line number, reason, ship, line start and line end. */
+        private int[] rejects = new int[REJECT_INTS * 16];
+        private int rejectCount;
+
+        private Chunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.length = (int) (end - start);
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            LayoutFormat.Record record = new LayoutFormat.Record();
+            long[] halo = new long[boardSize];
+            int lineStart = 0;
+            while (lineStart < length) {
+                int lineEnd = lineStart;
+                while (lineEnd < length && buf.get(lineEnd) != '\n')
+                    lineEnd++;
+                lines++;
+                if (!LayoutFormat.isBlank(buf, lineStart, lineEnd)) {
+                    layouts++;
+                    int reason = LayoutFormat.parse(buf, lineStart, lineEnd, record);
+                    if (reason == LayoutFormat.OK)
+                        reason = check(record, halo);
+                    reasons[reason]++;
+                    if (reason != LayoutFormat.OK)
+                        reject(reason, record.failedShip, lineStart, lineEnd);
+                }
+                lineStart = lineEnd + 1;
+            }
+            return this;
+        }
+
+        private void reject(int reason, int ship, int lineStart, int lineEnd) {
+            if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r')
+                lineEnd--;
+            if ((rejectCount + 1) * REJECT_INTS > rejects.length)
+                rejects = Arrays.copyOf(rejects, rejects.length * 2);
+            int i = rejectCount++ * REJECT_INTS;
+            rejects[i] = lines;
+            rejects[i + 1] = reason;
+            rejects[i + 2] = ship;
+            rejects[i + 3] = lineStart;
+            rejects[i + 4] = lineEnd;
+        }
+
+        /** Writes the rejects of this chunk, numbering lines from {@code firstLine}. */
+        private void writeRejects(OutputStream out, long firstLine) throws IOException {
+            byte[] line = new byte[256];
+            for (int r = 0; r < rejectCount; r++) {
+                int i = r * REJECT_INTS;
+                int lineStart = rejects[i + 3];
+                int lineLength = rejects[i + 4] - lineStart;
+                String prefix = (firstLine + rejects[i] - 1) + "\t" + REASONS[rejects[i + 1]] + "\t" + rejects[i + 2] + "\t";
+                out.write(prefix.getBytes(StandardCharsets.US_ASCII));
+                if (line.length < lineLength)
+                    line = new byte[lineLength];
+                buf.get(lineStart, line, 0, lineLength);
+                out.write(line, 0, lineLength);
+                out.write('\n');
+            }
+        }
+    }
+
+    private final int threads;
+    private final int boardSize;
+    private final long boardMask;
+
+    /**
+     * Creates a validator for the standard board.
+     *
+     * @param threads the number of chunks validated at the same time
+     */
+    public LayoutValidator(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("ERROR! at least one thread is needed");
+        this.threads = threads;
+        this.boardSize = Fleet.BOARD_SIZE;
+        this.boardMask = boardSize == Long.SIZE ? -1L : (1L << boardSize) - 1;
+    }
+
+    /**
+     * Validates a file of layouts and prints the summary.
+     *
+     * @param args the layouts file, the rejects file and optionally {@code --threads n}
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else
+                files.add(args[i]);
+        }
+        if (files.size() != 2) {
+            System.err.println("usage: LayoutValidator <layouts> <rejects> [--threads n]");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        Summary summary = new LayoutValidator(threads).validate(Paths.get(files.get(0)), Paths.get(files.get(1)));
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.println(summary + " millis=" + millis + " layouts/s=" + summary.getLayouts() * 1000 / millis);
+    }
+
+    /**
+     * Validates a file of layouts.
+     *
+     * @param layouts the file to validate
+     * @param rejects the file where rejected layouts are written, replaced if it exists
+     * @return the counts of the run
+     * @throws IOException if a file cannot be read or written
+     */
+    public Summary validate(Path layouts, Path rejects) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(layouts, StandardOpenOption.READ);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(rejects), 1 << 16)) {
+            List<Future<Chunk>> futures = new ArrayList<>();
+            long size = channel.size();
+            long target = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, size / (threads * 4L)));
+            for (long start = 0; start < size; ) {
+                long end = Math.min(size, start + target);
+                if (end < size)
+                    end = nextLine(channel, end);
+                futures.add(executor.submit(new Chunk(channel, start, end)));
+                start = end;
+            }
+
+            Summary summary = new Summary();
+            for (Future<Chunk> f : futures) {
+                Chunk chunk = f.get();
+                chunk.writeRejects(out, summary.lines + 1);
+                summary.lines += chunk.lines;
+                summary.layouts += chunk.layouts;
+                for (int i = 0; i < REASONS.length; i++)
+                    summary.reasons[i] += chunk.reasons[i];
+            }
+            return summary;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("ERROR! interrupted while validating " + layouts, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException("ERROR! layout validation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks the ships of a parsed layout in order, as successive calls to
+     * {@link Fleet#addShip} would.
+     *
+     * @param record the layout; on failure, {@link LayoutFormat.Record#failedShip} is the refused ship
+     * @param halo scratch row masks, one per board row
+     * @return {@link LayoutFormat#OK}, {@link #OUTSIDE_BOARD}, {@link #TOO_CLOSE} or {@link #FLEET_FULL}
+     */
+    int check(LayoutFormat.Record record, long[] halo) {
+        Arrays.fill(halo, 0L);
+        for (int i = 0; i < record.count; i++) {
+            record.failedShip = i;
+            // Fleet.addShip accepts a ship while the fleet has at most FLEET_SIZE ships
+            if (i > Fleet.FLEET_SIZE)
+                return FLEET_FULL;
+
+            ShipShape shape = ShipShape.of(record.kinds[i], record.bearings[i]);
+            int row = record.rows[i];
+            int column = record.columns[i];
+            int top = row + shape.minRow;
+            int left = column + shape.minColumn;
+            if (top < 0 || left < 0 || row + shape.maxRow >= boardSize || column + shape.maxColumn >= boardSize)
+                return OUTSIDE_BOARD;
+
+            for (int k = 0; k < shape.body.length; k++)
+                if ((shape.bodyRow(k, left) & halo[top + k]) != 0)
+                    return TOO_CLOSE;
+            for (int k = 0; k < shape.halo.length; k++) {
+                int r = top - 1 + k;
+                if (r >= 0 && r < boardSize)
+                    halo[r] |= shape.haloRow(k, left) & boardMask;
+            }
+        }
+        return LayoutFormat.OK;
+    }
+
+    /** Returns the position just after the first newline at or after {@code from}, or the file size. */
+    private static long nextLine(FileChannel channel, long from) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(4096);
+        long pos = from;
+        while (true) {
+            block.clear();
+            int n = channel.read(block, pos);
+            if (n <= 0)
+                return channel.size();
+            for (int i = 0; i < n; i++)
+                if (block.get(i) == '\n')
+                    return pos + i + 1;
+            pos += n;
+        }
+    }
+}
@@ -0,0 +1,789 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Columnar archive of finished games, for balancing analysis over very many games.
+ *
+ * Each game is stored as one row: the valid shots fired, hits, ships sunk,
+ * repeated and invalid shots, the id of the fleet layout it was played on, and
+ * the kinds of the ships in the order they sank. Rows are grouped in blocks of
+ * 65536 games, and inside a block each column is stored on its
+ * own: numbers as zigzag variable-length deltas from the previous row, sink
+ * orders as a count column plus kind codes packed two per byte. A typical game
+ * takes about a dozen bytes.
+ *
+ * A footer lists every block with its position and the smallest and largest
+ * value of each numeric column. A {@link #scan(Query, int)} uses it to skip the
+ * blocks no game of which can match the filters of the query, and to accept
+ * whole blocks all of whose games match; within the other blocks it decodes the
+ * filtered columns first, and the aggregated ones only if some game matched.
+ * Blocks are read and aggregated in parallel.
+ *
+ * File layout: magic, version, blocks, footer, then the footer position, the
+ * number of blocks and the magic again.
+ *
+ * Usage: {@code java iscteiul.ista.battleship.OutcomeArchive archive [--threads n]}
+ * prints the aggregates of every game of an archive.
+ */
+public final class OutcomeArchive {
+
+    /**
+     * The numeric columns of the archive.
+     */
+    public enum Column {
+        /** Valid shots fired: shots inside the board, not repeated. */
+        SHOTS,
+        /** Valid shots that hit a ship. */
+        HITS,
+        /** Ships sunk. */
+        SUNK,
+        /** Shots at cells already shot. */
+        REPEATED,
+        /** Shots outside the board. */
+        INVALID,
+        /** Id of the fleet layout, chosen by the writer (e.g. the seed of the fleet). */
+        LAYOUT
+    }
+
+    /** Games per block. */
+    static final int BLOCK_ROWS = 1 << 16;
+
+    private static final int MAGIC = 0x42534f41;
+    private static final int VERSION = 1;
+    private static final int COLUMNS = Column.values().length;
+    /** Column of the packed kind codes of the sink orders, after the numeric ones. */
+    private static final int KINDS = COLUMNS;
+    /** Bytes per block in the footer: position, length, rows and the bounds of each column. */
+    private static final int FOOTER_ENTRY = 16 + COLUMNS * 16;
+    /** Bytes after the footer: its position, the number of blocks and the magic. */
+    private static final int TRAILER = 16;
+    /** Blocks per parallel task. */
+    private static final int BLOCKS_PER_TASK = 4;
+
+    /**
+     * Appends games to a new archive.
+     *
+     * Not thread-safe: games must be added from one thread at a time.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final int blockRows;
+        private final long[][] columns = new long[COLUMNS][];
+        private byte[] kinds = new byte[256];
+        private int kindCount;
+        private int rows;
+        private long position;
+        private long games;
+        private final List<long[]> blocks = new ArrayList<>();
+        /** One encoder per column, and one for the block header; null once closed. */
+        private Encoder[] encoders = new Encoder[COLUMNS + 2];
+
+        /**
+         * Creates an archive, replacing the file if it exists.
+         *
+         * @param file the archive file
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(Path file) throws IOException {
+            this(file, BLOCK_ROWS);
+        }
+
+        Writer(Path file, int blockRows) throws IOException {
+            this.blockRows = blockRows;
+            for (int c = 0; c < COLUMNS; c++)
+                columns[c] = new long[blockRows];
+            for (int c = 0; c < encoders.length; c++)
+                encoders[c] = new Encoder();
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            position = 5;
+        }
+
+        /**
+         * Adds the outcome of a game. The sink order is recomputed from the shots, so
+         * it is also right for games restored from disk.
+         *
+         * @param game the game, usually finished
+         * @param layoutId the id of the fleet layout of the game
+         * @throws IOException if the archive cannot be written
+         */
+        public void add(Game game, long layoutId) throws IOException {
+            Map<IShip, Integer> hits = new IdentityHashMap<>();
+            List<IShip> sunk = new ArrayList<>();
+            for (IPosition pos : game.getShots()) {
+                IShip s = game.getFleet().shipAt(pos);
+                if (s != null && hits.merge(s, 1, Integer::sum) == s.getPositions().size())
+                    sunk.add(s);
+            }
+            byte[] order = new byte[sunk.size()];
+            for (int i = 0; i < order.length; i++)
+                order[i] = (byte) GameCodec.kindCode(sunk.get(i).getCategory());
+            add(game.getShots().size(), game.getHits(), game.getRepeatedShots(), game.getInvalidShots(),
+                    layoutId, order);
+        }
+
+        /**
+         * Adds the outcome of a game from its figures.
+         *
+         * @param shots the valid shots fired
+         * @param hits the valid shots that hit a ship
+         * @param repeated the shots at cells already shot
+         * @param invalid the shots outside the board
+         * @param layoutId the id of the fleet layout of the game
+         * @param sinkOrder the kind codes, as in {@link GameCodec#kind(int)}, of the ships in the order they sank
+         * @throws IOException if the archive cannot be written
+         * @throws IllegalArgumentException if a figure is negative or a kind code is invalid
+         */
+        public void add(int shots, int hits, int repeated, int invalid, long layoutId, byte[] sinkOrder)
+                throws IOException {
+            if (shots < 0 || hits < 0 || repeated < 0 || invalid < 0)
+                throw new IllegalArgumentException("ERROR! game figures cannot be negative");
+            for (byte kind : sinkOrder)
+                if (kind < 0 || kind >= GameCodec.KIND_COUNT)
+                    throw new IllegalArgumentException("ERROR! invalid ship kind " + kind);
+            columns[Column.SHOTS.ordinal()][rows] = shots;
+            columns[Column.HITS.ordinal()][rows] = hits;
+            columns[Column.SUNK.ordinal()][rows] = sinkOrder.length;
+            columns[Column.REPEATED.ordinal()][rows] = repeated;
+            columns[Column.INVALID.ordinal()][rows] = invalid;
+            columns[Column.LAYOUT.ordinal()][rows] = layoutId;
+            if (kindCount + sinkOrder.length > kinds.length)
+                kinds = Arrays.copyOf(kinds, Math.max(kinds.length * 2, kindCount + sinkOrder.length));
+            System.arraycopy(sinkOrder, 0, kinds, kindCount, sinkOrder.length);
+            kindCount += sinkOrder.length;
+            rows++;
+            games++;
+            if (rows == blockRows)
+                flush();
+        }
+
+        /**
+         * Returns the number of games added so far.
+         *
+         * @return the number of games
+         */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * Writes the last block and the footer, and closes the file.
+         *
+         * @throws IOException if the archive cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            if (encoders == null)
+                return;
+            try {
+                if (rows > 0)
+                    flush();
+                long footer = position;
+                for (long[] block : blocks)
+                    for (long v : block)
+                        out.writeLong(v);
+                out.writeLong(footer);
+                out.writeInt(blocks.size());
+                out.writeInt(MAGIC);
+            } finally {
+                encoders = null;
+                out.close();
+            }
+        }
+
+        /** Encodes the pending rows as a block; the footer entry keeps position, length, rows and bounds. */
+        private void flush() throws IOException {
+            long[] entry = new long[2 + 2 * COLUMNS];
+            for (int c = 0; c < COLUMNS; c++) {
+                long[] values = columns[c];
+                long min = Long.MAX_VALUE, max = Long.MIN_VALUE, previous = 0;
+                Encoder encoder = encoders[c];
+                encoder.reset();
+                for (int i = 0; i < rows; i++) {
+                    long v = values[i];
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                    encoder.writeVarLong((v - previous) << 1 ^ (v - previous) >> 63);
+                    previous = v;
+                }
+                entry[2 + 2 * c] = min;
+                entry[3 + 2 * c] = max;
+            }
+            Encoder packed = encoders[KINDS];
+            packed.reset();
+            for (int i = 0; i < kindCount; i += 2)
+                packed.writeByte(kinds[i] | (i + 1 < kindCount ? kinds[i + 1] << 4 : 0));
+
+            Encoder header = encoders[KINDS + 1];
+            header.reset();
+            header.writeVarLong(rows);
+            for (int c = 0; c <= KINDS; c++)
+                header.writeVarLong(encoders[c].length());
+            out.write(header.bytes(), 0, header.length());
+            long length = header.length();
+            for (int c = 0; c <= KINDS; c++) {
+                out.write(encoders[c].bytes(), 0, encoders[c].length());
+                length += encoders[c].length();
+            }
+            entry[0] = position;
+            entry[1] = length << 32 | rows;
+            blocks.add(entry);
+            position += length;
+            rows = 0;
+            kindCount = 0;
+        }
+    }
+
+    /**
+     * What a {@link #scan(Query, int)} filters and aggregates. Filters are closed
+     * ranges on numeric columns, all of which a game must match.
+     */
+    public static final class Query {
+        private final long[] min = new long[COLUMNS];
+        private final long[] max = new long[COLUMNS];
+        private final boolean[] filtered = new boolean[COLUMNS];
+        private final boolean[] aggregated = new boolean[COLUMNS];
+        private boolean sinkOrder;
+
+        /**
+         * Creates a query that counts every game.
+         */
+        public Query() {
+            Arrays.fill(min, Long.MIN_VALUE);
+            Arrays.fill(max, Long.MAX_VALUE);
+        }
+
+        /**
+         * Keeps only the games whose value of a column is in a range; a second
+         * filter on the same column narrows the range.
+         *
+         * @param column the column
+         * @param from the smallest value kept
+         * @param to the largest value kept
+         * @return this query
+         */
+        public Query where(Column column, long from, long to) {
+            int c = column.ordinal();
+            min[c] = Math.max(min[c], from);
+            max[c] = Math.min(max[c], to);
+            filtered[c] = true;
+            return this;
+        }
+
+        /**
+         * Adds the sum, smallest and largest value of columns to the results.
+         *
+         * @param columns the columns
+         * @return this query
+         */
+        public Query aggregate(Column... columns) {
+            for (Column column : columns)
+                aggregated[column.ordinal()] = true;
+            return this;
+        }
+
+        /**
+         * Adds to the results how many times each kind of ship sank at each place
+         * of the sink order.
+         *
+         * @return this query
+         */
+        public Query sinkOrder() {
+            sinkOrder = true;
+            return this;
+        }
+
+        /** Returns whether no game of a block can match, from the bounds of its columns. */
+        private boolean excludes(long[] entry) {
+            for (int c = 0; c < COLUMNS; c++)
+                if (filtered[c] && (entry[3 + 2 * c] < min[c] || entry[2 + 2 * c] > max[c]))
+                    return true;
+            return false;
+        }
+
+        /** Returns whether every game of a block matches a filter on a column, from its bounds. */
+        private boolean covers(long[] entry, int c) {
+            return !filtered[c] || (entry[2 + 2 * c] >= min[c] && entry[3 + 2 * c] <= max[c]);
+        }
+    }
+
+    /**
+     * The aggregates of a {@link #scan(Query, int)}.
+     */
+    public static final class Result {
+        private long games;
+        private final long[] sums = new long[COLUMNS];
+        private final long[] mins = new long[COLUMNS];
+        private final long[] maxs = new long[COLUMNS];
+        private long[][] sinkRanks = new long[GameCodec.KIND_COUNT][Fleet.FLEET_SIZE + 1];
+        private int blocksRead;
+        private int blocksSkipped;
+
+        private Result() {
+            Arrays.fill(mins, Long.MAX_VALUE);
+            Arrays.fill(maxs, Long.MIN_VALUE);
+        }
+
+        /**
+         * Returns the number of games that match the filters.
+         *
+         * @return the number of games
+         */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * Returns the sum of an aggregated column over the matching games.
+         *
+         * @param column the column
+         * @return the sum, or 0 if the column was not aggregated
+         */
+        public long getSum(Column column) {
+            return sums[column.ordinal()];
+        }
+
+        /**
+         * Returns the mean of an aggregated column over the matching games.
+         *
+         * @param column the column
+         * @return the mean, or NaN if no game matched
+         */
+        public double getMean(Column column) {
+            return games == 0 ? Double.NaN : (double) sums[column.ordinal()] / games;
+        }
+
+        /**
+         * Returns the smallest value of an aggregated column over the matching games.
+         *
+         * @param column the column
+         * @return the smallest value, or {@link Long#MAX_VALUE} if no game matched
+         */
+        public long getMin(Column column) {
+            return mins[column.ordinal()];
+        }
+
+        /**
+         * Returns the largest value of an aggregated column over the matching games.
+         *
+         * @param column the column
+         * @return the largest value, or {@link Long#MIN_VALUE} if no game matched
+         */
+        public long getMax(Column column) {
+            return maxs[column.ordinal()];
+        }
+
+        /**
+         * Returns how many times ships of a kind were the {@code rank}-th to sink in
+         * the matching games, if the query asked for sink orders.
+         *
+         * @param kind the kind of ship, such as {@code "nau"}
+         * @param rank the place in the sink order, from 0 for the first ship sunk
+         * @return the number of times
+         * @throws IllegalArgumentException if the kind is unknown
+         */
+        public long getSinkRank(String kind, int rank) {
+            long[] ranks = sinkRanks[GameCodec.kindCode(kind)];
+            return rank >= 0 && rank < ranks.length ? ranks[rank] : 0;
+        }
+
+        /**
+         * Returns the number of blocks decoded, in part or in full.
+         *
+         * @return the number of blocks read
+         */
+        public int getBlocksRead() {
+            return blocksRead;
+        }
+
+        /**
+         * Returns the number of blocks whose column bounds showed that no game could match.
+         *
+         * @return the number of blocks skipped
+         */
+        public int getBlocksSkipped() {
+            return blocksSkipped;
+        }
+
+        private void countSink(int kind, int rank) {
+            ensureRanks(rank + 1);
+            sinkRanks[kind][rank]++;
+        }
+
+        private void ensureRanks(int ranks) {
+            if (ranks > sinkRanks[0].length)
+                for (int k = 0; k < sinkRanks.length; k++)
+                    sinkRanks[k] = Arrays.copyOf(sinkRanks[k], Math.max(ranks, sinkRanks[k].length * 2));
+        }
+
+        private void merge(Result other) {
+            games += other.games;
+            for (int c = 0; c < COLUMNS; c++) {
+                sums[c] += other.sums[c];
+                mins[c] = Math.min(mins[c], other.mins[c]);
+                maxs[c] = Math.max(maxs[c], other.maxs[c]);
+            }
+            ensureRanks(other.sinkRanks[0].length);
+            for (int k = 0; k < sinkRanks.length; k++)
+                for (int r = 0; r < other.sinkRanks[k].length; r++)
+                    sinkRanks[k][r] += other.sinkRanks[k][r];
+            blocksRead += other.blocksRead;
+            blocksSkipped += other.blocksSkipped;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("games=").append(games);
+            for (Column column : Column.values())
+                if (maxs[column.ordinal()] >= mins[column.ordinal()])
+                    sb.append(' ').append(column.name().toLowerCase()).append("=")
+                            .append(String.format("%.2f", getMean(column)))
+                            .append('[').append(getMin(column)).append("..").append(getMax(column)).append(']');
+            sb.append(" blocks=").append(blocksRead).append(" skipped=").append(blocksSkipped);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A run of blocks scanned by one task into its own result.
+     */
+    private final class Task implements Callable<Result> {
+        private final FileChannel channel;
+        private final Query query;
+        private final int from;
+        private final int to;
+        private final Result result = new Result();
+        private ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        private long[] values = new long[0];
+        private int[] selection = new int[0];
+
+        private Task(FileChannel channel, Query query, int from, int to) {
+            this.channel = channel;
+            this.query = query;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Result call() throws IOException {
+            for (int b = from; b < to; b++) {
+                long[] entry = blocks[b];
+                if (query.excludes(entry)) {
+                    result.blocksSkipped++;
+                    continue;
+                }
+                int rows = (int) entry[1];
+                boolean needsRows = query.sinkOrder;
+                for (int c = 0; c < COLUMNS; c++)
+                    needsRows |= query.aggregated[c] || !query.covers(entry, c);
+                if (!needsRows) {
+                    // every game matches and only the count is wanted
+                    result.games += rows;
+                    continue;
+                }
+                result.blocksRead++;
+                scanBlock(entry, rows);
+            }
+            return result;
+        }
+
+        private void scanBlock(long[] entry, int rows) throws IOException {
+            int length = (int) (entry[1] >>> 32);
+            if (buf.capacity() < length)
+                buf = ByteBuffer.allocate(length);
+            buf.clear().limit(length);
+            long at = entry[0];
+            while (buf.hasRemaining()) {
+                int n = channel.read(buf, at + buf.position());
+                if (n < 0)
+                    throw new IOException("ERROR! archive truncated in a block");
+            }
+            byte[] data = buf.array();
+            if (values.length < rows) {
+                values = new long[rows];
+                selection = new int[rows];
+            }
+
+            // block header: rows, then the length of each column
+            int[] offsets = new int[COLUMNS + 2];
+            long[] header = new long[COLUMNS + 2];
+            int p = decode(data, 0, header, 0, COLUMNS + 2, false);
+            offsets[0] = p;
+            for (int c = 0; c <= COLUMNS; c++)
+                offsets[c + 1] = offsets[c] + (int) header[c + 1];
+
+            int selected = rows;
+            for (int i = 0; i < rows; i++)
+                selection[i] = i;
+            for (int c = 0; c < COLUMNS && selected > 0; c++) {
+                if (query.covers(entry, c))
+                    continue;
+                decode(data, offsets[c], values, 0, rows, true);
+                int kept = 0;
+                for (int s = 0; s < selected; s++) {
+                    long v = values[selection[s]];
+                    if (v >= query.min[c] && v <= query.max[c])
+                        selection[kept++] = selection[s];
+                }
+                selected = kept;
+            }
+            result.games += selected;
+            if (selected == 0)
+                return;
+
+            for (int c = 0; c < COLUMNS; c++) {
+                if (!query.aggregated[c])
+                    continue;
+                decode(data, offsets[c], values, 0, rows, true);
+                long sum = 0, min = result.mins[c], max = result.maxs[c];
+                for (int s = 0; s < selected; s++) {
+                    long v = values[selection[s]];
+                    sum += v;
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                result.sums[c] += sum;
+                result.mins[c] = min;
+                result.maxs[c] = max;
+            }
+
+            if (query.sinkOrder) {
+                decode(data, offsets[Column.SUNK.ordinal()], values, 0, rows, true);
+                int kindStart = offsets[KINDS];
+                long kind = 0;
+                for (int i = 0, s = 0; s < selected; i++) {
+                    int count = (int) values[i];
+                    if (selection[s] == i) {
+                        for (int r = 0; r < count; r++) {
+                            long k = kind + r;
+                            int code = data[kindStart + (int) (k >>> 1)] >>> ((k & 1) << 2) & 0xF;
+                            result.countSink(code, r);
+                        }
+                        s++;
+                    }
+                    kind += count;
+                }
+            }
+        }
+    }
+
+    private final Path file;
+    private final long[][] blocks;
+    private final long games;
+
+    /**
+     * Opens an archive, reading the footer.
+     *
+     * @param file the archive file
+     * @throws IOException if the file cannot be read or is not an archive
+     */
+    public OutcomeArchive(Path file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 5 + TRAILER)
+                throw new IOException("ERROR! " + file + " is not a game archive");
+            ByteBuffer head = read(channel, 0, 5);
+            if (head.getInt() != MAGIC)
+                throw new IOException("ERROR! " + file + " is not a game archive");
+            int version = head.get();
+            if (version != VERSION)
+                throw new IOException("ERROR! unsupported game archive version " + version);
+            ByteBuffer trailer = read(channel, size - TRAILER, TRAILER);
+            long footer = trailer.getLong();
+            int count = trailer.getInt();
+            if (trailer.getInt() != MAGIC || count < 0 || footer + (long) count * FOOTER_ENTRY != size - TRAILER)
+                throw new IOException("ERROR! " + file + " is truncated or was not closed");
+            ByteBuffer entries = read(channel, footer, count * FOOTER_ENTRY);
+            blocks = new long[count][2 + 2 * COLUMNS];
+            long total = 0;
+            for (long[] entry : blocks) {
+                for (int i = 0; i < entry.length; i++)
+                    entry[i] = entries.getLong();
+                total += (int) entry[1];
+            }
+            games = total;
+        }
+    }
+
+    /**
+     * Returns the number of games in the archive.
+     *
+     * @return the number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of blocks in the archive.
+     *
+     * @return the number of blocks
+     */
+    public int getBlocks() {
+        return blocks.length;
+    }
+
+    /**
+     * Aggregates the games that match a query, reading blocks in parallel.
+     *
+     * @param query the filters and aggregates
+     * @param threads the number of blocks read at the same time
+     * @return the aggregates
+     * @throws IOException if the archive cannot be read
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public Result scan(Query query, int threads) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("ERROR! at least one thread is needed");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int from = 0; from < blocks.length; from += BLOCKS_PER_TASK)
+                futures.add(executor.submit(new Task(channel, query, from, Math.min(blocks.length, from + BLOCKS_PER_TASK))));
+            Result result = new Result();
+            for (Future<Result> f : futures)
+                result.merge(f.get());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("ERROR! interrupted while scanning " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException("ERROR! archive scan failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Prints the aggregates of every game of an archive and its sink orders.
+     *
+     * @param args the archive file and optionally {@code --threads n}
+     * @throws IOException if the archive cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else
+                files.add(args[i]);
+        }
+        if (files.size() != 1) {
+            System.err.println("usage: OutcomeArchive <archive> [--threads n]");
+            System.exit(2);
+        }
+        OutcomeArchive archive = new OutcomeArchive(Paths.get(files.get(0)));
+        long start = System.nanoTime();
+        Result result = archive.scan(new Query().aggregate(Column.values()).sinkOrder(), threads);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.println(result + " millis=" + millis + " games/s=" + result.getGames() * 1000 / millis);
+        for (int k = 0; k < GameCodec.KIND_COUNT; k++) {
+            StringBuilder sb = new StringBuilder(String.format("%-9s", GameCodec.kind(k)));
+            for (int r = 0; r <= Fleet.FLEET_SIZE; r++)
+                sb.append(String.format(" %6.1f%%", 100.0 * result.getSinkRank(GameCodec.kind(k), r)
+                        / Math.max(1, result.getGames())));
+            System.out.println(sb);
+        }
+    }
+
+    /**
+     * Decodes variable-length integers.
+     *
+     * @param data the bytes
+     * @param p where the first integer starts
+     * @param out where to store the integers
+     * @param from the first index of {@code out}
+     * @param count the number of integers
+     * @param deltas whether the integers are zigzag deltas from the previous one
+     * @return the position after the last integer
+     */
+    static int decode(byte[] data, int p, long[] out, int from, int count, boolean deltas) {
+        long previous = 0;
+        for (int i = from; i < from + count; i++) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[p++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (deltas) {
+                previous += v >>> 1 ^ -(v & 1);
+                out[i] = previous;
+            } else {
+                out[i] = v;
+            }
+        }
+        return p;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long at, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining())
+            if (channel.read(buf, at + buf.position()) < 0)
+                throw new IOException("ERROR! unexpected end of game archive");
+        return buf.flip();
+    }
+
+    /** A growable byte array for encoding columns. */
+    private static final class Encoder {
+        private byte[] bytes = new byte[1 << 12];
+        private int length;
+
+        void reset() {
+            length = 0;
+        }
+
+        void writeByte(int b) {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            bytes[length++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        int length() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The origins where a ship of each kind and bearing can still be placed in a
+ * fleet, kept up to date as ships are added and removed.
+ *
+ * A ship may not touch another, diagonals included, so each ship of the fleet
+ * blocks its halo: its cells and their neighbours. The mask counts, for every
+ * blocked cell, the ships whose halo covers it, and for every shape and origin
+ * that fits the board, the blocked cells under the body of a ship placed there.
+ * A placement is legal when it fits the board, which is plain arithmetic on the
+ * extents of the shape, and that count is zero.
+ *
+ * Adding or removing a ship only touches the cells of its halo whose count goes
+ * to or from zero, and for each, the origins of the shapes whose body covers it.
+ * Both counts live in a {@link CellIndex} and only for cells and origins near a
+ * ship, so, like the fleet, the mask grows with its ships, not with the area of
+ * the board.
+ */
+final class PlacementMask {
+
+    private final int boardSize;
+    /** Per blocked cell: the number of ships whose halo covers it. */
+    private final CellIndex<Integer> blocked = new CellIndex<>();
+    /** Per shape, per origin that fits the board: the number of blocked cells under the body. */
+    private final CellIndex<Integer>[] conflicts;
+    /** Cells of the halo being updated, as {@link CellIndex#key(int, int)} keys. */
+    private long[] halo = new long[32];
+
+    /**
+     * Creates the mask of an empty board.
+     *
+     * @param boardSize the number of rows and columns of the board
+     */
+    @SuppressWarnings("unchecked")
+    PlacementMask(int boardSize) {
+        this.boardSize = boardSize;
+        conflicts = new CellIndex[ShipShape.count()];
+        for (int k = 0; k < conflicts.length; k++)
+            conflicts[k] = new CellIndex<>();
+    }
+
+    /**
+     * Blocks the halo of a ship.
+     *
+     * @param ship the ship added to the fleet
+     */
+    void add(IShip ship) {
+        update(ship, 1);
+    }
+
+    /**
+     * Releases the halo of a ship.
+     *
+     * @param ship a ship removed from the fleet, previously given to {@link #add(IShip)}
+     */
+    void remove(IShip ship) {
+        update(ship, -1);
+    }
+
+    /**
+     * Returns whether a ship of a shape fits the board and touches no ship at an origin.
+     *
+     * @param shape the index of the shape
+     * @param row the row of the reference position of the ship
+     * @param column the column of the reference position of the ship
+     * @return true if the placement is legal
+     */
+    boolean isLegal(int shape, int row, int column) {
+        return fits(ShipShape.get(shape), row, column) && conflicts[shape].get(row, column) == null;
+    }
+
+    /**
+     * Returns the number of legal origins of a shape.
+     *
+     * @param shape the index of the shape
+     * @return the number of origins, at most {@link Integer#MAX_VALUE}
+     */
+    int count(int shape) {
+        ShipShape s = ShipShape.get(shape);
+        long rows = Math.max(0, boardSize - (s.maxRow - s.minRow));
+        long columns = Math.max(0, boardSize - (s.maxColumn - s.minColumn));
+        // every origin with a conflict fits the board
+        return (int) Math.min(Integer.MAX_VALUE, rows * columns - conflicts[shape].size());
+    }
+
+    /**
+     * Returns the legal origins of a shape.
+     *
+     * @param shape the index of the shape
+     * @return the reference positions, in row-major order
+     */
+    List<IPosition> origins(int shape) {
+        ShipShape s = ShipShape.get(shape);
+        CellIndex<Integer> taken = conflicts[shape];
+        List<IPosition> origins = new ArrayList<>();
+        for (int row = -s.minRow; row + s.maxRow < boardSize; row++)
+            for (int column = -s.minColumn; column + s.maxColumn < boardSize; column++)
+                if (taken.get(row, column) == null)
+                    origins.add(new Position(row, column));
+        return origins;
+    }
+
+    /** Returns whether a ship of a shape placed at an origin lies inside the board. */
+    private boolean fits(ShipShape shape, int row, int column) {
+        return row + shape.minRow >= 0 && row + shape.maxRow < boardSize
+                && column + shape.minColumn >= 0 && column + shape.maxColumn < boardSize;
+    }
+
+    private void update(IShip ship, int delta) {
+        int n = collectHalo(ship);
+        for (int h = 0; h < n; h++) {
+            int row = (int) (halo[h] >> 32);
+            int column = (int) halo[h];
+            // only a cell that becomes blocked or free changes the origins
+            if (add(blocked, row, column, delta) != (delta > 0 ? 1 : 0))
+                continue;
+            for (int k = 0; k < conflicts.length; k++) {
+                ShipShape shape = ShipShape.get(k);
+                for (int i = 0; i < shape.size; i++) {
+                    int r = row - shape.rowOffsets[i];
+                    int c = column - shape.columnOffsets[i];
+                    if (fits(shape, r, c))
+                        add(conflicts[k], r, c, delta);
+                }
+            }
+        }
+    }
+
+    /** Adds to the count of a cell, dropping the cell when it reaches zero; returns the new count. */
+    private static int add(CellIndex<Integer> counts, int row, int column, int delta) {
+        Integer previous = counts.get(row, column);
+        int count = (previous == null ? 0 : previous) + delta;
+        if (count == 0)
+            counts.remove(row, column);
+        else
+            counts.put(row, column, count);
+        return count;
+    }
+
+    /** Gathers the distinct cells of the board in the halo of a ship; returns how many. */
+    private int collectHalo(IShip ship) {
+        int n = 0;
+        for (IPosition p : ship.getPositions()) {
+            for (int r = p.getRow() - 1; r <= p.getRow() + 1; r++) {
+                for (int c = p.getColumn() - 1; c <= p.getColumn() + 1; c++) {
+                    if (r < 0 || r >= boardSize || c < 0 || c >= boardSize)
+                        continue;
+                    long cell = CellIndex.key(r, c);
+                    boolean seen = false;
+                    for (int h = 0; h < n && !seen; h++)
+                        seen = halo[h] == cell;
+                    if (seen)
+                        continue;
+                    if (n == halo.length)
+                        halo = Arrays.copyOf(halo, n * 2);
+                    halo[n++] = cell;
+                }
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Searches for fleet layouts that take reference shooters as many shots as
+ * possible to sink.
+ *
+ * Each of several independent chains of simulated annealing starts from a random
+ * standard fleet and, at every step, moves one ship to another place where the
+ * fleet accepts it, drawn from {@link Fleet#legalOrigins(String, Compass)}, which
+ * follows ships added and removed without re-checking the board. The fitness of a
+ * layout is the mean number of shots a batch of games takes every reference
+ * shooter to sink it. All layouts are played with the same seeds, so that the
+ * difference between two layouts is not drowned by the luck of the shooters; the
+ * fleet is reused from game to game, with {@link Game#undo()} taking the shots
+ * back. A worse layout is still accepted with the probability of the Metropolis
+ * rule, at a temperature that cools geometrically over the steps.
+ *
+ * Chains run in parallel, each with its own shooters, and depend only on the seed,
+ * so results do not depend on the number of threads. Tuned to its own seeds, the
+ * best layout of a chain looks better than it is: the layouts are ranked by a new
+ * batch of games, on other seeds.
+ */
+public final class PlacementOptimizer {
+
+    /** Temperatures at the first and the last step, in shots. */
+    private static final double HOT = 2.0;
+    private static final double COLD = 0.05;
+
+    /**
+     * A layout found by the optimiser.
+     */
+    public static final class Layout {
+        private final Fleet fleet;
+        private final double[] shots;
+        private final double trainingShots;
+
+        Layout(Fleet fleet, double[] shots, double trainingShots) {
+            this.fleet = fleet;
+            this.shots = shots;
+            this.trainingShots = trainingShots;
+        }
+
+        /**
+         * Returns the fleet of the layout, with no ship hit.
+         *
+         * @return the fleet
+         */
+        public IFleet getFleet() {
+            return fleet;
+        }
+
+        /**
+         * Returns the mean number of shots the reference shooters take to sink the
+         * fleet, in the games played for ranking.
+         *
+         * @return the mean number of shots
+         */
+        public double getExpectedShots() {
+            double sum = 0;
+            for (double s : shots)
+                sum += s;
+            return sum / shots.length;
+        }
+
+        /**
+         * Returns the mean number of shots one reference shooter takes to sink the fleet.
+         *
+         * @param shooter the index of the shooter, in the order given to the optimiser
+         * @return the mean number of shots
+         */
+        public double getExpectedShots(int shooter) {
+            return shots[shooter];
+        }
+
+        /**
+         * Returns the mean number of shots in the games the annealing was tuned to.
+         *
+         * @return the mean number of shots
+         */
+        public double getTrainingShots() {
+            return trainingShots;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("# %.2f shots (%.2f in training)", getExpectedShots(), trainingShots));
+            for (double s : shots)
+                sb.append(String.format(" %.2f", s));
+            sb.append('\n');
+            LayoutFormat.append(fleet, sb);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Anneals one chain, then plays its best layout on the ranking seeds.
+     */
+    private final class Chain implements Callable<Layout> {
+        private final long seed;
+        private final long trainingSeed;
+        private final long rankingSeed;
+        private final int steps;
+
+        Chain(long seed, long trainingSeed, long rankingSeed, int steps) {
+            this.seed = seed;
+            this.trainingSeed = trainingSeed;
+            this.rankingSeed = rankingSeed;
+            this.steps = steps;
+        }
+
+        @Override
+        public Layout call() {
+            ShooterStrategy[] players = new ShooterStrategy[shooters.size()];
+            for (int i = 0; i < players.length; i++)
+                players[i] = shooters.get(i).get();
+            Random random = new Random(seed);
+            Fleet fleet = FleetGenerator.generate(random.nextLong());
+            double current = mean(evaluate(fleet, players, trainingSeed));
+            double best = current;
+            List<IShip> bestShips = new ArrayList<>(fleet.getShips());
+
+            for (int step = 0; step < steps; step++) {
+                double temperature = HOT * Math.pow(COLD / HOT, (double) step / steps);
+                List<IShip> ships = fleet.getShips();
+                IShip old = ships.get(random.nextInt(ships.size()));
+                fleet.removeShip(old);
+                IShip moved = move(fleet, old, random);
+                if (moved == null) {
+                    fleet.addShip(old);
+                    continue;
+                }
+                double next = mean(evaluate(fleet, players, trainingSeed));
+                if (next >= current || random.nextDouble() < Math.exp((next - current) / temperature)) {
+                    current = next;
+                    if (current > best) {
+                        best = current;
+                        bestShips = new ArrayList<>(fleet.getShips());
+                    }
+                } else {
+                    fleet.removeShip(moved);
+                    fleet.addShip(old);
+                }
+            }
+
+            Fleet layout = new Fleet(fleet.getBoardSize(), fleet.getMaxShips());
+            for (IShip s : bestShips)
+                layout.addShip(s);
+            return new Layout(layout, evaluate(layout, players, rankingSeed), best);
+        }
+
+        /**
+         * Places a ship of the kind of {@code old} somewhere else: as often near its
+         * old place, to fine-tune, as anywhere on the board.
+         *
+         * @return the ship added to the fleet, or null if there is no other place
+         */
+        private IShip move(Fleet fleet, IShip old, Random random) {
+            String kind = GameCodec.kind(GameCodec.kindCode(old.getCategory()));
+            boolean near = random.nextBoolean();
+            int start = random.nextInt(ShipShape.BEARINGS.length);
+            for (int b = 0; b < ShipShape.BEARINGS.length; b++) {
+                Compass bearing = ShipShape.BEARINGS[(start + b) % ShipShape.BEARINGS.length];
+                List<IPosition> origins = fleet.legalOrigins(kind, bearing);
+                if (near) {
+                    List<IPosition> close = new ArrayList<>();
+                    for (IPosition p : origins)
+                        if (Math.abs(p.getRow() - old.getPosition().getRow()) <= 2
+                                && Math.abs(p.getColumn() - old.getPosition().getColumn()) <= 2)
+                            close.add(p);
+                    origins = close;
+                }
+                if (bearing == old.getBearing())
+                    origins.remove(old.getPosition());
+                if (origins.isEmpty())
+                    continue;
+                IPosition p = origins.get(random.nextInt(origins.size()));
+                IShip s = Ship.buildShip(kind, bearing, new Position(p.getRow(), p.getColumn()));
+                if (fleet.addShip(s))
+                    return s;
+            }
+            return null;
+        }
+    }
+
+    private final List<Supplier<ShooterStrategy>> shooters;
+    private final int games;
+    private final int threads;
+
+    /**
+     * Creates an optimiser.
+     *
+     * @param shooters the names of the reference shooter strategies
+     * @param games the number of games each shooter plays to rate a layout
+     * @param threads the number of chains annealed at the same time
+     * @throws IllegalArgumentException if there is no shooter, a shooter is unknown,
+     *                                  or a count is not positive
+     */
+    public PlacementOptimizer(List<String> shooters, int games, int threads) {
+        if (shooters.isEmpty())
+            throw new IllegalArgumentException("ERROR! at least one reference shooter is needed");
+        if (games < 1 || threads < 1)
+            throw new IllegalArgumentException("ERROR! games and threads must be positive");
+        List<Supplier<ShooterStrategy>> suppliers = new ArrayList<>();
+        for (String name : shooters)
+            suppliers.add(Strategies.shooter(name));
+        this.shooters = Collections.unmodifiableList(suppliers);
+        this.games = games;
+        this.threads = threads;
+    }
+
+    /**
+     * Anneals a number of chains and ranks their best layouts.
+     *
+     * @param seed the seed of the search
+     * @param chains the number of chains
+     * @param steps the number of steps of each chain
+     * @return the distinct best layouts of the chains, from the hardest to sink
+     * @throws IllegalArgumentException if a count is not positive
+     */
+    public List<Layout> optimize(long seed, int chains, int steps) {
+        if (chains < 1 || steps < 1)
+            throw new IllegalArgumentException("ERROR! chains and steps must be positive");
+        Random random = new Random(seed);
+        long trainingSeed = random.nextLong();
+        long rankingSeed = random.nextLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                BatchRuns.daemonThreads("placement-optimizer"));
+        try {
+            List<Future<Layout>> futures = new ArrayList<>();
+            for (int c = 0; c < chains; c++)
+                futures.add(executor.submit(new Chain(random.nextLong(), trainingSeed, rankingSeed, steps)));
+            List<Layout> layouts = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (Future<Layout> f : futures) {
+                Layout layout = f.get();
+                if (seen.add(key(layout.fleet)))
+                    layouts.add(layout);
+            }
+            layouts.sort((a, b) -> Double.compare(b.getExpectedShots(), a.getExpectedShots()));
+            return layouts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ERROR! interrupted while optimising placements", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ERROR! placement optimisation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays a batch of games of every shooter against a fleet, and takes the shots back.
+     *
+     * @return the mean number of shots of each shooter; a fleet not sunk counts the shot limit
+     */
+    double[] evaluate(IFleet fleet, ShooterStrategy[] players, long firstSeed) {
+        int limit = 2 * fleet.getBoardSize() * fleet.getBoardSize();
+        double[] shots = new double[players.length];
+        for (int i = 0; i < players.length; i++) {
+            long sum = 0;
+            for (int g = 0; g < games; g++) {
+                Game game = new Game(fleet);
+                int n = SimulationWorker.play(players[i], game, firstSeed + g);
+                sum += n < 0 ? limit : n;
+                while (game.undo()) {
+                    // the fleet is played again by the next game
+                }
+            }
+            shots[i] = (double) sum / games;
+        }
+        return shots;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values)
+            sum += v;
+        return sum / values.length;
+    }
+
+    /** Returns the ships of a fleet in a fixed order, to tell equal layouts apart. */
+    private static String key(IFleet fleet) {
+        List<String> ships = new ArrayList<>();
+        for (IShip s : fleet.getShips())
+            ships.add(s.getCategory() + " " + s.getPosition().getRow() + " " + s.getPosition().getColumn() + " "
+                    + s.getBearing());
+        Collections.sort(ships);
+        return String.join(" ", ships);
+    }
+
+    /**
+     * Searches for hard layouts and prints them, the hardest first, in the format of
+     * {@link LayoutValidator}.
+     *
+     * Usage: {@code java iscteiul.ista.battleship.PlacementOptimizer [--shooters a,b] [--games n]
+     * [--chains c] [--steps s] [--seed x] [--threads t]}
+     *
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        List<String> shooters = List.of("hunt-target");
+        int games = 50;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chains = threads;
+        int steps = 500;
+        long seed = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--shooters"))
+                shooters = List.of(args[i + 1].split(","));
+            else if (args[i].equals("--games"))
+                games = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--chains"))
+                chains = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--steps"))
+                steps = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else if (args[i].equals("--threads"))
+                threads = Integer.parseInt(args[i + 1]);
+            else
+                throw new IllegalArgumentException("ERROR! unknown option " + args[i]);
+        }
+        // every step plays a batch of games: skip the per-shot flight recorder events
+        BatchRuns.skipFlightRecorder();
+
+        long start = System.nanoTime();
+        List<Layout> layouts = new PlacementOptimizer(shooters, games, threads).optimize(seed, chains, steps);
+        System.out.println("# against " + String.join(", ", shooters));
+        for (Layout layout : layouts)
+            System.out.print(layout);
+        System.out.printf("# %d chains of %d steps on %d threads in %d ms%n", chains, steps, threads,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+
+/**
+ * Estratégia de colocação de uma frota no tabuleiro.
+ *
+ * <p>As implementações são descobertas com {@link java.util.ServiceLoader}, a partir de
+ * {@code META-INF/services/iscteiul.ista.battleship.PlacementStrategy}, e devem por isso ter
+ * um construtor público sem argumentos. Ver {@link Strategies}.</p>
+ *
+ * @see ShooterStrategy
+ * @see Tournament
+ */
+public interface PlacementStrategy {
+
+    /**
+     * Nome curto e único da estratégia, usado nos relatórios e para a escolher.
+     *
+     * @return o nome da estratégia
+     */
+    String getName();
+
+    /**
+     * Coloca uma frota com a composição padrão (ver {@link FleetGenerator}).
+     *
+     * <p>O resultado deve depender apenas da semente, para que as partidas sejam reproduzíveis.</p>
+     *
+     * @param seed semente para as escolhas aleatórias
+     * @return uma frota válida, com todos os navios da composição padrão
+     */
+    IFleet place(long seed);
+}
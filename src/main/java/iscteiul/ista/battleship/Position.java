@@ -172,6 +172,17 @@ public class Position implements IPosition {
         isHit = true;
     }
 
+    /**
+     * Anula o tiro registado nesta posição.
+     *
+     * <p>Só deve ser usado para desfazer uma jogada; o jogo é responsável por repor
+     * as estatísticas correspondentes.</p>
+     */
+    @Override
+    public void unshoot() {
+        isHit = false;
+    }
+
    
 
 /**
@@ -0,0 +1,26 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+/**
+ * Places the fleet at random, with {@link FleetGenerator#generate(long)}.
+ */
+public final class RandomPlacement implements PlacementStrategy {
+
+    /**
+     * Creates the strategy; used by {@link java.util.ServiceLoader}.
+     */
+    public RandomPlacement() {
+    }
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public IFleet place(long seed) {
+        return FleetGenerator.generate(seed);
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Random;
+
+/**
+ * Fires at every cell of the board once, in a random order, ignoring the
+ * results. The baseline every other strategy should beat.
+ */
+public final class RandomShooter implements ShooterStrategy {
+
+    private int boardSize;
+    private int[] order = new int[0];
+    private int next;
+
+    /**
+     * Creates the strategy; used by {@link java.util.ServiceLoader}.
+     */
+    public RandomShooter() {
+    }
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public void start(int boardSize, long seed) {
+        this.boardSize = boardSize;
+        int cells = boardSize * boardSize;
+        if (order.length != cells)
+            order = new int[cells];
+        for (int i = 0; i < cells; i++)
+            order[i] = i;
+        Random random = new Random(seed);
+        for (int i = cells - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        next = 0;
+    }
+
+    @Override
+    public IPosition nextShot(IGame game) {
+        int cell = order[next < order.length ? next++ : order.length - 1];
+        return new Position(cell / boardSize, cell % boardSize);
+    }
+
+    @Override
+    public void shotResult(IPosition shot, byte outcome, IShip sunk) {
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+/**
+ * The coverage kernel that works one row at a time, on plain {@code long}s;
+ * used when the Vector API is not available.
+ */
+final class ScalarCoverageKernel extends CoverageKernel {
+
+    @Override
+    String getName() {
+        return "scalar";
+    }
+
+    @Override
+    void accumulate(int boardSize, ShipShape shape, int planeCount) {
+        int cells = shape.size;
+        for (int top = 0; top + shape.body.length <= boardSize; top++) {
+            // left columns where every body cell is free
+            long fits = -1L;
+            for (int i = 0; i < cells; i++)
+                fits &= free[top + shape.rowOffsets[i] - shape.minRow] >>> (shape.columnOffsets[i] - shape.minColumn);
+            if (fits == 0)
+                continue;
+            for (int i = 0; i < cells; i++) {
+                int row = top + shape.rowOffsets[i] - shape.minRow;
+                long carry = fits << (shape.columnOffsets[i] - shape.minColumn);
+                for (int p = 0; p < planeCount; p++) {
+                    long plane = planes[p][row];
+                    planes[p][row] = plane ^ carry;
+                    carry &= plane;
+                }
+            }
+        }
+    }
+
+    @Override
+    void expand(int boardSize, int planeCount, int weight, int[] counts) {
+        for (int row = 0; row < boardSize; row++) {
+            int base = row * boardSize;
+            for (int p = 0; p < planeCount; p++) {
+                long plane = planes[p][row];
+                int add = weight << p;
+                while (plane != 0) {
+                    counts[base + Long.numberOfTrailingZeros(plane)] += add;
+                    plane &= plane - 1;
+                }
+            }
+        }
+    }
+}
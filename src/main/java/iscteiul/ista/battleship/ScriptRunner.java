@@ -0,0 +1,511 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs game command scripts without a human at the keyboard.
+ *
+ * Scripts use the commands of the interactive game, separated by any whitespace,
+ * with {@code #} starting a comment:
+ * <pre>
+ * nova galeao 0 0 e  fragata 2 0 s  ...    # a fleet, as "kind row column bearing" per ship
+ * nova semente 42                          # or a generated fleet, see FleetGenerator
+ * rajada 3 4  5 5  0 9                     # one volley of three shots, as "row column"
+ * ver                                      # board of the valid shots
+ * mapa                                     # board of the fleet and the shots fired at it
+ * estado                                   # counters of the game
+ * desisto                                  # ends the script
+ * </pre>
+ * A {@code nova} with explicit ships reads ships until the standard fleet of
+ * {@link FleetGenerator#COMPOSITION} is complete; rejected ships are reported as
+ * errors and do not count. Errors never stop a script: the offending command
+ * is reported and the rest of it is skipped, up to the end of its line, so that
+ * one mistake is reported once. A malformed ship only skips that ship. A volley
+ * whose coordinates stop at the end of a line is short, and the next line is
+ * read as the next command.
+ *
+ * Usage: {@code java iscteiul.ista.battleship.ScriptRunner [--threads n] [--transcripts dir] script...}
+ * where {@code -} (or no script at all) stands for standard input. Scripts run in
+ * parallel; one JSON line per script is printed in the order the scripts were given.
+ * The boards and counters requested by {@code ver}, {@code mapa} and {@code estado}
+ * are only written when a transcript directory is given, to {@code name.out}.
+ */
+public final class ScriptRunner {
+
+    /** Number of shots of each volley, as in the interactive game. */
+    static final int NUMBER_SHOTS = 3;
+
+    /** Maximum number of error messages kept in a result. */
+    private static final int MAX_ERRORS = 16;
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Whether to print {@code first-shot <epoch millis>} to standard error when the
+     * first volley of the process has been fired, for {@link StartupBenchmark}.
+     */
+    private static final boolean REPORT_FIRST_SHOT = Boolean.getBoolean("battleship.reportFirstShot");
+
+    private static final AtomicBoolean FIRST_SHOT_REPORTED = new AtomicBoolean();
+
+    /**
+     * Outcome of one script.
+     */
+    public static final class Result {
+        private final String script;
+        private int commands;
+        private int fleets;
+        private int volleys;
+        private final int[] outcomes = new int[VolleyResult.SUNK + 1];
+        private int remainingShips = -1;
+        private boolean gaveUp;
+        private final List<String> errors = new ArrayList<>();
+        private int errorCount;
+        private long nanos;
+
+        private Result(String script) {
+            this.script = script;
+        }
+
+        /**
+         * Returns the name of the script.
+         *
+         * @return the file name of the script, or {@code -} for standard input
+         */
+        public String getScript() {
+            return script;
+        }
+
+        /**
+         * Returns the number of commands read.
+         *
+         * @return the number of commands
+         */
+        public int getCommands() {
+            return commands;
+        }
+
+        /**
+         * Returns the number of volleys fired.
+         *
+         * @return the number of volleys
+         */
+        public int getVolleys() {
+            return volleys;
+        }
+
+        /**
+         * Returns how many shots of the script had the given outcome.
+         *
+         * @param outcome one of the outcome constants of {@link VolleyResult}
+         * @return the number of shots with that outcome
+         */
+        public int count(byte outcome) {
+            return outcomes[outcome];
+        }
+
+        /**
+         * Returns the ships still afloat in the last game of the script.
+         *
+         * @return the number of floating ships, or -1 if no fleet was created
+         */
+        public int getRemainingShips() {
+            return remainingShips;
+        }
+
+        /**
+         * Returns the number of errors found in the script.
+         *
+         * @return the number of errors
+         */
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * Returns how the script ended: {@code won} if the last fleet was sunk,
+         * {@code gave_up} after {@code desisto}, {@code no_game} if no fleet was created,
+         * and {@code unfinished} otherwise.
+         *
+         * @return the final state of the script
+         */
+        public String getState() {
+            if (remainingShips == 0)
+                return "won";
+            if (gaveUp)
+                return "gave_up";
+            return remainingShips < 0 ? "no_game" : "unfinished";
+        }
+
+        private void error(String message) {
+            if (errorCount++ < MAX_ERRORS)
+                errors.add(message);
+        }
+
+        /**
+         * Returns the result as a single line of JSON.
+         *
+         * @return the JSON object describing the result
+         */
+        public String toJson() {
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"script\":");
+            quote(sb, script);
+            sb.append(",\"state\":\"").append(getState()).append('"');
+            sb.append(",\"commands\":").append(commands);
+            sb.append(",\"fleets\":").append(fleets);
+            sb.append(",\"volleys\":").append(volleys);
+            for (int i = 0; i < outcomes.length; i++)
+                sb.append(",\"").append(FlightEvents.OUTCOMES[i]).append("\":").append(outcomes[i]);
+            sb.append(",\"remaining\":").append(remainingShips);
+            sb.append(",\"micros\":").append(nanos / 1000);
+            sb.append(",\"errorCount\":").append(errorCount);
+            sb.append(",\"errors\":[");
+            for (int i = 0; i < errors.size(); i++) {
+                if (i > 0)
+                    sb.append(',');
+                quote(sb, errors.get(i));
+            }
+            return sb.append("]}").toString();
+        }
+
+        private static void quote(StringBuilder sb, String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\')
+                    sb.append('\\').append(c);
+                else if (c < ' ')
+                    sb.append(String.format("\\u%04x", (int) c));
+                else
+                    sb.append(c);
+            }
+            sb.append('"');
+        }
+    }
+
+    /**
+     * Runs one script file; a named class rather than a lambda, so that a batch
+     * run does not pay for bootstrapping the lambda machinery at startup.
+     */
+    private static final class ScriptTask implements Callable<Result> {
+        private final String script;
+        private final Path transcripts;
+
+        private ScriptTask(String script, Path transcripts) {
+            this.script = script;
+            this.transcripts = transcripts;
+        }
+
+        @Override
+        public Result call() throws IOException {
+            return runFile(script, transcripts);
+        }
+    }
+
+    private ScriptRunner() {
+    }
+
+    /**
+     * Runs the scripts named on the command line and prints one JSON line per script.
+     *
+     * @param args the options and the scripts to run
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path transcripts = null;
+        List<String> scripts = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--transcripts") && i + 1 < args.length)
+                transcripts = Paths.get(args[++i]);
+            else
+                scripts.add(args[i]);
+        }
+        if (scripts.isEmpty())
+            scripts.add("-");
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false, StandardCharsets.UTF_8);
+        int failed = 0;
+        for (Result r : runAll(scripts, threads, transcripts)) {
+            out.println(r.toJson());
+            if (r.getErrorCount() > 0)
+                failed++;
+        }
+        out.flush();
+        if (failed > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Runs scripts in parallel.
+     *
+     * @param scripts the paths of the scripts, {@code -} standing for standard input
+     * @param threads the number of scripts run at the same time
+     * @param transcripts the directory for the transcripts, or null for none
+     * @return the results, in the order of the scripts
+     */
+    public static List<Result> runAll(List<String> scripts, int threads, Path transcripts) {
+        if (threads < 1)
+            throw new IllegalArgumentException("ERROR! at least one thread is needed");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, scripts.size()),
+                BatchRuns.daemonThreads("script-runner"));
+        try {
+            List<Future<Result>> futures = new ArrayList<>(scripts.size());
+            for (String script : scripts)
+                futures.add(executor.submit(new ScriptTask(script, transcripts)));
+            List<Result> results = new ArrayList<>(futures.size());
+            for (Future<Result> f : futures)
+                results.add(f.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ERROR! interrupted while running scripts", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ERROR! script runner failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result runFile(String script, Path transcripts) throws IOException {
+        boolean stdin = script.equals("-");
+        String name = stdin ? "-" : Paths.get(script).getFileName().toString();
+        try (InputStream in = stdin ? new BufferedInputStream(System.in) : Files.newInputStream(Paths.get(script));
+             OutputStream transcript = transcripts == null ? OutputStream.nullOutputStream()
+                     : new BufferedOutputStream(Files.newOutputStream(transcripts.resolve(
+                             (stdin ? "stdin" : name) + ".out")))) {
+            return run(name, in, transcript);
+        } catch (IOException e) {
+            Result r = new Result(name);
+            r.error(e.toString());
+            return r;
+        }
+    }
+
+    /**
+     * Runs one script.
+     *
+     * @param name the name of the script, reported in the result
+     * @param in the commands
+     * @param transcript where to write the output of {@code ver}, {@code mapa} and {@code estado}
+     * @return the result of the script
+     * @throws IOException if the script cannot be read or the transcript cannot be written
+     */
+    public static Result run(String name, InputStream in, OutputStream transcript) throws IOException {
+        long start = System.nanoTime();
+        ScriptTokenizer tok = new ScriptTokenizer(in);
+        Result result = new Result(name);
+        Game game = null;
+        List<IPosition> volley = new ArrayList<>(NUMBER_SHOTS);
+
+        try {
+            while (tok.advance()) {
+                result.commands++;
+                if (tok.is("nova")) {
+                    Fleet fleet = readFleet(tok, result);
+                    if (fleet != null) {
+                        game = new Game(fleet);
+                        result.fleets++;
+                    }
+                } else if (tok.is("rajada")) {
+                    volley.clear();
+                    if (!readVolley(tok, volley, result))
+                        break;
+                    if (volley.size() < NUMBER_SHOTS)
+                        continue;
+                    if (game == null) {
+                        result.error("command " + result.commands + ": rajada without a fleet");
+                        continue;
+                    }
+                    VolleyResult shots = game.fireVolley(volley);
+                    result.volleys++;
+                    if (REPORT_FIRST_SHOT && !FIRST_SHOT_REPORTED.getAndSet(true))
+                        System.err.println("first-shot " + System.currentTimeMillis());
+                    for (int i = 0; i < shots.size(); i++)
+                        result.outcomes[shots.getOutcome(i)]++;
+                } else if (tok.is("ver")) {
+                    if (game != null) {
+                        BoardRenderer board = game.renderer();
+                        board.clear();
+                        board.mark(game.getShots(), BoardRenderer.SHOT);
+                        board.render(transcript);
+                    }
+                } else if (tok.is("mapa")) {
+                    if (game != null) {
+                        BoardRenderer board = game.renderer();
+                        board.clear();
+                        board.overlay(game.getFleet(), game.getShots());
+                        board.render(transcript);
+                    }
+                } else if (tok.is("estado")) {
+                    if (game != null)
+                        writeStatus(game, transcript);
+                } else if (tok.is("desisto")) {
+                    result.gaveUp = true;
+                    break;
+                } else {
+                    result.error("command " + result.commands + ": unknown command " + tok.text());
+                    tok.skipLine();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (game != null)
+            result.remainingShips = game.getRemainingShips();
+        result.nanos = System.nanoTime() - start;
+        transcript.flush();
+        return result;
+    }
+
+    /**
+     * Reads the fleet following a {@code nova} command.
+     *
+     * @return the fleet, or null if the script ended before it was complete
+     */
+    private static Fleet readFleet(ScriptTokenizer tok, Result result) throws IOException {
+        if (!tok.advance()) {
+            result.error("command " + result.commands + ": nova without ships");
+            return null;
+        }
+        if (tok.is("semente")) {
+            if (!tok.advance()) {
+                result.error("command " + result.commands + ": nova semente without a seed");
+                return null;
+            }
+            try {
+                return FleetGenerator.generate(tok.longValue());
+            } catch (NumberFormatException e) {
+                result.error("command " + result.commands + ": " + e.getMessage());
+                if (tok.startsLine())
+                    tok.keep();
+                return null;
+            }
+        }
+
+        Fleet fleet = new Fleet();
+        int added = 0;
+        boolean first = true;
+        while (added < FleetGenerator.COMPOSITION.length) {
+            if (!first && !tok.advance()) {
+                result.error("command " + result.commands + ": fleet has only " + added + " ships");
+                return null;
+            }
+            first = false;
+            String kind = tok.text();
+            // fields of the ship read so far
+            int fields = 0;
+            try {
+                if (!tok.advance())
+                    continue;
+                fields = 1;
+                int row = tok.intValue();
+                if (!tok.advance())
+                    continue;
+                fields = 2;
+                int column = tok.intValue();
+                if (!tok.advance())
+                    continue;
+                fields = 3;
+                Compass bearing = Compass.charToCompass(tok.firstChar());
+                Ship ship = FlightEvents.buildShip(kind, bearing, new Position(row, column));
+                if (ship == null)
+                    result.error("command " + result.commands + ": unknown ship " + kind);
+                else if (fleet.addShip(ship))
+                    added++;
+                else
+                    result.error("command " + result.commands + ": rejected " + kind + " " + row + " " + column
+                            + " " + bearing.getDirection());
+            } catch (IllegalArgumentException e) {
+                result.error("command " + result.commands + ": " + e.getMessage());
+                if (fields < 3)
+                    skipShip(tok, 3 - fields);
+            }
+        }
+        return fleet;
+    }
+
+    /**
+     * Skips the fields of a malformed ship that follow the offending one. A field
+     * that starts a line begins the next ship instead, and is kept.
+     *
+     * @param fields the number of fields still to skip after the current token
+     */
+    private static void skipShip(ScriptTokenizer tok, int fields) throws IOException {
+        if (tok.startsLine()) {
+            tok.keep();
+            return;
+        }
+        for (int i = 0; i < fields && tok.advance(); i++) {
+            if (tok.startsLine()) {
+                tok.keep();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the positions following a {@code rajada} command. A volley with a
+     * malformed coordinate is reported, the rest of its line is skipped, and it
+     * is left incomplete. A volley cut short by a word that starts a line is
+     * reported as short, and the word is kept as the next command.
+     *
+     * @return false if the script ended before the volley was complete
+     */
+    private static boolean readVolley(ScriptTokenizer tok, List<IPosition> volley, Result result) throws IOException {
+        int[] coordinates = new int[2 * NUMBER_SHOTS];
+        for (int i = 0; i < coordinates.length; i++) {
+            if (!tok.advance()) {
+                result.error("command " + result.commands + ": rajada has only " + i / 2 + " shots");
+                return false;
+            }
+            try {
+                coordinates[i] = tok.intValue();
+            } catch (NumberFormatException e) {
+                if (tok.startsLine()) {
+                    result.error("command " + result.commands + ": rajada has only " + i / 2 + " shots");
+                    tok.keep();
+                } else {
+                    result.error("command " + result.commands + ": " + e.getMessage());
+                    tok.skipLine();
+                }
+                return true;
+            }
+        }
+        for (int i = 0; i < coordinates.length; i += 2)
+            volley.add(new Position(coordinates[i], coordinates[i + 1]));
+        return true;
+    }
+
+    private static void writeStatus(Game game, OutputStream out) throws IOException {
+        String status = "shots=" + game.getShots().size() + " hits=" + game.getHits() + " sunk=" + game.getSunkShips()
+                + " remaining=" + game.getRemainingShips() + " invalid=" + game.getInvalidShots()
+                + " repeated=" + game.getRepeatedShots();
+        out.write(status.getBytes(StandardCharsets.US_ASCII));
+        out.write(NEWLINE);
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a command script into whitespace-separated tokens.
+ *
+ * A replacement for {@link java.util.Scanner} in batch runs: input is read in
+ * large blocks, tokens are kept as bytes in a reusable buffer, and keywords and
+ * numbers are matched without creating strings or regular expressions.
+ * Everything from a {@code #} to the end of the line is a comment.
+ *
+ * Line breaks separate tokens like any other whitespace, but the tokenizer
+ * remembers them, so that a reader can skip the rest of a malformed line and
+ * recognise a token that starts a new one.
+ */
+final class ScriptTokenizer {
+
+    private final InputStream in;
+    private final byte[] block;
+    private int blockPos;
+    private int blockLen;
+
+    private byte[] token;
+    private int tokenLen;
+    /** Whether the current token is the first of its line. */
+    private boolean lineStart;
+    /** Whether the current token was ended by a line break. */
+    private boolean lineEnd = true;
+    /** Whether the next {@link #advance()} returns the current token again. */
+    private boolean kept;
+
+    /**
+     * Creates a tokenizer over the given stream.
+     *
+     * @param in the script
+     */
+    ScriptTokenizer(InputStream in) {
+        this.in = in;
+        this.block = new byte[64 * 1024];
+        this.token = new byte[32];
+    }
+
+    /**
+     * Moves to the next token.
+     *
+     * @return false at the end of the script
+     * @throws IOException if the script cannot be read
+     */
+    boolean advance() throws IOException {
+        if (kept) {
+            kept = false;
+            return tokenLen > 0;
+        }
+        boolean newLine = lineEnd;
+        int b = read();
+        while (b != -1 && (b <= ' ' || b == '#')) {
+            if (b == '#')
+                while (b != -1 && b != '\n')
+                    b = read();
+            if (b == '\n')
+                newLine = true;
+            b = read();
+        }
+        tokenLen = 0;
+        lineStart = newLine;
+        if (b == -1)
+            return false;
+        while (b != -1 && b > ' ') {
+            if (tokenLen == token.length)
+                token = java.util.Arrays.copyOf(token, tokenLen * 2);
+            token[tokenLen++] = (byte) b;
+            b = read();
+        }
+        lineEnd = b == '\n';
+        return true;
+    }
+
+    /**
+     * Makes the next {@link #advance()} return the current token again, for a
+     * reader that found the token to belong to the next command.
+     */
+    void keep() {
+        kept = true;
+    }
+
+    /**
+     * Returns whether the current token is the first of its line.
+     *
+     * @return true if only whitespace and comments precede the token on its line
+     */
+    boolean startsLine() {
+        return lineStart;
+    }
+
+    /**
+     * Discards the rest of the line of the current token, so that the next
+     * {@link #advance()} returns the first token of the following line.
+     *
+     * @throws IOException if the script cannot be read
+     */
+    void skipLine() throws IOException {
+        kept = false;
+        if (lineEnd)
+            return;
+        int b = read();
+        while (b != -1 && b != '\n')
+            b = read();
+        lineEnd = true;
+    }
+
+    /**
+     * Returns whether the current token is the given ASCII word.
+     *
+     * @param word the word to compare with
+     * @return true if the token is exactly that word
+     */
+    boolean is(String word) {
+        if (word.length() != tokenLen)
+            return false;
+        for (int i = 0; i < tokenLen; i++)
+            if (token[i] != word.charAt(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Parses the current token as a decimal integer.
+     *
+     * @return the value of the token
+     * @throws NumberFormatException if the token is not an integer or does not fit in an int
+     */
+    int intValue() {
+        long value = longValue();
+        if ((int) value != value)
+            throw new NumberFormatException("ERROR! number out of range: " + text());
+        return (int) value;
+    }
+
+    /**
+     * Parses the current token as a decimal long.
+     *
+     * @return the value of the token
+     * @throws NumberFormatException if the token is not an integer or does not fit in a long
+     */
+    long longValue() {
+        int i = 0;
+        boolean negative = tokenLen > 1 && token[0] == '-';
+        if (negative)
+            i++;
+        if (i == tokenLen)
+            throw new NumberFormatException("ERROR! not a number: " + text());
+        long value = 0;
+        for (; i < tokenLen; i++) {
+            int d = token[i] - '0';
+            if (d < 0 || d > 9)
+                throw new NumberFormatException("ERROR! not a number: " + text());
+            if (value > (Long.MAX_VALUE - d) / 10)
+                throw new NumberFormatException("ERROR! number out of range: " + text());
+            value = value * 10 + d;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the first character of the current token.
+     *
+     * @return the first character, or 0 if there is no token
+     */
+    char firstChar() {
+        return tokenLen == 0 ? 0 : (char) token[0];
+    }
+
+    /**
+     * Returns the current token as a string, for error messages.
+     *
+     * @return the text of the token
+     */
+    String text() {
+        return new String(token, 0, tokenLen, StandardCharsets.UTF_8);
+    }
+
+    private int read() throws IOException {
+        if (blockPos == blockLen) {
+            blockLen = in.read(block, 0, block.length);
+            blockPos = 0;
+            if (blockLen <= 0) {
+                blockLen = 0;
+                return -1;
+            }
+        }
+        return block[blockPos++] & 0xFF;
+    }
+}
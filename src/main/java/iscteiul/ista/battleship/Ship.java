@@ -8,8 +8,15 @@ import java.util.List;
  * Classe abstrata que fornece a implementação base para todos os navios do jogo.
  * Gere a categoria, orientação, posição de referência e a lista de coordenadas ocupadas.
  * * Implementa o padrão Factory através do método {@link #buildShip(String, Compass, Position)}.
+ *
+ * <p>A hierarquia é selada: os únicos navios são as cinco subclasses finais. As
+ * consultas mais frequentes (ocupação, proximidade e extremos) existem também como
+ * métodos finais que leem uma cópia compacta das coordenadas, em vez de percorrerem
+ * {@link #getPositions()} com chamadas a {@link #getSize()}, que cada subclasse
+ * redefine. Nos pontos quentes, o JIT pode assim ligar e expandir estas chamadas
+ * diretamente, qualquer que seja o tipo do navio.</p>
  */
-public abstract class Ship implements IShip {
+public abstract sealed class Ship implements IShip permits Barge, Caravel, Carrack, Frigate, Galleon {
 
     // Constantes para os tipos de navios
     private static final String GALEAO = "galeao";
@@ -54,5 +61,157 @@ public abstract class Ship implements IShip {
         positions = new ArrayList<>();
     }
 
+    /**
+     * Coordenadas do navio em vetores de inteiros, com os extremos já calculados.
+     * Os campos finais garantem que uma instância partilhada entre threads é vista completa.
+     */
+    private static final class Footprint {
+        final int[] rows;
+        final int[] columns;
+        final int top, bottom, left, right;
+
+        Footprint(List<IPosition> positions) {
+            int n = positions.size();
+            rows = new int[n];
+            columns = new int[n];
+            int t = Integer.MAX_VALUE, b = Integer.MIN_VALUE, l = Integer.MAX_VALUE, r = Integer.MIN_VALUE;
+            for (int i = 0; i < n; i++) {
+                rows[i] = positions.get(i).getRow();
+                columns[i] = positions.get(i).getColumn();
+                t = Math.min(t, rows[i]);
+                b = Math.max(b, rows[i]);
+                l = Math.min(l, columns[i]);
+                r = Math.max(r, columns[i]);
+            }
+            top = t;
+            bottom = b;
+            left = l;
+            right = r;
+        }
+    }
+
+    private Footprint footprint;
+
+    /**
+     * Devolve as coordenadas compactas, calculadas na primeira consulta: as
+     * subclasses só preenchem {@link #positions} depois deste construtor.
+     */
+    private Footprint footprint() {
+        Footprint f = footprint;
+        if (f == null)
+            footprint = f = new Footprint(positions);
+        return f;
+    }
+
+    /**
+     * Devolve o índice, em {@link #getPositions()}, da posição do navio numa coordenada.
+     *
+     * @param row a linha
+     * @param column a coluna
+     * @return o índice da posição, ou -1 se o navio não ocupa a coordenada
+     */
+    final int cellOf(int row, int column) {
+        Footprint f = footprint();
+        if (row < f.top || row > f.bottom || column < f.left || column > f.right)
+            return -1;
+        for (int i = 0; i < f.rows.length; i++)
+            if (f.rows[i] == row && f.columns[i] == column)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Versão final de {@link #occupies(IPosition)}.
+     *
+     * @param row a linha
+     * @param column a coluna
+     * @return {@code true} se a coordenada faz parte do corpo do navio
+     */
+    final boolean occupies(int row, int column) {
+        return cellOf(row, column) >= 0;
+    }
+
+    /**
+     * Versão final de {@link #tooCloseTo(IPosition)}.
+     *
+     * @param row a linha
+     * @param column a coluna
+     * @return {@code true} se a coordenada for adjacente ou coincidente com o navio
+     */
+    final boolean tooCloseTo(int row, int column) {
+        Footprint f = footprint();
+        if (row < f.top - 1 || row > f.bottom + 1 || column < f.left - 1 || column > f.right + 1)
+            return false;
+        for (int i = 0; i < f.rows.length; i++)
+            if (Math.abs(f.rows[i] - row) <= 1 && Math.abs(f.columns[i] - column) <= 1)
+                return true;
+        return false;
+    }
+
+    /**
+     * Versão final de {@link #tooCloseTo(IShip)} para dois navios desta hierarquia.
+     *
+     * @param other o outro navio
+     * @return {@code true} se os navios se tocam, incluindo na diagonal, ou se sobrepõem
+     */
+    final boolean tooCloseTo(Ship other) {
+        Footprint f = footprint();
+        Footprint o = other.footprint();
+        if (o.bottom < f.top - 1 || o.top > f.bottom + 1 || o.right < f.left - 1 || o.left > f.right + 1)
+            return false;
+        for (int i = 0; i < o.rows.length; i++)
+            if (tooCloseTo(o.rows[i], o.columns[i]))
+                return true;
+        return false;
+    }
+
+    /**
+     * Versão final de {@link #getTopMostPos()}.
+     *
+     * @return o menor índice de linha ocupado pelo navio
+     */
+    final int topRow() {
+        return footprint().top;
+    }
+
+    /**
+     * Versão final de {@link #getBottomMostPos()}.
+     *
+     * @return o maior índice de linha ocupado pelo navio
+     */
+    final int bottomRow() {
+        return footprint().bottom;
+    }
+
+    /**
+     * Versão final de {@link #getLeftMostPos()}.
+     *
+     * @return o menor índice de coluna ocupado pelo navio
+     */
+    final int leftColumn() {
+        return footprint().left;
+    }
+
+    /**
+     * Versão final de {@link #getRightMostPos()}.
+     *
+     * @return o maior índice de coluna ocupado pelo navio
+     */
+    final int rightColumn() {
+        return footprint().right;
+    }
+
+    /**
+     * Versão final de {@link #stillFloating()}, que não depende de {@link #getSize()}.
+     *
+     * @return {@code true} se pelo menos uma das posições do navio não foi atingida
+     */
+    final boolean isAfloat() {
+        for (IPosition p : positions)
+            if (!p.isHit())
+                return true;
+        return false;
+    }
+
     // ... (restantes overrides com Javadoc herdado de IShip)
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The cells a ship of a given kind and bearing covers, relative to its reference
+ * position, in forms that allow checking placements without building ships.
+ *
+ * Shapes are derived once, when the class is initialised, by building every
+ * kind of ship in every bearing at the origin, so they always agree with the
+ * ship classes. Besides the cell offsets, each shape keeps row bit masks of its
+ * body and of its halo (the body grown by one cell in every direction, diagonals
+ * included), which turn the board and adjacency rules of {@link Fleet#addShip}
+ * into a few mask operations per row.
+ */
+final class ShipShape {
+
+    /** Bearings with a shape, in the order of {@link #bearingIndex(Compass)}; shared, not to be modified. */
+    static final Compass[] BEARINGS = {Compass.NORTH, Compass.SOUTH, Compass.EAST, Compass.WEST};
+
+    private static final ShipShape[] SHAPES = new ShipShape[GameCodec.KIND_COUNT * BEARINGS.length];
+
+    static {
+        for (int kind = 0; kind < GameCodec.KIND_COUNT; kind++)
+            for (int b = 0; b < BEARINGS.length; b++)
+                SHAPES[kind * BEARINGS.length + b] = new ShipShape(
+                        Ship.buildShip(GameCodec.kind(kind), BEARINGS[b], new Position(0, 0)).getPositions());
+    }
+
+    /** Number of cells of the ship. */
+    final int size;
+    /** Row offset of each cell from the reference position. */
+    final int[] rowOffsets;
+    /** Column offset of each cell from the reference position. */
+    final int[] columnOffsets;
+    /** Smallest and largest row and column offsets. */
+    final int minRow, maxRow, minColumn, maxColumn;
+    /** Body cells of rows {@code minRow..maxRow}; bit {@code c - minColumn} is column offset {@code c}. */
+    final long[] body;
+    /** Halo cells of rows {@code minRow-1..maxRow+1}; bit {@code c - minColumn + 1} is column offset {@code c}. */
+    final long[] halo;
+
+    private ShipShape(List<IPosition> cells) {
+        size = cells.size();
+        rowOffsets = new int[size];
+        columnOffsets = new int[size];
+        int r0 = Integer.MAX_VALUE, r1 = Integer.MIN_VALUE, c0 = Integer.MAX_VALUE, c1 = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            rowOffsets[i] = cells.get(i).getRow();
+            columnOffsets[i] = cells.get(i).getColumn();
+            r0 = Math.min(r0, rowOffsets[i]);
+            r1 = Math.max(r1, rowOffsets[i]);
+            c0 = Math.min(c0, columnOffsets[i]);
+            c1 = Math.max(c1, columnOffsets[i]);
+        }
+        minRow = r0;
+        maxRow = r1;
+        minColumn = c0;
+        maxColumn = c1;
+
+        body = new long[maxRow - minRow + 1];
+        for (int i = 0; i < size; i++)
+            body[rowOffsets[i] - minRow] |= 1L << (columnOffsets[i] - minColumn);
+        halo = new long[body.length + 2];
+        for (int k = 0; k < body.length; k++) {
+            long grown = (body[k] << 1) | (body[k] << 2) | body[k];
+            halo[k] |= grown;
+            halo[k + 1] |= grown;
+            halo[k + 2] |= grown;
+        }
+    }
+
+    /**
+     * Returns the shape of a ship.
+     *
+     * @param kind the code of the kind, as in {@link GameCodec#kind(int)}
+     * @param bearing the bearing of the ship
+     * @return the shape, or null if the bearing has no shape
+     */
+    static ShipShape of(int kind, Compass bearing) {
+        int b = bearingIndex(bearing);
+        return b < 0 ? null : SHAPES[kind * BEARINGS.length + b];
+    }
+
+    /**
+     * Returns the number of shapes: one per kind and bearing.
+     *
+     * @return the number of shapes
+     */
+    static int count() {
+        return SHAPES.length;
+    }
+
+    /**
+     * Returns a shape by its index.
+     *
+     * @param index the index, as returned by {@link #index(int, Compass)}
+     * @return the shape
+     */
+    static ShipShape get(int index) {
+        return SHAPES[index];
+    }
+
+    /**
+     * Returns the index of the shape of a ship.
+     *
+     * @param kind the code of the kind, as in {@link GameCodec#kind(int)}
+     * @param bearing the bearing of the ship
+     * @return the index of the shape, from 0 to {@link #count()} - 1, or -1 if the bearing has no shape
+     */
+    static int index(int kind, Compass bearing) {
+        int b = bearingIndex(bearing);
+        return b < 0 ? -1 : kind * BEARINGS.length + b;
+    }
+
+    /**
+     * Returns whether an earlier bearing of the same kind, in the order of
+     * {@link #bearingIndex(Compass)}, has a body of the same cells. A barge looks
+     * the same in every bearing, and the straight ships facing opposite ways, so
+     * counting placements over every bearing would count those more than once.
+     *
+     * @param kind the code of the kind, as in {@link GameCodec#kind(int)}
+     * @param bearing a bearing with a shape
+     * @return true if the placements of this bearing were already counted under an earlier one
+     */
+    static boolean repeatsEarlierBearing(int kind, Compass bearing) {
+        ShipShape shape = of(kind, bearing);
+        for (int b = 0; b < bearingIndex(bearing); b++)
+            if (Arrays.equals(SHAPES[kind * BEARINGS.length + b].body, shape.body))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the index of a bearing among the bearings with a shape.
+     *
+     * @param bearing the bearing
+     * @return the index, or -1 for {@link Compass#UNKNOWN}
+     */
+    static int bearingIndex(Compass bearing) {
+        for (int b = 0; b < BEARINGS.length; b++)
+            if (BEARINGS[b] == bearing)
+                return b;
+        return -1;
+    }
+
+    /**
+     * Returns the body mask of one row of a ship placed with its leftmost cell at
+     * column {@code left}.
+     *
+     * @param k the row of the ship, from 0 for row offset {@link #minRow}
+     * @param left the board column of the leftmost cell, at least 0
+     * @return the board columns of the row covered by the ship
+     */
+    long bodyRow(int k, int left) {
+        return body[k] << left;
+    }
+
+    /**
+     * Returns the halo mask of one row of a ship placed with its leftmost cell at
+     * column {@code left}.
+     *
+     * @param k the row of the halo, from 0 for row offset {@code minRow - 1}
+     * @param left the board column of the leftmost cell, at least 0
+     * @return the board columns of the row that are too close to the ship
+     */
+    long haloRow(int k, int left) {
+        return left == 0 ? halo[k] >>> 1 : halo[k] << (left - 1);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+
+/**
+ * Estratégia de um jogador automático: decide onde disparar numa partida.
+ *
+ * <p>As implementações são descobertas com {@link java.util.ServiceLoader}, a partir de
+ * {@code META-INF/services/iscteiul.ista.battleship.ShooterStrategy}, e devem por isso ter
+ * um construtor público sem argumentos. Ver {@link Strategies}.</p>
+ *
+ * <h2>Ciclo de vida</h2>
+ * <ol>
+ *   <li>{@link #start(int, long)} no início de cada partida, que repõe todo o estado;</li>
+ *   <li>{@link #nextShot(IGame)} para escolher cada tiro;</li>
+ *   <li>{@link #shotResult(IPosition, byte, IShip)} com o resultado desse tiro.</li>
+ * </ol>
+ * <p>Uma instância pode jogar várias partidas seguidas, mas nunca duas em simultâneo:
+ * não precisa de ser thread-safe. A estratégia só deve usar a informação que um jogador
+ * humano teria (o histórico de tiros e os resultados), e não a frota do adversário.</p>
+ *
+ * @see PlacementStrategy
+ * @see Tournament
+ */
+public interface ShooterStrategy {
+
+    /**
+     * Nome curto e único da estratégia, usado nos relatórios e para a escolher.
+     *
+     * @return o nome da estratégia
+     */
+    String getName();
+
+    /**
+     * Prepara uma nova partida, esquecendo as anteriores.
+     *
+     * @param boardSize número de linhas e de colunas do tabuleiro
+     * @param seed semente para as escolhas aleatórias, para que as partidas sejam reproduzíveis
+     */
+    void start(int boardSize, long seed);
+
+    /**
+     * Escolhe o próximo tiro.
+     *
+     * @param game a partida em curso, cujo histórico de tiros pode ser consultado
+     * @return a posição a atingir
+     */
+    IPosition nextShot(IGame game);
+
+    /**
+     * Recebe o resultado do último tiro escolhido.
+     *
+     * @param shot a posição atingida
+     * @param outcome um dos resultados de {@link VolleyResult}
+     * @param sunk o navio afundado, quando {@code outcome} é {@link VolleyResult#SUNK}; {@code null} caso contrário
+     */
+    void shotResult(IPosition shot, byte outcome, IShip sunk);
+
+    /**
+     * Recebe o resultado do último tiro escolhido, tal como {@link Game#fireVolley(java.util.List)}
+     * o resolveu numa salva só com esse tiro.
+     *
+     * <p>É o caminho comum dos torneios, das simulações e do otimizador de posicionamento,
+     * para que uma estratégia receba as mesmas chamadas em todos eles.</p>
+     *
+     * @param shot a posição atingida
+     * @param result o resultado da salva de um tiro
+     */
+    default void shotResult(IPosition shot, VolleyResult result) {
+        byte outcome = result.getOutcome(0);
+        shotResult(shot, outcome, outcome == VolleyResult.SUNK ? result.getSunkShips().get(0) : null);
+    }
+}
@@ -0,0 +1,523 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Hands out seeded batches of games to {@link SimulationWorker}s, usually other
+ * JVMs, over a loopback socket, and merges their results.
+ *
+ * A simulation plays one shooter strategy against the fleets of one placement
+ * strategy, one game per seed. Seeds are cut into batches; a worker asks for a
+ * batch, plays it and sends back a {@link Tally}, then asks for the next. A batch
+ * whose worker disconnects, or does not answer within the lease time, goes back
+ * to the front of the queue for another worker; a result that arrives for a
+ * batch already merged is ignored, so the final tally is the same whatever the
+ * workers and their failures. A batch that fails five times fails the simulation.
+ *
+ * <h2>Protocol</h2>
+ * All numbers are big-endian, strings in modified UTF-8.
+ * <ul>
+ *   <li>Worker: the int {@code 0x42535357} and the protocol version, then any
+ *       number of requests ({@code 1}) or results ({@code 2}). A result is the
+ *       batch id (varint) and the tally of the batch.</li>
+ *   <li>Coordinator, per request: a batch ({@code 1}) with its id (varint),
+ *       shooter and placement names, first seed and number of games (varint);
+ *       or {@code 2} when there is no batch left.</li>
+ * </ul>
+ *
+ * Usage: {@code java iscteiul.ista.battleship.SimulationCoordinator games [--port p] [--batch n]
+ * [--shooter name] [--placement name] [--seed s]}, then start workers with the port it prints.
+ */
+public final class SimulationCoordinator implements AutoCloseable {
+
+    /** First int of a worker connection. */
+    static final int MAGIC = 0x42535357;
+    /** Version of the protocol. */
+    static final int VERSION = 1;
+    /** Worker message: asks for a batch. */
+    static final byte REQUEST = 1;
+    /** Worker message: the tally of a batch. */
+    static final byte RESULT = 2;
+    /** Coordinator message: a batch to play. */
+    static final byte BATCH = 1;
+    /** Coordinator message: no batch left, the worker may leave. */
+    static final byte DONE = 2;
+
+    /** Times a batch is handed out before the simulation fails. */
+    static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * Aggregate of a number of games: how many shots it took to sink the whole
+     * fleet. Games not finished within the shot limit are counted apart.
+     */
+    public static final class Tally {
+        private long games;
+        private long unfinished;
+        private long shots;
+        private long squares;
+        private int min = Integer.MAX_VALUE;
+        private int max;
+        /** Number of finished games per number of shots. */
+        private long[] histogram = new long[128];
+
+        Tally() {
+        }
+
+        /**
+         * Counts a game.
+         *
+         * @param shots the shots it took to sink the fleet, or a negative number if the game was not finished
+         */
+        void add(int shots) {
+            games++;
+            if (shots < 0) {
+                unfinished++;
+                return;
+            }
+            this.shots += shots;
+            squares += (long) shots * shots;
+            min = Math.min(min, shots);
+            max = Math.max(max, shots);
+            if (shots >= histogram.length)
+                histogram = Arrays.copyOf(histogram, Math.max(shots + 1, histogram.length * 2));
+            histogram[shots]++;
+        }
+
+        /**
+         * Adds the games of another tally to this one.
+         *
+         * @param other the tally to add
+         */
+        void merge(Tally other) {
+            games += other.games;
+            unfinished += other.unfinished;
+            shots += other.shots;
+            squares += other.squares;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (other.histogram.length > histogram.length)
+                histogram = Arrays.copyOf(histogram, other.histogram.length);
+            for (int i = 0; i < other.histogram.length; i++)
+                histogram[i] += other.histogram[i];
+        }
+
+        /**
+         * Returns the number of games played.
+         *
+         * @return the number of games
+         */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * Returns the number of games in which the fleet was not sunk within the shot limit.
+         *
+         * @return the number of unfinished games
+         */
+        public long getUnfinished() {
+            return unfinished;
+        }
+
+        /**
+         * Returns the total shots of the finished games.
+         *
+         * @return the number of shots
+         */
+        public long getShots() {
+            return shots;
+        }
+
+        /**
+         * Returns the mean number of shots of the finished games.
+         *
+         * @return the mean, or NaN if no game finished
+         */
+        public double getMean() {
+            long finished = games - unfinished;
+            return finished == 0 ? Double.NaN : (double) shots / finished;
+        }
+
+        /**
+         * Returns the standard deviation of the number of shots of the finished games.
+         *
+         * @return the standard deviation, or NaN if no game finished
+         */
+        public double getStandardDeviation() {
+            long finished = games - unfinished;
+            if (finished == 0)
+                return Double.NaN;
+            double mean = getMean();
+            return Math.sqrt(Math.max(0, (double) squares / finished - mean * mean));
+        }
+
+        /**
+         * Returns the fewest shots of a finished game.
+         *
+         * @return the fewest shots, or {@link Integer#MAX_VALUE} if no game finished
+         */
+        public int getMin() {
+            return min;
+        }
+
+        /**
+         * Returns the most shots of a finished game.
+         *
+         * @return the most shots, or 0 if no game finished
+         */
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the number of games finished in a given number of shots.
+         *
+         * @param shots the number of shots
+         * @return the number of games
+         */
+        public long getGames(int shots) {
+            return shots >= 0 && shots < histogram.length ? histogram[shots] : 0;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeLong(games);
+            out.writeLong(unfinished);
+            out.writeLong(shots);
+            out.writeLong(squares);
+            out.writeInt(min);
+            out.writeInt(max);
+            int used = max + 1;
+            GameCodec.writeVarInt(out, used);
+            for (int i = 0; i < used; i++)
+                GameCodec.writeVarInt(out, (int) histogram[i]);
+        }
+
+        static Tally read(DataInput in) throws IOException {
+            Tally tally = new Tally();
+            tally.games = in.readLong();
+            tally.unfinished = in.readLong();
+            tally.shots = in.readLong();
+            tally.squares = in.readLong();
+            tally.min = in.readInt();
+            tally.max = in.readInt();
+            int used = GameCodec.readVarInt(in);
+            tally.histogram = new long[Math.max(used, 1)];
+            for (int i = 0; i < used; i++)
+                tally.histogram[i] = GameCodec.readVarInt(in);
+            return tally;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("games=%d unfinished=%d mean=%.2f sd=%.2f min=%d max=%d", games, unfinished,
+                    getMean(), getStandardDeviation(), games == unfinished ? 0 : min, max);
+        }
+    }
+
+    /**
+     * Serves one worker connection: hands out one batch at a time and merges its results.
+     */
+    private final class Connection implements Runnable {
+        private final Socket socket;
+
+        private Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            int leased = -1;
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, lease.toMillis()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                    return;
+                while (true) {
+                    byte message = in.readByte();
+                    if (message == RESULT) {
+                        int id = GameCodec.readVarInt(in);
+                        Tally tally = Tally.read(in);
+                        if (id == leased) {
+                            complete(id, tally);
+                            leased = -1;
+                        }
+                    } else if (message == REQUEST) {
+                        leased = lease();
+                        if (leased < 0) {
+                            out.writeByte(DONE);
+                            out.flush();
+                            return;
+                        }
+                        out.writeByte(BATCH);
+                        GameCodec.writeVarInt(out, leased);
+                        out.writeUTF(shooter);
+                        out.writeUTF(placement);
+                        out.writeLong(firstSeed + (long) leased * batchSize);
+                        GameCodec.writeVarInt(out, batchGames(leased));
+                        out.flush();
+                    } else {
+                        return;
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                // the worker held its batch for longer than the lease
+            } catch (IOException e) {
+                // the worker disconnected
+            } finally {
+                if (leased >= 0)
+                    release(leased);
+                connections.remove(socket);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // already closed
+                }
+            }
+        }
+    }
+
+    private final String shooter;
+    private final String placement;
+    private final long firstSeed;
+    private final long games;
+    private final int batchSize;
+    private final Duration lease;
+
+    private final Tally tally = new Tally();
+    private final Deque<Integer> queue = new ArrayDeque<>();
+    private final boolean[] completed;
+    private final int[] attempts;
+    private int remaining;
+    private String failure;
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private volatile ServerSocket server;
+    private volatile boolean closed;
+
+    /**
+     * Creates a coordinator.
+     *
+     * @param shooter the name of the shooter strategy, as in {@link Strategies#shooter(String)}
+     * @param placement the name of the placement strategy, as in {@link Strategies#placement(String)}
+     * @param firstSeed the seed of the first game; the others follow
+     * @param games the number of games
+     * @param batchSize the number of games per batch
+     * @param lease how long a worker may hold a batch before it is handed to another
+     * @throws IllegalArgumentException if a strategy is unknown or a number is not positive
+     */
+    public SimulationCoordinator(String shooter, String placement, long firstSeed, long games, int batchSize,
+                                 Duration lease) {
+        Strategies.shooter(shooter);
+        Strategies.placement(placement);
+        if (games < 1 || batchSize < 1)
+            throw new IllegalArgumentException("ERROR! the numbers of games and of games per batch must be positive");
+        long batches = (games + batchSize - 1) / batchSize;
+        if (batches > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("ERROR! too many batches; use larger ones");
+        this.shooter = shooter;
+        this.placement = placement;
+        this.firstSeed = firstSeed;
+        this.games = games;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.completed = new boolean[(int) batches];
+        this.attempts = new int[(int) batches];
+        this.remaining = (int) batches;
+        for (int i = 0; i < batches; i++)
+            queue.add(i);
+    }
+
+    /**
+     * Starts accepting workers on the loopback interface.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @return the port the coordinator is listening on
+     * @throws UncheckedIOException if the socket cannot be opened
+     */
+    public int listen(int port) {
+        try {
+            server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Thread acceptor = new Thread(() -> {
+            while (!closed) {
+                try {
+                    Socket socket = server.accept();
+                    connections.add(socket);
+                    Thread t = new Thread(new Connection(socket), "simulation-" + socket.getPort());
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        }, "simulation-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    /**
+     * Waits until every batch has been played.
+     *
+     * @param timeout the longest time to wait
+     * @return the tally of all the games
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TimeoutException if some batch is still missing when the time is up
+     * @throws IllegalStateException if a batch failed five times
+     */
+    public synchronized Tally await(Duration timeout) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (remaining > 0 && failure == null) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0)
+                throw new TimeoutException("ERROR! " + remaining + " batches still missing");
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        if (failure != null)
+            throw new IllegalStateException(failure);
+        return tally;
+    }
+
+    /**
+     * Returns the number of batches not yet played.
+     *
+     * @return the number of batches
+     */
+    public synchronized int getRemainingBatches() {
+        return remaining;
+    }
+
+    /**
+     * Stops accepting workers and drops the connected ones.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (server != null)
+                server.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Runs a simulation, printing the port for the workers and, at the end, the tally.
+     *
+     * @param args the number of games, then optionally {@code --port p}, {@code --batch n},
+     *             {@code --shooter name}, {@code --placement name} and {@code --seed s}
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @throws TimeoutException if the simulation takes longer than a year
+     */
+    public static void main(String[] args) throws InterruptedException, TimeoutException {
+        int port = 0;
+        int batch = 1000;
+        String shooter = "hunt-target";
+        String placement = "random";
+        long seed = 0;
+        long games = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length)
+                port = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--batch") && i + 1 < args.length)
+                batch = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--shooter") && i + 1 < args.length)
+                shooter = args[++i];
+            else if (args[i].equals("--placement") && i + 1 < args.length)
+                placement = args[++i];
+            else if (args[i].equals("--seed") && i + 1 < args.length)
+                seed = Long.parseLong(args[++i]);
+            else
+                games = Long.parseLong(args[i]);
+        }
+        if (games < 1) {
+            System.err.println("usage: SimulationCoordinator <games> [--port p] [--batch n] [--shooter name]"
+                    + " [--placement name] [--seed s]");
+            System.exit(2);
+        }
+        try (SimulationCoordinator coordinator = new SimulationCoordinator(shooter, placement, seed, games, batch,
+                Duration.ofMinutes(5))) {
+            System.out.println("port=" + coordinator.listen(port));
+            long start = System.nanoTime();
+            Tally tally = coordinator.await(Duration.ofDays(365));
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            System.out.println(tally + " millis=" + millis + " games/s=" + tally.getGames() * 1000 / millis);
+        }
+    }
+
+    /** Takes the next batch, waiting while all are out with workers; -1 when there is none left. */
+    private synchronized int lease() throws IOException {
+        while (queue.isEmpty() && remaining > 0 && failure == null && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("ERROR! interrupted while waiting for a batch", e);
+            }
+        }
+        if (queue.isEmpty() || failure != null || closed)
+            return -1;
+        int id = queue.poll();
+        if (++attempts[id] > MAX_ATTEMPTS) {
+            failure = "ERROR! batch " + id + " failed " + MAX_ATTEMPTS + " times";
+            notifyAll();
+            return -1;
+        }
+        return id;
+    }
+
+    private synchronized void complete(int id, Tally result) {
+        if (completed[id])
+            return;
+        completed[id] = true;
+        tally.merge(result);
+        if (--remaining == 0)
+            notifyAll();
+    }
+
+    private synchronized void release(int id) {
+        if (!completed[id]) {
+            queue.addFirst(id);
+            notifyAll();
+        }
+    }
+
+    private int batchGames(int id) {
+        return (int) Math.min(batchSize, games - (long) id * batchSize);
+    }
+}
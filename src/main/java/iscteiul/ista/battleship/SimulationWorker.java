@@ -0,0 +1,163 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Collections;
+
+/**
+ * Plays batches of games for a {@link SimulationCoordinator}, until it has none left.
+ *
+ * Each game places a fleet with the placement strategy from the seed of the game,
+ * then lets the shooter strategy fire at it through {@link Game#fireVolley(java.util.List)}
+ * until the fleet is sunk or twice as many shots as there are cells have been
+ * fired. Games depend only on their seed, so any worker can play any batch.
+ *
+ * Usage: {@code java iscteiul.ista.battleship.SimulationWorker port [--host h]}.
+ * For testing failures, {@code --fail-after n} makes the worker halt its JVM,
+ * without answering, once it has received its n-th batch.
+ */
+public final class SimulationWorker {
+
+    private final String host;
+    private final int port;
+    private int failAfter = -1;
+
+    /**
+     * Creates a worker for a coordinator.
+     *
+     * @param host the host of the coordinator, or null for the loopback interface
+     * @param port the port of the coordinator
+     */
+    public SimulationWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Makes the worker drop the connection, without answering, once it has
+     * received a number of batches, as a worker that crashes would.
+     *
+     * @param batches the number of batches received before failing
+     */
+    void failAfter(int batches) {
+        this.failAfter = batches;
+    }
+
+    /**
+     * Plays batches until the coordinator has none left.
+     *
+     * @return the number of batches played
+     * @throws IOException if the connection fails, or the worker was made to fail
+     */
+    public int run() throws IOException {
+        int played = 0;
+        try (Socket socket = new Socket(host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host),
+                port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(SimulationCoordinator.MAGIC);
+            out.writeInt(SimulationCoordinator.VERSION);
+            while (true) {
+                out.writeByte(SimulationCoordinator.REQUEST);
+                out.flush();
+                if (in.readByte() != SimulationCoordinator.BATCH)
+                    return played;
+                int id = GameCodec.readVarInt(in);
+                String shooter = in.readUTF();
+                String placement = in.readUTF();
+                long firstSeed = in.readLong();
+                int games = GameCodec.readVarInt(in);
+                if (played == failAfter - 1)
+                    throw new IOException("ERROR! worker made to fail at batch " + id);
+                SimulationCoordinator.Tally tally = play(shooter, placement, firstSeed, games);
+                out.writeByte(SimulationCoordinator.RESULT);
+                GameCodec.writeVarInt(out, id);
+                tally.write(out);
+                played++;
+            }
+        }
+    }
+
+    /**
+     * Plays a run of games.
+     *
+     * @param shooter the name of the shooter strategy
+     * @param placement the name of the placement strategy
+     * @param firstSeed the seed of the first game
+     * @param games the number of games, one per seed from {@code firstSeed}
+     * @return the tally of the games
+     * @throws IllegalArgumentException if a strategy is unknown
+     */
+    public static SimulationCoordinator.Tally play(String shooter, String placement, long firstSeed, int games) {
+        ShooterStrategy player = Strategies.shooter(shooter).get();
+        PlacementStrategy placer = Strategies.placement(placement).get();
+        SimulationCoordinator.Tally tally = new SimulationCoordinator.Tally();
+        for (long seed = firstSeed; seed < firstSeed + games; seed++)
+            tally.add(play(player, new Game(placer.place(seed)), seed));
+        return tally;
+    }
+
+    /**
+     * Plays one game, until the fleet is sunk or twice as many shots as there are
+     * cells have been fired.
+     *
+     * @param player the shooter strategy
+     * @param game the game, with no shot fired yet
+     * @param seed the seed of the game, for the shooter strategy
+     * @return the number of shots fired, or -1 if the fleet was not sunk
+     */
+    static int play(ShooterStrategy player, Game game, long seed) {
+        int boardSize = game.getFleet().getBoardSize();
+        player.start(boardSize, seed);
+        int limit = 2 * boardSize * boardSize;
+        int shots = 0;
+        while (game.getRemainingShips() > 0 && shots < limit) {
+            IPosition shot = player.nextShot(game);
+            player.shotResult(shot, game.fireVolley(Collections.singletonList(shot)));
+            shots++;
+        }
+        return game.getRemainingShips() == 0 ? shots : -1;
+    }
+
+    /**
+     * Runs a worker.
+     *
+     * @param args the port of the coordinator, then optionally {@code --host h} and {@code --fail-after n}
+     */
+    public static void main(String[] args) {
+        String host = null;
+        int port = -1;
+        int failAfter = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--host") && i + 1 < args.length)
+                host = args[++i];
+            else if (args[i].equals("--fail-after") && i + 1 < args.length)
+                failAfter = Integer.parseInt(args[++i]);
+            else
+                port = Integer.parseInt(args[i]);
+        }
+        if (port < 0) {
+            System.err.println("usage: SimulationWorker <port> [--host h] [--fail-after n]");
+            System.exit(2);
+        }
+        SimulationWorker worker = new SimulationWorker(host, port);
+        worker.failAfter(failAfter);
+        try {
+            System.out.println("batches=" + worker.run());
+        } catch (IOException e) {
+            if (failAfter > 0)
+                Runtime.getRuntime().halt(3);
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
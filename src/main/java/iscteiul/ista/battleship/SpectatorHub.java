@@ -0,0 +1,474 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broadcasts the events of one game to many spectators.
+ *
+ * The hub subscribes to {@link Game#getEvents()} and collects the events it
+ * receives. Once per tick it encodes the collected events into a single batch
+ * frame and hands the same byte array to every viewer, so the cost of encoding
+ * does not grow with the number of viewers. Viewers are either in-process queues
+ * ({@link #addViewer(int)}) or clients connected to a loopback socket
+ * ({@link #listen(int, int)}).
+ *
+ * Every viewer has a bounded queue of frames. A viewer whose queue is full when
+ * a batch arrives is lagging: its backlog is discarded and replaced by a snapshot
+ * frame with the complete visible state of the board, from which it can carry on
+ * with the following batches. New viewers also start from a snapshot, which
+ * already includes the batch of the tick in which they join. A tick whose events
+ * include an undo or a redo sends every viewer a snapshot instead of the batch,
+ * replacing its backlog, so that viewers only ever apply shots forward. The
+ * snapshot is encoded at most once per tick, and only in ticks that need one.
+ *
+ * Closing the hub ends every stream with an end frame, after which socket
+ * viewers are disconnected.
+ *
+ * <h2>Frame format</h2>
+ * Frames are byte arrays; on sockets each frame is preceded by its length as a
+ * 4-byte big-endian integer.
+ * <ul>
+ *   <li>Batch: {@code 1}, number of events (varint), then per event its
+ *       {@link GameEvent.Type} ordinal as a byte, then its row and column plus one
+ *       as varints (0 for none).</li>
+ *   <li>Snapshot: {@code 2}, sequence of the next event, hits, sunk ships, invalid
+ *       and repeated shots (varints), then one byte per cell in row order:
+ *       {@link #UNKNOWN}, {@link #WATER}, {@link #HIT} or {@link #SUNK}.</li>
+ *   <li>End: {@code 3}, the last frame of every viewer.</li>
+ * </ul>
+ */
+public class SpectatorHub implements Flow.Subscriber<GameEvent>, AutoCloseable {
+
+    /** Frame kind of a batch of events. */
+    public static final byte BATCH = 1;
+    /** Frame kind of a snapshot. */
+    public static final byte SNAPSHOT = 2;
+    /** Frame kind of the end of the stream. */
+    public static final byte END = 3;
+
+    /** Snapshot cell state: not fired at. */
+    public static final byte UNKNOWN = 0;
+    /** Snapshot cell state: fired at, water. */
+    public static final byte WATER = 1;
+    /** Snapshot cell state: fired at, part of a ship still floating. */
+    public static final byte HIT = 2;
+    /** Snapshot cell state: part of a sunk ship. */
+    public static final byte SUNK = 3;
+
+    /** The one frame of kind {@link #END}. */
+    private static final byte[] END_FRAME = { END };
+    /** How long {@link #close()} waits for socket viewers to receive their end frame. */
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final class Viewer {
+        private final BlockingQueue<byte[]> frames;
+        private final Socket socket;
+        private Thread writer;
+
+        private Viewer(int capacity, Socket socket) {
+            this.frames = new ArrayBlockingQueue<>(capacity);
+            this.socket = socket;
+        }
+
+        /** Queues a frame; returns false if the viewer is lagging and the frame did not fit. */
+        private boolean deliver(byte[] frame) {
+            return frames.offer(frame);
+        }
+
+        /** Replaces the backlog of a lagging viewer, or of a closing one, with a single frame. */
+        private void replace(byte[] frame) {
+            frames.clear();
+            frames.offer(frame);
+        }
+
+        private void stream() {
+            try (OutputStream raw = socket.getOutputStream()) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw));
+                for (byte[] frame = frames.take();; frame = frames.take()) {
+                    out.writeInt(frame.length);
+                    out.write(frame);
+                    if (frame == END_FRAME) {
+                        out.flush();
+                        break;
+                    }
+                    if (frames.isEmpty())
+                        out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // the viewer went away or the hub is closing
+            } finally {
+                viewers.remove(this);
+            }
+        }
+    }
+
+    private final int boardSize;
+    private final byte[] cells;
+    private int hits;
+    private int sinks;
+    private int invalid;
+    private int repeated;
+    private long nextSequence;
+
+    private final ConcurrentLinkedQueue<GameEvent> pending;
+    private final ConcurrentLinkedQueue<Viewer> joining;
+    private final List<Viewer> viewers;
+    private final ScheduledExecutorService ticker;
+    private final ByteArrayOutputStream buffer;
+    private final AtomicLong catchUps;
+    private final AtomicLong missedEvents;
+    private volatile Flow.Subscription subscription;
+    private volatile ServerSocket server;
+    private volatile boolean closed;
+
+    /**
+     * Creates a hub for the given game and subscribes it to the game's events.
+     *
+     * Must be called from the thread that plays the game, since the initial
+     * state is read from the game and its fleet.
+     *
+     * @param game the game to broadcast
+     * @param tick the interval between batches
+     */
+    public SpectatorHub(Game game, Duration tick) {
+        this.boardSize = game.getFleet().getBoardSize();
+        this.cells = new byte[boardSize * boardSize];
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.joining = new ConcurrentLinkedQueue<>();
+        this.viewers = new CopyOnWriteArrayList<>();
+        this.buffer = new ByteArrayOutputStream(256);
+        this.catchUps = new AtomicLong();
+        this.missedEvents = new AtomicLong();
+
+        IFleet fleet = game.getFleet();
+        for (IPosition pos : game.getShots())
+            mark(pos.getRow(), pos.getColumn(), fleet.shipAt(pos) == null ? WATER : HIT);
+        for (IShip ship : fleet.getShips())
+            if (!ship.stillFloating())
+                markSunk(ship);
+        hits = game.getHits();
+        sinks = game.getSunkShips();
+        invalid = game.getInvalidShots();
+        repeated = game.getRepeatedShots();
+        nextSequence = -1;
+
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "spectator-hub");
+            t.setDaemon(true);
+            return t;
+        });
+        long nanos = tick.toNanos();
+        ticker.scheduleAtFixedRate(this::tick, nanos, nanos, TimeUnit.NANOSECONDS);
+        game.getEvents().subscribe(this);
+    }
+
+    /**
+     * Adds an in-process viewer.
+     *
+     * @param capacity the number of frames the viewer may fall behind before it is considered lagging
+     * @return the queue the viewer reads frames from
+     */
+    public BlockingQueue<byte[]> addViewer(int capacity) {
+        Viewer viewer = new Viewer(capacity, null);
+        joining.add(viewer);
+        return viewer.frames;
+    }
+
+    /**
+     * Starts accepting socket viewers on the loopback interface.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param capacity the number of frames each viewer may fall behind before it is considered lagging
+     * @return the port the hub is listening on
+     * @throws UncheckedIOException if the socket cannot be opened
+     */
+    public int listen(int port, int capacity) {
+        try {
+            server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Thread acceptor = new Thread(() -> {
+            while (!closed) {
+                try {
+                    Socket socket = server.accept();
+                    socket.setTcpNoDelay(true);
+                    Viewer viewer = new Viewer(capacity, socket);
+                    viewer.writer = new Thread(viewer::stream, "spectator-" + socket.getPort());
+                    viewer.writer.setDaemon(true);
+                    viewer.writer.start();
+                    joining.add(viewer);
+                    // accepted while closing: too late for close() to see it
+                    if (closed)
+                        viewer.replace(END_FRAME);
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        }, "spectator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the number of connected viewers.
+     *
+     * @return the number of viewers
+     */
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    /**
+     * Returns how many times a lagging viewer was caught up with a snapshot.
+     *
+     * @return the number of catch-ups
+     */
+    public long getCatchUps() {
+        return catchUps.get();
+    }
+
+    /**
+     * Returns how many game events never reached the hub because its own buffer was full.
+     *
+     * @return the number of missed events
+     */
+    public long getMissedEvents() {
+        return missedEvents.get();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(GameEvent event) {
+        pending.add(event);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        ticker.execute(this::tick);
+    }
+
+    @Override
+    public void onComplete() {
+        ticker.execute(this::tick);
+    }
+
+    /**
+     * Stops broadcasting and disconnects all viewers.
+     *
+     * Every viewer gets an {@link #END} frame in place of any frames it has not
+     * read yet. Socket viewers are given a short while to receive it before they
+     * are disconnected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Flow.Subscription s = subscription;
+        if (s != null)
+            s.cancel();
+        ticker.shutdownNow();
+        try {
+            if (server != null)
+                server.close();
+            // the last tick must not queue frames after the end frame
+            ticker.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            for (Viewer v = joining.poll(); v != null; v = joining.poll())
+                viewers.add(v);
+            for (Viewer v : viewers)
+                v.replace(END_FRAME);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+            for (Viewer v : viewers) {
+                if (v.socket == null)
+                    continue;
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left > 0)
+                    v.writer.join(left);
+                v.writer.interrupt();
+                v.socket.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Runs on the ticker thread: applies and encodes the pending events once,
+     * then fans the frame out to every viewer.
+     *
+     * Viewers that join in this tick are moved in only after the fan-out: their
+     * snapshot is taken after the batch was applied, so they must not get the
+     * batch as well. The snapshot is only encoded if a viewer joins or lags, or
+     * a shot was undone or redone.
+     */
+    private void tick() {
+        byte[] batch = null;
+        boolean resync = false;
+        if (!pending.isEmpty()) {
+            buffer.reset();
+            buffer.write(BATCH);
+            int count = 0;
+            ByteArrayOutputStream events = new ByteArrayOutputStream(64);
+            for (GameEvent e = pending.poll(); e != null; e = pending.poll()) {
+                apply(e);
+                resync |= e.getType() == GameEvent.Type.UNDO || e.getType() == GameEvent.Type.REDO;
+                events.write(e.getType().ordinal());
+                writeVarInt(events, e.getRow() + 1);
+                writeVarInt(events, e.getColumn() + 1);
+                count++;
+            }
+            writeVarInt(buffer, count);
+            buffer.write(events.toByteArray(), 0, events.size());
+            batch = buffer.toByteArray();
+        }
+
+        byte[] snapshot = null;
+        if (resync) {
+            snapshot = snapshot();
+            for (Viewer v : viewers)
+                v.replace(snapshot);
+        } else if (batch != null) {
+            for (Viewer v : viewers) {
+                if (v.deliver(batch))
+                    continue;
+                if (snapshot == null)
+                    snapshot = snapshot();
+                v.replace(snapshot);
+                catchUps.incrementAndGet();
+            }
+        }
+        for (Viewer v = joining.poll(); v != null; v = joining.poll()) {
+            if (snapshot == null)
+                snapshot = snapshot();
+            v.frames.offer(snapshot);
+            viewers.add(v);
+        }
+    }
+
+    private void apply(GameEvent e) {
+        if (nextSequence >= 0 && e.getSequence() > nextSequence)
+            missedEvents.addAndGet(e.getSequence() - nextSequence);
+        nextSequence = e.getSequence() + 1;
+
+        switch (e.getType()) {
+            case UNDO:
+                undo(e);
+                break;
+            case REDO:
+                applyShot(e.getShot(), e);
+                break;
+            default:
+                applyShot(e.getType(), e);
+                break;
+        }
+    }
+
+    /** Applies a shot of the given outcome, fired or redone. */
+    private void applyShot(GameEvent.Type outcome, GameEvent e) {
+        switch (outcome) {
+            case INVALID:
+                invalid++;
+                break;
+            case REPEATED:
+                repeated++;
+                break;
+            case MISS:
+                mark(e.getRow(), e.getColumn(), WATER);
+                break;
+            case HIT:
+                hits++;
+                mark(e.getRow(), e.getColumn(), HIT);
+                break;
+            case SUNK:
+                hits++;
+                sinks++;
+                markSunk(e.getShip());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Reverts a shot taken back: a sunk ship floats again, with its other cells still hit. */
+    private void undo(GameEvent e) {
+        switch (e.getShot()) {
+            case INVALID:
+                invalid--;
+                return;
+            case REPEATED:
+                repeated--;
+                return;
+            case SUNK:
+                sinks--;
+                for (IPosition p : e.getShip().getPositions())
+                    mark(p.getRow(), p.getColumn(), HIT);
+                hits--;
+                break;
+            case HIT:
+                hits--;
+                break;
+            default:
+                break;
+        }
+        mark(e.getRow(), e.getColumn(), UNKNOWN);
+    }
+
+    private void mark(int row, int column, byte state) {
+        if (row >= 0 && row < boardSize && column >= 0 && column < boardSize)
+            cells[row * boardSize + column] = state;
+    }
+
+    private void markSunk(IShip ship) {
+        for (IPosition p : ship.getPositions())
+            mark(p.getRow(), p.getColumn(), SUNK);
+    }
+
+    private byte[] snapshot() {
+        buffer.reset();
+        buffer.write(SNAPSHOT);
+        writeVarInt(buffer, (int) Math.max(nextSequence, 0));
+        writeVarInt(buffer, hits);
+        writeVarInt(buffer, sinks);
+        writeVarInt(buffer, invalid);
+        writeVarInt(buffer, repeated);
+        buffer.write(cells, 0, cells.length);
+        return buffer.toByteArray();
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
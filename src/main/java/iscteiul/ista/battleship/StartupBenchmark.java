@@ -0,0 +1,141 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures how long a fresh JVM takes to fire its first shot through
+ * {@code App --batch}, under several launch configurations.
+ *
+ * Usage:
+ * <pre>
+ * java -cp &lt;classpath&gt; iscteiul.ista.battleship.StartupBenchmark [--runs n] [--archive battleship.jsa]
+ * </pre>
+ * Every run starts a new JVM with the classpath of the benchmark itself, which
+ * must be the one the archive was created with (see the {@code appcds} profile
+ * of the pom), and runs a one-volley script. The child reports the wall-clock
+ * time of its first volley, so the time to first shot includes JVM startup,
+ * class loading and script parsing, but not the JVM shutdown that follows.
+ * Configurations are run in turns, after one discarded warm-up round.
+ */
+public final class StartupBenchmark {
+
+    private static final String SCRIPT = "nova semente 1\nrajada 0 0  0 1  0 2\n";
+
+    private static final class Configuration {
+        private final String name;
+        private final List<String> options;
+        private final long[] firstShot;
+        private final long[] total;
+
+        private Configuration(String name, int runs, String... options) {
+            this.name = name;
+            this.options = Arrays.asList(options);
+            this.firstShot = new long[runs];
+            this.total = new long[runs];
+        }
+    }
+
+    private StartupBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark and prints one line per configuration.
+     *
+     * @param args the options of the benchmark
+     * @throws IOException if a child JVM cannot be started
+     * @throws InterruptedException if interrupted while waiting for a child JVM
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = 20;
+        Path archive = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--runs") && i + 1 < args.length)
+                runs = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--archive") && i + 1 < args.length)
+                archive = Paths.get(args[++i]);
+            else
+                throw new IllegalArgumentException("ERROR! unknown option " + args[i]);
+        }
+
+        List<Configuration> configurations = new ArrayList<>();
+        configurations.add(new Configuration("eager-jfr", runs, "-Dbattleship.jfr=true"));
+        configurations.add(new Configuration("lazy", runs));
+        configurations.add(new Configuration("lazy+c1", runs, "-XX:TieredStopAtLevel=1"));
+        if (archive != null) {
+            if (!Files.isRegularFile(archive))
+                throw new IllegalArgumentException("ERROR! no archive at " + archive);
+            String shared = "-XX:SharedArchiveFile=" + archive;
+            configurations.add(new Configuration("lazy+cds", runs, shared));
+            configurations.add(new Configuration("lazy+cds+c1", runs, shared, "-XX:TieredStopAtLevel=1"));
+        }
+
+        Path script = Files.createTempFile("startup", ".txt");
+        try {
+            Files.write(script, SCRIPT.getBytes(StandardCharsets.US_ASCII));
+            for (Configuration c : configurations)
+                launch(c, script, 0);
+            for (int run = 0; run < runs; run++)
+                for (Configuration c : configurations)
+                    launch(c, script, run);
+        } finally {
+            Files.deleteIfExists(script);
+        }
+
+        System.out.printf("%-14s %6s %14s %14s %14s %14s%n",
+                "configuration", "runs", "first p50(ms)", "first p90(ms)", "first min(ms)", "exit p50(ms)");
+        for (Configuration c : configurations) {
+            Arrays.sort(c.firstShot);
+            Arrays.sort(c.total);
+            System.out.printf("%-14s %6d %14d %14d %14d %14d%n", c.name, runs, percentile(c.firstShot, 50),
+                    percentile(c.firstShot, 90), c.firstShot[0], percentile(c.total, 50));
+        }
+    }
+
+    private static void launch(Configuration c, Path script, int run) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(c.options);
+        command.add("-Dbattleship.reportFirstShot=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("iscteiul.ista.App");
+        command.add("--batch");
+        command.add(script.toString());
+
+        ProcessBuilder builder = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        long start = System.currentTimeMillis();
+        Process process = builder.start();
+        long firstShot = -1;
+        try (BufferedReader err = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = err.readLine()) != null)
+                if (line.startsWith("first-shot "))
+                    firstShot = Long.parseLong(line.substring("first-shot ".length()));
+        }
+        process.waitFor();
+        long end = System.currentTimeMillis();
+        if (firstShot < 0)
+            throw new IllegalStateException("ERROR! " + c.name + " did not report its first shot (exit "
+                    + process.exitValue() + ")");
+        c.firstShot[run] = firstShot - start;
+        c.total[run] = end - start;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(sorted.length * p / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
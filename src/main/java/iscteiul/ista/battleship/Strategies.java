@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The shooter and placement strategies found on the class path with
+ * {@link ServiceLoader}.
+ *
+ * Strategies are stateful, so they are handed out as suppliers: each call to
+ * {@code get()} of a {@link ServiceLoader.Provider} creates a new instance, one
+ * per thread or per player.
+ */
+public final class Strategies {
+
+    /** Loaded on first use; a strategy with the name of an earlier one is ignored. */
+    private static final class Loaded {
+        static final Map<String, ServiceLoader.Provider<ShooterStrategy>> SHOOTERS =
+                load(ShooterStrategy.class, ShooterStrategy::getName);
+        static final Map<String, ServiceLoader.Provider<PlacementStrategy>> PLACEMENTS =
+                load(PlacementStrategy.class, PlacementStrategy::getName);
+    }
+
+    private Strategies() {
+    }
+
+    /**
+     * Returns the shooter strategies, by name, in the order they were found.
+     *
+     * @return the shooter strategies
+     */
+    public static Map<String, ? extends Supplier<ShooterStrategy>> shooters() {
+        return Collections.unmodifiableMap(Loaded.SHOOTERS);
+    }
+
+    /**
+     * Returns the placement strategies, by name, in the order they were found.
+     *
+     * @return the placement strategies
+     */
+    public static Map<String, ? extends Supplier<PlacementStrategy>> placements() {
+        return Collections.unmodifiableMap(Loaded.PLACEMENTS);
+    }
+
+    /**
+     * Returns the shooter strategy of a name.
+     *
+     * @param name the name of the strategy
+     * @return a supplier of new instances of the strategy
+     * @throws IllegalArgumentException if no strategy has that name
+     */
+    public static Supplier<ShooterStrategy> shooter(String name) {
+        Supplier<ShooterStrategy> s = Loaded.SHOOTERS.get(name);
+        if (s == null)
+            throw new IllegalArgumentException("ERROR! unknown shooter strategy " + name);
+        return s;
+    }
+
+    /**
+     * Returns the placement strategy of a name.
+     *
+     * @param name the name of the strategy
+     * @return a supplier of new instances of the strategy
+     * @throws IllegalArgumentException if no strategy has that name
+     */
+    public static Supplier<PlacementStrategy> placement(String name) {
+        Supplier<PlacementStrategy> s = Loaded.PLACEMENTS.get(name);
+        if (s == null)
+            throw new IllegalArgumentException("ERROR! unknown placement strategy " + name);
+        return s;
+    }
+
+    private static <S> Map<String, ServiceLoader.Provider<S>> load(Class<S> service, Function<S, String> name) {
+        Map<String, ServiceLoader.Provider<S>> byName = new LinkedHashMap<>();
+        ServiceLoader.load(service).stream().forEach(p -> byName.putIfAbsent(name.apply(p.get()), p));
+        return byName;
+    }
+}
@@ -1,5 +1,7 @@
 package iscteiul.ista.battleship;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -49,6 +51,36 @@ public class Tasks {
      */
     public static void taskD() { /* ... */ }
 
+    /**
+     * Lê uma rajada de {@link #NUMBER_SHOTS} tiros e dispara-a de uma só vez.
+     * * @param in Scanner para leitura das coordenadas (linha e coluna de cada tiro).
+     * @param game O jogo em curso.
+     * @return O resultado de cada tiro da rajada.
+     */
+    static VolleyResult firingRound(Scanner in, IGame game) {
+        return firingRound(in, game, NUMBER_SHOTS);
+    }
+
+    /**
+     * Lê uma rajada de tamanho arbitrário e dispara-a com {@link IGame#fireVolley(java.util.List)},
+     * em vez de invocar {@link IGame#fire(IPosition)} tiro a tiro.
+     * Os navios afundados são anunciados no fim da rajada.
+     * * @param in Scanner para leitura das coordenadas (linha e coluna de cada tiro).
+     * @param game O jogo em curso.
+     * @param volleySize Número de tiros da rajada.
+     * @return O resultado de cada tiro da rajada.
+     */
+    static VolleyResult firingRound(Scanner in, IGame game, int volleySize) {
+        List<IPosition> volley = new ArrayList<>(volleySize);
+        for (int i = 0; i < volleySize; i++)
+            volley.add(new Position(in.nextInt(), in.nextInt()));
+
+        VolleyResult result = game.fireVolley(volley);
+        for (IShip ship : result.getSunkShips())
+            System.out.println("Afundou: " + ship);
+        return result;
+    }
+
     /**
      * Constrói uma frota completa lendo dados do {@link Scanner}.
      * Garante que o número de navios adicionados respeita o tamanho definido em {@link Fleet#FLEET_SIZE}.
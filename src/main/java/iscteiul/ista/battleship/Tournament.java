@@ -0,0 +1,444 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Round-robin tournament between automated players.
+ *
+ * Every pair of entrants plays one match per seed. In a match each player fires
+ * at the fleet the other placed, taking turns of {@value ScriptRunner#NUMBER_SHOTS}
+ * shots, and the first to sink the whole fleet wins; the first turn alternates
+ * with the seed. Both placements use the seed of the match, so two entrants with
+ * the same placement strategy shoot at the very same fleet, which leaves only
+ * the shooters to make the difference. A player that has fired twice as many
+ * shots as there are cells without finishing stops, and when both stop the
+ * match is a draw.
+ *
+ * Seeds are split into blocks played in parallel, each block with its own
+ * strategy instances, so results do not depend on the number of threads.
+ * Scores count a win as one point and a draw as half, and come with a 95%
+ * Wilson score interval. The CPU time the strategies of an entrant take to
+ * choose shots and digest results is measured with {@link ThreadMXBean}.
+ */
+public final class Tournament {
+
+    /** Seeds per parallel task. */
+    private static final int BLOCK = 64;
+    /** z for a 95% confidence interval. */
+    private static final double Z = 1.96;
+
+    /**
+     * A player: a shooter strategy and a placement strategy.
+     */
+    public static final class Entrant {
+        private final String name;
+        private final Supplier<? extends ShooterStrategy> shooter;
+        private final Supplier<? extends PlacementStrategy> placement;
+
+        /**
+         * Creates an entrant.
+         *
+         * @param name the name of the entrant in the standings
+         * @param shooter creates the shooter strategy; called once per parallel task
+         * @param placement creates the placement strategy; called once per parallel task
+         */
+        public Entrant(String name, Supplier<? extends ShooterStrategy> shooter,
+                       Supplier<? extends PlacementStrategy> placement) {
+            this.name = name;
+            this.shooter = shooter;
+            this.placement = placement;
+        }
+
+        /**
+         * Returns the name of the entrant.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * The results of a tournament.
+     */
+    public static final class Standings {
+        private final List<Entrant> entrants;
+        private final int[] games;
+        private final int[] wins;
+        private final int[] draws;
+        private final long[] moves;
+        private final long[] cpuNanos;
+        /** Points of row entrant against column entrant. */
+        private final double[][] points;
+        private final int[][] meetings;
+        private boolean cpuMeasured;
+
+        private Standings(List<Entrant> entrants) {
+            int n = entrants.size();
+            this.entrants = entrants;
+            games = new int[n];
+            wins = new int[n];
+            draws = new int[n];
+            moves = new long[n];
+            cpuNanos = new long[n];
+            points = new double[n][n];
+            meetings = new int[n][n];
+        }
+
+        private void add(Standings other) {
+            for (int i = 0; i < games.length; i++) {
+                games[i] += other.games[i];
+                wins[i] += other.wins[i];
+                draws[i] += other.draws[i];
+                moves[i] += other.moves[i];
+                cpuNanos[i] += other.cpuNanos[i];
+                for (int j = 0; j < games.length; j++) {
+                    points[i][j] += other.points[i][j];
+                    meetings[i][j] += other.meetings[i][j];
+                }
+            }
+            cpuMeasured = other.cpuMeasured;
+        }
+
+        /**
+         * Returns the entrants, in the order they were given.
+         *
+         * @return the entrants
+         */
+        public List<Entrant> getEntrants() {
+            return entrants;
+        }
+
+        /**
+         * Returns the number of matches an entrant played.
+         *
+         * @param entrant the index of the entrant
+         * @return the number of matches
+         */
+        public int getGames(int entrant) {
+            return games[entrant];
+        }
+
+        /**
+         * Returns the number of matches an entrant won.
+         *
+         * @param entrant the index of the entrant
+         * @return the number of wins
+         */
+        public int getWins(int entrant) {
+            return wins[entrant];
+        }
+
+        /**
+         * Returns the number of matches of an entrant that ended in a draw.
+         *
+         * @param entrant the index of the entrant
+         * @return the number of draws
+         */
+        public int getDraws(int entrant) {
+            return draws[entrant];
+        }
+
+        /**
+         * Returns the number of matches an entrant lost.
+         *
+         * @param entrant the index of the entrant
+         * @return the number of losses
+         */
+        public int getLosses(int entrant) {
+            return games[entrant] - wins[entrant] - draws[entrant];
+        }
+
+        /**
+         * Returns the score of an entrant: its points over the matches it played.
+         *
+         * @param entrant the index of the entrant
+         * @return the score, between 0 and 1
+         */
+        public double getScore(int entrant) {
+            return games[entrant] == 0 ? 0 : (wins[entrant] + draws[entrant] / 2.0) / games[entrant];
+        }
+
+        /**
+         * Returns the lower bound of the 95% Wilson score interval of the score of an entrant.
+         *
+         * @param entrant the index of the entrant
+         * @return the lower bound
+         */
+        public double getLowerBound(int entrant) {
+            return wilson(getScore(entrant), games[entrant], -1);
+        }
+
+        /**
+         * Returns the upper bound of the 95% Wilson score interval of the score of an entrant.
+         *
+         * @param entrant the index of the entrant
+         * @return the upper bound
+         */
+        public double getUpperBound(int entrant) {
+            return wilson(getScore(entrant), games[entrant], 1);
+        }
+
+        /**
+         * Returns the score of an entrant in the matches against another.
+         *
+         * @param entrant the index of the entrant
+         * @param opponent the index of the opponent
+         * @return the score, between 0 and 1, or NaN if they did not meet
+         */
+        public double getScore(int entrant, int opponent) {
+            return meetings[entrant][opponent] == 0 ? Double.NaN
+                    : points[entrant][opponent] / meetings[entrant][opponent];
+        }
+
+        /**
+         * Returns the mean number of shots an entrant fired per match.
+         *
+         * @param entrant the index of the entrant
+         * @return the mean number of shots
+         */
+        public double getMovesPerGame(int entrant) {
+            return games[entrant] == 0 ? 0 : (double) moves[entrant] / games[entrant];
+        }
+
+        /**
+         * Returns the mean CPU time the strategies of an entrant took per shot.
+         *
+         * @param entrant the index of the entrant
+         * @return the CPU time per shot, in nanoseconds, or NaN if the JVM cannot measure thread CPU time
+         */
+        public double getCpuNanosPerMove(int entrant) {
+            return !cpuMeasured || moves[entrant] == 0 ? Double.NaN : (double) cpuNanos[entrant] / moves[entrant];
+        }
+
+        @Override
+        public String toString() {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < entrants.size(); i++)
+                order.add(i);
+            order.sort((a, b) -> Double.compare(getScore(b), getScore(a)));
+
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%-28s %7s %7s %7s %7s %7s %17s %8s %9s%n", "entrant", "games", "wins", "draws",
+                    "losses", "score", "95% CI", "shots", "cpu/shot"));
+            for (int i : order)
+                sb.append(String.format("%-28s %7d %7d %7d %7d %7.3f [%6.3f, %6.3f] %8.1f %7.0fns%n",
+                        entrants.get(i).getName(), games[i], wins[i], draws[i], getLosses(i), getScore(i),
+                        getLowerBound(i), getUpperBound(i), getMovesPerGame(i), getCpuNanosPerMove(i)));
+            sb.append(String.format("%nscore of row against column:%n%-28s", ""));
+            for (int j : order)
+                sb.append(String.format(" %7d", j));
+            sb.append(String.format("%n"));
+            for (int i : order) {
+                sb.append(String.format("%-28s", i + " " + entrants.get(i).getName()));
+                for (int j : order)
+                    sb.append(i == j ? String.format(" %7s", "-") : String.format(" %7.3f", getScore(i, j)));
+                sb.append(String.format("%n"));
+            }
+            return sb.toString();
+        }
+
+        private static double wilson(double p, int n, int sign) {
+            if (n == 0)
+                return sign < 0 ? 0 : 1;
+            double z2 = Z * Z / n;
+            double center = p + z2 / 2;
+            double half = Z * Math.sqrt(p * (1 - p) / n + z2 / (4 * n));
+            return (center + sign * half) / (1 + z2);
+        }
+    }
+
+    /** Plays all the matches of a block of seeds. */
+    private static final class Block implements Callable<Standings> {
+        private final List<Entrant> entrants;
+        private final long firstSeed;
+        private final int seeds;
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private boolean cpu;
+
+        Block(List<Entrant> entrants, long firstSeed, int seeds) {
+            this.entrants = entrants;
+            this.firstSeed = firstSeed;
+            this.seeds = seeds;
+        }
+
+        @Override
+        public Standings call() {
+            cpu = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+            int n = entrants.size();
+            ShooterStrategy[] shooters = new ShooterStrategy[n];
+            PlacementStrategy[] placements = new PlacementStrategy[n];
+            for (int i = 0; i < n; i++) {
+                shooters[i] = entrants.get(i).shooter.get();
+                placements[i] = entrants.get(i).placement.get();
+            }
+            Standings standings = new Standings(entrants);
+            standings.cpuMeasured = cpu;
+            for (long seed = firstSeed; seed < firstSeed + seeds; seed++)
+                for (int a = 0; a < n; a++)
+                    for (int b = a + 1; b < n; b++)
+                        match(standings, a, b, shooters, placements, seed);
+            return standings;
+        }
+
+        private void match(Standings standings, int a, int b, ShooterStrategy[] shooters,
+                           PlacementStrategy[] placements, long seed) {
+            IFleet fleetOfA = placements[a].place(seed);
+            IFleet fleetOfB = placements[b].place(seed);
+            int boardSize = fleetOfA.getBoardSize();
+            int maxShots = 2 * boardSize * boardSize;
+            // each player fires at the fleet of the other
+            Game[] games = {new Game(fleetOfB), new Game(fleetOfA)};
+            int[] players = {a, b};
+            int[] shots = new int[2];
+            for (int p = 0; p < 2; p++)
+                shooters[players[p]].start(boardSize, seed * 0x9E3779B97F4A7C15L + p);
+
+            int turn = (int) (seed & 1);
+            int winner = -1;
+            while (winner < 0 && (shots[0] < maxShots || shots[1] < maxShots)) {
+                for (int k = 0; k < ScriptRunner.NUMBER_SHOTS && shots[turn] < maxShots; k++) {
+                    shots[turn]++;
+                    if (move(standings, players[turn], shooters[players[turn]], games[turn])) {
+                        winner = turn;
+                        break;
+                    }
+                }
+                turn = 1 - turn;
+            }
+
+            for (int p = 0; p < 2; p++) {
+                standings.games[players[p]]++;
+                standings.moves[players[p]] += shots[p];
+                standings.meetings[players[p]][players[1 - p]]++;
+            }
+            if (winner < 0) {
+                standings.draws[a]++;
+                standings.draws[b]++;
+                standings.points[a][b] += 0.5;
+                standings.points[b][a] += 0.5;
+            } else {
+                standings.wins[players[winner]]++;
+                standings.points[players[winner]][players[1 - winner]] += 1;
+            }
+        }
+
+        /** Fires one shot; returns whether it sank the last ship. */
+        private boolean move(Standings standings, int player, ShooterStrategy shooter, Game game) {
+            long start = cpu ? threads.getCurrentThreadCpuTime() : 0;
+            IPosition shot = shooter.nextShot(game);
+            long thought = cpu ? threads.getCurrentThreadCpuTime() : 0;
+            VolleyResult result = game.fireVolley(Collections.singletonList(shot));
+            long resolved = cpu ? threads.getCurrentThreadCpuTime() : 0;
+            shooter.shotResult(shot, result);
+            if (cpu)
+                standings.cpuNanos[player] += thought - start + threads.getCurrentThreadCpuTime() - resolved;
+            return result.getOutcome(0) == VolleyResult.SUNK && game.getRemainingShips() == 0;
+        }
+    }
+
+    private final List<Entrant> entrants;
+    private final int threads;
+
+    /**
+     * Creates a tournament.
+     *
+     * @param entrants the players, at least two
+     * @param threads the number of blocks of seeds played at the same time
+     * @throws IllegalArgumentException if there are fewer than two entrants, or no threads
+     */
+    public Tournament(List<Entrant> entrants, int threads) {
+        if (entrants.size() < 2)
+            throw new IllegalArgumentException("ERROR! a tournament needs at least two entrants");
+        if (threads < 1)
+            throw new IllegalArgumentException("ERROR! at least one thread is needed");
+        this.entrants = Collections.unmodifiableList(new ArrayList<>(entrants));
+        this.threads = threads;
+    }
+
+    /**
+     * Returns one entrant for each combination of the shooter and placement
+     * strategies found by {@link Strategies}.
+     *
+     * @return the entrants, named {@code shooter/placement}
+     */
+    public static List<Entrant> allStrategies() {
+        List<Entrant> entrants = new ArrayList<>();
+        for (Map.Entry<String, ? extends Supplier<ShooterStrategy>> s : Strategies.shooters().entrySet())
+            for (Map.Entry<String, ? extends Supplier<PlacementStrategy>> p : Strategies.placements().entrySet())
+                entrants.add(new Entrant(s.getKey() + "/" + p.getKey(), s.getValue(), p.getValue()));
+        return entrants;
+    }
+
+    /**
+     * Plays every pairing of entrants once per seed.
+     *
+     * @param firstSeed the first seed
+     * @param seeds the number of consecutive seeds
+     * @return the standings
+     */
+    public Standings play(long firstSeed, int seeds) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, BatchRuns.daemonThreads("tournament"));
+        try {
+            List<Future<Standings>> futures = new ArrayList<>();
+            for (int s = 0; s < seeds; s += BLOCK)
+                futures.add(executor.submit(new Block(entrants, firstSeed + s, Math.min(BLOCK, seeds - s))));
+            Standings standings = new Standings(entrants);
+            for (Future<Standings> f : futures)
+                standings.add(f.get());
+            return standings;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ERROR! interrupted while playing the tournament", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ERROR! tournament failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays a tournament between all the strategies on the class path and prints the standings.
+     *
+     * Usage: {@code java iscteiul.ista.battleship.Tournament [--seeds n] [--first seed] [--threads t]}
+     *
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        int seeds = 2000;
+        long first = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--seeds"))
+                seeds = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--first"))
+                first = Long.parseLong(args[i + 1]);
+            else if (args[i].equals("--threads"))
+                threads = Integer.parseInt(args[i + 1]);
+            else
+                throw new IllegalArgumentException("ERROR! unknown option " + args[i]);
+        }
+        // thousands of games: skip the per-shot flight recorder events, as batch runs do
+        BatchRuns.skipFlightRecorder();
+
+        long start = System.nanoTime();
+        Standings standings = new Tournament(allStrategies(), threads).play(first, seeds);
+        System.out.print(standings);
+        System.out.printf("%n%d seeds on %d threads in %d ms%n", seeds, threads, (System.nanoTime() - start) / 1_000_000);
+    }
+}
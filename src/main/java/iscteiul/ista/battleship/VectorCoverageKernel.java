@@ -0,0 +1,95 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The coverage kernel that works on as many rows at a time as a vector register
+ * holds longs, with the incubating Vector API.
+ *
+ * Only loaded by {@link CoverageKernel#create()} once the
+ * {@code jdk.incubator.vector} module is known to be present, so the rest of the
+ * game runs without it.
+ */
+final class VectorCoverageKernel extends CoverageKernel {
+
+    private static final VectorSpecies<Long> ROWS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> COLUMNS = IntVector.SPECIES_PREFERRED;
+    /** Bit {@code i} in lane {@code i} of {@link #COLUMNS}, to pick one bit per column. */
+    private static final IntVector LANE_BITS = laneBits();
+
+    @Override
+    String getName() {
+        return "vector-" + ROWS.length() + "x64";
+    }
+
+    @Override
+    boolean isUsable() {
+        // a single long per register would be the scalar kernel with extra overhead;
+        // expand picks the bits of a whole register of columns from one int
+        return ROWS.length() >= 2 && ROWS.length() + 8 <= PAD && COLUMNS.length() <= 32;
+    }
+
+    @Override
+    void accumulate(int boardSize, ShipShape shape, int planeCount) {
+        int cells = shape.size;
+        int lanes = ROWS.length();
+        // rows below the board are zero in the free masks, so their placements never fit
+        for (int top = 0; top + shape.body.length <= boardSize; top += lanes) {
+            LongVector fits = LongVector.broadcast(ROWS, -1L);
+            for (int i = 0; i < cells; i++)
+                fits = fits.and(LongVector.fromArray(ROWS, free, top + shape.rowOffsets[i] - shape.minRow)
+                        .lanewise(VectorOperators.LSHR, shape.columnOffsets[i] - shape.minColumn));
+            if (!fits.compare(VectorOperators.NE, 0L).anyTrue())
+                continue;
+            for (int i = 0; i < cells; i++) {
+                int row = top + shape.rowOffsets[i] - shape.minRow;
+                LongVector carry = fits.lanewise(VectorOperators.LSHL, shape.columnOffsets[i] - shape.minColumn);
+                for (int p = 0; p < planeCount; p++) {
+                    LongVector plane = LongVector.fromArray(ROWS, planes[p], row);
+                    plane.lanewise(VectorOperators.XOR, carry).intoArray(planes[p], row);
+                    carry = carry.and(plane);
+                }
+            }
+        }
+    }
+
+    @Override
+    void expand(int boardSize, int planeCount, int weight, int[] counts) {
+        // whole registers of columns only: masked loads and stores are slow on this API,
+        // so the columns that do not fill a register are added bit by bit
+        int lanes = COLUMNS.length();
+        int vectorColumns = boardSize - boardSize % lanes;
+        for (int p = 0; p < planeCount; p++) {
+            // one plane at a time: a vector carried across the planes would be boxed by the JIT
+            long[] plane = planes[p];
+            int add = weight << p;
+            for (int row = 0; row < boardSize; row++) {
+                int base = row * boardSize;
+                for (int column = 0; column < vectorColumns; column += lanes) {
+                    // min(bit, 1) turns the bit of each lane into 0 or 1 with no per-lane shift
+                    IntVector bits = IntVector.broadcast(COLUMNS, (int) (plane[row] >>> column)).and(LANE_BITS).min(1);
+                    IntVector.fromArray(COLUMNS, counts, base + column).add(bits.mul(add))
+                            .intoArray(counts, base + column);
+                }
+                long tail = vectorColumns == 64 ? 0 : plane[row] >>> vectorColumns << vectorColumns;
+                while (tail != 0) {
+                    counts[base + Long.numberOfTrailingZeros(tail)] += add;
+                    tail &= tail - 1;
+                }
+            }
+        }
+    }
+
+    private static IntVector laneBits() {
+        int[] bits = new int[COLUMNS.length()];
+        for (int i = 0; i < bits.length; i++)
+            bits[i] = 1 << i;
+        return IntVector.fromArray(COLUMNS, bits, 0);
+    }
+}
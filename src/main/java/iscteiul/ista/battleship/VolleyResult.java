@@ -0,0 +1,94 @@
+/**
+ *
+ */
+package iscteiul.ista.battleship;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a volley fired with {@link IGame#fireVolley(List)}.
+ *
+ * The outcome of each shot is stored as one byte, in the order the shots were
+ * given, together with the ships sunk by the volley in the order they sank.
+ */
+public final class VolleyResult {
+
+    /** Outcome of a shot outside the board. */
+    public static final byte INVALID = 0;
+    /** Outcome of a shot at a position already fired at, in this or a previous volley. */
+    public static final byte REPEATED = 1;
+    /** Outcome of a new shot that hit water. */
+    public static final byte MISS = 2;
+    /** Outcome of a new shot that hit a ship without sinking it. */
+    public static final byte HIT = 3;
+    /** Outcome of a new shot that sank a ship. */
+    public static final byte SUNK = 4;
+
+    private final byte[] outcomes;
+    private final List<IShip> sunkShips;
+
+    /**
+     * Creates a volley result.
+     *
+     * @param outcomes the outcome of each shot
+     * @param sunkShips the ships sunk by the volley
+     */
+    VolleyResult(byte[] outcomes, List<IShip> sunkShips) {
+        this.outcomes = outcomes;
+        this.sunkShips = Collections.unmodifiableList(sunkShips);
+    }
+
+    /**
+     * Returns the number of shots in the volley.
+     *
+     * @return the size of the volley
+     */
+    public int size() {
+        return outcomes.length;
+    }
+
+    /**
+     * Returns the outcome of one shot.
+     *
+     * @param shot the index of the shot in the volley
+     * @return one of {@link #INVALID}, {@link #REPEATED}, {@link #MISS}, {@link #HIT} or {@link #SUNK}
+     */
+    public byte getOutcome(int shot) {
+        return outcomes[shot];
+    }
+
+    /**
+     * Returns how many shots of the volley had the given outcome.
+     *
+     * @param outcome one of the outcome constants
+     * @return the number of shots with that outcome
+     */
+    public int count(byte outcome) {
+        int n = 0;
+        for (byte o : outcomes)
+            if (o == outcome)
+                n++;
+        return n;
+    }
+
+    /**
+     * Returns the ships sunk by the volley, in the order they sank.
+     *
+     * @return an unmodifiable list of sunk ships
+     */
+    public List<IShip> getSunkShips() {
+        return sunkShips;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < outcomes.length; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append("IRMHS".charAt(outcomes[i]));
+        }
+        return sb.append("] sunk=").append(sunkShips.size()).toString();
+    }
+}
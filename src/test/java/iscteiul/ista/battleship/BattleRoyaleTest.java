@@ -0,0 +1,84 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link BattleRoyale}.
+ */
+public class BattleRoyaleTest {
+
+    private static final int PLAYERS = 40;
+
+    @Test
+    public void agreesWithFleetShipAt() throws InterruptedException {
+        List<Fleet> fleets = new ArrayList<>();
+        List<Fleet> reference = new ArrayList<>();
+        for (int p = 0; p < PLAYERS; p++) {
+            fleets.add(FleetGenerator.generate(p));
+            reference.add(FleetGenerator.generate(p));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        BattleRoyale match = new BattleRoyale(fleets, executor, 7);
+        boolean[] alive = new boolean[PLAYERS];
+        java.util.Arrays.fill(alive, true);
+        int[] hits = new int[PLAYERS];
+        int[] sinks = new int[PLAYERS];
+
+        Random random = new Random(39);
+        while (!match.isOver() && match.getRounds() < 200) {
+            List<List<IPosition>> volleys = new ArrayList<>();
+            for (int p = 0; p < PLAYERS; p++) {
+                List<IPosition> volley = new ArrayList<>();
+                for (int i = 0; i < 3; i++)
+                    volley.add(new Position(random.nextInt(Fleet.BOARD_SIZE + 1), random.nextInt(Fleet.BOARD_SIZE)));
+                volleys.add(volley);
+            }
+            BattleRoyale.Round round = match.fireRound(volleys);
+
+            // the same round, one shot and one opponent at a time
+            for (int shooter = 0; shooter < PLAYERS; shooter++) {
+                if (!alive[shooter])
+                    continue;
+                for (IPosition shot : volleys.get(shooter)) {
+                    for (int target = 0; target < PLAYERS; target++) {
+                        IShip ship = target == shooter ? null : reference.get(target).shipAt(shot);
+                        if (ship == null)
+                            continue;
+                        for (IPosition cell : ship.getPositions()) {
+                            if (cell.equals(shot) && !cell.isHit()) {
+                                cell.shoot();
+                                hits[shooter]++;
+                                if (!ship.stillFloating())
+                                    sinks[shooter]++;
+                            }
+                        }
+                    }
+                }
+            }
+            List<Integer> eliminated = new ArrayList<>();
+            for (int p = 0; p < PLAYERS; p++) {
+                if (alive[p] && reference.get(p).getFloatingShips().isEmpty()) {
+                    alive[p] = false;
+                    eliminated.add(p);
+                }
+            }
+            assertEquals(eliminated, round.getEliminated());
+        }
+        executor.shutdown();
+
+        for (int p = 0; p < PLAYERS; p++) {
+            assertEquals(hits[p], match.getHits(p));
+            assertEquals(sinks[p], match.getSinks(p));
+            assertEquals(reference.get(p).getFloatingShips().size(), match.getFloatingShips(p));
+            assertEquals(reference.get(p).getFloatingShips().size(), fleets.get(p).getFloatingShips().size());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link BoardRenderer}.
+ */
+public class BoardRendererTest {
+
+    private static final String NL = System.lineSeparator();
+    private static final String ESC = "\u001b";
+
+    private static String render(BoardRenderer board) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        board.render(out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static String renderChanges(BoardRenderer board) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        board.renderChanges(out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void overlayDrawsShipsShotsAndHits() {
+        Fleet fleet = new Fleet(4, 2);
+        fleet.addShip(new Caravel(Compass.EAST, new Position(0, 0)));
+        fleet.addShip(new Barge(Compass.NORTH, new Position(3, 3)));
+        BoardRenderer board = new BoardRenderer(4);
+        board.overlay(fleet, List.of(new Position(0, 1), new Position(2, 2), new Position(-1, 0),
+                new Position(0, 4)));
+        assertEquals("#*.." + NL + "...." + NL + "..X." + NL + "...#" + NL, render(board));
+
+        board.clear();
+        board.mark(List.of(new Position(1, 1), new Position(4, 4)), BoardRenderer.SHOT);
+        assertEquals("...." + NL + ".X.." + NL + "...." + NL + "...." + NL, render(board));
+    }
+
+    @Test
+    public void incrementalFramesOnlyDrawChangedCells() {
+        BoardRenderer board = new BoardRenderer(2);
+        board.set(0, 1, BoardRenderer.SHIP);
+        assertEquals(ESC + "[2J" + ESC + "[1;1H." + ESC + "[1;2H#" + ESC + "[2;1H." + ESC + "[2;2H."
+                + ESC + "[3;1H", renderChanges(board));
+        // nothing changed: nothing is written
+        assertEquals("", renderChanges(board));
+
+        board.set(1, 0, BoardRenderer.SHOT);
+        board.set(1, 0, BoardRenderer.HIT);
+        assertEquals(ESC + "[2;1H*" + ESC + "[3;1H", renderChanges(board));
+        // clearing a frame is a change like any other
+        board.clear();
+        assertEquals(ESC + "[1;2H." + ESC + "[2;1H." + ESC + "[3;1H", renderChanges(board));
+
+        board.invalidate();
+        assertTrue(renderChanges(board).startsWith(ESC + "[2J"));
+    }
+
+    @Test
+    public void framesLargerThanTheBufferAreWrittenInChunks() {
+        int size = 1000;
+        BoardRenderer board = new BoardRenderer(size);
+        board.set(size - 1, size - 1, BoardRenderer.SHOT);
+        String frame = render(board);
+        assertEquals(size * (size + NL.length()), frame.length());
+        assertTrue(frame.endsWith("." + BoardRenderer.SHOT + NL));
+
+        String changes = renderChanges(board);
+        assertTrue(changes.length() > BoardRenderer.MAX_BUFFER);
+        assertTrue(changes.endsWith(ESC + "[1000;1000H" + BoardRenderer.SHOT + ESC + "[1001;1H"));
+        board.set(0, 0, BoardRenderer.SHIP);
+        assertEquals(ESC + "[1;1H#" + ESC + "[1001;1H", renderChanges(board));
+    }
+
+    @Test
+    public void boardsTooLargeToDrawAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BoardRenderer(BoardRenderer.MAX_BOARD_SIZE + 1));
+    }
+}
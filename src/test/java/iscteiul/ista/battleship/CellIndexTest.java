@@ -0,0 +1,85 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CellIndex}, in particular the backward-shift deletion of {@link CellIndex#remove(int, int)}.
+ */
+public class CellIndexTest {
+
+    /** Slots of a new index, which holds up to half as many cells before it grows. */
+    private static final int CAPACITY = 16;
+
+    /**
+     * Finds cells whose keys start probing at the given slot of a new index.
+     */
+    private static List<int[]> cellsAtSlot(int slot, int count) {
+        List<int[]> cells = new ArrayList<>();
+        for (int r = 0; cells.size() < count; r++)
+            for (int c = 0; c < 64 && cells.size() < count; c++)
+                if (CellIndex.slot(CellIndex.key(r, c), CAPACITY - 1) == slot)
+                    cells.add(new int[] {r, c});
+        return cells;
+    }
+
+    @Test
+    public void removingFromAClusterKeepsTheRestReachable() {
+        // three cells wanting the last slot, wrapping around to the first ones, and one wanting slot 1
+        List<int[]> last = cellsAtSlot(CAPACITY - 1, 3);
+        int[] second = cellsAtSlot(1, 1).get(0);
+        List<int[]> all = new ArrayList<>(last);
+        all.add(second);
+
+        for (int removed = 0; removed < all.size(); removed++) {
+            CellIndex<String> index = new CellIndex<>();
+            for (int[] cell : all)
+                index.put(cell[0], cell[1], cell[0] + "," + cell[1]);
+            int[] gone = all.get(removed);
+            assertEquals(gone[0] + "," + gone[1], index.remove(gone[0], gone[1]));
+            assertNull(index.remove(gone[0], gone[1]));
+            assertEquals(all.size() - 1, index.size());
+            for (int[] cell : all)
+                assertEquals(cell == gone ? null : cell[0] + "," + cell[1], index.get(cell[0], cell[1]));
+            // the freed slots are reused without duplicating any cell
+            index.put(gone[0], gone[1], "again");
+            assertEquals(all.size(), index.size());
+            assertEquals("again", index.get(gone[0], gone[1]));
+        }
+    }
+
+    @Test
+    public void randomOperationsMatchAHashMap() {
+        Random random = new Random(38);
+        CellIndex<Integer> index = new CellIndex<>();
+        Map<Long, Integer> reference = new HashMap<>();
+        for (int op = 0; op < 200_000; op++) {
+            // a small area, so that clusters form and cells come and go often
+            int r = random.nextInt(24) - 4;
+            int c = random.nextInt(24) - 4;
+            long key = CellIndex.key(r, c);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), index.remove(r, c));
+            } else {
+                Integer value = op;
+                assertEquals(reference.put(key, value), index.put(r, c, value));
+            }
+            assertEquals(reference.size(), index.size());
+            if (op % 1000 == 0)
+                for (int rr = -4; rr < 20; rr++)
+                    for (int cc = -4; cc < 20; cc++)
+                        assertEquals(reference.get(CellIndex.key(rr, cc)), index.get(rr, cc));
+        }
+        index.clear();
+        assertEquals(0, index.size());
+        assertNull(index.get(0, 0));
+    }
+}
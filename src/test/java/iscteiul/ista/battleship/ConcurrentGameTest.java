@@ -0,0 +1,129 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ConcurrentGame} under contention.
+ */
+public class ConcurrentGameTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 50;
+    private static final int VOLLEY = 7;
+
+    /**
+     * Fires the whole board, plus a few shots off it, in volleys and in an order of its own.
+     */
+    private static final class Shooter implements Callable<List<IShip>> {
+        private final ConcurrentGame game;
+        private final List<IPosition> shots;
+        private final CountDownLatch start;
+        private final int[] outcomes = new int[5];
+
+        private Shooter(ConcurrentGame game, List<IPosition> shots, CountDownLatch start) {
+            this.game = game;
+            this.shots = shots;
+            this.start = start;
+        }
+
+        @Override
+        public List<IShip> call() throws InterruptedException {
+            List<IShip> sunk = new ArrayList<>();
+            start.await();
+            for (int i = 0; i < shots.size(); i += VOLLEY) {
+                VolleyResult result = game.fireVolley(shots.subList(i, Math.min(i + VOLLEY, shots.size())));
+                for (int k = 0; k < result.size(); k++)
+                    outcomes[result.getOutcome(k)]++;
+                sunk.addAll(result.getSunkShips());
+            }
+            return sunk;
+        }
+    }
+
+    @Test
+    public void overlappingVolleysResolveEachCellOnce() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                Fleet fleet = FleetGenerator.generate(round);
+                ConcurrentGame game = new ConcurrentGame(fleet);
+                CountDownLatch start = new CountDownLatch(1);
+                Random random = new Random(round);
+                List<Shooter> shooters = new ArrayList<>();
+                List<Future<List<IShip>>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    Shooter shooter = new Shooter(game, shotsInOrder(random), start);
+                    shooters.add(shooter);
+                    futures.add(executor.submit(shooter));
+                }
+                start.countDown();
+
+                int cells = Fleet.BOARD_SIZE * Fleet.BOARD_SIZE;
+                int[] outcomes = new int[5];
+                Map<IShip, Integer> sunk = new IdentityHashMap<>();
+                for (int t = 0; t < THREADS; t++) {
+                    for (IShip ship : futures.get(t).get())
+                        sunk.merge(ship, 1, Integer::sum);
+                    for (int k = 0; k < outcomes.length; k++)
+                        outcomes[k] += shooters.get(t).outcomes[k];
+                }
+
+                // the first shooter of each cell wins it; everyone else repeats
+                assertEquals(cells, outcomes[VolleyResult.MISS] + outcomes[VolleyResult.HIT] + outcomes[VolleyResult.SUNK]);
+                assertEquals((THREADS - 1) * cells, outcomes[VolleyResult.REPEATED]);
+                Set<IPosition> claimed = new HashSet<>(game.getShots());
+                assertEquals(cells, game.getShots().size());
+                assertEquals(cells, claimed.size());
+                // each ship is reported sunk to exactly one shooter
+                assertEquals(fleet.getShips().size(), sunk.size());
+                for (int times : sunk.values())
+                    assertEquals(1, times);
+
+                Game sequential = new Game(FleetGenerator.generate(round));
+                for (Shooter shooter : shooters)
+                    for (IPosition pos : shooter.shots)
+                        sequential.fire(pos);
+                assertEquals(sequential.getHits(), game.getHits());
+                assertEquals(sequential.getHits(), outcomes[VolleyResult.HIT] + outcomes[VolleyResult.SUNK]);
+                assertEquals(sequential.getSunkShips(), game.getSunkShips());
+                assertEquals(sequential.getSunkShips(), outcomes[VolleyResult.SUNK]);
+                assertEquals(sequential.getInvalidShots(), game.getInvalidShots());
+                assertEquals(sequential.getInvalidShots(), outcomes[VolleyResult.INVALID]);
+                assertEquals(sequential.getRepeatedShots(), game.getRepeatedShots());
+                assertEquals(0, game.getRemainingShips());
+                assertTrue(fleet.getFloatingShips().isEmpty());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<IPosition> shotsInOrder(Random random) {
+        List<IPosition> shots = new ArrayList<>();
+        for (int r = 0; r < Fleet.BOARD_SIZE; r++)
+            for (int c = 0; c < Fleet.BOARD_SIZE; c++)
+                shots.add(new Position(r, c));
+        shots.add(new Position(-1, 0));
+        shots.add(new Position(0, Fleet.BOARD_SIZE));
+        Collections.shuffle(shots, random);
+        return shots;
+    }
+}
@@ -0,0 +1,65 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the {@link CoverageKernel}s.
+ */
+public class CoverageKernelTest {
+
+    @Test
+    public void kernelsAgreeWithCellByCellCount() {
+        Random random = new Random(41);
+        CoverageKernel[] kernels = {new ScalarCoverageKernel(), CoverageKernel.create()};
+        for (int size : new int[] {1, 3, 10, 16, 17, 33, 63, 64}) {
+            for (int board = 0; board < 20; board++) {
+                long[] rows = new long[size];
+                int density = 40 + random.nextInt(61);
+                for (int r = 0; r < size; r++)
+                    for (int c = 0; c < size; c++)
+                        if (random.nextInt(100) < density)
+                            rows[r] |= 1L << c;
+                // bits past the board must be ignored
+                if (size < 64)
+                    rows[0] |= -1L << size;
+                int[] remaining = new int[GameCodec.KIND_COUNT];
+                for (int k = 0; k < remaining.length; k++)
+                    remaining[k] = random.nextInt(4);
+
+                int[] expected = new int[size * size];
+                long[] clean = rows.clone();
+                if (size < 64)
+                    clean[0] &= (1L << size) - 1;
+                CoverageBenchmark.cellByCell(clean, size, remaining, expected);
+                for (CoverageKernel kernel : kernels) {
+                    int[] counts = new int[size * size];
+                    kernel.heatmap(rows, size, remaining, counts);
+                    assertArrayEquals(expected, counts);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void placementsAlikeInSeveralBearingsCountOnce() {
+        for (CoverageKernel kernel : new CoverageKernel[] {new ScalarCoverageKernel(), CoverageKernel.create()}) {
+            int[] remaining = new int[GameCodec.KIND_COUNT];
+            remaining[GameCodec.kindCode("barca")] = 1;
+            int[] counts = new int[1];
+            kernel.heatmap(new long[] {1}, 1, remaining, counts);
+            assertEquals(1, counts[0]);
+
+            // a caravel fits a 2 x 2 board in two rows and two columns
+            remaining = new int[GameCodec.KIND_COUNT];
+            remaining[GameCodec.kindCode("caravela")] = 1;
+            counts = new int[4];
+            kernel.heatmap(new long[] {3, 3}, 2, remaining, counts);
+            assertArrayEquals(new int[] {2, 2, 2, 2}, counts);
+        }
+    }
+}
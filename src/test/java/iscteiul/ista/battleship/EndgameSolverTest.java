@@ -0,0 +1,119 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link EndgameSolver} and {@link EndgameShooter}.
+ */
+public class EndgameSolverTest {
+
+    @Test
+    public void solvesSmallEndgamesExactly() {
+        // a barge somewhere in the four unknown cells of the top row: 1, 2, 3 or 4 shots
+        byte[] cells = board(4, "????", "~~~~", "~~~~", "~~~~");
+        EndgameSolver solver = new EndgameSolver(4);
+        assertTrue(solver.start(4, cells, List.of("barca")));
+        assertTrue(solver.nextShot() != null);
+        assertEquals(2.5, solver.getExpectedShots(), 1e-9);
+
+        // a caravel in three cells: the middle one is hit for sure, then one end, maybe both
+        cells = board(3, "???", "~~~", "~~~");
+        assertTrue(solver.start(3, cells, List.of("caravela")));
+        IPosition shot = solver.nextShot();
+        assertEquals(0, shot.getRow());
+        assertEquals(1, shot.getColumn());
+        assertEquals(2.5, solver.getExpectedShots(), 1e-9);
+        solver.shotResult(shot, VolleyResult.HIT, null);
+        shot = solver.nextShot();
+        assertEquals(1.5, solver.getExpectedShots(), 1e-9);
+        solver.shotResult(shot, VolleyResult.MISS, null);
+        int missed = shot.getColumn();
+        shot = solver.nextShot();
+        assertEquals(1.0, solver.getExpectedShots(), 1e-9);
+        assertEquals(2 - missed, shot.getColumn());
+
+        // a hit already known pins the caravel down to two layouts
+        cells = board(3, "?X?", "~~~", "~~~");
+        assertTrue(solver.start(3, cells, List.of("caravela")));
+        solver.nextShot();
+        assertEquals(1.5, solver.getExpectedShots(), 1e-9);
+
+        // too many unknown cells, or nothing that fits
+        assertFalse(solver.start(3, board(3, "???", "???", "~~~"), List.of("caravela")));
+        assertFalse(solver.start(3, board(3, "?~?", "~~~", "~~~"), List.of("caravela")));
+        assertFalse(solver.isActive());
+    }
+
+    @Test
+    public void playsFixedEndgamesWithTheirExactExpectation() {
+        // two barges in the top row of four cells: {0, 2}, {0, 3} or {1, 3}; firing at an end
+        // first takes 2 or 3 shots after a hit and 3 after a miss, 8/3 on average
+        List<List<IShip>> layouts = new ArrayList<>();
+        int[][] barges = {{0, 2}, {0, 3}, {1, 3}};
+        for (int[] b : barges)
+            layouts.add(List.of(new Barge(Compass.NORTH, new Position(0, b[0])),
+                    new Barge(Compass.NORTH, new Position(0, b[1]))));
+        assertPlaysExactly(board(4, "????", "~~~~", "~~~~", "~~~~"), List.of("barca", "barca"), layouts, 8.0 / 3);
+
+        // a caravel and a barge in a row of five cells: six layouts, 11/3 shots on average
+        layouts = new ArrayList<>();
+        for (int c = 0; c < 4; c++)
+            for (int b = 0; b < 5; b++)
+                if (b <= c - 2 || b >= c + 3)
+                    layouts.add(List.of(new Caravel(Compass.EAST, new Position(0, c)),
+                            new Barge(Compass.NORTH, new Position(0, b))));
+        assertEquals(6, layouts.size());
+        assertPlaysExactly(board(5, "?????", "~~~~~", "~~~~~", "~~~~~", "~~~~~"), List.of("caravela", "barca"),
+                layouts, 11.0 / 3);
+    }
+
+    @Test
+    public void endgameShooterFinishesEveryGame() {
+        SimulationCoordinator.Tally endgame = SimulationWorker.play("endgame", "random", 1, 20);
+        assertEquals(0, endgame.getUnfinished());
+    }
+
+    /**
+     * Starts the solver on a board, checks its expectation, then plays every layout
+     * out: each is equally likely, so the shots it takes must average the expectation.
+     */
+    private static void assertPlaysExactly(byte[] cells, List<String> remaining, List<List<IShip>> layouts,
+            double expected) {
+        int size = (int) Math.sqrt(cells.length);
+        EndgameSolver solver = new EndgameSolver(cells.length);
+        int total = 0;
+        for (List<IShip> layout : layouts) {
+            Fleet fleet = new Fleet(size, layout.size());
+            for (IShip ship : layout)
+                assertTrue(fleet.addShip(ship));
+            Game game = new Game(fleet);
+            assertTrue(solver.start(size, cells, remaining));
+            for (int shots = 0; game.getRemainingShips() > 0; shots++) {
+                IPosition shot = solver.nextShot();
+                if (shots == 0)
+                    assertEquals(expected, solver.getExpectedShots(), 1e-9);
+                VolleyResult result = game.fireVolley(List.of(shot));
+                solver.shotResult(shot, result.getOutcome(0),
+                        result.getSunkShips().isEmpty() ? null : result.getSunkShips().get(0));
+                total++;
+            }
+        }
+        assertEquals(expected, (double) total / layouts.size(), 1e-9);
+    }
+
+    /** Reads a board: {@code ?} unknown, {@code ~} water, {@code X} hit, {@code #} sunk. */
+    private static byte[] board(int size, String... rows) {
+        byte[] cells = new byte[size * size];
+        for (int r = 0; r < size; r++)
+            for (int c = 0; c < size; c++)
+                cells[r * size + c] = (byte) "?~X#".indexOf(rows[r].charAt(c));
+        return cells;
+    }
+}
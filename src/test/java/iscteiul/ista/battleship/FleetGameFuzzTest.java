@@ -0,0 +1,467 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Property-based fuzzing of {@link Fleet} and {@link Game} against a plain reference model.
+ *
+ * Each case is a random board, a run of ships added and removed, and a run of shots,
+ * volleys, undos and redos; after every operation the fleet and the game must agree
+ * with the model. Cases depend only on their seed and are spread over all the
+ * processors. A failing case is shrunk to the fewest operations that still fail
+ * before it is reported, with its seed.
+ *
+ * The number of cases and the first seed can be raised for long runs, e.g.
+ * {@code mvn test -Dtest=FleetGameFuzzTest -Dbattleship.fuzz.cases=5000000}.
+ */
+public class FleetGameFuzzTest {
+
+    private static final int CASES = Integer.getInteger("battleship.fuzz.cases", 10000);
+    private static final long SEED = Long.getLong("battleship.fuzz.seed", 48);
+
+    private static final int ADD = 0;
+    private static final int REMOVE = 1;
+    private static final int FIRE = 2;
+    private static final int VOLLEY = 3;
+    private static final int UNDO = 4;
+    private static final int REDO = 5;
+
+    @Test
+    public void fleetAndGameAgreeWithModel() throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Case>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+                futures.add(executor.submit(new Block(SEED + t, threads, CASES)));
+            Case failing = null;
+            for (Future<Case> future : futures) {
+                Case c = future.get();
+                if (c != null && (failing == null || c.seed < failing.seed))
+                    failing = c;
+            }
+            if (failing != null) {
+                Case shrunk = shrink(failing);
+                fail("seed " + failing.seed + ": " + shrunk.check() + "\n" + shrunk);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks every seed of a stride, stopping at the first failing case.
+     */
+    private static final class Block implements Callable<Case> {
+        private final long first;
+        private final int stride;
+        private final long end;
+
+        Block(long first, int stride, int cases) {
+            this.first = first;
+            this.stride = stride;
+            this.end = SEED + cases;
+        }
+
+        @Override
+        public Case call() {
+            for (long seed = first; seed < end; seed += stride) {
+                Case c = Case.generate(seed);
+                if (c.check() != null)
+                    return c;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Removes chunks of operations, halving the chunk down to single operations,
+     * for as long as the case still fails.
+     */
+    private static Case shrink(Case c) {
+        for (int chunk = Math.max(1, c.ops.size() / 2); chunk > 0; chunk /= 2) {
+            boolean removed = true;
+            while (removed) {
+                removed = false;
+                for (int from = 0; from < c.ops.size(); from += chunk) {
+                    List<int[]> ops = new ArrayList<>(c.ops.subList(0, from));
+                    ops.addAll(c.ops.subList(Math.min(c.ops.size(), from + chunk), c.ops.size()));
+                    Case smaller = new Case(c.seed, c.boardSize, c.maxShips, ops);
+                    if (smaller.check() != null) {
+                        c = smaller;
+                        removed = true;
+                    }
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * A fuzz case: a board, then the operations applied to it. Any subsequence of the
+     * operations is also a case, so that failing cases can be shrunk.
+     */
+    private static final class Case {
+        final long seed;
+        final int boardSize;
+        final int maxShips;
+        final List<int[]> ops;
+
+        Case(long seed, int boardSize, int maxShips, List<int[]> ops) {
+            this.seed = seed;
+            this.boardSize = boardSize;
+            this.maxShips = maxShips;
+            this.ops = ops;
+        }
+
+        static Case generate(long seed) {
+            Random random = new Random(seed);
+            // half of the cases on the standard board and fleet, the others on small or odd ones
+            boolean standard = random.nextBoolean();
+            int size = standard ? Fleet.BOARD_SIZE : 1 + random.nextInt(15);
+            int maxShips = standard ? Fleet.FLEET_SIZE + 1 : 1 + random.nextInt(14);
+            List<int[]> ops = new ArrayList<>();
+            for (int i = 10 + random.nextInt(40); i > 0; i--) {
+                if (random.nextInt(8) == 0)
+                    ops.add(new int[] {REMOVE, random.nextInt(16)});
+                else
+                    ops.add(new int[] {ADD, random.nextInt(GameCodec.KIND_COUNT),
+                            random.nextInt(ShipShape.BEARINGS.length), random.nextInt(size + 4) - 2,
+                            random.nextInt(size + 4) - 2});
+            }
+            for (int i = (size + 2) * (size + 2) * 3 / 2; i > 0; i--) {
+                int op = random.nextInt(16);
+                if (op == 0)
+                    ops.add(new int[] {UNDO, 1 + random.nextInt(4)});
+                else if (op == 1)
+                    ops.add(new int[] {REDO, 1 + random.nextInt(4)});
+                else if (op == 2)
+                    ops.add(new int[] {VOLLEY, random.nextInt(5), random.nextInt(Integer.MAX_VALUE)});
+                else
+                    ops.add(new int[] {FIRE, random.nextInt(size + 2) - 1, random.nextInt(size + 2) - 1});
+            }
+            return new Case(seed, standard ? 0 : size, maxShips, ops);
+        }
+
+        /**
+         * Runs the case against the fleet, the game and the model.
+         *
+         * @return a description of the first disagreement, or null if there is none
+         */
+        String check() {
+            Fleet fleet = boardSize == 0 ? new Fleet() : new Fleet(boardSize, maxShips);
+            Model model = new Model(fleet.getBoardSize(), fleet.getMaxShips());
+            if (boardSize == 0 && fleet.getMaxShips() != Fleet.FLEET_SIZE + 1)
+                return "the standard fleet holds " + fleet.getMaxShips() + " ships";
+            Game game = null;
+            for (int i = 0; i < ops.size(); i++) {
+                int[] op = ops.get(i);
+                String error;
+                try {
+                    if (op[0] <= REMOVE) {
+                        error = place(fleet, model, op);
+                        if (error == null)
+                            error = compareFleet(fleet, model);
+                    } else {
+                        if (game == null)
+                            game = new Game(fleet);
+                        error = play(game, model, op);
+                        if (error == null)
+                            error = compareGame(game, model, i == ops.size() - 1);
+                    }
+                } catch (RuntimeException e) {
+                    error = e.toString();
+                }
+                if (error != null)
+                    return "operation " + i + " " + describe(op) + ": " + error;
+            }
+            return null;
+        }
+
+        private static String place(Fleet fleet, Model model, int[] op) {
+            if (op[0] == REMOVE) {
+                if (model.ships.isEmpty())
+                    return null;
+                IShip s = model.ships.get(op[1] % model.ships.size());
+                model.remove(s);
+                return fleet.removeShip(s) ? null : "removeShip refused a ship of the fleet";
+            }
+            String kind = GameCodec.kind(op[1]);
+            Compass bearing = ShipShape.BEARINGS[op[2]];
+            Position pos = new Position(op[3], op[4]);
+            IShip s = Ship.buildShip(kind, bearing, pos);
+            boolean legal = model.fits(s);
+            if (fleet.isLegalPlacement(kind, bearing, pos) != legal)
+                return "isLegalPlacement is " + !legal;
+            if (fleet.addShip(s) != legal)
+                return "addShip is " + !legal;
+            if (legal)
+                model.add(s);
+            return null;
+        }
+
+        private static String play(Game game, Model model, int[] op) {
+            switch (op[0]) {
+            case FIRE: {
+                IShip sunk = game.fire(new Position(op[1], op[2]));
+                model.fire(op[1], op[2]);
+                return sunk == model.sunk ? null : "fire returned " + sunk + " instead of " + model.sunk;
+            }
+            case VOLLEY: {
+                Random random = new Random(op[2]);
+                List<IPosition> volley = new ArrayList<>();
+                List<IShip> sunk = new ArrayList<>();
+                byte[] outcomes = new byte[op[1]];
+                for (int j = 0; j < op[1]; j++) {
+                    int row = random.nextInt(model.size + 2) - 1;
+                    int column = random.nextInt(model.size + 2) - 1;
+                    volley.add(new Position(row, column));
+                    outcomes[j] = model.fire(row, column);
+                    if (model.sunk != null)
+                        sunk.add(model.sunk);
+                }
+                VolleyResult result = game.fireVolley(volley);
+                for (int j = 0; j < outcomes.length; j++)
+                    if (result.getOutcome(j) != outcomes[j])
+                        return "shot " + j + " of the volley is " + result.getOutcome(j) + " instead of " + outcomes[j];
+                return result.getSunkShips().equals(sunk) ? null : "the volley sank " + result.getSunkShips();
+            }
+            case UNDO:
+                for (int j = 0; j < op[1]; j++)
+                    if (game.undo() != model.undo())
+                        return "undo disagrees on whether there was a shot";
+                return null;
+            default:
+                for (int j = 0; j < op[1]; j++)
+                    if (game.redo() != model.redo())
+                        return "redo disagrees on whether there was a shot";
+                return null;
+            }
+        }
+
+        private static String compareFleet(Fleet fleet, Model model) {
+            if (!fleet.getShips().equals(model.ships))
+                return "the fleet has " + fleet.getShips().size() + " ships instead of " + model.ships.size();
+            for (int row = -1; row <= model.size; row++)
+                for (int column = -1; column <= model.size; column++)
+                    if (fleet.shipAt(new Position(row, column)) != model.shipAt(row, column))
+                        return "shipAt(" + row + ", " + column + ") is " + fleet.shipAt(new Position(row, column));
+            return null;
+        }
+
+        /**
+         * Compares the game with the model; the list of shots only by its length and
+         * last shot, except after the last operation, to keep each step cheap.
+         */
+        private static String compareGame(Game game, Model model, boolean last) {
+            if (game.getInvalidShots() != model.invalid || game.getRepeatedShots() != model.repeated
+                    || game.getHits() != model.hits || game.getSunkShips() != model.sinks)
+                return "counters " + game.getInvalidShots() + " " + game.getRepeatedShots() + " " + game.getHits()
+                        + " " + game.getSunkShips() + " instead of " + model.invalid + " " + model.repeated + " "
+                        + model.hits + " " + model.sinks;
+            if (game.getRemainingShips() != model.ships.size() - model.sinks)
+                return game.getRemainingShips() + " ships remaining";
+            if (game.getShots().size() != model.shots.size())
+                return game.getShots().size() + " shots recorded instead of " + model.shots.size();
+            for (int j = last ? 0 : Math.max(0, model.shots.size() - 1); j < model.shots.size(); j++) {
+                IPosition p = game.getShots().get(j);
+                int[] q = model.shots.get(j);
+                if (p.getRow() != q[0] || p.getColumn() != q[1])
+                    return "shot " + j + " recorded at " + p;
+            }
+            for (IShip s : model.ships) {
+                for (IPosition p : s.getPositions())
+                    if (p.isHit() != model.hit[p.getRow()][p.getColumn()])
+                        return "cell " + p + " of " + s.getCategory() + " has the wrong hit flag";
+                if (s.stillFloating() == model.isSunk(s))
+                    return s.getCategory() + " at " + s.getPosition() + " has the wrong floating state";
+            }
+            if (game.getUndoDepth() != model.journal.size() || game.getRedoDepth() != model.redo.size())
+                return "undo depth " + game.getUndoDepth() + " and redo depth " + game.getRedoDepth();
+            return null;
+        }
+
+        private static String describe(int[] op) {
+            switch (op[0]) {
+            case ADD:
+                return "add " + GameCodec.kind(op[1]) + " " + ShipShape.BEARINGS[op[2]] + " at " + op[3] + "," + op[4];
+            case REMOVE:
+                return "remove #" + op[1];
+            case FIRE:
+                return "fire at " + op[1] + "," + op[2];
+            case VOLLEY:
+                return "volley of " + op[1] + " from " + op[2];
+            case UNDO:
+                return "undo " + op[1];
+            default:
+                return "redo " + op[1];
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(boardSize == 0 ? "standard fleet" : "board " + boardSize + ", at most " + maxShips + " ships");
+            for (int[] op : ops)
+                sb.append("\n  ").append(describe(op));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * The reference model: the rules of the game written plainly, with a grid for the
+     * cells of the ships and for the shots, and a stack of shots for undo and redo.
+     */
+    private static final class Model {
+        final int size;
+        final int maxShips;
+        final List<IShip> ships = new ArrayList<>();
+        final IShip[][] cells;
+        final boolean[][] fired;
+        final boolean[][] hit;
+        final List<int[]> shots = new ArrayList<>();
+        /** One entry per shot that can be undone: row, column and outcome. */
+        final List<int[]> journal = new ArrayList<>();
+        final List<int[]> redo = new ArrayList<>();
+        int invalid;
+        int repeated;
+        int hits;
+        int sinks;
+        IShip sunk;
+
+        Model(int size, int maxShips) {
+            this.size = size;
+            this.maxShips = maxShips;
+            cells = new IShip[size][size];
+            fired = new boolean[size][size];
+            hit = new boolean[size][size];
+        }
+
+        boolean inside(int row, int column) {
+            return row >= 0 && row < size && column >= 0 && column < size;
+        }
+
+        IShip shipAt(int row, int column) {
+            return inside(row, column) ? cells[row][column] : null;
+        }
+
+        boolean fits(IShip s) {
+            if (ships.size() >= maxShips)
+                return false;
+            for (IPosition p : s.getPositions()) {
+                if (!inside(p.getRow(), p.getColumn()))
+                    return false;
+                for (IShip other : ships)
+                    for (IPosition q : other.getPositions())
+                        if (Math.abs(p.getRow() - q.getRow()) <= 1 && Math.abs(p.getColumn() - q.getColumn()) <= 1)
+                            return false;
+            }
+            return true;
+        }
+
+        void add(IShip s) {
+            ships.add(s);
+            for (IPosition p : s.getPositions())
+                cells[p.getRow()][p.getColumn()] = s;
+        }
+
+        void remove(IShip s) {
+            ships.remove(s);
+            for (IPosition p : s.getPositions())
+                cells[p.getRow()][p.getColumn()] = null;
+        }
+
+        boolean isSunk(IShip s) {
+            for (IPosition p : s.getPositions())
+                if (!hit[p.getRow()][p.getColumn()])
+                    return false;
+            return true;
+        }
+
+        byte fire(int row, int column) {
+            redo.clear();
+            byte outcome = outcome(row, column);
+            apply(row, column, outcome);
+            journal.add(new int[] {row, column, outcome});
+            return outcome;
+        }
+
+        private byte outcome(int row, int column) {
+            if (!inside(row, column))
+                return VolleyResult.INVALID;
+            if (fired[row][column])
+                return VolleyResult.REPEATED;
+            IShip s = cells[row][column];
+            if (s == null)
+                return VolleyResult.MISS;
+            hit[row][column] = true;
+            boolean sinks = isSunk(s);
+            hit[row][column] = false;
+            return sinks ? VolleyResult.SUNK : VolleyResult.HIT;
+        }
+
+        private void apply(int row, int column, byte outcome) {
+            sunk = null;
+            if (outcome == VolleyResult.INVALID) {
+                invalid++;
+            } else if (outcome == VolleyResult.REPEATED) {
+                repeated++;
+            } else {
+                fired[row][column] = true;
+                shots.add(new int[] {row, column});
+                if (outcome != VolleyResult.MISS) {
+                    hit[row][column] = true;
+                    hits++;
+                    if (outcome == VolleyResult.SUNK) {
+                        sinks++;
+                        sunk = cells[row][column];
+                    }
+                }
+            }
+        }
+
+        boolean undo() {
+            if (journal.isEmpty())
+                return false;
+            int[] shot = journal.remove(journal.size() - 1);
+            redo.add(shot);
+            if (shot[2] == VolleyResult.INVALID) {
+                invalid--;
+            } else if (shot[2] == VolleyResult.REPEATED) {
+                repeated--;
+            } else {
+                fired[shot[0]][shot[1]] = false;
+                shots.remove(shots.size() - 1);
+                if (shot[2] != VolleyResult.MISS) {
+                    hit[shot[0]][shot[1]] = false;
+                    hits--;
+                    if (shot[2] == VolleyResult.SUNK)
+                        sinks--;
+                }
+            }
+            return true;
+        }
+
+        boolean redo() {
+            if (redo.isEmpty())
+                return false;
+            int[] shot = redo.remove(redo.size() - 1);
+            apply(shot[0], shot[1], (byte) shot[2]);
+            journal.add(shot);
+            return true;
+        }
+    }
+}
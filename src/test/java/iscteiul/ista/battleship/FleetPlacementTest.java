@@ -0,0 +1,119 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link Fleet#removeShip(IShip)} and the legal placements of a {@link Fleet}.
+ */
+public class FleetPlacementTest {
+
+    @Test
+    public void legalPlacementsFollowAddsAndRemoves() {
+        Random random = new Random(43);
+        for (int size : new int[] {Fleet.BOARD_SIZE, 7, 13}) {
+            Fleet fleet = new Fleet(size, 8);
+            List<IShip> placed = new ArrayList<>();
+            for (int step = 0; step < 120; step++) {
+                if (!placed.isEmpty() && random.nextInt(3) == 0) {
+                    IShip ship = placed.remove(random.nextInt(placed.size()));
+                    assertTrue(fleet.removeShip(ship));
+                    assertFalse(fleet.removeShip(ship));
+                } else {
+                    Ship ship = Ship.buildShip(GameCodec.kind(random.nextInt(GameCodec.KIND_COUNT)),
+                            ShipShape.BEARINGS[random.nextInt(ShipShape.BEARINGS.length)],
+                            new Position(random.nextInt(size), random.nextInt(size)));
+                    boolean legal = fleet.isLegalPlacement(ship.getCategory(), ship.getBearing(), ship.getPosition());
+                    assertEquals(legal, fleet.addShip(ship));
+                    if (legal)
+                        placed.add(ship);
+                }
+                assertEquals(placed.size(), fleet.getShips().size());
+                if (step % 10 == 0)
+                    checkAgainstAddShip(fleet, placed, size);
+            }
+        }
+    }
+
+    @Test
+    public void largeBoardsKeepPlacementsSparse() {
+        int size = 10_000;
+        Fleet fleet = new Fleet(size, 8);
+        // a board-sized mask would not fit the heap of a test run
+        assertEquals((long) (size - 2) * (size - 2), fleet.countLegalOrigins("galeao", Compass.NORTH));
+        assertTrue(fleet.addShip(new Barge(Compass.NORTH, new Position(5000, 5000))));
+        assertTrue(fleet.addShip(new Caravel(Compass.EAST, new Position(size - 1, size - 2))));
+        assertFalse(fleet.isLegalPlacement("barca", Compass.NORTH, new Position(4999, 5001)));
+        assertTrue(fleet.isLegalPlacement("barca", Compass.NORTH, new Position(4998, 5001)));
+        assertFalse(fleet.isLegalPlacement("caravela", Compass.EAST, new Position(0, size - 1)));
+        assertFalse(fleet.isLegalPlacement("caravela", Compass.EAST, new Position(size - 2, size - 3)));
+        assertTrue(fleet.isLegalPlacement("caravela", Compass.EAST, new Position(size - 3, size - 3)));
+        // the barge blocks 3 x 3 cells, the caravel 2 x 3 in the corner
+        assertEquals((long) size * size - 9 - 6, fleet.countLegalOrigins("barca", Compass.NORTH));
+        // an eastward caravel is blocked at 3 x 4 origins around the barge, and 2 x 3 near the other
+        assertEquals((long) size * (size - 1) - 12 - 6, fleet.countLegalOrigins("caravela", Compass.EAST));
+
+        assertTrue(fleet.removeShip(fleet.getShips().get(0)));
+        assertTrue(fleet.isLegalPlacement("barca", Compass.NORTH, new Position(5000, 5000)));
+        assertEquals((long) size * size - 6, fleet.countLegalOrigins("barca", Compass.NORTH));
+    }
+
+    @Test
+    public void changesThroughTheListOfShipsAreSeen() {
+        Fleet fleet = new Fleet();
+        Barge first = new Barge(Compass.NORTH, new Position(0, 0));
+        Barge second = new Barge(Compass.NORTH, new Position(5, 5));
+        assertTrue(fleet.addShip(first));
+        assertFalse(fleet.isLegalPlacement("barca", Compass.NORTH, new Position(1, 1)));
+
+        // same size after each change
+        fleet.getShips().set(0, second);
+        assertEquals(second, fleet.shipAt(new Position(5, 5)));
+        assertNull(fleet.shipAt(new Position(0, 0)));
+        assertTrue(fleet.isLegalPlacement("barca", Compass.NORTH, new Position(1, 1)));
+        assertFalse(fleet.addShip(new Barge(Compass.NORTH, new Position(4, 4))));
+
+        fleet.getShips().remove(0);
+        fleet.getShips().add(first);
+        assertNull(fleet.shipAt(new Position(5, 5)));
+        assertEquals(first, fleet.shipAt(new Position(0, 0)));
+        assertTrue(fleet.addShip(new Barge(Compass.NORTH, new Position(4, 4))));
+        assertEquals(Fleet.BOARD_SIZE * Fleet.BOARD_SIZE - 4 - 9, fleet.countLegalOrigins("barca", Compass.NORTH));
+
+        Game game = new Game(fleet);
+        fleet.getShips().set(1, second);
+        game.fire(new Position(5, 5));
+        assertEquals(1, game.getSunkShips());
+    }
+
+    /** Compares every placement of the fleet with what a copy of it accepts. */
+    private static void checkAgainstAddShip(Fleet fleet, List<IShip> placed, int size) {
+        for (int kind = 0; kind < GameCodec.KIND_COUNT; kind++) {
+            for (Compass bearing : ShipShape.BEARINGS) {
+                List<IPosition> expected = new ArrayList<>();
+                for (int row = -1; row <= size; row++) {
+                    for (int column = -1; column <= size; column++) {
+                        Fleet copy = new Fleet(size, fleet.getMaxShips());
+                        for (IShip s : placed)
+                            copy.addShip(s);
+                        Position pos = new Position(row, column);
+                        boolean legal = copy.addShip(Ship.buildShip(GameCodec.kind(kind), bearing, pos));
+                        assertEquals(legal, fleet.isLegalPlacement(GameCodec.kind(kind), bearing, pos));
+                        if (legal)
+                            expected.add(pos);
+                    }
+                }
+                assertEquals(expected, fleet.legalOrigins(GameCodec.kind(kind), bearing));
+                assertEquals(expected.size(), fleet.countLegalOrigins(GameCodec.kind(kind), bearing));
+            }
+        }
+    }
+}
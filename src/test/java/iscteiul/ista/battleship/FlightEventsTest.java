@@ -0,0 +1,100 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the {@link FlightEvents} carry the fields of the operations they record.
+ */
+public class FlightEventsTest {
+
+    @Test
+    public void eventsCarryTheFieldsOfTheirOperation() throws IOException {
+        if (!FlightEvents.ENABLED)
+            return;
+        Path file = Files.createTempFile("battleship", ".jfr");
+        List<RecordedEvent> events;
+        Game game;
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("Fire", "AddShip", "BuildShip", "FleetGeneration"))
+                recording.enable("iscteiul.ista.battleship." + name).withThreshold(Duration.ZERO);
+            recording.start();
+
+            FleetGenerator.generate(32);
+            Fleet fleet = new Fleet();
+            Ship barge = FlightEvents.buildShip("barca", Compass.NORTH, new Position(5, 5));
+            fleet.addShip(barge);
+            fleet.addShip(new Barge(Compass.EAST, new Position(5, 6)));
+            game = new Game(fleet);
+            game.fire(new Position(-1, 3));
+            game.fire(new Position(2, 3));
+            game.fire(new Position(5, 5));
+
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        List<RecordedEvent> fires = named(events, "Fire");
+        assertEquals(3, fires.size());
+        assertFire(fires.get(0), game, -1, 3, "invalid");
+        assertFire(fires.get(1), game, 2, 3, "miss");
+        assertFire(fires.get(2), game, 5, 5, "sunk");
+
+        // the generated fleet builds and adds its ships first
+        List<RecordedEvent> builds = named(events, "BuildShip");
+        RecordedEvent built = builds.get(builds.size() - 1);
+        assertEquals("barca", built.getString("kind"));
+        assertEquals(5, built.getInt("row"));
+        assertEquals(5, built.getInt("column"));
+        assertEquals(Compass.NORTH.toString(), built.getString("bearing"));
+
+        List<RecordedEvent> added = named(events, "AddShip");
+        RecordedEvent accepted = added.get(added.size() - 2);
+        RecordedEvent rejected = added.get(added.size() - 1);
+        assertEquals("Barca", accepted.getString("category"));
+        assertEquals(5, accepted.getInt("row"));
+        assertEquals(5, accepted.getInt("column"));
+        assertEquals(Compass.NORTH.toString(), accepted.getString("bearing"));
+        assertTrue(accepted.getBoolean("accepted"));
+        assertEquals(6, rejected.getInt("column"));
+        assertEquals(Compass.EAST.toString(), rejected.getString("bearing"));
+        assertFalse(rejected.getBoolean("accepted"));
+
+        RecordedEvent generation = named(events, "FleetGeneration").get(0);
+        assertEquals(32, generation.getLong("seed"));
+        assertEquals(FleetGenerator.COMPOSITION.length, generation.getInt("ships"));
+        assertTrue(generation.getInt("attempts") >= FleetGenerator.COMPOSITION.length);
+    }
+
+    private static void assertFire(RecordedEvent event, Game game, int row, int column, String outcome) {
+        assertEquals(game.getId(), event.getLong("gameId"));
+        assertEquals(row, event.getInt("row"));
+        assertEquals(column, event.getInt("column"));
+        assertEquals(outcome, event.getString("outcome"));
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> result = new ArrayList<>();
+        for (RecordedEvent e : events)
+            if (e.getEventType().getName().equals("iscteiul.ista.battleship." + name))
+                result.add(e);
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.UncheckedIOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link GameCodec}.
+ */
+public class GameCodecTest {
+
+    @Test
+    public void decodedFleetsIndexEveryShip() {
+        Fleet fleet = FleetGenerator.generate(26);
+        Game game = new Game(fleet);
+        IShip target = fleet.getShips().get(0);
+        game.fire(target.getPositions().get(0));
+        game.fire(new Position(-1, 0));
+
+        Game copy = GameCodec.fromBytes(GameCodec.toBytes(game));
+        IFleet copied = copy.getFleet();
+        assertEquals(fleet.getShips().size(), copied.getShips().size());
+        for (int i = 0; i < fleet.getShips().size(); i++)
+            for (IPosition p : fleet.getShips().get(i).getPositions())
+                assertSame(copied.getShips().get(i), copied.shipAt(p));
+        assertNull(copied.shipAt(new Position(-1, 0)));
+        assertEquals(game.getHits(), copy.getHits());
+        assertEquals(game.getInvalidShots(), copy.getInvalidShots());
+        assertEquals(game.getShots(), copy.getShots());
+    }
+
+    @Test
+    public void rejectedShipRecordsFailTheRead() {
+        Fleet overlapping = new Fleet();
+        overlapping.getShips().add(new Caravel(Compass.EAST, new Position(0, 0)));
+        overlapping.getShips().add(new Barge(Compass.NORTH, new Position(0, 1)));
+        byte[] bytes = GameCodec.toBytes(new Game(overlapping));
+        assertThrows(UncheckedIOException.class, () -> GameCodec.fromBytes(bytes));
+
+        Fleet outside = new Fleet();
+        outside.getShips().add(new Barge(Compass.NORTH, new Position(Fleet.BOARD_SIZE, 0)));
+        byte[] outsideBytes = GameCodec.toBytes(new Game(outside));
+        assertThrows(UncheckedIOException.class, () -> GameCodec.fromBytes(outsideBytes));
+    }
+}
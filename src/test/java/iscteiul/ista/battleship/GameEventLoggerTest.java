@@ -0,0 +1,138 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.apache.logging.log4j.core.config.Property;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link GameEventLogger}.
+ */
+public class GameEventLoggerTest {
+
+    private static final String LOGGER = "iscteiul.ista.battleship.events";
+
+    /** Keeps the message of every event it is given; messages are formatted at once, as Log4j reuses them. */
+    private static final class Capture extends AbstractAppender {
+        private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+        private Capture() {
+            super("Capture", null, null, true, Property.EMPTY_ARRAY);
+        }
+
+        @Override
+        public void append(LogEvent event) {
+            lines.add(event.getMessage().getFormattedMessage());
+        }
+    }
+
+    private LoggerContext context;
+    private LoggerConfig config;
+    private Level level;
+    private Capture capture;
+
+    @BeforeEach
+    public void captureEvents() {
+        context = (LoggerContext) LogManager.getContext(false);
+        config = context.getConfiguration().getLoggerConfig(LOGGER);
+        assertEquals(LOGGER, config.getName());
+        level = config.getLevel();
+        capture = new Capture();
+        capture.start();
+        config.addAppender(capture, null, null);
+    }
+
+    @AfterEach
+    public void restoreLogger() {
+        config.removeAppender(capture.getName());
+        config.setLevel(level);
+        context.updateLoggers();
+        capture.stop();
+    }
+
+    @Test
+    public void logsStructuredLinesForHitsSinkingsAndGameOver() throws InterruptedException {
+        setLevel(Level.INFO);
+        Caravel caravel = new Caravel(Compass.NORTH, new Position(1, 1));
+        Barge barge = new Barge(Compass.NORTH, new Position(5, 5));
+        Game game = play(caravel, barge);
+
+        String id = String.valueOf(game.getId());
+        assertLine(next(), "HIT", id, 0, 1, 1, caravel.getCategory());
+        assertLine(next(), "SUNK", id, 1, 2, 1, caravel.getCategory());
+        assertLine(next(), "SUNK", id, 2, 5, 5, barge.getCategory());
+        assertLine(next(), "GAME_OVER", id, 3, -1, -1, "-");
+        assertEquals(Map.of("event", "END", "game", id), fields(next()));
+    }
+
+    @Test
+    public void logsNothingWhenTheLoggerIsOff() {
+        setLevel(Level.OFF);
+        play(new Caravel(Compass.NORTH, new Position(1, 1)), new Barge(Compass.NORTH, new Position(5, 5)));
+
+        assertTrue(ForkJoinPool.commonPool().awaitQuiescence(5, TimeUnit.SECONDS));
+        assertTrue(capture.lines.isEmpty(), capture.lines.toString());
+    }
+
+    private void setLevel(Level value) {
+        config.setLevel(value);
+        context.updateLoggers();
+    }
+
+    /** Sinks the caravel with two shots and then the barge, and closes the event stream. */
+    private static Game play(Caravel caravel, Barge barge) {
+        Fleet fleet = new Fleet();
+        fleet.addShip(caravel);
+        fleet.addShip(barge);
+        Game game = new Game(fleet);
+        GameEventLogger.attach(game);
+        game.fire(new Position(1, 1));
+        game.fire(new Position(2, 1));
+        game.fire(new Position(5, 5));
+        game.close();
+        return game;
+    }
+
+    private String next() throws InterruptedException {
+        String line = capture.lines.poll(5, TimeUnit.SECONDS);
+        assertNotNull(line, "no line logged");
+        return line;
+    }
+
+    private static void assertLine(String line, String event, String game, long seq, int row, int col, String ship) {
+        Map<String, String> expected = new HashMap<>();
+        expected.put("event", event);
+        expected.put("game", game);
+        expected.put("seq", String.valueOf(seq));
+        expected.put("row", String.valueOf(row));
+        expected.put("col", String.valueOf(col));
+        expected.put("ship", ship);
+        assertEquals(expected, fields(line), line);
+    }
+
+    private static Map<String, String> fields(String line) {
+        Map<String, String> fields = new HashMap<>();
+        for (String field : line.split(" ")) {
+            int equals = field.indexOf('=');
+            fields.put(field.substring(0, equals), field.substring(equals + 1));
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,177 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link GameEventPublisher} and the events of {@link Game}.
+ */
+public class GameEventPublisherTest {
+
+    /** Runs delivery tasks only when asked to, so that the test decides when subscribers catch up. */
+    private static final class ManualExecutor implements Executor {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        private void runAll() {
+            for (Runnable task = tasks.poll(); task != null; task = tasks.poll())
+                task.run();
+        }
+    }
+
+    /** Records every event it receives, requesting all of them up front. */
+    private static final class Recorder implements Flow.Subscriber<GameEvent> {
+        private final List<GameEvent> events = new ArrayList<>();
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public synchronized void onNext(GameEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throw new AssertionError(throwable);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            completed = true;
+            notifyAll();
+        }
+    }
+
+    @Test
+    public void eventsWithoutSubscribersOnlyAdvanceTheSequence() {
+        ManualExecutor executor = new ManualExecutor();
+        GameEventPublisher publisher = new GameEventPublisher(executor, 8);
+        assertFalse(publisher.hasSubscribers());
+        for (int i = 0; i < 5; i++)
+            publisher.publish(GameEvent.Type.MISS, i, i, null);
+        assertTrue(executor.tasks.isEmpty());
+        assertEquals(0, publisher.getDroppedEvents());
+
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        assertTrue(publisher.hasSubscribers());
+        publisher.publish(GameEvent.Type.HIT, 1, 2, null);
+        executor.runAll();
+        assertEquals(1, recorder.events.size());
+        GameEvent event = recorder.events.get(0);
+        assertEquals(5, event.getSequence());
+        assertEquals(GameEvent.Type.HIT, event.getType());
+        assertEquals(1, event.getRow());
+        assertEquals(2, event.getColumn());
+    }
+
+    @Test
+    public void eventsBeyondTheBufferAreDroppedAndCounted() {
+        ManualExecutor executor = new ManualExecutor();
+        GameEventPublisher publisher = new GameEventPublisher(executor, 8);
+        Recorder recorder = new Recorder();
+        publisher.subscribe(recorder);
+        for (int i = 0; i < 100; i++)
+            publisher.publish(GameEvent.Type.MISS, 0, i, null);
+        executor.runAll();
+
+        long dropped = publisher.getDroppedEvents();
+        assertTrue(dropped > 0);
+        assertEquals(100, recorder.events.size() + dropped);
+        // the subscriber sees the gaps in the sequence
+        long gaps = 0;
+        for (int i = 0; i < recorder.events.size(); i++) {
+            GameEvent e = recorder.events.get(i);
+            assertEquals(e.getSequence(), e.getColumn());
+            long previous = i == 0 ? -1 : recorder.events.get(i - 1).getSequence();
+            assertTrue(e.getSequence() > previous);
+            gaps += e.getSequence() - previous - 1;
+        }
+        gaps += 99 - recorder.events.get(recorder.events.size() - 1).getSequence();
+        assertEquals(dropped, gaps);
+    }
+
+    @Test
+    public void gameKeepsPublishingAfterUndoUntilClosed() throws InterruptedException {
+        Fleet fleet = new Fleet();
+        fleet.addShip(new Barge(Compass.NORTH, new Position(5, 5)));
+        Game game = new Game(fleet);
+        Recorder recorder = new Recorder();
+        game.getEvents().subscribe(recorder);
+
+        game.fire(new Position(5, 5));
+        assertTrue(game.undo());
+        game.fire(new Position(0, 0));
+        game.fire(new Position(5, 5));
+        game.close();
+        game.fire(new Position(1, 1));
+        waitFor(recorder);
+
+        List<GameEvent.Type> types = new ArrayList<>();
+        for (GameEvent e : recorder.events)
+            types.add(e.getType());
+        assertEquals(List.of(GameEvent.Type.SUNK, GameEvent.Type.GAME_OVER, GameEvent.Type.UNDO, GameEvent.Type.MISS,
+                GameEvent.Type.SUNK, GameEvent.Type.GAME_OVER), types);
+        for (int i = 0; i < recorder.events.size(); i++)
+            assertEquals(i, recorder.events.get(i).getSequence());
+
+        Recorder late = new Recorder();
+        game.getEvents().subscribe(late);
+        waitFor(late);
+        assertTrue(late.events.isEmpty());
+    }
+
+    @Test
+    public void undoAndRedoCarryTheOutcomeOfTheShot() throws InterruptedException {
+        Fleet fleet = new Fleet();
+        IShip barge = new Barge(Compass.NORTH, new Position(5, 5));
+        fleet.addShip(barge);
+        Game game = new Game(fleet);
+        Recorder recorder = new Recorder();
+        game.getEvents().subscribe(recorder);
+
+        game.fire(new Position(-1, 0));
+        game.fire(new Position(5, 5));
+        assertTrue(game.undo());
+        assertTrue(game.undo());
+        assertTrue(game.redo());
+        assertTrue(game.redo());
+        game.close();
+        waitFor(recorder);
+
+        List<String> events = new ArrayList<>();
+        for (GameEvent e : recorder.events)
+            events.add(e.getType() + " " + e.getShot() + " " + e.getRow() + "," + e.getColumn());
+        assertEquals(List.of("INVALID null -1,0", "SUNK null 5,5", "GAME_OVER null -1,-1", "UNDO SUNK 5,5",
+                "UNDO INVALID -1,0", "REDO INVALID -1,0", "REDO SUNK 5,5", "GAME_OVER null -1,-1"), events);
+        assertEquals(barge, recorder.events.get(3).getShip());
+        assertEquals(barge, recorder.events.get(6).getShip());
+    }
+
+    private static void waitFor(Recorder recorder) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        synchronized (recorder) {
+            while (!recorder.completed && System.nanoTime() < deadline)
+                recorder.wait(10);
+            assertTrue(recorder.completed);
+        }
+    }
+}
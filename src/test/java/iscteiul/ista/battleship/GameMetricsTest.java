@@ -0,0 +1,91 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the Prometheus text of {@link GameMetrics}.
+ */
+public class GameMetricsTest {
+
+    @Test
+    public void prometheusTextCountsShotsAndOperations() {
+        String before = GameMetrics.get().toPrometheus();
+        Fleet fleet = new Fleet();
+        fleet.addShip(new Caravel(Compass.EAST, new Position(0, 0)));
+        fleet.addShip(new Barge(Compass.NORTH, new Position(5, 5)));
+        Game game = new Game(fleet);
+        // a multiple of the sample period, so that the estimated count is exact; sinks both ships
+        for (int i = 0; i < 4 * GameMetrics.SAMPLE_PERIOD; i++)
+            game.fire(new Position(i / Fleet.BOARD_SIZE, i % Fleet.BOARD_SIZE));
+        game.fireVolley(List.of(new Position(-1, 0), new Position(5, 5)));
+        String after = GameMetrics.get().toPrometheus();
+
+        if (!GameMetrics.ENABLED)
+            return;
+        assertEquals(3, delta(before, after, "battleship_shots_total{outcome=\"hit\"}"));
+        assertEquals(4 * GameMetrics.SAMPLE_PERIOD - 3, delta(before, after, "battleship_shots_total{outcome=\"miss\"}"));
+        assertEquals(1, delta(before, after, "battleship_shots_total{outcome=\"invalid\"}"));
+        assertEquals(1, delta(before, after, "battleship_shots_total{outcome=\"repeated\"}"));
+        assertEquals(2, delta(before, after, "battleship_ships_sunk_total"));
+        assertEquals(2, delta(before, after, "battleship_operation_seconds_count{operation=\"add_ship\"}"));
+        assertEquals(1, delta(before, after, "battleship_operation_seconds_count{operation=\"fire_volley\"}"));
+        assertEquals(4 * GameMetrics.SAMPLE_PERIOD, delta(before, after, "battleship_operation_seconds_count{operation=\"fire\"}"));
+    }
+
+    @Test
+    public void prometheusHistogramsAreCumulative() {
+        Game game = new Game(FleetGenerator.generate(31));
+        for (int r = 0; r < Fleet.BOARD_SIZE; r++)
+            game.fire(new Position(r, r));
+        String text = GameMetrics.get().toPrometheus();
+
+        assertTrue(text.contains("# TYPE battleship_shots_total counter\n"));
+        assertTrue(text.contains("# TYPE battleship_ships_sunk_total counter\n"));
+        assertTrue(text.contains("# TYPE battleship_operation_seconds histogram\n"));
+        assertFalse(text.contains("ship_at"));
+        for (GameMetrics.Operation op : GameMetrics.Operation.values()) {
+            String prefix = "battleship_operation_seconds_bucket{operation=\"" + op.getLabel() + "\",le=\"";
+            List<String> buckets = new ArrayList<>();
+            for (String line : text.split("\n"))
+                if (line.startsWith(prefix))
+                    buckets.add(line);
+            assertEquals(32, buckets.size());
+            double bound = 0;
+            long cumulative = 0;
+            for (String line : buckets) {
+                String le = line.substring(prefix.length(), line.indexOf('"', prefix.length()));
+                if (!le.equals("+Inf")) {
+                    assertTrue(Double.parseDouble(le) > bound, line);
+                    bound = Double.parseDouble(le);
+                }
+                long count = value(line);
+                assertTrue(count >= cumulative, line);
+                cumulative = count;
+            }
+            assertTrue(buckets.get(buckets.size() - 1).startsWith(prefix + "+Inf\"} "));
+            assertEquals(cumulative, value(text, "battleship_operation_seconds_count{operation=\"" + op.getLabel() + "\"}"));
+        }
+    }
+
+    private static long delta(String before, String after, String series) {
+        return value(after, series) - value(before, series);
+    }
+
+    private static long value(String text, String series) {
+        for (String line : text.split("\n"))
+            if (line.startsWith(series + " "))
+                return value(line);
+        throw new AssertionError("missing series " + series);
+    }
+
+    private static long value(String line) {
+        return Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+    }
+}
@@ -0,0 +1,87 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link GameRegistry}.
+ */
+public class GameRegistryTest {
+
+    private static Game newGame() {
+        Fleet fleet = new Fleet();
+        fleet.addShip(new Caravel(Compass.EAST, new Position(0, 0)));
+        fleet.addShip(new Barge(Compass.NORTH, new Position(5, 5)));
+        return new Game(fleet);
+    }
+
+    @Test
+    public void spilledGamesAreRehydratedOnFire() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(dir, 1, Duration.ofMinutes(5));
+
+        registry.register("a", newGame());
+        registry.fire("a", new Position(0, 0));
+        registry.fire("a", new Position(0, 0));
+        registry.register("b", newGame());
+
+        assertEquals(1, registry.getResidentCount());
+        assertEquals(2, registry.size());
+
+        assertNull(registry.fire("a", new Position(9, 9)));
+        assertNotNull(registry.fire("a", new Position(0, 1)));
+
+        Game a = registry.get("a");
+        assertEquals(2, a.getHits());
+        assertEquals(1, a.getRepeatedShots());
+        assertEquals(1, a.getSunkShips());
+        assertEquals(3, a.getShots().size());
+        assertEquals(1, a.getRemainingShips());
+    }
+
+    @Test
+    public void idleGamesAreSpilled() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(dir, 10, Duration.ZERO);
+
+        registry.register("a", newGame());
+        registry.register("b", newGame());
+
+        assertEquals(2, registry.evictIdle());
+        assertEquals(0, registry.getResidentCount());
+        assertEquals(0, registry.get("b").getHits());
+        assertEquals(1, registry.getResidentCount());
+    }
+
+    @Test
+    public void getReturnsASnapshotThatSurvivesSpills() throws IOException {
+        Path dir = Files.createTempDirectory("registry");
+        GameRegistry registry = new GameRegistry(dir, 1, Duration.ofMinutes(5));
+
+        registry.register("a", newGame());
+        registry.fire("a", new Position(0, 0));
+        Game held = registry.get("a");
+        // spills "a", then reads it back and fires at it again
+        registry.register("b", newGame());
+        registry.fire("a", new Position(0, 1));
+        assertEquals(1, held.getHits());
+        assertEquals(1, held.getShots().size());
+
+        // shots at the snapshot do not reach the session
+        held.fire(new Position(5, 5));
+        assertEquals(1, held.getSunkShips());
+        Game current = registry.get("a");
+        assertEquals(1, current.getSunkShips());
+        assertEquals(1, current.getFleet().getFloatingShips().size());
+        assertEquals(2, current.getHits());
+        assertEquals(2, current.getShots().size());
+    }
+}
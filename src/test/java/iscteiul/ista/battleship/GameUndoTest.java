@@ -0,0 +1,98 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link Game#undo()} and {@link Game#redo()}.
+ */
+public class GameUndoTest {
+
+    @Test
+    public void undoAndRedoRestoreEveryState() {
+        Fleet fleet = FleetGenerator.generate(42);
+        Game game = new Game(fleet);
+        Random random = new Random(42);
+        List<String> states = new ArrayList<>();
+        states.add(state(game, fleet));
+        while (game.getRemainingShips() > 0) {
+            // some shots off the board, and many repeated ones
+            game.fire(new Position(random.nextInt(Fleet.BOARD_SIZE + 2) - 1, random.nextInt(Fleet.BOARD_SIZE)));
+            states.add(state(game, fleet));
+        }
+        int fired = states.size() - 1;
+        assertEquals(fired, game.getUndoDepth());
+
+        for (int i = fired - 1; i >= 0; i--) {
+            assertTrue(game.undo());
+            assertEquals(states.get(i), state(game, fleet));
+        }
+        assertFalse(game.undo());
+        assertEquals(fired, game.getRedoDepth());
+
+        for (int i = 1; i <= fired; i++) {
+            assertTrue(game.redo());
+            assertEquals(states.get(i), state(game, fleet));
+        }
+        assertFalse(game.redo());
+
+        // a new shot after undoing discards the shots that could have been redone
+        for (int i = 0; i < 10; i++)
+            game.undo();
+        IPosition shot = game.getShots().get(0);
+        game.fire(shot);
+        assertEquals(0, game.getRedoDepth());
+        assertFalse(game.redo());
+        assertTrue(game.undo());
+        assertEquals(states.get(fired - 10), state(game, fleet));
+    }
+
+    @Test
+    public void sunkShipsAreReportedAfterUndo() {
+        Fleet fleet = new Fleet();
+        IShip caravel = new Caravel(Compass.EAST, new Position(0, 0));
+        IShip barge = new Barge(Compass.NORTH, new Position(5, 5));
+        fleet.addShip(caravel);
+        fleet.addShip(barge);
+        Game game = new Game(fleet);
+
+        assertNull(game.fire(new Position(0, 0)));
+        assertSame(barge, game.fire(new Position(5, 5)));
+        // take back the sinking of the barge, then sink the caravel
+        assertTrue(game.undo());
+        assertSame(caravel, game.fire(new Position(0, 1)));
+        assertTrue(game.undo());
+        assertTrue(game.redo());
+        assertEquals(1, game.getSunkShips());
+        assertTrue(barge.stillFloating());
+
+        assertTrue(game.undo());
+        VolleyResult volley = game.fireVolley(List.of(new Position(5, 5), new Position(0, 1)));
+        assertEquals(List.of(barge, caravel), volley.getSunkShips());
+        assertTrue(game.undo());
+        assertTrue(game.undo());
+        assertNull(game.fire(new Position(9, 9)));
+        assertEquals(0, game.getSunkShips());
+    }
+
+    private static String state(Game game, Fleet fleet) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(game.getInvalidShots()).append(' ').append(game.getRepeatedShots()).append(' ')
+                .append(game.getHits()).append(' ').append(game.getSunkShips()).append(' ')
+                .append(game.getRemainingShips()).append(' ').append(fleet.getFloatingShips().size())
+                .append(' ').append(game.getShots());
+        for (IShip s : fleet.getShips())
+            for (IPosition p : s.getPositions())
+                sb.append(p.isHit() ? 'x' : '.');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link IGame#fireVolley(List)}.
+ */
+public class GameVolleyTest {
+
+    private static Fleet newFleet() {
+        Fleet fleet = new Fleet();
+        fleet.addShip(new Caravel(Compass.EAST, new Position(0, 0)));
+        fleet.addShip(new Barge(Compass.NORTH, new Position(5, 5)));
+        return fleet;
+    }
+
+    private static List<IPosition> volley() {
+        return List.of(new Position(0, 0), new Position(0, 0), new Position(-1, 2),
+                new Position(3, 3), new Position(0, 1), new Position(5, 5));
+    }
+
+    private static void assertVolley(IGame game, VolleyResult result) {
+        assertEquals("[H R I M S S] sunk=2", result.toString());
+        assertEquals(3, game.getHits());
+        assertEquals(2, game.getSunkShips());
+        assertEquals(1, game.getRepeatedShots());
+        assertEquals(1, game.getInvalidShots());
+        assertEquals(4, game.getShots().size());
+        assertEquals(0, game.getRemainingShips());
+    }
+
+    @Test
+    public void gameResolvesVolleyLikeSingleShots() {
+        Game game = new Game(newFleet());
+        assertVolley(game, game.fireVolley(volley()));
+    }
+
+    @Test
+    public void concurrentGameResolvesVolleyLikeSingleShots() {
+        ConcurrentGame game = new ConcurrentGame(newFleet());
+        assertVolley(game, game.fireVolley(volley()));
+    }
+}
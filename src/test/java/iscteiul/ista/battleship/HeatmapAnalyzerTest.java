@@ -0,0 +1,104 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link HeatmapAnalyzer}.
+ */
+public class HeatmapAnalyzerTest {
+
+    @Test
+    public void heatmapsAgreeWithGamesRecorded(@TempDir Path dir) throws IOException {
+        Random random = new Random(46);
+        int size = Fleet.BOARD_SIZE;
+        long[][][][] occupancy = new long[GameCodec.KIND_COUNT][ShipShape.BEARINGS.length][size][size];
+        long[][][][] hits = new long[GameCodec.KIND_COUNT][ShipShape.BEARINGS.length][size][size];
+        long[][] shots = new long[size][size];
+        long[][] first = new long[size][size];
+        long[][] opening = new long[size][size];
+
+        Path corpus = dir.resolve("corpus");
+        Files.createDirectories(corpus.resolve("more"));
+        int games = 0;
+        for (int file = 0; file < 7; file++) {
+            Path path = corpus.resolve(file % 2 == 0 ? "more/" + file : String.valueOf(file));
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+                for (int g = random.nextInt(30); g >= 0; g--) {
+                    Game game = new Game(FleetGenerator.generate(random.nextLong()));
+                    for (int shot = random.nextInt(120); shot > 0; shot--)
+                        game.fire(new Position(random.nextInt(size), random.nextInt(size)));
+                    GameCodec.write(game, out);
+                    games++;
+                    for (IShip s : game.getFleet().getShips()) {
+                        int k = GameCodec.kindCode(s.getCategory());
+                        int b = ShipShape.bearingIndex(s.getBearing());
+                        for (IPosition p : s.getPositions()) {
+                            occupancy[k][b][p.getRow()][p.getColumn()]++;
+                            if (p.isHit())
+                                hits[k][b][p.getRow()][p.getColumn()]++;
+                        }
+                    }
+                    List<IPosition> fired = game.getShots();
+                    for (int i = 0; i < fired.size(); i++) {
+                        IPosition p = fired.get(i);
+                        shots[p.getRow()][p.getColumn()]++;
+                        if (i == 0)
+                            first[p.getRow()][p.getColumn()]++;
+                        if (i < HeatmapAnalyzer.OPENING)
+                            opening[p.getRow()][p.getColumn()]++;
+                    }
+                }
+                // a game on another board size is skipped
+                GameCodec.write(new Game(FleetGenerator.generate(file, 20, FleetGenerator.COMPOSITION.length)), out);
+            }
+        }
+
+        Path report = dir.resolve("heatmaps.txt");
+        for (int threads : new int[] {1, 4}) {
+            HeatmapAnalyzer.Heatmaps heatmaps = new HeatmapAnalyzer(threads).analyze(corpus);
+            heatmaps.write(report);
+            for (HeatmapAnalyzer.Heatmaps h : new HeatmapAnalyzer.Heatmaps[] {heatmaps, HeatmapAnalyzer.Heatmaps.read(report)}) {
+                assertEquals(games, h.getGames());
+                assertEquals(7, h.getSkipped());
+                for (int row = 0; row < size; row++) {
+                    for (int column = 0; column < size; column++) {
+                        for (int k = 0; k < GameCodec.KIND_COUNT; k++) {
+                            for (int b = 0; b < ShipShape.BEARINGS.length; b++) {
+                                assertEquals(occupancy[k][b][row][column],
+                                        h.getOccupancy(GameCodec.kind(k), ShipShape.BEARINGS[b], row, column));
+                                assertEquals(hits[k][b][row][column],
+                                        h.getHits(GameCodec.kind(k), ShipShape.BEARINGS[b], row, column));
+                            }
+                        }
+                        assertEquals(shots[row][column], h.getShots(row, column));
+                        assertEquals(first[row][column], h.getFirstShots(row, column));
+                        assertEquals(opening[row][column], h.getOpeningShots(row, column));
+                    }
+                }
+            }
+        }
+
+        // a corpus compared with itself has not changed anywhere
+        HeatmapAnalyzer.Heatmaps heatmaps = HeatmapAnalyzer.Heatmaps.read(report);
+        Path diff = dir.resolve("heatmaps.diff");
+        heatmaps.writeDiff(heatmaps, diff);
+        for (String line : Files.readAllLines(diff)) {
+            if (line.startsWith("largest"))
+                assertTrue(line.endsWith(" +0"), line);
+            else if (line.startsWith("+"))
+                assertTrue(line.matches("\\+0( \\+0)*"), line);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void durationsGoToTheirPowerOfTwoBucket() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        h.record(0);
+        h.record(1);
+        h.record(1023);
+        h.record(1024);
+        h.record(Long.MAX_VALUE);
+        assertEquals(2, h.getBucketCount(0));
+        assertEquals(1, h.getBucketCount(1));
+        assertEquals(1, h.getBucketCount(10));
+        assertEquals(1, h.getBucketCount(11));
+        assertEquals(1, h.getBucketCount(LatencyHistogram.BUCKETS - 1));
+        assertEquals(6, h.getCount());
+        assertEquals(1024, LatencyHistogram.getBucketBound(10));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getBucketBound(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void percentilesAreBucketBounds() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(99));
+        for (int i = 0; i < 90; i++)
+            h.record(100);
+        for (int i = 0; i < 10; i++)
+            h.record(10_000);
+        assertEquals(90 * 100 + 10 * 10_000, h.getTotalNanos());
+        // 100 ns falls in [64, 128), 10 us in [8192, 16384)
+        assertEquals(128, h.getPercentile(0));
+        assertEquals(128, h.getPercentile(50));
+        assertEquals(128, h.getPercentile(90));
+        assertEquals(16384, h.getPercentile(90.5));
+        assertEquals(16384, h.getPercentile(99));
+        assertEquals(16384, h.getPercentile(100));
+    }
+
+    @Test
+    public void weightedSamplesCountForManyDurations() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(100, 16);
+        h.record(10_000);
+        assertEquals(17, h.getCount());
+        assertEquals(16 * 100 + 10_000, h.getTotalNanos());
+        assertEquals(16, h.getBucketCount(7));
+        assertEquals(128, h.getPercentile(90));
+        assertEquals(16384, h.getPercentile(95));
+    }
+}
@@ -0,0 +1,78 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link LayoutValidator}.
+ */
+public class LayoutValidatorTest {
+
+    private static final String[] BEARINGS = {"n", "s", "e", "o"};
+
+    @Test
+    public void agreesWithFleetAddShip() throws IOException {
+        Random random = new Random(37);
+        StringBuilder layouts = new StringBuilder();
+        Map<Long, Integer> expected = new HashMap<>();
+        long line = 0;
+        // enough layouts for the file to be split into several chunks
+        while (layouts.length() < 3 << 20) {
+            line++;
+            int ships = 1 + random.nextInt(Fleet.FLEET_SIZE + 3);
+            Fleet fleet = new Fleet();
+            int refused = -1;
+            for (int i = 0; i < ships; i++) {
+                int kind = random.nextInt(GameCodec.KIND_COUNT);
+                int row = random.nextInt(Fleet.BOARD_SIZE + 2) - 1;
+                int column = random.nextInt(Fleet.BOARD_SIZE + 2) - 1;
+                String bearing = BEARINGS[random.nextInt(BEARINGS.length)];
+                layouts.append(i == 0 ? "" : " ").append(random.nextBoolean() ? GameCodec.kind(kind) : kind)
+                        .append(' ').append(row).append(' ').append(column).append(' ').append(bearing);
+                Ship ship = Ship.buildShip(GameCodec.kind(kind), Compass.charToCompass(bearing.charAt(0)),
+                        new Position(row, column));
+                if (refused < 0 && !fleet.addShip(ship))
+                    refused = i;
+            }
+            layouts.append('\n');
+            if (refused >= 0)
+                expected.put(line, refused);
+        }
+        layouts.append("# comment\n\ngaleao 1 x e\nfragata 1 1 w\nsubmarino 1 1 n\n");
+
+        Path in = Files.createTempFile("layouts", ".txt");
+        Path out = Files.createTempFile("rejects", ".tsv");
+        Files.write(in, layouts.toString().getBytes(StandardCharsets.US_ASCII));
+        LayoutValidator.Summary summary = new LayoutValidator(4).validate(in, out);
+
+        Map<Long, Integer> actual = new HashMap<>();
+        List<String> rejects = Files.readAllLines(out);
+        for (String reject : rejects) {
+            String[] fields = reject.split("\t");
+            actual.put(Long.parseLong(fields[0]), Integer.parseInt(fields[2]));
+        }
+        assertEquals(line + 5, summary.getLines());
+        assertEquals(line + 3, summary.getLayouts());
+        assertEquals(1, summary.getRejected("malformed"));
+        assertEquals(1, summary.getRejected("invalid-bearing"));
+        assertEquals(1, summary.getRejected("unknown-kind"));
+        assertEquals(expected.size() + 3, rejects.size());
+        expected.put(line + 3, 0);
+        expected.put(line + 4, 0);
+        expected.put(line + 5, 0);
+        assertEquals(expected, actual);
+
+        Files.delete(in);
+        Files.delete(out);
+    }
+}
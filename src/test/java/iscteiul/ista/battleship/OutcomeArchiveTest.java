@@ -0,0 +1,126 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link OutcomeArchive}.
+ */
+public class OutcomeArchiveTest {
+
+    private static final OutcomeArchive.Column[] COLUMNS = OutcomeArchive.Column.values();
+
+    @Test
+    public void scansAgreeWithGamesWritten() throws IOException {
+        Random random = new Random(45);
+        List<long[]> rows = new ArrayList<>();
+        List<byte[]> orders = new ArrayList<>();
+        Path file = Files.createTempFile("outcomes", ".bsoa");
+        try (OutcomeArchive.Writer writer = new OutcomeArchive.Writer(file, 1000)) {
+            // real games first, then games whose layout id grows, so blocks can be skipped
+            for (int seed = 0; seed < 20; seed++) {
+                Fleet fleet = FleetGenerator.generate(seed);
+                Game game = new Game(fleet);
+                while (game.getRemainingShips() > 0)
+                    game.fire(new Position(random.nextInt(Fleet.BOARD_SIZE + 1), random.nextInt(Fleet.BOARD_SIZE)));
+                writer.add(game, seed);
+                rows.add(new long[] {game.getShots().size(), game.getHits(), game.getSunkShips(),
+                        game.getRepeatedShots(), game.getInvalidShots(), seed});
+                orders.add(null);
+            }
+            for (int i = 0; i < 25_000; i++) {
+                byte[] order = new byte[random.nextInt(Fleet.FLEET_SIZE + 2)];
+                for (int k = 0; k < order.length; k++)
+                    order[k] = (byte) random.nextInt(GameCodec.KIND_COUNT);
+                long[] row = {20 + random.nextInt(80), random.nextInt(30), order.length, random.nextInt(5),
+                        random.nextInt(3), 1000L * i + random.nextInt(1000)};
+                writer.add((int) row[0], (int) row[1], (int) row[3], (int) row[4], row[5], order);
+                rows.add(row);
+                orders.add(order);
+            }
+        }
+
+        OutcomeArchive archive = new OutcomeArchive(file);
+        assertEquals(rows.size(), archive.getGames());
+        int shots = OutcomeArchive.Column.SHOTS.ordinal();
+        int sunk = OutcomeArchive.Column.SUNK.ordinal();
+        int layout = OutcomeArchive.Column.LAYOUT.ordinal();
+        for (int threads : new int[] {1, 3}) {
+            check(archive, rows, new long[COLUMNS.length][], false, threads);
+            check(archive, rows, new long[COLUMNS.length][], true, threads);
+            long[][] ranges = new long[COLUMNS.length][];
+            ranges[shots] = new long[] {40, 60};
+            ranges[sunk] = new long[] {11, 11};
+            check(archive, rows, ranges, true, threads);
+            ranges = new long[COLUMNS.length][];
+            ranges[layout] = new long[] {3_000_000, 5_000_000};
+            OutcomeArchive.Result narrow = check(archive, rows, ranges, true, threads);
+            assertTrue(narrow.getBlocksSkipped() > archive.getBlocks() / 2);
+        }
+
+        // sink orders of the synthetic games
+        OutcomeArchive.Result result = archive.scan(new OutcomeArchive.Query()
+                .where(OutcomeArchive.Column.LAYOUT, 1000, Long.MAX_VALUE).sinkOrder(), 2);
+        long[][] expected = new long[GameCodec.KIND_COUNT][Fleet.FLEET_SIZE + 2];
+        for (int i = 0; i < rows.size(); i++)
+            if (rows.get(i)[5] >= 1000)
+                for (int r = 0; r < orders.get(i).length; r++)
+                    expected[orders.get(i)[r]][r]++;
+        for (int k = 0; k < GameCodec.KIND_COUNT; k++)
+            for (int r = 0; r < expected[k].length; r++)
+                assertEquals(expected[k][r], result.getSinkRank(GameCodec.kind(k), r));
+        Files.delete(file);
+    }
+
+    /** Scans with a filter per column (null for none) and compares with the rows written. */
+    private static OutcomeArchive.Result check(OutcomeArchive archive, List<long[]> rows, long[][] ranges,
+                                               boolean aggregate, int threads) throws IOException {
+        OutcomeArchive.Query query = new OutcomeArchive.Query();
+        for (int c = 0; c < COLUMNS.length; c++)
+            if (ranges[c] != null)
+                query.where(COLUMNS[c], ranges[c][0], ranges[c][1]);
+        if (aggregate)
+            query.aggregate(COLUMNS);
+        OutcomeArchive.Result result = archive.scan(query, threads);
+
+        long games = 0;
+        long[] sums = new long[COLUMNS.length];
+        long[] mins = new long[COLUMNS.length];
+        long[] maxs = new long[COLUMNS.length];
+        Arrays.fill(mins, Long.MAX_VALUE);
+        Arrays.fill(maxs, Long.MIN_VALUE);
+        for (long[] row : rows) {
+            boolean matches = true;
+            for (int c = 0; c < COLUMNS.length; c++)
+                if (ranges[c] != null && (row[c] < ranges[c][0] || row[c] > ranges[c][1]))
+                    matches = false;
+            if (!matches)
+                continue;
+            games++;
+            for (int c = 0; c < COLUMNS.length; c++) {
+                sums[c] += row[c];
+                mins[c] = Math.min(mins[c], row[c]);
+                maxs[c] = Math.max(maxs[c], row[c]);
+            }
+        }
+        assertEquals(games, result.getGames());
+        if (aggregate) {
+            for (int c = 0; c < COLUMNS.length; c++) {
+                assertEquals(sums[c], result.getSum(COLUMNS[c]));
+                assertEquals(mins[c], result.getMin(COLUMNS[c]));
+                assertEquals(maxs[c], result.getMax(COLUMNS[c]));
+            }
+        }
+        return result;
+    }
+}
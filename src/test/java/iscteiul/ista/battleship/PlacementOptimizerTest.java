@@ -0,0 +1,57 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PlacementOptimizer}.
+ */
+public class PlacementOptimizerTest {
+
+    @Test
+    public void ranksLegalLayoutsIndependentlyOfThreads() {
+        List<String> shooters = List.of("hunt-target", "random");
+        List<PlacementOptimizer.Layout> one = new PlacementOptimizer(shooters, 8, 1).optimize(50, 3, 40);
+        List<PlacementOptimizer.Layout> three = new PlacementOptimizer(shooters, 8, 3).optimize(50, 3, 40);
+        assertEquals(one.size(), three.size());
+        assertFalse(one.isEmpty());
+        for (int i = 0; i < one.size(); i++) {
+            PlacementOptimizer.Layout layout = one.get(i);
+            assertEquals(layout.toString(), three.get(i).toString());
+            if (i > 0)
+                assertTrue(one.get(i - 1).getExpectedShots() >= layout.getExpectedShots());
+            assertEquals((layout.getExpectedShots(0) + layout.getExpectedShots(1)) / 2, layout.getExpectedShots(), 1e-9);
+
+            // a standard fleet that a new fleet accepts ship by ship, with no ship hit
+            IFleet fleet = layout.getFleet();
+            assertEquals(FleetGenerator.COMPOSITION.length, fleet.getShips().size());
+            Fleet copy = new Fleet();
+            for (IShip s : fleet.getShips()) {
+                assertTrue(copy.addShip(s));
+                for (IPosition p : s.getPositions())
+                    assertFalse(p.isHit());
+            }
+        }
+    }
+
+    @Test
+    public void annealingBeatsItsStartingLayout() {
+        List<String> shooters = List.of("hunt-target");
+        PlacementOptimizer.Layout first = new PlacementOptimizer(shooters, 10, 1).optimize(7, 1, 1).get(0);
+        PlacementOptimizer.Layout tuned = new PlacementOptimizer(shooters, 10, 1).optimize(7, 1, 150).get(0);
+        assertTrue(tuned.getTrainingShots() > first.getTrainingShots(),
+                tuned.getTrainingShots() + " " + first.getTrainingShots());
+    }
+
+    @Test
+    public void rejectsUnknownShooters() {
+        assertThrows(IllegalArgumentException.class, () -> new PlacementOptimizer(List.of("nobody"), 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new PlacementOptimizer(List.of(), 1, 1));
+    }
+}
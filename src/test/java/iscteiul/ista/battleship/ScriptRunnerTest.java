@@ -0,0 +1,84 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ScriptRunner}.
+ */
+public class ScriptRunnerTest {
+
+    private static ScriptRunner.Result run(String script) throws IOException {
+        return ScriptRunner.run("test", new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)),
+                OutputStream.nullOutputStream());
+    }
+
+    /** The ships of a generated fleet, as the {@code nova} command reads them. */
+    private static String[] ships(long seed) {
+        return FleetGenerator.generate(seed).getShips().stream()
+                .map(s -> GameCodec.kind(GameCodec.kindCode(s.getCategory())) + " " + s.getPosition().getRow() + " "
+                        + s.getPosition().getColumn() + " " + s.getBearing().getDirection())
+                .toArray(String[]::new);
+    }
+
+    @Test
+    public void commentsAndLineBreaksAreWhitespace() throws IOException {
+        ScriptRunner.Result r = run("# a game\nnova semente 1   # generated\nrajada 0 0 # first shot\n  0 1\n0 2\n"
+                + "estado # counters\n");
+        assertEquals(0, r.getErrorCount(), r.toJson());
+        assertEquals(3, r.getCommands());
+        assertEquals(1, r.getVolleys());
+    }
+
+    @Test
+    public void malformedCoordinateSkipsTheRestOfTheLine() throws IOException {
+        ScriptRunner.Result r = run("nova semente 1\nrajada 0 0 x 1 2 2\nrajada 0 0 0 1 0 2\n"
+                + "rajada 1 99999999999 1 1 1 2\nestado\n");
+        assertEquals(2, r.getErrorCount(), r.toJson());
+        assertTrue(r.toJson().contains("not a number: x"), r.toJson());
+        assertTrue(r.toJson().contains("number out of range: 99999999999"), r.toJson());
+        assertEquals(5, r.getCommands());
+        assertEquals(1, r.getVolleys());
+    }
+
+    @Test
+    public void shortVolleyLeavesTheNextCommand() throws IOException {
+        ScriptRunner.Result r = run("nova semente 1\nrajada 0 0 0 1\nrajada 1 1 1 2 1 3\nrajada 2 2\n");
+        assertEquals(2, r.getErrorCount(), r.toJson());
+        assertTrue(r.toJson().contains("command 2: rajada has only 2 shots"), r.toJson());
+        assertTrue(r.toJson().contains("command 4: rajada has only 1 shots"), r.toJson());
+        assertEquals(4, r.getCommands());
+        assertEquals(1, r.getVolleys());
+    }
+
+    @Test
+    public void unknownCommandSkipsItsLine() throws IOException {
+        ScriptRunner.Result r = run("nova semente 1\ndisparar 1 2 3\nrajada 0 0 0 1 0 2\n");
+        assertEquals(1, r.getErrorCount(), r.toJson());
+        assertEquals(3, r.getCommands());
+        assertEquals(1, r.getVolleys());
+    }
+
+    @Test
+    public void malformedShipOnlySkipsThatShip() throws IOException {
+        String[] ships = ships(3);
+        // on one line, with a bad row in an extra ship
+        ScriptRunner.Result r = run("nova fragata 1x 0 s " + String.join(" ", ships) + "\nestado\n");
+        assertEquals(1, r.getErrorCount(), r.toJson());
+        assertEquals(2, r.getCommands());
+        assertEquals(ships.length, r.getRemainingShips());
+
+        // one ship per line, with a ship cut short at the end of its line
+        r = run("nova\nfragata 3\n" + String.join("\n", ships) + "\nestado\n");
+        assertEquals(1, r.getErrorCount(), r.toJson());
+        assertEquals(2, r.getCommands());
+        assertEquals(ships.length, r.getRemainingShips());
+    }
+}
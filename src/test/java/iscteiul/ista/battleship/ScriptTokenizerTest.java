@@ -0,0 +1,95 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ScriptTokenizer}.
+ */
+public class ScriptTokenizerTest {
+
+    private static ScriptTokenizer tokenizer(String script) {
+        return new ScriptTokenizer(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void commentsRunToTheEndOfTheLine() throws IOException {
+        ScriptTokenizer tok = tokenizer("# header\nnova # semente 7\n\t# indented\n  rajada 1#2\n-3");
+        assertTrue(tok.advance());
+        assertTrue(tok.is("nova"));
+        assertTrue(tok.startsLine());
+        assertTrue(tok.advance());
+        assertTrue(tok.is("rajada"));
+        assertTrue(tok.startsLine());
+        assertTrue(tok.advance());
+        // a # inside a token does not start a comment
+        assertEquals("1#2", tok.text());
+        assertFalse(tok.startsLine());
+        assertTrue(tok.advance());
+        assertEquals(-3, tok.intValue());
+        assertTrue(tok.startsLine());
+        assertFalse(tok.advance());
+        assertFalse(tok.advance());
+    }
+
+    @Test
+    public void malformedNumbersAreRejected() throws IOException {
+        ScriptTokenizer tok = tokenizer("12x - -- 1-2 +4 ");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(tok.advance());
+            assertThrows(NumberFormatException.class, tok::intValue);
+            assertThrows(NumberFormatException.class, tok::longValue);
+        }
+    }
+
+    @Test
+    public void numbersThatOverflowAreRejected() throws IOException {
+        ScriptTokenizer tok = tokenizer("2147483647 -2147483648 2147483648 -2147483649 "
+                + "9223372036854775807 9223372036854775808 99999999999999999999");
+        tok.advance();
+        assertEquals(Integer.MAX_VALUE, tok.intValue());
+        tok.advance();
+        assertEquals(Integer.MIN_VALUE, tok.intValue());
+        tok.advance();
+        assertThrows(NumberFormatException.class, tok::intValue);
+        assertEquals(2147483648L, tok.longValue());
+        tok.advance();
+        assertThrows(NumberFormatException.class, tok::intValue);
+        tok.advance();
+        assertEquals(Long.MAX_VALUE, tok.longValue());
+        tok.advance();
+        assertThrows(NumberFormatException.class, tok::longValue);
+        tok.advance();
+        assertThrows(NumberFormatException.class, tok::longValue);
+    }
+
+    @Test
+    public void skipLineAndKeep() throws IOException {
+        ScriptTokenizer tok = tokenizer("rajada 1 x 3 # note\nver\nmapa");
+        tok.advance();
+        tok.advance();
+        tok.advance();
+        assertEquals("x", tok.text());
+        tok.skipLine();
+        assertTrue(tok.advance());
+        assertTrue(tok.is("ver"));
+        assertTrue(tok.startsLine());
+        // the token already ends its line: nothing more to skip
+        tok.skipLine();
+        assertTrue(tok.advance());
+        assertTrue(tok.is("mapa"));
+        tok.keep();
+        assertTrue(tok.advance());
+        assertTrue(tok.is("mapa"));
+        assertTrue(tok.startsLine());
+        assertFalse(tok.advance());
+    }
+}
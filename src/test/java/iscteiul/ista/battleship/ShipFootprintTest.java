@@ -0,0 +1,102 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the footprint queries of {@link Ship} agree with {@link Ship#getPositions()}.
+ */
+public class ShipFootprintTest {
+
+    /** Every kind of ship in every bearing, anchored at the given cell. */
+    private static List<Ship> shipsAt(int row, int column) {
+        List<Ship> ships = new ArrayList<>();
+        for (Compass bearing : ShipShape.BEARINGS) {
+            Position pos = new Position(row, column);
+            ships.add(new Barge(bearing, pos));
+            ships.add(new Caravel(bearing, pos));
+            ships.add(new Carrack(bearing, pos));
+            ships.add(new Frigate(bearing, pos));
+            ships.add(new Galleon(bearing, pos));
+        }
+        return ships;
+    }
+
+    private static boolean adjacent(IPosition p, int row, int column) {
+        return Math.abs(p.getRow() - row) <= 1 && Math.abs(p.getColumn() - column) <= 1;
+    }
+
+    @Test
+    public void extentsAreThoseOfThePositions() {
+        for (Ship ship : shipsAt(4, 5)) {
+            List<IPosition> positions = ship.getPositions();
+            int top = Integer.MAX_VALUE, bottom = Integer.MIN_VALUE, left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+            for (IPosition p : positions) {
+                top = Math.min(top, p.getRow());
+                bottom = Math.max(bottom, p.getRow());
+                left = Math.min(left, p.getColumn());
+                right = Math.max(right, p.getColumn());
+            }
+            String name = ship.getCategory() + " " + ship.getBearing();
+            assertEquals(top, ship.topRow(), name);
+            assertEquals(bottom, ship.bottomRow(), name);
+            assertEquals(left, ship.leftColumn(), name);
+            assertEquals(right, ship.rightColumn(), name);
+        }
+        Caravel caravel = new Caravel(Compass.EAST, new Position(2, 7));
+        assertEquals(2, caravel.topRow());
+        assertEquals(2, caravel.bottomRow());
+        assertEquals(7, caravel.leftColumn());
+        assertEquals(8, caravel.rightColumn());
+    }
+
+    @Test
+    public void cellOfAndTooCloseToMatchThePositions() {
+        for (Ship ship : shipsAt(4, 5)) {
+            List<IPosition> positions = ship.getPositions();
+            String name = ship.getCategory() + " " + ship.getBearing();
+            // the bounding box with a margin of two, so that the early exits are crossed too
+            for (int r = ship.topRow() - 2; r <= ship.bottomRow() + 2; r++)
+                for (int c = ship.leftColumn() - 2; c <= ship.rightColumn() + 2; c++) {
+                    int expected = -1;
+                    boolean close = false;
+                    for (int i = 0; i < positions.size(); i++) {
+                        IPosition p = positions.get(i);
+                        if (expected < 0 && p.getRow() == r && p.getColumn() == c)
+                            expected = i;
+                        close |= adjacent(p, r, c);
+                    }
+                    assertEquals(expected, ship.cellOf(r, c), name + " at " + r + "," + c);
+                    assertEquals(expected >= 0, ship.occupies(r, c), name + " at " + r + "," + c);
+                    assertEquals(close, ship.tooCloseTo(r, c), name + " at " + r + "," + c);
+                }
+        }
+    }
+
+    @Test
+    public void shipsAreTooCloseWhenTheyTouch() {
+        for (Ship ship : shipsAt(4, 5))
+            for (int row = -1; row <= 10; row++)
+                for (int column = 0; column <= 11; column++)
+                    for (Ship other : shipsAt(row, column)) {
+                        boolean expected = false;
+                        for (IPosition p : other.getPositions())
+                            for (IPosition q : ship.getPositions())
+                                expected |= adjacent(p, q.getRow(), q.getColumn());
+                        assertEquals(expected, ship.tooCloseTo(other));
+                        assertEquals(expected, other.tooCloseTo(ship));
+                    }
+
+        Barge barge = new Barge(Compass.NORTH, new Position(3, 3));
+        // touching diagonally is too close, one empty cell in between is not
+        assertTrue(barge.tooCloseTo(new Barge(Compass.NORTH, new Position(4, 4))));
+        assertFalse(barge.tooCloseTo(new Barge(Compass.NORTH, new Position(5, 3))));
+        assertTrue(barge.tooCloseTo(barge));
+    }
+}
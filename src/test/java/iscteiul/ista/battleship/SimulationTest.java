@@ -0,0 +1,124 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SimulationCoordinator} and {@link SimulationWorker}.
+ */
+public class SimulationTest {
+
+    private static final int GAMES = 300;
+    private static final int BATCH = 20;
+
+    @Test
+    public void workerProcessesAgreeWithLocalRunDespiteFailures() throws Exception {
+        SimulationCoordinator.Tally expected = SimulationWorker.play("hunt-target", "random", 7, GAMES);
+        assertEquals(GAMES, expected.getGames());
+
+        List<Process> processes = new ArrayList<>();
+        try (SimulationCoordinator coordinator = new SimulationCoordinator("hunt-target", "random", 7, GAMES, BATCH,
+                Duration.ofSeconds(30))) {
+            int port = coordinator.listen(0);
+            // one worker process that crashes with its second batch, one that runs to the end
+            processes.add(worker(port, "--fail-after", "2"));
+            processes.add(worker(port));
+            // and an in-process worker that drops its first batch
+            SimulationWorker failing = new SimulationWorker(null, port);
+            failing.failAfter(1);
+            assertThrows(IOException.class, failing::run);
+
+            SimulationCoordinator.Tally tally = coordinator.await(Duration.ofMinutes(2));
+            assertEquals(expected.getGames(), tally.getGames());
+            assertEquals(expected.getUnfinished(), tally.getUnfinished());
+            assertEquals(expected.getShots(), tally.getShots());
+            assertEquals(expected.getMin(), tally.getMin());
+            assertEquals(expected.getMax(), tally.getMax());
+            assertEquals(expected.getStandardDeviation(), tally.getStandardDeviation(), 1e-9);
+            for (int shots = 0; shots <= expected.getMax(); shots++)
+                assertEquals(expected.getGames(shots), tally.getGames(shots));
+            assertEquals(0, coordinator.getRemainingBatches());
+        } finally {
+            for (Process p : processes)
+                p.destroyForcibly().waitFor();
+        }
+    }
+
+    @Test
+    public void timesOutWithoutWorkers() {
+        try (SimulationCoordinator coordinator = new SimulationCoordinator("random", "random", 0, 10, 5,
+                Duration.ofSeconds(1))) {
+            coordinator.listen(0);
+            assertThrows(TimeoutException.class, () -> coordinator.await(Duration.ofMillis(50)));
+        }
+    }
+
+    @Test
+    public void playedShotsReachTheShooterAsTheirVolleyResolvedThem() {
+        Fleet fleet = new Fleet();
+        Barge first = new Barge(Compass.NORTH, new Position(5, 5));
+        Barge second = new Barge(Compass.NORTH, new Position(2, 2));
+        fleet.addShip(first);
+        fleet.addShip(second);
+        List<IPosition> shots = List.of(new Position(-1, 3), new Position(2, 3), new Position(5, 5),
+                new Position(5, 5), new Position(2, 2));
+        List<Byte> outcomes = new ArrayList<>();
+        List<IShip> sunk = new ArrayList<>();
+        ShooterStrategy scripted = new ShooterStrategy() {
+            private int next;
+
+            @Override
+            public String getName() {
+                return "scripted";
+            }
+
+            @Override
+            public void start(int boardSize, long seed) {
+                next = 0;
+            }
+
+            @Override
+            public IPosition nextShot(IGame game) {
+                return shots.get(next++);
+            }
+
+            @Override
+            public void shotResult(IPosition shot, byte outcome, IShip ship) {
+                outcomes.add(outcome);
+                sunk.add(ship);
+            }
+        };
+
+        assertEquals(shots.size(), SimulationWorker.play(scripted, new Game(fleet), 0));
+        assertEquals(List.of(VolleyResult.INVALID, VolleyResult.MISS, VolleyResult.SUNK, VolleyResult.REPEATED,
+                VolleyResult.SUNK), outcomes);
+        assertNull(sunk.get(0));
+        assertNull(sunk.get(1));
+        assertSame(first, sunk.get(2));
+        assertNull(sunk.get(3));
+        assertSame(second, sunk.get(4));
+    }
+
+    private static Process worker(int port, String... options) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SimulationWorker.class.getName());
+        command.add(String.valueOf(port));
+        command.addAll(List.of(options));
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+}
@@ -0,0 +1,276 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SpectatorHub}.
+ */
+public class SpectatorHubTest {
+
+    @Test
+    public void viewersJoiningMidGameSeeTheGameState() throws InterruptedException {
+        Fleet fleet = FleetGenerator.generate(29);
+        Game game = new Game(fleet);
+        Random random = new Random(29);
+        try (SpectatorHub hub = new SpectatorHub(game, Duration.ofMillis(2))) {
+            BlockingQueue<byte[]> early = hub.addViewer(1024);
+            View earlyView = new View();
+            View[] lateViews = new View[4];
+            @SuppressWarnings("unchecked")
+            BlockingQueue<byte[]>[] late = new BlockingQueue[lateViews.length];
+            int shots = 0;
+            while (game.getRemainingShips() > 0) {
+                // some shots off the board and some repeated ones
+                game.fire(new Position(random.nextInt(Fleet.BOARD_SIZE + 2) - 1, random.nextInt(Fleet.BOARD_SIZE)));
+                shots++;
+                if (shots % 20 == 0 && shots / 20 <= late.length) {
+                    int i = shots / 20 - 1;
+                    late[i] = hub.addViewer(1024);
+                    lateViews[i] = new View();
+                }
+                // keep within the buffer of the publisher, and let viewers join while the game goes on
+                if (shots % 10 == 0)
+                    Thread.sleep(1);
+            }
+            View expected = new View(game, fleet);
+            earlyView.follow(early, expected);
+            assertEquals(expected, earlyView);
+            for (int i = 0; i < late.length; i++) {
+                lateViews[i].follow(late[i], expected);
+                assertEquals(expected, lateViews[i]);
+            }
+            assertEquals(0, hub.getCatchUps());
+            assertEquals(0, hub.getMissedEvents());
+            assertEquals(0, game.getEvents().getDroppedEvents());
+        }
+    }
+
+    @Test
+    public void coordinatesAboveAByteSurviveTheBatch() throws InterruptedException {
+        Fleet fleet = new Fleet(300, 1);
+        fleet.addShip(new Barge(Compass.NORTH, new Position(290, 260)));
+        Game game = new Game(fleet);
+        try (SpectatorHub hub = new SpectatorHub(game, Duration.ofMillis(2))) {
+            BlockingQueue<byte[]> frames = hub.addViewer(16);
+            View view = new View();
+            // the viewer starts from a snapshot before the shots are fired
+            view.apply(frames.poll(5, TimeUnit.SECONDS));
+            game.fire(new Position(-3, 400));
+            game.fire(new Position(299, 257));
+            game.fire(new Position(290, 260));
+            View expected = new View(game, fleet);
+            view.follow(frames, expected);
+            assertEquals(expected, view);
+            assertEquals(SpectatorHub.WATER, view.cells[299 * 300 + 257]);
+            assertEquals(SpectatorHub.SUNK, view.cells[290 * 300 + 260]);
+        }
+    }
+
+    @Test
+    public void undoAndRedoResyncViewers() throws InterruptedException {
+        Fleet fleet = new Fleet();
+        fleet.addShip(new Caravel(Compass.EAST, new Position(2, 2)));
+        fleet.addShip(new Barge(Compass.NORTH, new Position(7, 7)));
+        Game game = new Game(fleet);
+        try (SpectatorHub hub = new SpectatorHub(game, Duration.ofMillis(2))) {
+            BlockingQueue<byte[]> frames = hub.addViewer(16);
+            View view = new View();
+            view.apply(frames.poll(5, TimeUnit.SECONDS));
+            game.fire(new Position(2, 2));
+            game.fire(new Position(2, 3));
+            game.fire(new Position(0, 0));
+            game.fire(new Position(0, 0));
+            view.follow(frames, new View(game, fleet));
+            assertEquals(new View(game, fleet), view);
+
+            // the repeated shot, the miss and the sinking hit are taken back
+            for (int i = 0; i < 3; i++)
+                assertTrue(game.undo());
+            View expected = new View(game, fleet);
+            view.follow(frames, expected);
+            assertEquals(expected, view);
+            assertEquals(SpectatorHub.HIT, view.cells[2 * Fleet.BOARD_SIZE + 2]);
+            assertEquals(SpectatorHub.UNKNOWN, view.cells[2 * Fleet.BOARD_SIZE + 3]);
+
+            assertTrue(game.redo());
+            expected = new View(game, fleet);
+            view.follow(frames, expected);
+            assertEquals(expected, view);
+            assertEquals(SpectatorHub.SUNK, view.cells[2 * Fleet.BOARD_SIZE + 3]);
+            assertEquals(0, hub.getMissedEvents());
+        }
+    }
+
+    @Test
+    public void closingEndsEveryStream() throws InterruptedException, IOException {
+        Fleet fleet = new Fleet();
+        fleet.addShip(new Barge(Compass.NORTH, new Position(5, 5)));
+        Game game = new Game(fleet);
+        SpectatorHub hub = new SpectatorHub(game, Duration.ofMillis(2));
+        BlockingQueue<byte[]> frames = hub.addViewer(16);
+        int port = hub.listen(0, 16);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(SpectatorHub.SNAPSHOT, readFrame(in)[0]);
+            assertEquals(SpectatorHub.SNAPSHOT, frames.poll(5, TimeUnit.SECONDS)[0]);
+            game.fire(new Position(0, 0));
+            // a viewer that keeps up gets batches, not snapshots
+            assertEquals(SpectatorHub.BATCH, frames.poll(5, TimeUnit.SECONDS)[0]);
+            assertEquals(SpectatorHub.BATCH, readFrame(in)[0]);
+            assertEquals(0, hub.getCatchUps());
+
+            hub.close();
+            assertEquals(SpectatorHub.END, frames.poll(5, TimeUnit.SECONDS)[0]);
+            assertTrue(frames.isEmpty());
+            assertEquals(SpectatorHub.END, readFrame(in)[0]);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        return frame;
+    }
+
+    /**
+     * What a viewer knows of the game, decoded from the frames it received.
+     */
+    private static final class View {
+        private int size;
+        private byte[] cells;
+        private int hits;
+        private int sinks;
+        private int invalid;
+        private int repeated;
+
+        private View() {
+        }
+
+        private View(Game game, Fleet fleet) {
+            size = fleet.getBoardSize();
+            cells = new byte[size * size];
+            for (IPosition p : game.getShots())
+                cells[p.getRow() * size + p.getColumn()] = fleet.shipAt(p) == null ? SpectatorHub.WATER : SpectatorHub.HIT;
+            for (IShip ship : fleet.getShips())
+                if (!ship.stillFloating())
+                    for (IPosition p : ship.getPositions())
+                        cells[p.getRow() * size + p.getColumn()] = SpectatorHub.SUNK;
+            hits = game.getHits();
+            sinks = game.getSunkShips();
+            invalid = game.getInvalidShots();
+            repeated = game.getRepeatedShots();
+        }
+
+        /** Applies frames until this view matches the expected one, or no frame comes for a while. */
+        private void follow(BlockingQueue<byte[]> frames, View expected) throws InterruptedException {
+            while (!equals(expected)) {
+                byte[] frame = frames.poll(5, TimeUnit.SECONDS);
+                if (frame == null)
+                    return;
+                apply(frame);
+            }
+            // anything still queued would be counted twice
+            byte[] extra = frames.poll(50, TimeUnit.MILLISECONDS);
+            if (extra != null)
+                apply(extra);
+        }
+
+        private void apply(byte[] frame) {
+            ByteBuffer in = ByteBuffer.wrap(frame);
+            byte kind = in.get();
+            if (kind == SpectatorHub.SNAPSHOT) {
+                varInt(in);
+                hits = varInt(in);
+                sinks = varInt(in);
+                invalid = varInt(in);
+                repeated = varInt(in);
+                cells = new byte[in.remaining()];
+                in.get(cells);
+                size = (int) Math.sqrt(cells.length);
+                return;
+            }
+            assertEquals(SpectatorHub.BATCH, kind);
+            for (int count = varInt(in); count > 0; count--) {
+                GameEvent.Type type = GameEvent.Type.values()[in.get()];
+                int row = varInt(in) - 1;
+                int column = varInt(in) - 1;
+                switch (type) {
+                    case INVALID:
+                        invalid++;
+                        break;
+                    case REPEATED:
+                        repeated++;
+                        break;
+                    case MISS:
+                        cells[row * size + column] = SpectatorHub.WATER;
+                        break;
+                    case HIT:
+                        hits++;
+                        cells[row * size + column] = SpectatorHub.HIT;
+                        break;
+                    case SUNK:
+                        hits++;
+                        sinks++;
+                        sink(row, column);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        /** Ships never touch, so the hit cells connected to the sinking shot are the ship. */
+        private void sink(int row, int column) {
+            cells[row * size + column] = SpectatorHub.SUNK;
+            int[][] neighbours = { { row - 1, column }, { row + 1, column }, { row, column - 1 }, { row, column + 1 } };
+            for (int[] n : neighbours)
+                if (n[0] >= 0 && n[0] < size && n[1] >= 0 && n[1] < size
+                        && cells[n[0] * size + n[1]] == SpectatorHub.HIT)
+                    sink(n[0], n[1]);
+        }
+
+        private static int varInt(ByteBuffer in) {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = in.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof View))
+                return false;
+            View v = (View) o;
+            return hits == v.hits && sinks == v.sinks && invalid == v.invalid && repeated == v.repeated
+                    && Arrays.equals(cells, v.cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(cells);
+        }
+
+        @Override
+        public String toString() {
+            return hits + " hits, " + sinks + " sunk, " + invalid + " invalid, " + repeated + " repeated";
+        }
+    }
+}
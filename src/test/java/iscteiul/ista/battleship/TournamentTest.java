@@ -0,0 +1,41 @@
+package iscteiul.ista.battleship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link Tournament} and the strategies found by {@link Strategies}.
+ */
+public class TournamentTest {
+
+    @Test
+    public void findsBuiltInStrategies() {
+        assertTrue(Strategies.shooters().containsKey("random"));
+        assertTrue(Strategies.shooters().containsKey("hunt-target"));
+        assertTrue(Strategies.placements().containsKey("random"));
+        // every supplier call gives a fresh instance
+        assertTrue(Strategies.shooter("random").get() != Strategies.shooter("random").get());
+    }
+
+    @Test
+    public void resultsDoNotDependOnThreads() {
+        List<Tournament.Entrant> entrants = List.of(
+                new Tournament.Entrant("random", Strategies.shooter("random"), Strategies.placement("random")),
+                new Tournament.Entrant("hunt", Strategies.shooter("hunt-target"), Strategies.placement("random")));
+        Tournament.Standings one = new Tournament(entrants, 1).play(7, 200);
+        Tournament.Standings three = new Tournament(entrants, 3).play(7, 200);
+        for (int i = 0; i < entrants.size(); i++) {
+            assertEquals(200, one.getGames(i));
+            assertEquals(one.getWins(i), three.getWins(i));
+            assertEquals(one.getDraws(i), three.getDraws(i));
+            assertEquals(one.getMovesPerGame(i), three.getMovesPerGame(i), 0.0);
+        }
+        assertTrue(one.getLowerBound(1) > 0.5);
+        assertTrue(one.getScore(1) <= one.getUpperBound(1));
+        assertEquals(1.0, one.getScore(0, 1) + one.getScore(1, 0), 1e-9);
+    }
+}